@@ -0,0 +1,89 @@
+package android.graphics;
+
+/** Bitmap of the JVM benchmark runs and tests, android.jar only has stubs which throw.
+ * Pixels are ARGB ints of any config, only the members used by the library are here.
+ * Must be before android.jar on the class path.
+ */
+public final class Bitmap {
+	public enum Config {
+		ALPHA_8,
+		RGB_565,
+		ARGB_4444,
+		ARGB_8888
+	}
+
+	private final int width_;
+	private final int height_;
+	private final Config config_;
+	private int[] pixels_;
+
+	private Bitmap(int width, int height, Config config) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("width and height must be > 0");
+		width_ = width;
+		height_ = height;
+		config_ = config;
+		pixels_ = new int[width * height];
+	}
+
+	public static Bitmap createBitmap(int width, int height, Config config) {
+		return new Bitmap(width, height, config);
+	}
+
+	public static Bitmap createBitmap(Bitmap source, int x, int y, int width, int height) {
+		if (x < 0 || y < 0 || x + width > source.width_ || y + height > source.height_)
+			throw new IllegalArgumentException("rectangle must be inside the bitmap");
+		Bitmap ret = new Bitmap(width, height, source.config_);
+		for (int row = 0; row < height; ++row)
+			System.arraycopy(source.pixels(), (y + row) * source.width_ + x, ret.pixels_, row * width, width);
+		return ret;
+	}
+
+	public Bitmap copy(Config config, boolean isMutable) {
+		Bitmap ret = new Bitmap(width_, height_, config);
+		System.arraycopy(pixels(), 0, ret.pixels_, 0, pixels_.length);
+		return ret;
+	}
+
+	public int getWidth() {
+		return width_;
+	}
+
+	public int getHeight() {
+		return height_;
+	}
+
+	public Config getConfig() {
+		return config_;
+	}
+
+	public boolean hasAlpha() {
+		return config_ != Config.RGB_565;
+	}
+
+	public void eraseColor(int c) {
+		java.util.Arrays.fill(pixels(), c);
+	}
+
+	public int getPixel(int x, int y) {
+		return pixels()[y * width_ + x];
+	}
+
+	public void setPixel(int x, int y, int color) {
+		pixels()[y * width_ + x] = color;
+	}
+
+	public void recycle() {
+		pixels_ = null;
+	}
+
+	public boolean isRecycled() {
+		return pixels_ == null;
+	}
+
+	int[] pixels() {
+		if (pixels_ == null)
+			throw new IllegalStateException("bitmap is recycled");
+		return pixels_;
+	}
+}
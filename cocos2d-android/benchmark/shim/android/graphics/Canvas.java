@@ -0,0 +1,41 @@
+package android.graphics;
+
+/** Canvas of the JVM benchmark runs and tests, copies pixels without scaling or blending.
+ * A8 bitmaps are drawn in the colour of the paint with their alpha.
+ * Must be before android.jar on the class path.
+ */
+public final class Canvas {
+	private final Bitmap bitmap_;
+
+	public Canvas(Bitmap bitmap) {
+		bitmap_ = bitmap;
+	}
+
+	public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+		copy(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), (int)left, (int)top, paint);
+	}
+
+	public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+		if (src == null)
+			src = new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
+		copy(bitmap, src.left, src.top, Math.min(src.width(), dst.width()), Math.min(src.height(), dst.height()),
+				dst.left, dst.top, paint);
+	}
+
+	private void copy(Bitmap bitmap, int sx, int sy, int w, int h, int dx, int dy, Paint paint) {
+		final boolean tint = paint != null && bitmap.getConfig() == Bitmap.Config.ALPHA_8;
+		final int rgb = tint ? paint.getColor() & 0xffffff : 0;
+		for (int y = 0; y < h; ++y) {
+			if (dy + y < 0 || dy + y >= bitmap_.getHeight())
+				continue;
+			for (int x = 0; x < w; ++x) {
+				if (dx + x < 0 || dx + x >= bitmap_.getWidth())
+					continue;
+				int c = bitmap.getPixel(sx + x, sy + y);
+				if (tint)
+					c = (c & 0xff000000) | rgb;
+				bitmap_.setPixel(dx + x, dy + y, c);
+			}
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package android.graphics;
+
+/** Paint of the JVM benchmark runs and tests, only keeps the colour.
+ * Must be before android.jar on the class path.
+ */
+public class Paint {
+	private int color_ = 0xff000000;
+
+	public Paint() {
+	}
+
+	public void setColor(int color) {
+		color_ = color;
+	}
+
+	public int getColor() {
+		return color_;
+	}
+}
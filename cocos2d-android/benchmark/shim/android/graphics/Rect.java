@@ -0,0 +1,54 @@
+package android.graphics;
+
+/** Rect of the JVM benchmark runs and tests, same semantics as the Android one.
+ * Must be before android.jar on the class path.
+ */
+public final class Rect {
+	public int left;
+	public int top;
+	public int right;
+	public int bottom;
+
+	public Rect() {
+	}
+
+	public Rect(int left, int top, int right, int bottom) {
+		set(left, top, right, bottom);
+	}
+
+	public void set(int left, int top, int right, int bottom) {
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+	}
+
+	public int width() {
+		return right - left;
+	}
+
+	public int height() {
+		return bottom - top;
+	}
+
+	public boolean isEmpty() {
+		return left >= right || top >= bottom;
+	}
+
+	public void setEmpty() {
+		left = top = right = bottom = 0;
+	}
+
+	public void union(int left, int top, int right, int bottom) {
+		if (left >= right || top >= bottom)
+			return;
+		if (isEmpty()) {
+			set(left, top, right, bottom);
+			return;
+		}
+		this.left = Math.min(this.left, left);
+		this.top = Math.min(this.top, top);
+		this.right = Math.max(this.right, right);
+		this.bottom = Math.max(this.bottom, bottom);
+	}
+}
@@ -0,0 +1,25 @@
+package android.opengl;
+
+import android.graphics.Bitmap;
+
+/** GLUtils of the JVM benchmark runs and tests, there is no GL context
+ * to upload to, so the bitmaps are only checked. Must be before android.jar
+ * on the class path.
+ */
+public final class GLUtils {
+	private GLUtils() {
+	}
+
+	public static void texImage2D(int target, int level, Bitmap bitmap, int border) {
+		check(bitmap);
+	}
+
+	public static void texSubImage2D(int target, int level, int xoffset, int yoffset, Bitmap bitmap) {
+		check(bitmap);
+	}
+
+	private static void check(Bitmap bitmap) {
+		if (bitmap.isRecycled())
+			throw new IllegalArgumentException("bitmap is recycled");
+	}
+}
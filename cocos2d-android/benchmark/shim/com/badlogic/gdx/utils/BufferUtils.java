@@ -0,0 +1,229 @@
+package com.badlogic.gdx.utils;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+/** BufferUtils of the JVM benchmark runs and tests, the gdx native library
+ * is not available there. Same API and semantics, the copies are done with
+ * nio bulk puts. Must be before the library classes on the class path.
+ */
+public class BufferUtils {
+	static Array<ByteBuffer> unsafeBuffers = new Array<ByteBuffer>();
+	static int allocatedUnsafe = 0;
+
+	/** copies to position 0 of dst, position and limit of dst are ignored */
+	public static void copy (float[] src, Buffer dst, int numFloats, int offset) {
+		ByteBuffer bytes = ByteBuffer.allocate(numFloats << 2).order(ByteOrder.nativeOrder());
+		bytes.asFloatBuffer().put(src, offset, numFloats);
+		put(bytes, dst, 0);
+	}
+
+	public static void copy (byte[] src, int srcOffset, Buffer dst, int numElements) {
+		ByteBuffer bytes = ByteBuffer.allocate(numElements).order(ByteOrder.nativeOrder());
+		bytes.put(src, srcOffset, numElements).clear();
+		put(bytes, dst, positionInBytes(dst));
+	}
+
+	public static void copy (short[] src, int srcOffset, Buffer dst, int numElements) {
+		ByteBuffer bytes = ByteBuffer.allocate(numElements << 1).order(ByteOrder.nativeOrder());
+		bytes.asShortBuffer().put(src, srcOffset, numElements);
+		put(bytes, dst, positionInBytes(dst));
+	}
+
+	public static void copy (char[] src, int srcOffset, Buffer dst, int numElements) {
+		ByteBuffer bytes = ByteBuffer.allocate(numElements << 1).order(ByteOrder.nativeOrder());
+		bytes.asCharBuffer().put(src, srcOffset, numElements);
+		put(bytes, dst, positionInBytes(dst));
+	}
+
+	public static void copy (int[] src, int srcOffset, Buffer dst, int numElements) {
+		ByteBuffer bytes = ByteBuffer.allocate(numElements << 2).order(ByteOrder.nativeOrder());
+		bytes.asIntBuffer().put(src, srcOffset, numElements);
+		put(bytes, dst, positionInBytes(dst));
+	}
+
+	public static void copy (long[] src, int srcOffset, Buffer dst, int numElements) {
+		ByteBuffer bytes = ByteBuffer.allocate(numElements << 3).order(ByteOrder.nativeOrder());
+		bytes.asLongBuffer().put(src, srcOffset, numElements);
+		put(bytes, dst, positionInBytes(dst));
+	}
+
+	public static void copy (float[] src, int srcOffset, Buffer dst, int numElements) {
+		ByteBuffer bytes = ByteBuffer.allocate(numElements << 2).order(ByteOrder.nativeOrder());
+		bytes.asFloatBuffer().put(src, srcOffset, numElements);
+		put(bytes, dst, positionInBytes(dst));
+	}
+
+	public static void copy (double[] src, int srcOffset, Buffer dst, int numElements) {
+		ByteBuffer bytes = ByteBuffer.allocate(numElements << 3).order(ByteOrder.nativeOrder());
+		bytes.asDoubleBuffer().put(src, srcOffset, numElements);
+		put(bytes, dst, positionInBytes(dst));
+	}
+
+	/** numElements are of the type of src, positions of both buffers stay the same */
+	public static void copy (Buffer src, Buffer dst, int numElements) {
+		ByteBuffer bytes = ByteBuffer.allocate(elementsToBytes(src, numElements)).order(ByteOrder.nativeOrder());
+		if (src instanceof ByteBuffer) {
+			ByteBuffer s = ((ByteBuffer)src).duplicate();
+			s.limit(s.position() + numElements);
+			bytes.put(s);
+		} else if (src instanceof ShortBuffer) {
+			ShortBuffer s = ((ShortBuffer)src).duplicate();
+			s.limit(s.position() + numElements);
+			bytes.asShortBuffer().put(s);
+		} else if (src instanceof CharBuffer) {
+			CharBuffer s = ((CharBuffer)src).duplicate();
+			s.limit(s.position() + numElements);
+			bytes.asCharBuffer().put(s);
+		} else if (src instanceof IntBuffer) {
+			IntBuffer s = ((IntBuffer)src).duplicate();
+			s.limit(s.position() + numElements);
+			bytes.asIntBuffer().put(s);
+		} else if (src instanceof LongBuffer) {
+			LongBuffer s = ((LongBuffer)src).duplicate();
+			s.limit(s.position() + numElements);
+			bytes.asLongBuffer().put(s);
+		} else if (src instanceof FloatBuffer) {
+			FloatBuffer s = ((FloatBuffer)src).duplicate();
+			s.limit(s.position() + numElements);
+			bytes.asFloatBuffer().put(s);
+		} else if (src instanceof DoubleBuffer) {
+			DoubleBuffer s = ((DoubleBuffer)src).duplicate();
+			s.limit(s.position() + numElements);
+			bytes.asDoubleBuffer().put(s);
+		} else {
+			throw new GdxRuntimeException("Can't copy from a " + src.getClass().getName() + " instance");
+		}
+		bytes.clear();
+		put(bytes, dst, positionInBytes(dst));
+	}
+
+	/** writes all of bytes to dst at the given byte offset, the position of dst stays the same */
+	private static void put (ByteBuffer bytes, Buffer dst, int dstOffset) {
+		if (dst instanceof ByteBuffer) {
+			ByteBuffer d = ((ByteBuffer)dst).duplicate();
+			d.clear();
+			d.position(dstOffset);
+			d.put(bytes);
+		} else if (dst instanceof ShortBuffer) {
+			ShortBuffer d = ((ShortBuffer)dst).duplicate();
+			d.clear();
+			d.position(dstOffset >>> 1);
+			d.put(bytes.asShortBuffer());
+		} else if (dst instanceof CharBuffer) {
+			CharBuffer d = ((CharBuffer)dst).duplicate();
+			d.clear();
+			d.position(dstOffset >>> 1);
+			d.put(bytes.asCharBuffer());
+		} else if (dst instanceof IntBuffer) {
+			IntBuffer d = ((IntBuffer)dst).duplicate();
+			d.clear();
+			d.position(dstOffset >>> 2);
+			d.put(bytes.asIntBuffer());
+		} else if (dst instanceof LongBuffer) {
+			LongBuffer d = ((LongBuffer)dst).duplicate();
+			d.clear();
+			d.position(dstOffset >>> 3);
+			d.put(bytes.asLongBuffer());
+		} else if (dst instanceof FloatBuffer) {
+			FloatBuffer d = ((FloatBuffer)dst).duplicate();
+			d.clear();
+			d.position(dstOffset >>> 2);
+			d.put(bytes.asFloatBuffer());
+		} else if (dst instanceof DoubleBuffer) {
+			DoubleBuffer d = ((DoubleBuffer)dst).duplicate();
+			d.clear();
+			d.position(dstOffset >>> 3);
+			d.put(bytes.asDoubleBuffer());
+		} else {
+			throw new GdxRuntimeException("Can't copy to a " + dst.getClass().getName() + " instance");
+		}
+	}
+
+	private static int positionInBytes (Buffer dst) {
+		return elementsToBytes(dst, dst.position());
+	}
+
+	private static int elementsToBytes (Buffer dst, int elements) {
+		if (dst instanceof ByteBuffer)
+			return elements;
+		else if (dst instanceof ShortBuffer)
+			return elements << 1;
+		else if (dst instanceof CharBuffer)
+			return elements << 1;
+		else if (dst instanceof IntBuffer)
+			return elements << 2;
+		else if (dst instanceof LongBuffer)
+			return elements << 3;
+		else if (dst instanceof FloatBuffer)
+			return elements << 2;
+		else if (dst instanceof DoubleBuffer)
+			return elements << 3;
+		else
+			throw new GdxRuntimeException("Can't copy to a " + dst.getClass().getName() + " instance");
+	}
+
+	public static FloatBuffer newFloatBuffer (int numFloats) {
+		return newByteBuffer(numFloats * 4).asFloatBuffer();
+	}
+
+	public static DoubleBuffer newDoubleBuffer (int numDoubles) {
+		return newByteBuffer(numDoubles * 8).asDoubleBuffer();
+	}
+
+	public static ByteBuffer newByteBuffer (int numBytes) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(numBytes);
+		buffer.order(ByteOrder.nativeOrder());
+		return buffer;
+	}
+
+	public static ShortBuffer newShortBuffer (int numShorts) {
+		return newByteBuffer(numShorts * 2).asShortBuffer();
+	}
+
+	public static CharBuffer newCharBuffer (int numChars) {
+		return newByteBuffer(numChars * 2).asCharBuffer();
+	}
+
+	public static IntBuffer newIntBuffer (int numInts) {
+		return newByteBuffer(numInts * 4).asIntBuffer();
+	}
+
+	public static LongBuffer newLongBuffer (int numLongs) {
+		return newByteBuffer(numLongs * 8).asLongBuffer();
+	}
+
+	public static void disposeUnsafeByteBuffer (ByteBuffer buffer) {
+		synchronized (unsafeBuffers) {
+			if (!unsafeBuffers.removeValue(buffer, true))
+				throw new IllegalArgumentException("buffer not allocated with newUnsafeByteBuffer or already disposed");
+			allocatedUnsafe -= buffer.capacity();
+		}
+	}
+
+	/** the buffer is garbage collected, disposing only updates the statistics */
+	public static ByteBuffer newUnsafeByteBuffer (int numBytes) {
+		ByteBuffer buffer = newByteBuffer(numBytes);
+		synchronized (unsafeBuffers) {
+			unsafeBuffers.add(buffer);
+			allocatedUnsafe += numBytes;
+		}
+		return buffer;
+	}
+
+	public static int getAllocatedBytesUnsafe () {
+		return allocatedUnsafe;
+	}
+
+	public static void clear (ByteBuffer buffer, int numBytes) {
+		for (int i = 0; i < numBytes; i++)
+			buffer.put(i, (byte)0);
+	}
+}
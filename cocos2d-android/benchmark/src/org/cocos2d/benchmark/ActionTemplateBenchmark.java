@@ -0,0 +1,85 @@
+package org.cocos2d.benchmark;
+
+import org.cocos2d.actions.base.CCActionTemplate;
+import org.cocos2d.actions.interval.CCMoveBy;
+import org.cocos2d.actions.interval.CCRotateBy;
+import org.cocos2d.actions.interval.CCSequence;
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.nodes.CCSprite;
+import org.cocos2d.nodes.CCSpriteSheet;
+import org.cocos2d.nodes.CCTextureCache;
+import org.cocos2d.opengl.CCTexture2D;
+import org.cocos2d.types.CGPoint;
+import org.cocos2d.types.CGRect;
+
+/** Starts 10 one second sequences every frame on 200 sprites,
+ * from a CCActionTemplate or with copy().
+ * The template variant fails if actions are still created after warmup.
+ */
+public class ActionTemplateBenchmark extends SceneBenchmark {
+	private static final int kSprites = 200;
+	private static final int kSpawnsPerFrame = 10;
+
+	private final boolean template_;
+	private CCSprite[] sprites_;
+	private CCSequence action_;
+	private CCActionTemplate pool_;
+	private int next_;
+	private int createdAtStart_;
+
+	public ActionTemplateBenchmark(boolean template) {
+		super(template ? "actions-template" : "actions-copy");
+		template_ = template;
+	}
+
+	@Override
+	protected void createScene(CCScene scene, BenchContent content) {
+		content.putTexture("bench/actions.pkm", 64, 64);
+		CCTexture2D tex = CCTextureCache.sharedTextureCache().addImage("bench/actions.pkm");
+		CCSpriteSheet sheet = CCSpriteSheet.spriteSheet(tex, kSprites);
+		scene.addChild(sheet);
+
+		sprites_ = new CCSprite[kSprites];
+		for (int i = 0; i < kSprites; ++i) {
+			CCSprite sprite = CCSprite.sprite(sheet, CGRect.make(0, 0, 16, 16));
+			sprite.setPosition((i * 11) % 480, (i * 17) % 320);
+			sheet.addChild(sprite);
+			sprites_[i] = sprite;
+		}
+
+		action_ = CCSequence.actions(CCMoveBy.action(0.5f, CGPoint.ccp(10, 0)),
+				CCRotateBy.action(0.5f, 90), CCMoveBy.action(0, CGPoint.ccp(-10, 0)));
+		pool_ = template_ ? CCActionTemplate.make(action_) : null;
+		next_ = 0;
+	}
+
+	@Override
+	public void update(float dt) {
+		for (int i = 0; i < kSpawnsPerFrame; ++i) {
+			CCSprite sprite = sprites_[next_];
+			next_ = (next_ + 1) % kSprites;
+			if (template_)
+				sprite.runAction(pool_);
+			else
+				sprite.runAction(action_.copy());
+		}
+	}
+
+	@Override
+	public void beginMeasurement() {
+		createdAtStart_ = template_ ? pool_.getCreatedCount() : 0;
+	}
+
+	@Override
+	public String getReport() {
+		if (!template_)
+			return null;
+		return "created " + pool_.getCreatedCount() + ", obtained " + pool_.getObtainedCount()
+			+ ", created while measured " + (pool_.getCreatedCount() - createdAtStart_);
+	}
+
+	@Override
+	public boolean isPassed() {
+		return !template_ || pool_.getCreatedCount() == createdAtStart_;
+	}
+}
@@ -0,0 +1,58 @@
+package org.cocos2d.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+
+import org.cocos2d.opengl.CCCompressedTextureData;
+import org.cocos2d.utils.ContentHelper;
+
+/** Files of benchmark scenes kept in memory, registered as the
+ * external loader of ContentHelper by HeadlessDirector.
+ *
+ * Textures are ETC1 .pkm files of the given size with zero blocks,
+ * CCTextureCache uploads them with glCompressedTexImage2D, so no
+ * Bitmap is decoded.
+ */
+public class BenchContent implements ContentHelper.StreamProvider {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final HashMap<String, byte[]> files = new HashMap<String, byte[]>();
+
+	public void put(String path, byte[] data) {
+		files.put(path, data);
+	}
+
+	public void putText(String path, String text) {
+		put(path, text.getBytes(UTF8));
+	}
+
+	/** adds ETC1 texture, path should end with .pkm */
+	public void putTexture(String path, int width, int height) {
+		final int size = CCCompressedTextureData.compressedSize(CCCompressedTextureData.kFormatETC1, width, height);
+		ByteBuffer bb = ByteBuffer.allocate(16 + size);
+		bb.put((byte)'P').put((byte)'K').put((byte)'M').put((byte)' ');
+		bb.put((byte)'1').put((byte)'0');
+		bb.putShort((short)0); // ETC1_RGB_NO_MIPMAPS
+		bb.putShort((short)((width + 3) & ~3));
+		bb.putShort((short)((height + 3) & ~3));
+		bb.putShort((short)width);
+		bb.putShort((short)height);
+		put(path, bb.array());
+	}
+
+	public boolean contains(String path) {
+		return files.containsKey(path);
+	}
+
+	public InputStream openStream(String path) throws IOException {
+		byte[] data = files.get(path);
+		if (data == null)
+			throw new FileNotFoundException("BenchContent: no file " + path);
+		return new ByteArrayInputStream(data);
+	}
+}
@@ -0,0 +1,44 @@
+package org.cocos2d.benchmark;
+
+/** One benchmark of BenchmarkRunner.
+ * setUp() builds the scene or data, run() is the measured operation,
+ * by default one frame of 1/60 s.
+ */
+public abstract class Benchmark {
+	public static final float kFrameDelta = 1.0f / 60;
+
+	private final String name_;
+
+	protected Benchmark(String name) {
+		name_ = name;
+	}
+
+	/** name used to select the benchmark on the command line */
+	public String getName() {
+		return name_;
+	}
+
+	public abstract void setUp(HeadlessDirector director);
+
+	public void run(HeadlessDirector director) {
+		director.frame(kFrameDelta);
+	}
+
+	/** called after warmup, before the measured operations */
+	public void beginMeasurement() {
+	}
+
+	public void tearDown(HeadlessDirector director) {
+		director.end();
+	}
+
+	/** additional result line, null if none */
+	public String getReport() {
+		return null;
+	}
+
+	/** false if a condition checked by the benchmark failed */
+	public boolean isPassed() {
+		return true;
+	}
+}
@@ -0,0 +1,80 @@
+package org.cocos2d.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Entry point of the benchmarks.
+ *
+ * usage: BenchmarkMain [-warmup n] [-iterations n] [-list] [name ...]
+ *
+ * Without names all benchmarks run. Exit code is 1 if a benchmark
+ * check failed.
+ */
+public class BenchmarkMain {
+	private static final int kScreenWidth = 480;
+	private static final int kScreenHeight = 320;
+
+	public static List<Benchmark> allBenchmarks() {
+		List<Benchmark> list = new ArrayList<Benchmark>();
+		list.add(new SpriteSheetBenchmark());
+		list.add(new NestedNodesBenchmark());
+		list.add(new BonesBenchmark());
+		list.add(new ZSortBenchmark());
+		list.add(new ParticleBenchmark(false));
+		list.add(new ParticleBenchmark(true));
+		list.add(new TMXBenchmark());
+		list.add(new LabelBenchmark());
+		list.add(new MotionStreakBenchmark());
+		list.add(new TableViewBenchmark());
+		list.add(new TexturePackerBenchmark());
+		list.add(new BindingBenchmark(false));
+		list.add(new BindingBenchmark(true));
+		list.add(new ActionTemplateBenchmark(false));
+		list.add(new ActionTemplateBenchmark(true));
+		list.add(new InputReplayBenchmark());
+		return list;
+	}
+
+	public static void main(String[] args) {
+		int warmup = 300;
+		int iterations = 1000;
+		List<String> names = new ArrayList<String>();
+		List<Benchmark> all = allBenchmarks();
+
+		for (int i = 0; i < args.length; ++i) {
+			if ("-warmup".equals(args[i]) && i + 1 < args.length) {
+				warmup = Integer.parseInt(args[++i]);
+			} else if ("-iterations".equals(args[i]) && i + 1 < args.length) {
+				iterations = Integer.parseInt(args[++i]);
+			} else if ("-list".equals(args[i])) {
+				for (Benchmark b : all)
+					System.out.println(b.getName());
+				return;
+			} else {
+				names.add(args[i]);
+			}
+		}
+
+		HeadlessDirector director = new HeadlessDirector(kScreenWidth, kScreenHeight);
+		BenchmarkRunner runner = new BenchmarkRunner(director, warmup, Math.max(1, iterations));
+		boolean passed = true;
+
+		System.out.println(BenchmarkRunner.header());
+		for (Benchmark b : all) {
+			if (!names.isEmpty() && !names.contains(b.getName()))
+				continue;
+
+			BenchmarkRunner.Result r = runner.run(b);
+			System.out.println(BenchmarkRunner.format(r));
+			if (r.report != null)
+				System.out.println("    " + r.report);
+			if (!r.passed) {
+				System.out.println("    FAILED");
+				passed = false;
+			}
+		}
+
+		if (!passed)
+			System.exit(1);
+	}
+}
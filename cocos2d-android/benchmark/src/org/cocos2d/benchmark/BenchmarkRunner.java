@@ -0,0 +1,118 @@
+package org.cocos2d.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Locale;
+
+/** Runs benchmarks, measures time per operation, GL calls of NullGL
+ * and allocated bytes of the thread where the JVM reports them.
+ */
+public class BenchmarkRunner {
+	private final HeadlessDirector director_;
+	private final int warmup_;
+	private final int iterations_;
+
+	private static final ThreadMXBean threads_ = ManagementFactory.getThreadMXBean();
+	private static Method allocatedBytes_;
+
+	static {
+		// com.sun.management.ThreadMXBean is not on every JVM
+		try {
+			Class<?> c = Class.forName("com.sun.management.ThreadMXBean");
+			if (c.isInstance(threads_))
+				allocatedBytes_ = c.getMethod("getThreadAllocatedBytes", long.class);
+		} catch (Exception e) {
+			allocatedBytes_ = null;
+		}
+	}
+
+	public static class Result {
+		public String name;
+		public int iterations;
+		public double meanNanos;
+		public long medianNanos;
+		public long p95Nanos;
+		public double glCalls;
+		public double drawCalls;
+		public double textureBinds;
+		public double vertices;
+		/** -1 if not available */
+		public double allocatedBytes;
+		public String report;
+		public boolean passed;
+	}
+
+	public BenchmarkRunner(HeadlessDirector director, int warmup, int iterations) {
+		director_ = director;
+		warmup_ = warmup;
+		iterations_ = iterations;
+	}
+
+	public Result run(Benchmark b) {
+		final NullGL gl = director_.getGL();
+		final long[] times = new long[iterations_];
+
+		b.setUp(director_);
+		try {
+			for (int i = 0; i < warmup_; ++i)
+				b.run(director_);
+
+			b.beginMeasurement();
+			gl.resetCounters();
+			final long allocStart = allocatedBytes();
+			final long start = System.nanoTime();
+			long last = start;
+			for (int i = 0; i < iterations_; ++i) {
+				b.run(director_);
+				final long now = System.nanoTime();
+				times[i] = now - last;
+				last = now;
+			}
+			final long total = last - start;
+			final long allocEnd = allocatedBytes();
+
+			Result r = new Result();
+			r.name = b.getName();
+			r.iterations = iterations_;
+			r.meanNanos = (double)total / iterations_;
+			Arrays.sort(times);
+			r.medianNanos = times[iterations_ / 2];
+			r.p95Nanos = times[Math.min(iterations_ - 1, iterations_ * 95 / 100)];
+			r.glCalls = (double)gl.getCallCount() / iterations_;
+			r.drawCalls = (double)gl.getDrawCallCount() / iterations_;
+			r.textureBinds = (double)gl.getTextureBindCount() / iterations_;
+			r.vertices = (double)gl.getVertexCount() / iterations_;
+			r.allocatedBytes = allocStart < 0 ? -1 : (double)(allocEnd - allocStart) / iterations_;
+			r.report = b.getReport();
+			r.passed = b.isPassed();
+			return r;
+		} finally {
+			b.tearDown(director_);
+		}
+	}
+
+	public static String header() {
+		return String.format(Locale.US, "%-18s %12s %12s %12s %9s %8s %8s %10s %12s",
+				"benchmark", "mean ns/op", "p50 ns", "p95 ns", "gl/op", "draw/op", "bind/op", "verts/op", "bytes/op");
+	}
+
+	public static String format(Result r) {
+		return String.format(Locale.US, "%-18s %12.0f %12d %12d %9.1f %8.1f %8.1f %10.0f %12s",
+				r.name, r.meanNanos, r.medianNanos, r.p95Nanos, r.glCalls, r.drawCalls,
+				r.textureBinds, r.vertices,
+				r.allocatedBytes < 0 ? "n/a" : String.format(Locale.US, "%.0f", r.allocatedBytes));
+	}
+
+	/** bytes allocated by the current thread, -1 if not supported */
+	public static long allocatedBytes() {
+		if (allocatedBytes_ == null)
+			return -1;
+		try {
+			return ((Long)allocatedBytes_.invoke(threads_, Thread.currentThread().getId())).longValue();
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+}
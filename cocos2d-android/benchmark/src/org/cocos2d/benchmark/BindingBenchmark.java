@@ -0,0 +1,51 @@
+package org.cocos2d.benchmark;
+
+import java.lang.reflect.Method;
+
+import org.cocos2d.actions.CCBindings;
+import org.cocos2d.nodes.CCNode;
+
+/** 1000 calls of setRotation by name, with Method.invoke or with a CCBindings binding */
+public class BindingBenchmark extends Benchmark {
+	private static final int kCalls = 1000;
+
+	private final boolean bound_;
+	private final CCNode node_ = CCNode.node();
+	private Method method_;
+	private CCBindings.FloatBinding binding_;
+	private float value_;
+
+	public BindingBenchmark(boolean bound) {
+		super(bound ? "bindings-bound" : "bindings-invoke");
+		bound_ = bound;
+	}
+
+	@Override
+	public void setUp(HeadlessDirector director) {
+		try {
+			method_ = CCNode.class.getMethod("setRotation", Float.TYPE);
+		} catch (NoSuchMethodException e) {
+			throw new RuntimeException(e);
+		}
+		binding_ = CCBindings.floatBinding(CCNode.class, "setRotation");
+	}
+
+	@Override
+	public void run(HeadlessDirector director) {
+		if (bound_) {
+			for (int i = 0; i < kCalls; ++i)
+				binding_.set(node_, value_++);
+		} else {
+			try {
+				for (int i = 0; i < kCalls; ++i)
+					method_.invoke(node_, value_++);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	@Override
+	public void tearDown(HeadlessDirector director) {
+	}
+}
@@ -0,0 +1,57 @@
+package org.cocos2d.benchmark;
+
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.nodes.CCSprite;
+import org.cocos2d.nodes.CCSpriteSheet;
+import org.cocos2d.nodes.CCTextureCache;
+import org.cocos2d.opengl.CCTexture2D;
+import org.cocos2d.types.CGRect;
+
+/** 100 skeletons of 30 nested sprites in one sprite sheet,
+ * every third bone is rotated each frame.
+ */
+public class BonesBenchmark extends SceneBenchmark {
+	private static final int kSkeletons = 100;
+	private static final int kBones = 30;
+
+	private CCSprite[] bones_;
+	private float time_;
+
+	public BonesBenchmark() {
+		super("bones");
+	}
+
+	@Override
+	protected void createScene(CCScene scene, BenchContent content) {
+		content.putTexture("bench/bones.pkm", 128, 128);
+		CCTexture2D tex = CCTextureCache.sharedTextureCache().addImage("bench/bones.pkm");
+		CCSpriteSheet sheet = CCSpriteSheet.spriteSheet(tex, kSkeletons * kBones);
+		scene.addChild(sheet);
+
+		bones_ = new CCSprite[kSkeletons * kBones];
+		for (int s = 0; s < kSkeletons; ++s) {
+			CCSprite parent = CCSprite.sprite(sheet, CGRect.make(0, 0, 8, 24));
+			parent.setPosition((s % 10) * 48 + 24, (s / 10) * 32);
+			sheet.addChild(parent);
+			bones_[s * kBones] = parent;
+
+			for (int b = 1; b < kBones; ++b) {
+				CCSprite bone = CCSprite.sprite(sheet, CGRect.make((b % 8) * 16, 32, 8, 24));
+				bone.setPosition(4, 20);
+				bone.setScale(0.97f);
+				parent.addChild(bone);
+				bones_[s * kBones + b] = bone;
+				parent = bone;
+			}
+		}
+		time_ = 0;
+	}
+
+	@Override
+	public void update(float dt) {
+		time_ += dt;
+		final float angle = (float)Math.sin(time_ * 2) * 10;
+		for (int i = 0; i < bones_.length; i += 3)
+			bones_[i].setRotation(angle);
+	}
+}
@@ -0,0 +1,130 @@
+package org.cocos2d.benchmark;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import org.cocos2d.actions.CCScheduler;
+import org.cocos2d.config.ccMacros;
+import org.cocos2d.events.CCInputReplay;
+import org.cocos2d.events.CCKeyDispatcher;
+import org.cocos2d.events.CCTouchDispatcher;
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.nodes.CCBatchRenderer;
+import org.cocos2d.nodes.CCDirector;
+import org.cocos2d.nodes.CCTextureCache;
+import org.cocos2d.opengl.GLResourceHelper;
+import org.cocos2d.utils.ContentHelper;
+
+/** Drives CCDirector without a GLSurfaceView, frames are drawn to NullGL
+ * on the calling thread. Does the same as CCDirector.onDrawFrame() except
+ * for orientation, FPS label and pacing. Queued touches and keys are
+ * dispatched at the start of frame(), replayFrame() plays a CCInputLog.
+ */
+public class HeadlessDirector {
+	private final NullGL gl_;
+	private final BenchContent content_;
+	private CCScene scene_;
+
+	public HeadlessDirector(int width, int height) {
+		this(width, height, new NullGL());
+	}
+
+	/** draws to the given GL, e.g. a subclass which checks the calls */
+	public HeadlessDirector(int width, int height, NullGL gl) {
+		gl_ = gl;
+		content_ = new BenchContent();
+		ContentHelper.sharedHelper().setExternalLoader(content_);
+
+		GLResourceHelper helper = GLResourceHelper.sharedHelper();
+		helper.setGlThreadID(Thread.currentThread().getId());
+		helper.setFrameBudget(0);
+
+		CCDirector director = CCDirector.sharedDirector();
+		director.setScreenSize(width, height);
+		CCDirector.gl = gl_;
+		director.setProjection(CCDirector.kCCDirectorProjection2D);
+		director.onSurfaceChanged(gl_, width, height);
+	}
+
+	public NullGL getGL() {
+		return gl_;
+	}
+
+	public BenchContent getContent() {
+		return content_;
+	}
+
+	public CCScene getScene() {
+		return scene_;
+	}
+
+	public void runWithScene(CCScene scene) {
+		end();
+		scene_ = scene;
+		scene.onEnter();
+		scene.onEnterTransitionDidFinish();
+		// uploads textures loaded while building the scene
+		flushResources();
+	}
+
+	/** runs GL tasks queued by the loaders */
+	public void flushResources() {
+		GLResourceHelper helper = GLResourceHelper.sharedHelper();
+		helper.setInUpdate(true);
+		helper.update(gl_);
+		helper.setInUpdate(false);
+	}
+
+	/** dispatches queued input, ticks the scheduler and draws the scene */
+	public void frame(float dt) {
+		CCDirector.sharedDirector().countFrame();
+		CCTouchDispatcher.sharedDispatcher().update();
+		CCKeyDispatcher.sharedDispatcher().update();
+
+		GLResourceHelper helper = GLResourceHelper.sharedHelper();
+		helper.setInUpdate(true);
+		CCScheduler.sharedScheduler().tick(dt);
+		draw();
+		helper.setInUpdate(false);
+	}
+
+	/** Does one step of the replay instead of dispatching and ticking, then draws.
+	 * @return false if the replay is finished, the last frame is drawn anyway
+	 */
+	public boolean replayFrame(CCInputReplay replay) {
+		CCDirector.sharedDirector().countFrame();
+		GLResourceHelper helper = GLResourceHelper.sharedHelper();
+		helper.setInUpdate(true);
+		final boolean more = replay.step();
+		draw();
+		helper.setInUpdate(false);
+		return more;
+	}
+
+	private void draw() {
+		GLResourceHelper helper = GLResourceHelper.sharedHelper();
+
+		gl_.glClear(GL10.GL_COLOR_BUFFER_BIT | GL10.GL_DEPTH_BUFFER_BIT);
+		helper.update(gl_);
+
+		gl_.glPushMatrix();
+		ccMacros.CC_ENABLE_DEFAULT_GL_STATES(gl_);
+		CCBatchRenderer.sharedRenderer().begin(gl_);
+
+		if (scene_ != null)
+			scene_.visit(gl_);
+
+		CCBatchRenderer.sharedRenderer().end(gl_);
+		ccMacros.CC_DISABLE_DEFAULT_GL_STATES(gl_);
+		gl_.glPopMatrix();
+	}
+
+	/** removes the scene and releases all textures */
+	public void end() {
+		if (scene_ != null) {
+			scene_.onExit();
+			scene_.cleanup();
+			scene_ = null;
+		}
+		CCTextureCache.sharedTextureCache().removeAllTextures();
+	}
+}
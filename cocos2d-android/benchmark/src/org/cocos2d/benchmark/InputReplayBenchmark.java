@@ -0,0 +1,203 @@
+package org.cocos2d.benchmark;
+
+import org.cocos2d.actions.CCScheduler;
+import org.cocos2d.actions.UpdateCallback;
+import org.cocos2d.config.ccMacros;
+import org.cocos2d.events.CCInputLog;
+import org.cocos2d.events.CCInputReplay;
+import org.cocos2d.events.CCKeyDispatcher;
+import org.cocos2d.events.CCKeyRecord;
+import org.cocos2d.events.CCTouchDispatcher;
+import org.cocos2d.events.CCTouchQueue;
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.nodes.CCDirector;
+import org.cocos2d.nodes.CCNode;
+import org.cocos2d.protocols.CCKeyRecordDelegateProtocol;
+import org.cocos2d.protocols.CCTouchRecordDelegateProtocol;
+
+/** Replays a recorded session of drags and key presses with HeadlessDirector.replayFrame().
+ *
+ * setUp() records kSteps frames of synthetic input through the dispatchers,
+ * then builds the scene again and replays the log, one step per run().
+ * Nodes drift by CCRANDOM_*, so the replay passes only if it reaches the
+ * recorded state. After the last step the log is replayed again on the
+ * same scene.
+ */
+public class InputReplayBenchmark extends Benchmark {
+	private static final int kSteps = 120;
+	private static final int kNodes = 200;
+	private static final long kSeed = 7;
+
+	/** drags the nearest node, keys add and remove nodes */
+	private static class Session implements UpdateCallback,
+			CCTouchRecordDelegateProtocol, CCKeyRecordDelegateProtocol {
+		final CCScene scene = CCScene.node();
+		private CCNode dragged_;
+
+		Session() {
+			for (int i = 0; i < kNodes; ++i)
+				add();
+			CCScheduler.sharedScheduler().scheduleUpdate(this, 0, false);
+			CCTouchDispatcher.sharedDispatcher().addTargetedDelegate(this, 0, true);
+			CCKeyDispatcher.sharedDispatcher().addDelegate(this, 0);
+		}
+
+		void end() {
+			CCScheduler.sharedScheduler().unscheduleUpdate(this);
+			CCTouchDispatcher.sharedDispatcher().removeDelegate(this);
+			CCKeyDispatcher.sharedDispatcher().removeDelegate(this);
+		}
+
+		private void add() {
+			CCNode node = CCNode.node();
+			node.setPosition(ccMacros.CCRANDOM_0_1() * 480, ccMacros.CCRANDOM_0_1() * 320);
+			scene.addChild(node);
+		}
+
+		public void update(float dt) {
+			for (CCNode node : scene.getChildren()) {
+				node.setPosition(node.getPositionRef().x + ccMacros.CCRANDOM_MINUS1_1() * 60 * dt,
+						node.getPositionRef().y + ccMacros.CCRANDOM_MINUS1_1() * 60 * dt);
+			}
+		}
+
+		/** sum of positions, equal only if every step went the same way */
+		double checksum() {
+			double sum = 0;
+			for (CCNode node : scene.getChildren())
+				sum += node.getPositionRef().x * 3 + node.getPositionRef().y;
+			return sum + scene.getChildren().size();
+		}
+
+		public boolean ccTouchBegan(CCTouchQueue.Record touch) {
+			float best = Float.MAX_VALUE;
+			for (CCNode node : scene.getChildren()) {
+				float dx = node.getPositionRef().x - touch.getX(0);
+				float dy = node.getPositionRef().y - touch.getY(0);
+				if (dx * dx + dy * dy < best) {
+					best = dx * dx + dy * dy;
+					dragged_ = node;
+				}
+			}
+			return true;
+		}
+
+		public boolean ccTouchMoved(CCTouchQueue.Record touch) {
+			if (dragged_ != null)
+				dragged_.setPosition(touch.getX(0), touch.getY(0));
+			return true;
+		}
+
+		public boolean ccTouchEnded(CCTouchQueue.Record touch) {
+			dragged_ = null;
+			return true;
+		}
+
+		public boolean ccTouchCancelled(CCTouchQueue.Record touch) {
+			dragged_ = null;
+			return true;
+		}
+
+		public boolean ccKeyDown(CCKeyRecord key) {
+			for (int i = 0; i < 10; ++i)
+				add();
+			return true;
+		}
+
+		public boolean ccKeyUp(CCKeyRecord key) {
+			for (int i = 0; i < 10; ++i)
+				scene.removeChild(scene.getChildren().get(0), true);
+			return true;
+		}
+	}
+
+	private CCInputLog log_;
+	private CCInputReplay replay_;
+	private Session session_;
+	private double recordedChecksum_;
+	private boolean checked_;
+	private boolean passed_;
+
+	private final int[] ids_ = new int[1];
+	private final float[] xs_ = new float[1];
+	private final float[] ys_ = new float[1];
+
+	public InputReplayBenchmark() {
+		super("replay");
+	}
+
+	public CCInputLog getLog() {
+		return log_;
+	}
+
+	@Override
+	public void setUp(HeadlessDirector director) {
+		CCDirector.sharedDirector().startInputRecording(kSeed);
+		session_ = new Session();
+		director.runWithScene(session_.scene);
+		for (int i = 0; i < kSteps; ++i) {
+			input(i);
+			director.frame(Benchmark.kFrameDelta);
+		}
+		log_ = CCDirector.sharedDirector().stopInputRecording();
+		recordedChecksum_ = session_.checksum();
+		session_.end();
+		director.end();
+
+		replay_ = new CCInputReplay(log_);
+		replay_.begin();
+		session_ = new Session();
+		director.runWithScene(session_.scene);
+		checked_ = false;
+		passed_ = false;
+	}
+
+	/** a drag across the screen every 40 frames, a key held meanwhile */
+	private void input(int frame) {
+		final int t = frame % 40;
+		final CCTouchQueue queue = CCTouchDispatcher.sharedDispatcher().getTouchQueue();
+		ids_[0] = 0;
+		xs_[0] = 40 + t * 10;
+		ys_[0] = 60 + t * 5;
+		if (t == 0) {
+			queue.push(CCTouchQueue.ACTION_DOWN, 0, frame, 1, ids_, xs_, ys_, null);
+			CCKeyDispatcher.sharedDispatcher().queueKey(new CCKeyRecord(CCKeyRecord.ACTION_DOWN, 62, 0, 0, frame, frame));
+		} else if (t < 30) {
+			// two samples a frame, the second one is coalesced
+			queue.push(CCTouchQueue.ACTION_MOVE, 0, frame, 1, ids_, xs_, ys_, null);
+			xs_[0] += 5;
+			queue.push(CCTouchQueue.ACTION_MOVE, 0, frame, 1, ids_, xs_, ys_, null);
+		} else if (t == 30) {
+			queue.push(CCTouchQueue.ACTION_UP, 0, frame, 1, ids_, xs_, ys_, null);
+			CCKeyDispatcher.sharedDispatcher().queueKey(new CCKeyRecord(CCKeyRecord.ACTION_UP, 62, 0, 0, frame - 30, frame));
+		}
+	}
+
+	@Override
+	public void run(HeadlessDirector director) {
+		if (!director.replayFrame(replay_)) {
+			if (!checked_) {
+				checked_ = true;
+				passed_ = session_.checksum() == recordedChecksum_;
+			}
+			replay_.begin();
+		}
+	}
+
+	@Override
+	public void tearDown(HeadlessDirector director) {
+		session_.end();
+		super.tearDown(director);
+	}
+
+	@Override
+	public String getReport() {
+		return "steps " + log_.getStepCount() + ", events " + log_.size()
+			+ (checked_ ? (passed_ ? ", replay matches" : ", replay differs") : "");
+	}
+
+	@Override
+	public boolean isPassed() {
+		return !checked_ || passed_;
+	}
+}
@@ -0,0 +1,57 @@
+package org.cocos2d.benchmark;
+
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.opengl.CCBitmapFontAtlas;
+
+/** 20 bitmap font labels, the text of all of them changes every frame */
+public class LabelBenchmark extends SceneBenchmark {
+	private static final int kLabels = 20;
+
+	private CCBitmapFontAtlas[] labels_;
+	private final StringBuilder text_ = new StringBuilder();
+	private int score_;
+
+	public LabelBenchmark() {
+		super("labels");
+	}
+
+	@Override
+	protected void createScene(CCScene scene, BenchContent content) {
+		content.putTexture("bench/font.pkm", 256, 256);
+		content.putText("bench/font.fnt", createFont());
+
+		labels_ = new CCBitmapFontAtlas[kLabels];
+		for (int i = 0; i < kLabels; ++i) {
+			CCBitmapFontAtlas label = CCBitmapFontAtlas.bitmapFontAtlas("00000000", "bench/font.fnt");
+			label.setPosition(240, 8 + i * 16);
+			scene.addChild(label);
+			labels_[i] = label;
+		}
+		score_ = 0;
+	}
+
+	/** digits 0-9 of 16x32 in the first row of the texture */
+	private static String createFont() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("info face=\"bench\" size=32 bold=0 italic=0 charset=\"\" unicode=0 stretchH=100 smooth=1 aa=1 padding=0,0,0,0 spacing=0,0\n");
+		sb.append("common lineHeight=32 base=26 scaleW=256 scaleH=256 pages=1 packed=0\n");
+		sb.append("page id=0 file=\"bench/font.pkm\"\n");
+		sb.append("chars count=10\n");
+		for (int i = 0; i < 10; ++i) {
+			sb.append("char id=").append('0' + i)
+				.append(" x=").append(i * 16)
+				.append(" y=0 width=16 height=32 xoffset=0 yoffset=0 xadvance=16 page=0 chnl=0\n");
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public void update(float dt) {
+		for (int i = 0; i < labels_.length; ++i) {
+			score_ += 17;
+			text_.setLength(0);
+			text_.append(score_);
+			labels_[i].setString(text_);
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package org.cocos2d.benchmark;
+
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.nodes.CCMotionStreak;
+import org.cocos2d.types.ccColor4B;
+
+/** 20 motion streaks following circles */
+public class MotionStreakBenchmark extends SceneBenchmark {
+	private static final int kStreaks = 20;
+
+	private CCMotionStreak[] streaks_;
+	private float time_;
+
+	public MotionStreakBenchmark() {
+		super("streaks");
+	}
+
+	@Override
+	protected void createScene(CCScene scene, BenchContent content) {
+		content.putTexture("bench/streak.pkm", 32, 32);
+
+		streaks_ = new CCMotionStreak[kStreaks];
+		for (int i = 0; i < kStreaks; ++i) {
+			CCMotionStreak streak = new CCMotionStreak(2, 3, "bench/streak.pkm", 16, 32,
+					ccColor4B.ccc4(255, 255, 255, 255));
+			scene.addChild(streak);
+			streaks_[i] = streak;
+		}
+		time_ = 0;
+	}
+
+	@Override
+	public void update(float dt) {
+		time_ += dt;
+		for (int i = 0; i < streaks_.length; ++i) {
+			final double a = time_ * 3 + i;
+			streaks_[i].setPosition(240 + (float)Math.cos(a) * (40 + i * 5), 160 + (float)Math.sin(a) * (40 + i * 5));
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package org.cocos2d.benchmark;
+
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.nodes.CCNode;
+import org.cocos2d.types.CGPoint;
+
+/** Ten trees of 1111 nodes, a root and three levels with ten children each.
+ * Roots are rotated and world positions of all leaves are read every frame.
+ */
+public class NestedNodesBenchmark extends SceneBenchmark {
+	private static final int kFanOut = 10;
+	private static final int kDepth = 3;
+
+	private CCNode[] roots_;
+	private CCNode[] leaves_;
+	private int leafCount_;
+	private final CGPoint world_ = CGPoint.zero();
+	private float checksum_;
+	private float time_;
+
+	public NestedNodesBenchmark() {
+		super("nodes");
+	}
+
+	@Override
+	protected void createScene(CCScene scene, BenchContent content) {
+		// kFanOut roots, each with kFanOut^kDepth leaves
+		int leaves = kFanOut;
+		for (int i = 0; i < kDepth; ++i)
+			leaves *= kFanOut;
+		leaves_ = new CCNode[leaves];
+		leafCount_ = 0;
+
+		roots_ = new CCNode[kFanOut];
+		for (int i = 0; i < kFanOut; ++i) {
+			roots_[i] = CCNode.node();
+			roots_[i].setPosition(48 * i, 160);
+			scene.addChild(roots_[i]);
+			addChildren(roots_[i], kDepth);
+		}
+		time_ = 0;
+	}
+
+	private void addChildren(CCNode parent, int depth) {
+		for (int i = 0; i < kFanOut; ++i) {
+			CCNode child = CCNode.node();
+			child.setPosition(i * 2, depth);
+			parent.addChild(child);
+			if (depth > 1)
+				addChildren(child, depth - 1);
+			else
+				leaves_[leafCount_++] = child;
+		}
+	}
+
+	@Override
+	public void update(float dt) {
+		time_ += dt;
+		for (int i = 0; i < roots_.length; ++i)
+			roots_[i].setRotation(time_ * 30 + i);
+
+		float sum = 0;
+		for (int i = 0; i < leafCount_; ++i) {
+			leaves_[i].convertToWorldSpace(0, 0, world_);
+			sum += world_.x;
+		}
+		checksum_ = sum;
+	}
+
+	@Override
+	public String getReport() {
+		return "checksum " + checksum_;
+	}
+}
@@ -0,0 +1,885 @@
+package org.cocos2d.benchmark;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import javax.microedition.khronos.opengles.GL11;
+
+/** GL11 which does nothing and counts calls.
+ *
+ * Textures and buffers get increasing names, glGetError returns
+ * GL_NO_ERROR, matrix queries return identity, GL_MAX_TEXTURE_SIZE is
+ * kMaxTextureSize, other queries leave their output untouched.
+ * Counters are reset by the benchmark runner after each frame.
+ */
+public class NullGL implements GL11 {
+	public static final int kMaxTextureSize = 2048;
+
+	private static final float[] kIdentity = {
+		1, 0, 0, 0,
+		0, 1, 0, 0,
+		0, 0, 1, 0,
+		0, 0, 0, 1,
+	};
+
+	private int names_;
+	private final String extensions_;
+
+	private long calls_;
+	private long drawCalls_;
+	private long textureBinds_;
+	private long vertices_;
+
+	/** a GPU with ETC1 and PVRTC */
+	public NullGL() {
+		this("GL_OES_compressed_ETC1_RGB8_texture GL_IMG_texture_compression_pvrtc");
+	}
+
+	/** a GPU with the given GL_EXTENSIONS */
+	public NullGL(String extensions) {
+		extensions_ = extensions;
+	}
+
+	/** count of all GL calls */
+	public long getCallCount() {
+		return calls_;
+	}
+
+	/** count of glDrawArrays and glDrawElements calls */
+	public long getDrawCallCount() {
+		return drawCalls_;
+	}
+
+	public long getTextureBindCount() {
+		return textureBinds_;
+	}
+
+	/** sum of vertex or index counts of draw calls */
+	public long getVertexCount() {
+		return vertices_;
+	}
+
+	public void resetCounters() {
+		calls_ = 0;
+		drawCalls_ = 0;
+		textureBinds_ = 0;
+		vertices_ = 0;
+	}
+
+	private static boolean isMatrix(int pname) {
+		return pname == GL_MODELVIEW_MATRIX || pname == GL_PROJECTION_MATRIX || pname == GL_TEXTURE_MATRIX;
+	}
+
+	private static int integer(int pname) {
+		switch (pname) {
+		case GL_MAX_TEXTURE_SIZE:
+			return kMaxTextureSize;
+		case GL_MAX_TEXTURE_UNITS:
+			return 2;
+		case GL_MAX_MODELVIEW_STACK_DEPTH:
+			return 32;
+		case GL_MAX_PROJECTION_STACK_DEPTH:
+			return 2;
+		default:
+			return 0;
+		}
+	}
+
+	public void glActiveTexture(int texture) {
+		calls_++;
+	}
+
+	public void glAlphaFunc(int func, float ref) {
+		calls_++;
+	}
+
+	public void glAlphaFuncx(int func, int ref) {
+		calls_++;
+	}
+
+	public void glBindTexture(int target, int texture) {
+		calls_++;
+		textureBinds_++;
+	}
+
+	public void glBlendFunc(int sfactor, int dfactor) {
+		calls_++;
+	}
+
+	public void glClear(int mask) {
+		calls_++;
+	}
+
+	public void glClearColor(float red, float green, float blue, float alpha) {
+		calls_++;
+	}
+
+	public void glClearColorx(int red, int green, int blue, int alpha) {
+		calls_++;
+	}
+
+	public void glClearDepthf(float depth) {
+		calls_++;
+	}
+
+	public void glClearDepthx(int depth) {
+		calls_++;
+	}
+
+	public void glClearStencil(int s) {
+		calls_++;
+	}
+
+	public void glClientActiveTexture(int texture) {
+		calls_++;
+	}
+
+	public void glColor4f(float red, float green, float blue, float alpha) {
+		calls_++;
+	}
+
+	public void glColor4x(int red, int green, int blue, int alpha) {
+		calls_++;
+	}
+
+	public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+		calls_++;
+	}
+
+	public void glColorPointer(int size, int type, int stride, Buffer pointer) {
+		calls_++;
+	}
+
+	public void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border, int imageSize, Buffer data) {
+		calls_++;
+	}
+
+	public void glCompressedTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int imageSize, Buffer data) {
+		calls_++;
+	}
+
+	public void glCopyTexImage2D(int target, int level, int internalformat, int x, int y, int width, int height, int border) {
+		calls_++;
+	}
+
+	public void glCopyTexSubImage2D(int target, int level, int xoffset, int yoffset, int x, int y, int width, int height) {
+		calls_++;
+	}
+
+	public void glCullFace(int mode) {
+		calls_++;
+	}
+
+	public void glDeleteTextures(int n, int[] textures, int offset) {
+		calls_++;
+	}
+
+	public void glDeleteTextures(int n, IntBuffer textures) {
+		calls_++;
+	}
+
+	public void glDepthFunc(int func) {
+		calls_++;
+	}
+
+	public void glDepthMask(boolean flag) {
+		calls_++;
+	}
+
+	public void glDepthRangef(float zNear, float zFar) {
+		calls_++;
+	}
+
+	public void glDepthRangex(int zNear, int zFar) {
+		calls_++;
+	}
+
+	public void glDisable(int cap) {
+		calls_++;
+	}
+
+	public void glDisableClientState(int array) {
+		calls_++;
+	}
+
+	public void glDrawArrays(int mode, int first, int count) {
+		calls_++;
+		drawCalls_++;
+		vertices_ += count;
+	}
+
+	public void glDrawElements(int mode, int count, int type, Buffer indices) {
+		calls_++;
+		drawCalls_++;
+		vertices_ += count;
+	}
+
+	public void glEnable(int cap) {
+		calls_++;
+	}
+
+	public void glEnableClientState(int array) {
+		calls_++;
+	}
+
+	public void glFinish() {
+		calls_++;
+	}
+
+	public void glFlush() {
+		calls_++;
+	}
+
+	public void glFogf(int pname, float param) {
+		calls_++;
+	}
+
+	public void glFogfv(int pname, FloatBuffer params) {
+		calls_++;
+	}
+
+	public void glFogfv(int pname, float[] params, int offset) {
+		calls_++;
+	}
+
+	public void glFogx(int pname, int param) {
+		calls_++;
+	}
+
+	public void glFogxv(int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glFogxv(int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glFrontFace(int mode) {
+		calls_++;
+	}
+
+	public void glFrustumf(float left, float right, float bottom, float top, float zNear, float zFar) {
+		calls_++;
+	}
+
+	public void glFrustumx(int left, int right, int bottom, int top, int zNear, int zFar) {
+		calls_++;
+	}
+
+	public void glGenTextures(int n, IntBuffer textures) {
+		calls_++;
+		for (int i = 0; i < n; ++i) {
+			textures.put(textures.position() + i, ++names_);
+		}
+	}
+
+	public void glGenTextures(int n, int[] textures, int offset) {
+		calls_++;
+		for (int i = 0; i < n; ++i) {
+			textures[offset + i] = ++names_;
+		}
+	}
+
+	public int glGetError() {
+		calls_++;
+		return GL_NO_ERROR;
+	}
+
+	public void glGetIntegerv(int pname, int[] params, int offset) {
+		calls_++;
+		params[offset] = integer(pname);
+	}
+
+	public void glGetIntegerv(int pname, IntBuffer params) {
+		calls_++;
+		params.put(params.position(), integer(pname));
+	}
+
+	public String glGetString(int name) {
+		calls_++;
+		return name == GL_EXTENSIONS ? extensions_ : "";
+	}
+
+	public void glHint(int target, int mode) {
+		calls_++;
+	}
+
+	public void glLightModelf(int pname, float param) {
+		calls_++;
+	}
+
+	public void glLightModelfv(int pname, FloatBuffer params) {
+		calls_++;
+	}
+
+	public void glLightModelfv(int pname, float[] params, int offset) {
+		calls_++;
+	}
+
+	public void glLightModelx(int pname, int param) {
+		calls_++;
+	}
+
+	public void glLightModelxv(int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glLightModelxv(int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glLightf(int light, int pname, float param) {
+		calls_++;
+	}
+
+	public void glLightfv(int light, int pname, FloatBuffer params) {
+		calls_++;
+	}
+
+	public void glLightfv(int light, int pname, float[] params, int offset) {
+		calls_++;
+	}
+
+	public void glLightx(int light, int pname, int param) {
+		calls_++;
+	}
+
+	public void glLightxv(int light, int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glLightxv(int light, int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glLineWidth(float width) {
+		calls_++;
+	}
+
+	public void glLineWidthx(int width) {
+		calls_++;
+	}
+
+	public void glLoadIdentity() {
+		calls_++;
+	}
+
+	public void glLoadMatrixf(float[] m, int offset) {
+		calls_++;
+	}
+
+	public void glLoadMatrixf(FloatBuffer m) {
+		calls_++;
+	}
+
+	public void glLoadMatrixx(int[] m, int offset) {
+		calls_++;
+	}
+
+	public void glLoadMatrixx(IntBuffer m) {
+		calls_++;
+	}
+
+	public void glLogicOp(int opcode) {
+		calls_++;
+	}
+
+	public void glMaterialf(int face, int pname, float param) {
+		calls_++;
+	}
+
+	public void glMaterialfv(int face, int pname, float[] params, int offset) {
+		calls_++;
+	}
+
+	public void glMaterialfv(int face, int pname, FloatBuffer params) {
+		calls_++;
+	}
+
+	public void glMaterialx(int face, int pname, int param) {
+		calls_++;
+	}
+
+	public void glMaterialxv(int face, int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glMaterialxv(int face, int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glMatrixMode(int mode) {
+		calls_++;
+	}
+
+	public void glMultMatrixf(FloatBuffer m) {
+		calls_++;
+	}
+
+	public void glMultMatrixf(float[] m, int offset) {
+		calls_++;
+	}
+
+	public void glMultMatrixx(int[] m, int offset) {
+		calls_++;
+	}
+
+	public void glMultMatrixx(IntBuffer m) {
+		calls_++;
+	}
+
+	public void glMultiTexCoord4f(int target, float s, float t, float r, float q) {
+		calls_++;
+	}
+
+	public void glMultiTexCoord4x(int target, int s, int t, int r, int q) {
+		calls_++;
+	}
+
+	public void glNormal3f(float nx, float ny, float nz) {
+		calls_++;
+	}
+
+	public void glNormal3x(int nx, int ny, int nz) {
+		calls_++;
+	}
+
+	public void glNormalPointer(int type, int stride, Buffer pointer) {
+		calls_++;
+	}
+
+	public void glOrthof(float left, float right, float bottom, float top, float zNear, float zFar) {
+		calls_++;
+	}
+
+	public void glOrthox(int left, int right, int bottom, int top, int zNear, int zFar) {
+		calls_++;
+	}
+
+	public void glPixelStorei(int pname, int param) {
+		calls_++;
+	}
+
+	public void glPointSize(float size) {
+		calls_++;
+	}
+
+	public void glPointSizex(int size) {
+		calls_++;
+	}
+
+	public void glPolygonOffset(float factor, float units) {
+		calls_++;
+	}
+
+	public void glPolygonOffsetx(int factor, int units) {
+		calls_++;
+	}
+
+	public void glPopMatrix() {
+		calls_++;
+	}
+
+	public void glPushMatrix() {
+		calls_++;
+	}
+
+	public void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+		calls_++;
+	}
+
+	public void glRotatef(float angle, float x, float y, float z) {
+		calls_++;
+	}
+
+	public void glRotatex(int angle, int x, int y, int z) {
+		calls_++;
+	}
+
+	public void glSampleCoverage(float value, boolean invert) {
+		calls_++;
+	}
+
+	public void glSampleCoveragex(int value, boolean invert) {
+		calls_++;
+	}
+
+	public void glScalef(float x, float y, float z) {
+		calls_++;
+	}
+
+	public void glScalex(int x, int y, int z) {
+		calls_++;
+	}
+
+	public void glScissor(int x, int y, int width, int height) {
+		calls_++;
+	}
+
+	public void glShadeModel(int mode) {
+		calls_++;
+	}
+
+	public void glStencilFunc(int func, int ref, int mask) {
+		calls_++;
+	}
+
+	public void glStencilMask(int mask) {
+		calls_++;
+	}
+
+	public void glStencilOp(int fail, int zfail, int zpass) {
+		calls_++;
+	}
+
+	public void glTexCoordPointer(int size, int type, int stride, Buffer pointer) {
+		calls_++;
+	}
+
+	public void glTexEnvf(int target, int pname, float param) {
+		calls_++;
+	}
+
+	public void glTexEnvfv(int target, int pname, float[] params, int offset) {
+		calls_++;
+	}
+
+	public void glTexEnvfv(int target, int pname, FloatBuffer params) {
+		calls_++;
+	}
+
+	public void glTexEnvx(int target, int pname, int param) {
+		calls_++;
+	}
+
+	public void glTexEnvxv(int target, int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glTexEnvxv(int target, int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+		calls_++;
+	}
+
+	public void glTexParameterf(int target, int pname, float param) {
+		calls_++;
+	}
+
+	public void glTexParameterx(int target, int pname, int param) {
+		calls_++;
+	}
+
+	public void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, Buffer pixels) {
+		calls_++;
+	}
+
+	public void glTranslatef(float x, float y, float z) {
+		calls_++;
+	}
+
+	public void glTranslatex(int x, int y, int z) {
+		calls_++;
+	}
+
+	public void glVertexPointer(int size, int type, int stride, Buffer pointer) {
+		calls_++;
+	}
+
+	public void glViewport(int x, int y, int width, int height) {
+		calls_++;
+	}
+
+	public void glBindBuffer(int target, int buffer) {
+		calls_++;
+	}
+
+	public void glBufferData(int target, int size, Buffer data, int usage) {
+		calls_++;
+	}
+
+	public void glBufferSubData(int target, int offset, int size, Buffer data) {
+		calls_++;
+	}
+
+	public void glClipPlanef(int plane, float[] equation, int offset) {
+		calls_++;
+	}
+
+	public void glClipPlanef(int plane, FloatBuffer equation) {
+		calls_++;
+	}
+
+	public void glClipPlanex(int plane, int[] equation, int offset) {
+		calls_++;
+	}
+
+	public void glClipPlanex(int plane, IntBuffer equation) {
+		calls_++;
+	}
+
+	public void glColor4ub(byte red, byte green, byte blue, byte alpha) {
+		calls_++;
+	}
+
+	public void glColorPointer(int size, int type, int stride, int offset) {
+		calls_++;
+	}
+
+	public void glDeleteBuffers(int n, int[] buffers, int offset) {
+		calls_++;
+	}
+
+	public void glDeleteBuffers(int n, IntBuffer buffers) {
+		calls_++;
+	}
+
+	public void glDrawElements(int mode, int count, int type, int offset) {
+		calls_++;
+		drawCalls_++;
+		vertices_ += count;
+	}
+
+	public void glGenBuffers(int n, int[] buffers, int offset) {
+		calls_++;
+		for (int i = 0; i < n; ++i) {
+			buffers[offset + i] = ++names_;
+		}
+	}
+
+	public void glGenBuffers(int n, IntBuffer buffers) {
+		calls_++;
+		for (int i = 0; i < n; ++i) {
+			buffers.put(buffers.position() + i, ++names_);
+		}
+	}
+
+	public void glGetBooleanv(int pname, boolean[] params, int offset) {
+		calls_++;
+	}
+
+	public void glGetBooleanv(int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glGetBufferParameteriv(int target, int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glGetBufferParameteriv(int target, int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glGetClipPlanef(int pname, float[] eqn, int offset) {
+		calls_++;
+	}
+
+	public void glGetClipPlanef(int pname, FloatBuffer eqn) {
+		calls_++;
+	}
+
+	public void glGetClipPlanex(int pname, int[] eqn, int offset) {
+		calls_++;
+	}
+
+	public void glGetClipPlanex(int pname, IntBuffer eqn) {
+		calls_++;
+	}
+
+	public void glGetFixedv(int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glGetFixedv(int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glGetFloatv(int pname, float[] params, int offset) {
+		calls_++;
+		if (isMatrix(pname))
+			System.arraycopy(kIdentity, 0, params, offset, 16);
+	}
+
+	public void glGetFloatv(int pname, FloatBuffer params) {
+		calls_++;
+		if (isMatrix(pname)) {
+			final int p = params.position();
+			params.put(kIdentity);
+			params.position(p);
+		}
+	}
+
+	public void glGetLightfv(int light, int pname, float[] params, int offset) {
+		calls_++;
+	}
+
+	public void glGetLightfv(int light, int pname, FloatBuffer params) {
+		calls_++;
+	}
+
+	public void glGetLightxv(int light, int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glGetLightxv(int light, int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glGetMaterialfv(int face, int pname, float[] params, int offset) {
+		calls_++;
+	}
+
+	public void glGetMaterialfv(int face, int pname, FloatBuffer params) {
+		calls_++;
+	}
+
+	public void glGetMaterialxv(int face, int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glGetMaterialxv(int face, int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glGetPointerv(int pname, Buffer[] params) {
+		calls_++;
+	}
+
+	public void glGetTexEnviv(int env, int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glGetTexEnviv(int env, int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glGetTexEnvxv(int env, int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glGetTexEnvxv(int env, int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glGetTexParameterfv(int target, int pname, float[] params, int offset) {
+		calls_++;
+	}
+
+	public void glGetTexParameterfv(int target, int pname, FloatBuffer params) {
+		calls_++;
+	}
+
+	public void glGetTexParameteriv(int target, int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glGetTexParameteriv(int target, int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glGetTexParameterxv(int target, int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glGetTexParameterxv(int target, int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public boolean glIsBuffer(int buffer) {
+		calls_++;
+		return buffer != 0;
+	}
+
+	public boolean glIsEnabled(int cap) {
+		calls_++;
+		return false;
+	}
+
+	public boolean glIsTexture(int texture) {
+		calls_++;
+		return texture != 0;
+	}
+
+	public void glNormalPointer(int type, int stride, int offset) {
+		calls_++;
+	}
+
+	public void glPointParameterf(int pname, float param) {
+		calls_++;
+	}
+
+	public void glPointParameterfv(int pname, float[] params, int offset) {
+		calls_++;
+	}
+
+	public void glPointParameterfv(int pname, FloatBuffer params) {
+		calls_++;
+	}
+
+	public void glPointParameterx(int pname, int param) {
+		calls_++;
+	}
+
+	public void glPointParameterxv(int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glPointParameterxv(int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glPointSizePointerOES(int type, int stride, Buffer pointer) {
+		calls_++;
+	}
+
+	public void glTexCoordPointer(int size, int type, int stride, int offset) {
+		calls_++;
+	}
+
+	public void glTexEnvi(int target, int pname, int param) {
+		calls_++;
+	}
+
+	public void glTexEnviv(int target, int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glTexEnviv(int target, int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glTexParameterfv(int target, int pname, float[] params, int offset) {
+		calls_++;
+	}
+
+	public void glTexParameterfv(int target, int pname, FloatBuffer params) {
+		calls_++;
+	}
+
+	public void glTexParameteri(int target, int pname, int param) {
+		calls_++;
+	}
+
+	public void glTexParameteriv(int target, int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glTexParameteriv(int target, int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glTexParameterxv(int target, int pname, int[] params, int offset) {
+		calls_++;
+	}
+
+	public void glTexParameterxv(int target, int pname, IntBuffer params) {
+		calls_++;
+	}
+
+	public void glVertexPointer(int size, int type, int stride, int offset) {
+		calls_++;
+	}
+}
@@ -0,0 +1,65 @@
+package org.cocos2d.benchmark;
+
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.nodes.CCTextureCache;
+import org.cocos2d.particlesystem.CCArrayParticleSystem;
+import org.cocos2d.particlesystem.CCParticleSystem;
+import org.cocos2d.particlesystem.CCQuadParticleSystem;
+import org.cocos2d.types.CGPoint;
+import org.cocos2d.types.ccColor4F;
+
+/** Four gravity emitters of 1500 particles each,
+ * with CCQuadParticleSystem or CCArrayParticleSystem.
+ */
+public class ParticleBenchmark extends SceneBenchmark {
+	private static final int kEmitters = 4;
+	private static final int kParticles = 1500;
+	private static final float kLife = 2;
+
+	private final boolean array_;
+	private CCParticleSystem[] emitters_;
+
+	public ParticleBenchmark(boolean array) {
+		super(array ? "particles-array" : "particles-quad");
+		array_ = array;
+	}
+
+	@Override
+	protected void createScene(CCScene scene, BenchContent content) {
+		content.putTexture("bench/particle.pkm", 32, 32);
+
+		emitters_ = new CCParticleSystem[kEmitters];
+		for (int i = 0; i < kEmitters; ++i) {
+			CCParticleSystem ps = array_ ? new CCArrayParticleSystem(kParticles)
+				: new CCQuadParticleSystem(kParticles);
+			ps.setTexture(CCTextureCache.sharedTextureCache().addImage("bench/particle.pkm"));
+			ps.setDuration(CCParticleSystem.kCCParticleDurationInfinity);
+			ps.setEmitterMode(CCParticleSystem.kCCParticleModeGravity);
+			ps.setGravity(CGPoint.ccp(0, -90));
+			ps.setSpeed(120);
+			ps.setSpeedVar(40);
+			ps.setAngle(90);
+			ps.setAngleVar(30);
+			ps.setPosVar(CGPoint.ccp(20, 0));
+			ps.setLife(kLife);
+			ps.setLifeVar(0.5f);
+			ps.setStartSize(16);
+			ps.setStartSizeVar(4);
+			ps.setEndSize(4);
+			ps.setStartColor(new ccColor4F(1, 0.8f, 0.2f, 1));
+			ps.setEndColor(new ccColor4F(1, 0.1f, 0, 0));
+			ps.setEmissionRate(kParticles / kLife);
+			ps.setPosition(60 + i * 120, 40);
+			scene.addChild(ps);
+			emitters_[i] = ps;
+		}
+	}
+
+	@Override
+	public String getReport() {
+		int count = 0;
+		for (int i = 0; i < emitters_.length; ++i)
+			count += emitters_[i].getParticleCount();
+		return "particles " + count;
+	}
+}
@@ -0,0 +1,34 @@
+package org.cocos2d.benchmark;
+
+import org.cocos2d.actions.CCScheduler;
+import org.cocos2d.actions.UpdateCallback;
+import org.cocos2d.layers.CCScene;
+
+/** Benchmark of a scene, update() is scheduled and changes the scene
+ * every frame the way game logic does.
+ */
+public abstract class SceneBenchmark extends Benchmark implements UpdateCallback {
+	protected SceneBenchmark(String name) {
+		super(name);
+	}
+
+	/** adds files to content and children to scene */
+	protected abstract void createScene(CCScene scene, BenchContent content);
+
+	@Override
+	public void setUp(HeadlessDirector director) {
+		CCScene scene = CCScene.node();
+		createScene(scene, director.getContent());
+		director.runWithScene(scene);
+		CCScheduler.sharedScheduler().scheduleUpdate(this, 0, false);
+	}
+
+	public void update(float dt) {
+	}
+
+	@Override
+	public void tearDown(HeadlessDirector director) {
+		CCScheduler.sharedScheduler().unscheduleUpdate(this);
+		super.tearDown(director);
+	}
+}
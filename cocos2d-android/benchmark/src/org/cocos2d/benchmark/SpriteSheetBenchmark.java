@@ -0,0 +1,53 @@
+package org.cocos2d.benchmark;
+
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.nodes.CCSprite;
+import org.cocos2d.nodes.CCSpriteSheet;
+import org.cocos2d.nodes.CCTextureCache;
+import org.cocos2d.opengl.CCTexture2D;
+import org.cocos2d.opengl.CCTextureAtlas;
+import org.cocos2d.types.CGRect;
+
+/** 10000 moving sprites of one sprite sheet */
+public class SpriteSheetBenchmark extends SceneBenchmark {
+	private static final int kSpriteCount = 10000;
+
+	private CCSprite[] sprites_;
+	private float time_;
+
+	public SpriteSheetBenchmark() {
+		super("sprites");
+	}
+
+	@Override
+	protected void createScene(CCScene scene, BenchContent content) {
+		content.putTexture("bench/sprites.pkm", 256, 256);
+		CCTexture2D tex = CCTextureCache.sharedTextureCache().addImage("bench/sprites.pkm");
+		// one atlas holds up to CCTextureAtlas.kMaxQuads quads
+		assert kSpriteCount <= CCTextureAtlas.kMaxQuads;
+		CCSpriteSheet sheet = CCSpriteSheet.spriteSheet(tex, kSpriteCount);
+		scene.addChild(sheet);
+
+		sprites_ = new CCSprite[kSpriteCount];
+		for (int i = 0; i < kSpriteCount; ++i) {
+			CGRect rect = CGRect.make((i % 16) * 16, ((i / 16) % 16) * 16, 16, 16);
+			CCSprite sprite = CCSprite.sprite(sheet, rect);
+			sprite.setPosition((i * 7) % 480, (i * 13) % 320);
+			sheet.addChild(sprite);
+			sprites_[i] = sprite;
+		}
+		time_ = 0;
+	}
+
+	@Override
+	public void update(float dt) {
+		time_ += dt;
+		final float dx = (float)Math.sin(time_) * 0.5f;
+		for (int i = 0; i < sprites_.length; ++i) {
+			CCSprite sprite = sprites_[i];
+			sprite.setPosition(sprite.getPositionRef().x + dx, sprite.getPositionRef().y);
+			if ((i & 7) == 0)
+				sprite.setRotation(time_ * 90);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package org.cocos2d.benchmark;
+
+import java.io.IOException;
+
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.layers.CCTMXTiledMap;
+import org.cocos2d.utils.Base64;
+
+/** Orthogonal 128x128 map with two layers of 32x32 tiles scrolled every frame */
+public class TMXBenchmark extends SceneBenchmark {
+	private static final int kMapSize = 128;
+	private static final int kTileSize = 32;
+
+	private CCTMXTiledMap map_;
+	private float time_;
+
+	public TMXBenchmark() {
+		super("tmx");
+	}
+
+	@Override
+	protected void createScene(CCScene scene, BenchContent content) {
+		content.putTexture("bench/tiles.pkm", 256, 256);
+		content.putText("bench/map.tmx", createMap());
+
+		map_ = CCTMXTiledMap.tiledMap("bench/map.tmx");
+		scene.addChild(map_);
+		time_ = 0;
+	}
+
+	private static String createMap() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		sb.append("<map version=\"1.0\" orientation=\"orthogonal\" width=\"").append(kMapSize)
+			.append("\" height=\"").append(kMapSize)
+			.append("\" tilewidth=\"").append(kTileSize)
+			.append("\" tileheight=\"").append(kTileSize).append("\">\n");
+		sb.append(" <tileset firstgid=\"1\" name=\"tiles\" tilewidth=\"").append(kTileSize)
+			.append("\" tileheight=\"").append(kTileSize).append("\">\n");
+		sb.append("  <image source=\"tiles.pkm\"/>\n");
+		sb.append(" </tileset>\n");
+		appendLayer(sb, "ground", 0);
+		appendLayer(sb, "objects", 3);
+		sb.append("</map>\n");
+		return sb.toString();
+	}
+
+	/** every holes-th tile of the layer is empty, none if 0 */
+	private static void appendLayer(StringBuilder sb, String name, int holes) {
+		final int count = kMapSize * kMapSize;
+		byte[] gids = new byte[count * 4];
+		for (int i = 0; i < count; ++i) {
+			// gids are little endian
+			final int gid = (holes != 0 && i % holes == 0) ? 0 : 1 + i % 64;
+			gids[i * 4] = (byte)gid;
+			gids[i * 4 + 1] = (byte)(gid >> 8);
+		}
+
+		String data;
+		try {
+			data = Base64.encodeBytes(gids, Base64.GZIP);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		sb.append(" <layer name=\"").append(name)
+			.append("\" width=\"").append(kMapSize)
+			.append("\" height=\"").append(kMapSize).append("\">\n");
+		sb.append("  <data encoding=\"base64\" compression=\"gzip\">").append(data).append("</data>\n");
+		sb.append(" </layer>\n");
+	}
+
+	@Override
+	public void update(float dt) {
+		time_ += dt;
+		final float range = kMapSize * kTileSize - 480;
+		map_.setPosition(-(float)(Math.sin(time_ * 0.2) * 0.5 + 0.5) * range, -range * 0.5f);
+	}
+}
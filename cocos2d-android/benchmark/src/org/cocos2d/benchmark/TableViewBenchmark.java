@@ -0,0 +1,77 @@
+package org.cocos2d.benchmark;
+
+import org.cocos2d.extensions.scroll.CCTableView;
+import org.cocos2d.extensions.scroll.CCTableViewCell;
+import org.cocos2d.extensions.scroll.CCTableViewDataSource;
+import org.cocos2d.extensions.scroll.CCTableViewSpriteCell;
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.nodes.CCSprite;
+import org.cocos2d.nodes.CCTextureCache;
+import org.cocos2d.opengl.CCTexture2D;
+import org.cocos2d.types.CGPoint;
+import org.cocos2d.types.CGRect;
+import org.cocos2d.types.CGSize;
+
+/** Table of 10000 rows scrolled by 7 pixels every frame */
+public class TableViewBenchmark extends SceneBenchmark implements CCTableViewDataSource {
+	private static final int kRows = 10000;
+	private static final float kRowHeight = 40;
+
+	private CCTableView table_;
+	private CCTexture2D texture_;
+	private final CGSize cellSize_ = CGSize.make(320, kRowHeight);
+	private final CGPoint offset_ = CGPoint.zero();
+	private float minOffset_;
+	private float maxOffset_;
+	private int cellsCreated_;
+
+	public TableViewBenchmark() {
+		super("table");
+	}
+
+	@Override
+	protected void createScene(CCScene scene, BenchContent content) {
+		content.putTexture("bench/cell.pkm", 512, 64);
+		texture_ = CCTextureCache.sharedTextureCache().addImage("bench/cell.pkm");
+		cellsCreated_ = 0;
+
+		table_ = CCTableView.view(this, CGSize.make(320, 320));
+		table_.setVerticalFillOrder(CCTableView.CCTableViewFillTopDown);
+		scene.addChild(table_);
+		table_.reloadData();
+		minOffset_ = table_.minContainerOffset().y;
+		maxOffset_ = table_.maxContainerOffset().y;
+		offset_.set(0, maxOffset_);
+	}
+
+	@Override
+	public void update(float dt) {
+		offset_.y -= 7;
+		if (offset_.y < minOffset_)
+			offset_.y = maxOffset_;
+		table_.setContentOffset(offset_);
+	}
+
+	public CGSize cellSizeForTable(CCTableView table) {
+		return cellSize_;
+	}
+
+	public CCTableViewCell tableCellAtIndex(CCTableView table, int idx) {
+		CCTableViewSpriteCell cell = (CCTableViewSpriteCell)table.dequeueCell();
+		if (cell == null) {
+			cell = new CCTableViewSpriteCell();
+			cellsCreated_++;
+		}
+		cell.setSprite(CCSprite.sprite(texture_, CGRect.make(0, (idx & 1) * 32, 320, 32)));
+		return cell;
+	}
+
+	public int numberOfCellsInTableView(CCTableView table) {
+		return kRows;
+	}
+
+	@Override
+	public String getReport() {
+		return "cells created " + cellsCreated_;
+	}
+}
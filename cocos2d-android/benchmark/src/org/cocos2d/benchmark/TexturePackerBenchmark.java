@@ -0,0 +1,47 @@
+package org.cocos2d.benchmark;
+
+import org.cocos2d.utils.SkylinePacker;
+
+/** Packs 5000 rectangles of pseudo random sizes into a 4096x4096 page,
+ * the skyline gets long enough to show the cost of the segment scans */
+public class TexturePackerBenchmark extends Benchmark {
+	private static final int kRects = 5000;
+
+	private final SkylinePacker packer_ = new SkylinePacker(4096, 4096, 1);
+	private final int[] sizes_ = new int[kRects * 2];
+	private final int[] out_ = new int[2];
+	private int placed_;
+
+	public TexturePackerBenchmark() {
+		super("packer");
+	}
+
+	@Override
+	public void setUp(HeadlessDirector director) {
+		int seed = 12345;
+		for (int i = 0; i < sizes_.length; ++i) {
+			seed = seed * 1103515245 + 12345;
+			sizes_[i] = 8 + ((seed >>> 16) & 63);
+		}
+	}
+
+	@Override
+	public void run(HeadlessDirector director) {
+		packer_.reset();
+		int placed = 0;
+		for (int i = 0; i < kRects; ++i) {
+			if (packer_.insert(sizes_[i * 2], sizes_[i * 2 + 1], out_))
+				placed++;
+		}
+		placed_ = placed;
+	}
+
+	@Override
+	public void tearDown(HeadlessDirector director) {
+	}
+
+	@Override
+	public String getReport() {
+		return "placed " + placed_ + "/" + kRects + ", occupancy " + packer_.getOccupancy();
+	}
+}
@@ -0,0 +1,55 @@
+package org.cocos2d.benchmark;
+
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.nodes.CCNode;
+import org.cocos2d.nodes.CCSprite;
+import org.cocos2d.nodes.CCTextureCache;
+import org.cocos2d.opengl.CCTexture2D;
+import org.cocos2d.types.CGRect;
+
+/** 2000 sprites moving up and down, z order follows y every frame
+ * like depth sorting of a top-down game. The sprites are children of a plain
+ * node, CCNode.reorderChild() only marks it for sorting before the next visit.
+ */
+public class ZSortBenchmark extends SceneBenchmark {
+	private static final int kSpriteCount = 2000;
+
+	private CCNode layer_;
+	private CCSprite[] sprites_;
+	private float[] phase_;
+	private float time_;
+
+	public ZSortBenchmark() {
+		super("zsort");
+	}
+
+	@Override
+	protected void createScene(CCScene scene, BenchContent content) {
+		content.putTexture("bench/zsort.pkm", 128, 128);
+		CCTexture2D tex = CCTextureCache.sharedTextureCache().addImage("bench/zsort.pkm");
+		layer_ = CCNode.node();
+		scene.addChild(layer_);
+
+		sprites_ = new CCSprite[kSpriteCount];
+		phase_ = new float[kSpriteCount];
+		for (int i = 0; i < kSpriteCount; ++i) {
+			CCSprite sprite = CCSprite.sprite(tex, CGRect.make((i % 8) * 16, 0, 16, 16));
+			sprite.setPosition((i * 7) % 480, 160);
+			layer_.addChild(sprite);
+			sprites_[i] = sprite;
+			phase_[i] = i * 0.37f;
+		}
+		time_ = 0;
+	}
+
+	@Override
+	public void update(float dt) {
+		time_ += dt;
+		for (int i = 0; i < sprites_.length; ++i) {
+			CCSprite sprite = sprites_[i];
+			final float y = 160 + (float)Math.sin(time_ + phase_[i]) * 150;
+			sprite.setPosition(sprite.getPositionRef().x, y);
+			layer_.reorderChild(sprite, -(int)y);
+		}
+	}
+}
@@ -3,7 +3,9 @@ package org.cocos2d.actions;
 import java.util.ArrayList;
 
 import org.cocos2d.actions.base.CCAction;
+import org.cocos2d.actions.base.CCActionTemplate;
 import org.cocos2d.nodes.CCNode;
+import org.cocos2d.nodes.CCRedrawTracker;
 import org.cocos2d.utils.collections.ConcurrentArrayHashMap;
 import org.cocos2d.utils.pool.ConcOneClassPool;
 
@@ -30,6 +32,11 @@ public class CCActionManager implements UpdateCallback {
 //        CCAction currentAction;
 //        boolean currentActionSalvaged;
         boolean paused;
+        int lodInterval = 1;	// see setUpdateLOD()
+        int lodCounter;
+        int lodPhase;
+        int lodEpoch;
+        float lodDt;
         
         public HashElement() {
         	actions = new ArrayList<CCAction>(4);
@@ -57,6 +64,10 @@ public class CCActionManager implements UpdateCallback {
      */
 
     private final ConcurrentArrayHashMap<CCNode, HashElement> targets;
+
+    /** removed template instances, given back at the end of update(),
+     *  so an instance is not reused while its step() is still running */
+    private final ArrayList<CCAction> removedInstances = new ArrayList<CCAction>();
 //    private HashElement	currentTarget;
 //    private boolean currentTargetSalvaged;
 
@@ -87,6 +98,9 @@ public class CCActionManager implements UpdateCallback {
 
     private void deleteHashElement(HashElement element) {
     	synchronized (element.actions) {
+    		for (int i = 0, size = element.actions.size(); i < size; i++) {
+    			released(element.actions.get(i));
+    		}
     		element.actions.clear();
     	}
     	element.actionIndex = -1;
@@ -101,7 +115,7 @@ public class CCActionManager implements UpdateCallback {
 
     private void removeAction(int index, HashElement element) {
     	synchronized (element.actions) {
-    		element.actions.remove(index);
+    		released(element.actions.remove(index));
 
 	        if (element.actionIndex >= index)
 	        	element.actionIndex--;
@@ -113,6 +127,23 @@ public class CCActionManager implements UpdateCallback {
     	}
     }
 
+    private void released(CCAction action) {
+    	if (action.getTemplate() != null) {
+    		synchronized (removedInstances) {
+    			removedInstances.add(action);
+    		}
+    	}
+    }
+
+    private void recycleRemovedInstances() {
+    	synchronized (removedInstances) {
+    		for (int i = 0, size = removedInstances.size(); i < size; i++) {
+    			CCActionTemplate.recycle(removedInstances.get(i));
+    		}
+    		removedInstances.clear();
+    	}
+    }
+
     // actions
 
     // TODO figure out why the target not found
@@ -150,8 +181,16 @@ public class CCActionManager implements UpdateCallback {
     		
     		element.target = target;
     		element.paused = paused;
+    		element.lodInterval = 1;
+    		element.lodCounter = 0;
+    		element.lodPhase = lodSequence_++ & Integer.MAX_VALUE;
+    		element.lodEpoch = lodEpoch_;
+    		element.lodDt = 0;
 
 			targets.put(target, element);
+        } else {
+        	// the new action steps in the next tick
+        	element.lodCounter = element.lodInterval - 1;
         }
 
         synchronized (element.actions) {
@@ -163,6 +202,7 @@ public class CCActionManager implements UpdateCallback {
         }
 
         action.start(target);
+        CCRedrawTracker.setNeedsRedraw();
     }    
 
     /**
@@ -289,7 +329,64 @@ public class CCActionManager implements UpdateCallback {
         return 0;
     }
 
+    /** Returns true if a not paused target has actions.
+      Used by CCDirector to detect static scenes.
+    */
+    public boolean hasRunningActions() {
+        for(ConcurrentArrayHashMap<CCNode, HashElement>.Entry e = targets.firstValue();
+				e != null; e = targets.nextValue(e)) {
+        	HashElement element = e.getValue();
+        	if(element != null && !element.paused && !element.actions.isEmpty())
+        		return true;
+        }
+        return false;
+    }
+
+    /* update LOD, see setUpdateLOD() */
+    private volatile CCUpdateLOD updateLOD_;
+    private long lodUpdates_;
+    private long lodSkipped_;
+    /* order of added targets, gives their LOD phase */
+    private int lodSequence_;
+    /* changed with the policy, see CCScheduler.setUpdateLOD() */
+    private volatile int lodEpoch_;
+
+    /** Sets relevance function of update LOD for action targets, null (default) turns it off.
+      Actions of targets for which it returns n > 1 step only every n-th tick
+      with dt of the skipped ticks added, so they end at the same time.
+      The function is asked again each time the target steps.
+      When the function is changed, each target steps in its next tick with
+      the dt it has pending and starts over with the new function.
+      */
+    public void setUpdateLOD(CCUpdateLOD lod) {
+    	if (lod != updateLOD_) {
+    		updateLOD_ = lod;
+    		lodEpoch_++;
+    	}
+    }
+
+    public CCUpdateLOD getUpdateLOD() {
+    	return updateLOD_;
+    }
+
+    /** count of target steps done while update LOD was set */
+    public long getLODUpdateCount() {
+    	return lodUpdates_;
+    }
+
+    /** count of target steps skipped by update LOD */
+    public long getLODSkippedCount() {
+    	return lodSkipped_;
+    }
+
+    public void resetLODStats() {
+    	lodUpdates_ = 0;
+    	lodSkipped_ = 0;
+    }
+
     public void update(float dt) {
+    	final CCUpdateLOD lod = updateLOD_;
+    	final int epoch = lodEpoch_;
 
         for(ConcurrentArrayHashMap<CCNode, HashElement>.Entry e = targets.firstValue();
 				e != null; e = targets.nextValue(e)) {
@@ -297,7 +394,33 @@ public class CCActionManager implements UpdateCallback {
         	if(currentTarget == null)
         		continue;
         	
-		    if (!currentTarget.paused) {
+        	float stepDt = dt;
+        	boolean due = true;
+        	if ((lod != null || currentTarget.lodDt != 0) && !currentTarget.paused) {
+        		if (currentTarget.lodEpoch != epoch) {
+        			// the policy has changed, pending dt is given now
+        			currentTarget.lodEpoch = epoch;
+        			currentTarget.lodCounter = 0;
+        			currentTarget.lodInterval = 1;
+        		}
+        		currentTarget.lodDt += dt;
+        		if (++currentTarget.lodCounter < currentTarget.lodInterval) {
+        			lodSkipped_++;
+        			due = false;
+        		} else {
+        			stepDt = currentTarget.lodDt;
+        			currentTarget.lodDt = 0;
+        		}
+        		if (due && lod != null) {
+        			final int interval = CCScheduler.lodInterval(lod, currentTarget.target);
+        			currentTarget.lodCounter = CCScheduler.lodCounter(currentTarget.lodPhase,
+        					currentTarget.lodInterval, interval);
+        			currentTarget.lodInterval = interval;
+        			lodUpdates_++;
+        		}
+        	}
+
+		    if (due && !currentTarget.paused) {
 		    	synchronized (currentTarget.actions) {
 		        // The 'actions' may change while inside this loop.
 			        for (currentTarget.actionIndex = 0; 
@@ -306,7 +429,7 @@ public class CCActionManager implements UpdateCallback {
 			            
 			        	CCAction currentAction = currentTarget.actions.get(currentTarget.actionIndex);
 			        	
-			            currentAction.step(dt);
+			            currentAction.step(stepDt);
 			            if (currentAction.isDone()) {
 			                currentAction.stop();
 			
@@ -326,12 +449,15 @@ public class CCActionManager implements UpdateCallback {
 		    if (currentTarget.actions.isEmpty())
 		        deleteHashElement(currentTarget);
     	}
+
+        recycleRemovedInstances();
     }
 
 	public void resume(CCNode target) {
 		HashElement element = targets.get(target);
 		if (element != null)
 			element.paused = false;
+		CCRedrawTracker.setNeedsRedraw();
 	}
 
 	public void pause(CCNode target) {
@@ -0,0 +1,324 @@
+package org.cocos2d.actions;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.cocos2d.config.ccMacros;
+import org.cocos2d.nodes.CCNode;
+import org.cocos2d.protocols.CCRGBAProtocol;
+
+/** Resolves property setters and selectors to typed bindings.
+ *
+ * CCPropertyAction, CCCallFunc family, CCTimer and CCScheduler resolve
+ * their key or selector once per class of the target and then call the
+ * binding directly, without Method.invoke and argument arrays.
+ *
+ * Bindings registered with registerFloat() or registerMethod() apply to
+ * the class, its subclasses and classes implementing it (for interfaces).
+ * Setters of CCNode, CCRGBAProtocol.setOpacity and
+ * CCProgressTimer.setPercentage are registered by default.
+ * For other names reflection is used as a fallback, the Method is looked up
+ * once and the result is cached too.
+ *
+ * Register bindings of own classes before creating actions for them,
+ * actions which already hold a binding keep it.
+ */
+public final class CCBindings {
+	private static final String LOG_TAG = CCBindings.class.getSimpleName();
+
+	/** maximum argument count of method bindings */
+	public static final int kMaxArguments = 2;
+
+	/** float property or method with one float argument */
+	public interface FloatBinding {
+		void set(Object target, float value);
+	}
+
+	/** method with 0 to kMaxArguments object arguments, unused ones are ignored */
+	public interface MethodBinding {
+		void invoke(Object target, Object arg0, Object arg1);
+	}
+
+	private static final HashMap<Class<?>, HashMap<String, FloatBinding>> registeredFloats
+		= new HashMap<Class<?>, HashMap<String, FloatBinding>>();
+	private static final HashMap<Class<?>, HashMap<String, FloatBinding>> resolvedFloats
+		= new HashMap<Class<?>, HashMap<String, FloatBinding>>();
+
+	/** maps of method bindings by argument count */
+	private static final List<HashMap<Class<?>, HashMap<String, MethodBinding>>> registeredMethods
+		= new ArrayList<HashMap<Class<?>, HashMap<String, MethodBinding>>>(kMaxArguments + 1);
+	private static final List<HashMap<Class<?>, HashMap<String, MethodBinding>>> resolvedMethods
+		= new ArrayList<HashMap<Class<?>, HashMap<String, MethodBinding>>>(kMaxArguments + 1);
+
+	private static int reflectiveCount_;
+
+	static {
+		for (int i = 0; i <= kMaxArguments; ++i) {
+			registeredMethods.add(new HashMap<Class<?>, HashMap<String, MethodBinding>>());
+			resolvedMethods.add(new HashMap<Class<?>, HashMap<String, MethodBinding>>());
+		}
+
+		registerFloat(CCNode.class, "setRotation", new FloatBinding() {
+			public void set(Object target, float value) {
+				((CCNode)target).setRotation(value);
+			}
+		});
+		registerFloat(CCNode.class, "setScale", new FloatBinding() {
+			public void set(Object target, float value) {
+				((CCNode)target).setScale(value);
+			}
+		});
+		registerFloat(CCNode.class, "setScaleX", new FloatBinding() {
+			public void set(Object target, float value) {
+				((CCNode)target).setScaleX(value);
+			}
+		});
+		registerFloat(CCNode.class, "setScaleY", new FloatBinding() {
+			public void set(Object target, float value) {
+				((CCNode)target).setScaleY(value);
+			}
+		});
+		registerFloat(CCNode.class, "setSkewX", new FloatBinding() {
+			public void set(Object target, float value) {
+				((CCNode)target).setSkewX(value);
+			}
+		});
+		registerFloat(CCNode.class, "setSkewY", new FloatBinding() {
+			public void set(Object target, float value) {
+				((CCNode)target).setSkewY(value);
+			}
+		});
+		registerFloat(CCNode.class, "setVertexZ", new FloatBinding() {
+			public void set(Object target, float value) {
+				((CCNode)target).setVertexZ(value);
+			}
+		});
+		registerFloat(CCRGBAProtocol.class, "setOpacity", new FloatBinding() {
+			public void set(Object target, float value) {
+				((CCRGBAProtocol)target).setOpacity((int)value);
+			}
+		});
+		registerFloat(CCProgressTimer.class, "setPercentage", new FloatBinding() {
+			public void set(Object target, float value) {
+				((CCProgressTimer)target).setPercentage(value);
+			}
+		});
+	}
+
+	private CCBindings() {
+	}
+
+	/** registers binding of float property for the class and its subclasses */
+	public static synchronized void registerFloat(Class<?> cls, String name, FloatBinding binding) {
+		map(registeredFloats, cls).put(name, binding);
+		resolvedFloats.clear();
+	}
+
+	/** registers binding of method with argCount object arguments */
+	public static synchronized void registerMethod(Class<?> cls, String name, int argCount, MethodBinding binding) {
+		assert argCount >= 0 && argCount <= kMaxArguments : "CCBindings: too many arguments";
+
+		map(registeredMethods.get(argCount), cls).put(name, binding);
+		resolvedMethods.get(argCount).clear();
+	}
+
+	/** Returns binding of name(float) method of the class.
+	 * Reflective fallback also accepts name(int), the value is truncated.
+	 * @return null if there is no such method
+	 */
+	public static synchronized FloatBinding floatBinding(Class<?> cls, String name) {
+		HashMap<String, FloatBinding> resolved = map(resolvedFloats, cls);
+		if (resolved.containsKey(name))
+			return resolved.get(name);
+
+		FloatBinding binding = findRegistered(registeredFloats, cls, name);
+		if (binding == null)
+			binding = reflectiveFloat(cls, name);
+
+		resolved.put(name, binding);
+		return binding;
+	}
+
+	/** Returns binding of name(Object...) method with argCount arguments.
+	 * @return null if there is no such method
+	 */
+	public static MethodBinding methodBinding(Class<?> cls, String name, int argCount) {
+		assert argCount >= 0 && argCount <= kMaxArguments : "CCBindings: too many arguments";
+
+		return methodBinding(cls, name, argCount, null);
+	}
+
+	/** Returns binding of name method with the given parameter types,
+	 * null types mean no arguments. Registered bindings match by argument count.
+	 * @return null if there is no such method
+	 */
+	public static MethodBinding methodBinding(Class<?> cls, String name, Class<?>[] partypes) {
+		final int argCount = partypes == null ? 0 : partypes.length;
+		assert argCount <= kMaxArguments : "CCBindings: too many arguments";
+
+		return methodBinding(cls, name, argCount, partypes);
+	}
+
+	private static synchronized MethodBinding methodBinding(Class<?> cls, String name, int argCount, Class<?>[] partypes) {
+		HashMap<String, MethodBinding> resolved = map(resolvedMethods.get(argCount), cls);
+		final String key = resolvedKey(name, partypes);
+		if (resolved.containsKey(key))
+			return resolved.get(key);
+
+		MethodBinding binding = findRegistered(registeredMethods.get(argCount), cls, name);
+		if (binding == null)
+			binding = reflectiveMethod(cls, name, argCount, partypes);
+
+		resolved.put(key, binding);
+		return binding;
+	}
+
+	/** name for Object parameters, otherwise the types are part of the key */
+	private static String resolvedKey(String name, Class<?>[] partypes) {
+		if (partypes == null)
+			return name;
+
+		for (int i = 0; i < partypes.length; ++i) {
+			if (partypes[i] != Object.class) {
+				StringBuilder key = new StringBuilder(name).append('(');
+				for (Class<?> type : partypes)
+					key.append(type.getName()).append(',');
+				return key.toString();
+			}
+		}
+		return name;
+	}
+
+	/** Returns callback calling name(float) of the target, or null */
+	public static UpdateCallback updateCallback(final Object target, String name) {
+		final FloatBinding binding = floatBinding(target.getClass(), name);
+		if (binding == null)
+			return null;
+
+		return new UpdateCallback() {
+			public void update(float d) {
+				binding.set(target, d);
+			}
+		};
+	}
+
+	/** count of names resolved with reflection since start */
+	public static synchronized int getReflectiveCount() {
+		return reflectiveCount_;
+	}
+
+	private static <B> HashMap<String, B> map(HashMap<Class<?>, HashMap<String, B>> maps, Class<?> cls) {
+		HashMap<String, B> m = maps.get(cls);
+		if (m == null) {
+			m = new HashMap<String, B>();
+			maps.put(cls, m);
+		}
+		return m;
+	}
+
+	/** looks for registered binding in the class, its superclasses and their interfaces */
+	private static <B> B findRegistered(HashMap<Class<?>, HashMap<String, B>> maps, Class<?> cls, String name) {
+		for (Class<?> c = cls; c != null; c = c.getSuperclass()) {
+			B binding = get(maps, c, name);
+			if (binding != null)
+				return binding;
+
+			for (Class<?> i : c.getInterfaces()) {
+				binding = get(maps, i, name);
+				if (binding != null)
+					return binding;
+			}
+		}
+		return null;
+	}
+
+	private static <B> B get(HashMap<Class<?>, HashMap<String, B>> maps, Class<?> cls, String name) {
+		HashMap<String, B> m = maps.get(cls);
+		return m != null ? m.get(name) : null;
+	}
+
+	private static FloatBinding reflectiveFloat(Class<?> cls, String name) {
+		try {
+			final Method m = cls.getMethod(name, Float.TYPE);
+			reflectiveCount_++;
+			return new FloatBinding() {
+				public void set(Object target, float value) {
+					invoke(m, target, value);
+				}
+			};
+		} catch (NoSuchMethodException e) {
+			// try int setter, e.g. setOpacity of custom class
+		}
+
+		try {
+			final Method m = cls.getMethod(name, Integer.TYPE);
+			reflectiveCount_++;
+			return new FloatBinding() {
+				public void set(Object target, float value) {
+					invoke(m, target, (int)value);
+				}
+			};
+		} catch (NoSuchMethodException e) {
+			ccMacros.CCLOGERROR(LOG_TAG, "no method " + name + "(float) in " + cls.getName());
+			return null;
+		}
+	}
+
+	private static MethodBinding reflectiveMethod(Class<?> cls, String name, int argCount, Class<?>[] partypes) {
+		if (partypes == null) {
+			partypes = new Class<?>[argCount];
+			for (int i = 0; i < argCount; ++i) {
+				partypes[i] = Object.class;
+			}
+		}
+
+		final Method m;
+		try {
+			m = cls.getMethod(name, partypes);
+		} catch (NoSuchMethodException e) {
+			ccMacros.CCLOGERROR(LOG_TAG, "no method " + name + " with " + argCount + " arguments in " + cls.getName());
+			return null;
+		}
+		reflectiveCount_++;
+
+		switch (argCount) {
+		case 0:
+			return new MethodBinding() {
+				public void invoke(Object target, Object arg0, Object arg1) {
+					CCBindings.invoke(m, target);
+				}
+			};
+		case 1:
+			return new MethodBinding() {
+				public void invoke(Object target, Object arg0, Object arg1) {
+					CCBindings.invoke(m, target, arg0);
+				}
+			};
+		default:
+			return new MethodBinding() {
+				public void invoke(Object target, Object arg0, Object arg1) {
+					CCBindings.invoke(m, target, arg0, arg1);
+				}
+			};
+		}
+	}
+
+	/** calls the method, runtime exceptions of the method are passed to caller */
+	private static void invoke(Method m, Object target, Object... args) {
+		try {
+			m.invoke(target, args);
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+		} catch (IllegalAccessException e) {
+			e.printStackTrace();
+		} catch (InvocationTargetException e) {
+			if(e.getTargetException() instanceof RuntimeException)
+				throw (RuntimeException)e.getTargetException();
+			else
+				e.printStackTrace();
+		}
+	}
+}
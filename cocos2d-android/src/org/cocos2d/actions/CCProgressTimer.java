@@ -5,13 +5,15 @@ import java.nio.FloatBuffer;
 import javax.microedition.khronos.opengles.GL10;
 
 import org.cocos2d.config.ccConfig;
+import org.cocos2d.nodes.CCBatchRenderer;
 import org.cocos2d.nodes.CCNode;
+import org.cocos2d.nodes.CCRedrawTracker;
 import org.cocos2d.nodes.CCSprite;
 import org.cocos2d.nodes.CCTextureCache;
 import org.cocos2d.opengl.CCTexture2D;
 import org.cocos2d.types.CGPoint;
 import org.cocos2d.types.CGSize;
-import org.cocos2d.types.ccColor4F;
+import org.cocos2d.types.ccColor3B;
 import org.cocos2d.utils.BufferProvider;
 
 
@@ -21,7 +23,7 @@ import org.cocos2d.utils.BufferProvider;
  The progress can be Radial, Horizontal or vertical.
  @since v0.99.1
  */
-public class CCProgressTimer extends CCNode {
+public class CCProgressTimer extends CCNode implements CCBatchRenderer.Batchable {
 
     public static final int kProgressTextureCoordsCount = 4;
     //  kProgressTextureCoords holds points {0,0} {0,1} {1,1} {1,0} we can represent it as bits
@@ -66,6 +68,11 @@ public class CCProgressTimer extends CCNode {
         return sprite_;
     }
 
+    /** radial shape has midpoint, 12 o'clock point, up to 4 corners and hitpoint */
+    public static final int kMaxVertexCount = 7;
+
+    //	Buffers are allocated once for the biggest shape and reused,
+    //	vertexDataCount_ tells how many vertices are valid, 0 means geometry should be rebuilt.
     protected FloatBuffer textureCoordinates	= null;
     protected FloatBuffer vertexCoordinates		= null;
     protected FloatBuffer colors				= null;
@@ -75,18 +82,16 @@ public class CCProgressTimer extends CCNode {
 	protected void setVertexDataCount(int cnt) {
 		vertexDataCount_ = cnt;
 		
-		textureCoordinates = BufferProvider.createFloatBuffer(2 * vertexDataCount_);
-		vertexCoordinates  = BufferProvider.createFloatBuffer(2 * vertexDataCount_);
-        colors    = BufferProvider.createFloatBuffer(4 * vertexDataCount_);
+		if (vertexCoordinates == null || vertexCoordinates.capacity() < 2 * cnt) {
+			int capacity = Math.max(cnt, kMaxVertexCount);
+			textureCoordinates = BufferProvider.createFloatBuffer(2 * capacity);
+			vertexCoordinates  = BufferProvider.createFloatBuffer(2 * capacity);
+	        colors    = BufferProvider.createFloatBuffer(4 * capacity);
+		}
 	}
 	
 	protected void resetVertex() {
-        if (vertexCoordinates != null) {
-        	vertexCoordinates = null;
-        	colors 			  = null;
-        	textureCoordinates= null;
-            vertexDataCount_  = 0;
-        }
+		vertexDataCount_  = 0;
 	}
 
     /** Creates a progress timer with an image filename as the shape the timer goes through */
@@ -109,6 +114,7 @@ public class CCProgressTimer extends CCNode {
         super();
         sprite_ = CCSprite.sprite(texture);
         percentage_ = 0.f;
+        setVertexDataCount(kMaxVertexCount);
         vertexDataCount_ = 0;
         setAnchorPoint(CGPoint.ccp(.5f,.5f));
         setContentSize(sprite_.getContentSize());
@@ -125,6 +131,7 @@ public class CCProgressTimer extends CCNode {
                 percentage_ = percentage;
 
             updateProgress();
+            CCRedrawTracker.setNeedsRedraw();
         }
     }
 
@@ -134,6 +141,7 @@ public class CCProgressTimer extends CCNode {
 
             //	Everytime we set a new sprite, we free the current vertex data
             this.resetVertex();
+            CCRedrawTracker.setNeedsRedraw();
         }
     }
 
@@ -143,6 +151,7 @@ public class CCProgressTimer extends CCNode {
             this.resetVertex();
             
             type_ = newType;
+            CCRedrawTracker.setNeedsRedraw();
         }
     }
 
@@ -162,25 +171,25 @@ public class CCProgressTimer extends CCNode {
     }
 
     public void updateColor() {
-        ccColor4F color = ccColor4F.ccc4FFromccc3B(sprite_.getColor());
+        if (colors == null)
+        	return;
+
+        ccColor3B c = sprite_.getColor();
+        float op = sprite_.getOpacity()/255.f;
+        float r = c.r/255.f, g = c.g/255.f, b = c.b/255.f;
         if (sprite_.getTexture().hasPremultipliedAlpha()) {
-            float op = sprite_.getOpacity()/255.f;
-            color.r *= op;
-            color.g *= op;
-            color.b *= op;
-            color.a = op;
-        } else {
-            color.a = sprite_.getOpacity()/255.f;
+            r *= op;
+            g *= op;
+            b *= op;
         }
 
-        if (colors != null){
-        	colors.position(0);
-            for (int i=0; i < vertexDataCount_; ++i) {
-            	colors.put(color.r).put(color.g)
-            		  .put(color.b).put(color.a);
-            }
-            colors.position(0);
+        for (int i=0; i < vertexDataCount_; ++i) {
+        	colors.put(i*4+0, r);
+        	colors.put(i*4+1, g);
+        	colors.put(i*4+2, b);
+        	colors.put(i*4+3, op);
         }
+        colors.position(0);
     }
 
     public void updateProgress () {
@@ -200,6 +209,45 @@ public class CCProgressTimer extends CCNode {
         }
     }
 
+    //	texture max of the current update, set by beginUpdate()
+    private float tMaxX_, tMaxY_;
+    //	texture content size of the current update
+    private float texWidth_, texHeight_;
+
+    private void beginUpdate() {
+    	CCTexture2D texture = sprite_.getTexture();
+    	tMaxX_ = texture.maxS();
+    	tMaxY_ = texture.maxT();
+    	texWidth_  = texture.getWidth();
+    	texHeight_ = texture.getHeight();
+    }
+
+    ///
+    //	Writes vertex i from the texture coordinate,
+    //	texture coordinate is flipped if sprite is flipped
+    ///
+    private void putVertex(int i, float s, float t) {
+    	vertexCoordinates.put(i*2+0, texWidth_ * s/tMaxX_);
+    	vertexCoordinates.put(i*2+1, texHeight_ * (1 - t/tMaxY_));
+
+    	textureCoordinates.put(i*2+0, sprite_.flipX_ ? tMaxX_ - s : s);
+    	textureCoordinates.put(i*2+1, sprite_.flipY_ ? tMaxY_ - t : t);
+    }
+
+    private int boundaryX(int i) {
+    	if (type_ == kCCProgressTimerTypeRadialCW)
+    		return (kProgressTextureCoords>>((i<<1)+1))&1;
+    	return (kProgressTextureCoords>>(7-(i<<1)))&1;
+    }
+
+    private int boundaryY(int i) {
+    	if (type_ == kCCProgressTimerTypeRadialCW)
+    		return (kProgressTextureCoords>>(i<<1))&1;
+    	return (kProgressTextureCoords>>(7-((i<<1)+1)))&1;
+    }
+
+    private static final float kEpsilon = 0.00000012f;
+
     ///
     //	Update does the work of mapping the texture onto the triangles
     //	It now doesn't occur the cost of free/alloc data every update cycle.
@@ -208,13 +256,21 @@ public class CCProgressTimer extends CCNode {
     //	
     //	It now deals with flipped texture. If you run into this problem, just use the
     //	sprite property and enable the methods flipX, flipY.
+    //
+    //	Only primitive math is used, the same as CGPoint.ccpRotateByAngle
+    //	and CGPoint.ccpLineIntersect inlined.
     ///
-    public void updateRadial() {		
+    public void updateRadial() {
+    	beginUpdate();
+
         //	Texture Max is the actual max coordinates to deal with non-power of 2 textures
-        CGPoint tMax = CGPoint.ccp(sprite_.getTexture().maxS(),sprite_.getTexture().maxT());
+        final float tMaxX = tMaxX_;
+        final float tMaxY = tMaxY_;
 
         //	Grab the midpoint
-        CGPoint midpoint = CGPoint.ccpCompMult(getAnchorPoint(), tMax);
+        CGPoint anchor = getAnchorPointRef();
+        final float midX = anchor.x * tMaxX;
+        final float midY = anchor.y * tMaxY;
 
         float alpha = percentage_ / 100.f;
 
@@ -224,22 +280,21 @@ public class CCProgressTimer extends CCNode {
         //	We find the vector to do a hit detection based on the percentage
         //	We know the first vector is the one @ 12 o'clock (top,mid) so we rotate 
         //	from that by the progress angle around the midpoint pivot
-        CGPoint topMid = CGPoint.ccp(midpoint.x, 0.f);
-        CGPoint percentagePt = CGPoint.ccpRotateByAngle(topMid, midpoint, angle);
-
+        float cosa = (float)Math.cos(angle);
+        float sina = (float)Math.sin(angle);
+        float percentageX = midY*sina + midX;
+        float percentageY = -midY*cosa + midY;
 
         int index = 0;
-        CGPoint hit = CGPoint.zero();
+        float hitX = midX, hitY = 0.f;
 
         if (alpha == 0.f) {
             //	More efficient since we don't always need to check intersection
             //	If the alpha is zero then the hit point is top mid and the index is 0.
-            hit = topMid;
             index = 0;
         } else if (alpha == 1.f) {
             //	More efficient since we don't always need to check intersection
             //	If the alpha is one then the hit point is top mid and the index is 4.
-            hit = topMid;
             index = 4;
         } else {
             //	We run a for loop checking the edges of the texture to find the
@@ -248,128 +303,100 @@ public class CCProgressTimer extends CCNode {
 
             float min_t = Float.MAX_VALUE;
 
-            for (int i = 0; i <= kProgressTextureCoordsCount; ++i) {
+            //	direction of the percentage ray
+            float p43x = percentageX - midX;
+            float p43y = percentageY - midY;
+            if (Math.abs(p43x) <= kEpsilon && Math.abs(p43y) <= kEpsilon)
+            	min_t = 0;
+            float d4343 = p43x*p43x + p43y*p43y;
+
+            for (int i = 0; i <= kProgressTextureCoordsCount && min_t != 0; ++i) {
                 int pIndex = (i + (kProgressTextureCoordsCount - 1))%kProgressTextureCoordsCount;
 
-                CGPoint edgePtA = CGPoint.ccpCompMult(boundaryTexCoord((char) (i % kProgressTextureCoordsCount)),tMax);
-                CGPoint edgePtB = CGPoint.ccpCompMult(boundaryTexCoord((char) pIndex),tMax);
+                float aX = boundaryX(i % kProgressTextureCoordsCount) * tMaxX;
+                float aY = boundaryY(i % kProgressTextureCoordsCount) * tMaxY;
+                float bX = boundaryX(pIndex) * tMaxX;
+                float bY = boundaryY(pIndex) * tMaxY;
 
                 //	Remember that the top edge is split in half for the 12 o'clock position
                 //	Let's deal with that here by finding the correct endpoints
                 if(i == 0){
-                    edgePtB = CGPoint.ccpLerp(edgePtA,edgePtB,.5f);
+                    bX = (aX + bX) * .5f;
+                    bY = (aY + bY) * .5f;
                 } else if(i == 4){
-                    edgePtA = CGPoint.ccpLerp(edgePtA,edgePtB,.5f);
+                    aX = (aX + bX) * .5f;
+                    aY = (aY + bY) * .5f;
                 }
 
-                //	s and t are returned by ccpLineIntersect
-                float s = 0, t = 0;
-                CGPoint ret = CGPoint.zero();
-                if(CGPoint.ccpLineIntersect(edgePtA, edgePtB, midpoint, percentagePt, ret)) {
-                	s = ret.x;
-                	t = ret.y;
-
-                    //	Since our hit test is on rays we have to deal with the top edge
-                    //	being in split in half so we have to test as a segment
-                    if ((i == 0 || i == 4)) {
-                        //	s represents the point between edgePtA--edgePtB
-                        if (!(0.f <= s && s <= 1.f)) {
-                            continue;
-                        }
+                //	line intersection of edge a-b with midpoint-percentagePt
+                float p21x = bX - aX;
+                float p21y = bY - aY;
+                if (Math.abs(p21x) <= kEpsilon && Math.abs(p21y) <= kEpsilon)
+                	continue;
+
+                float p13x = aX - midX;
+                float p13y = aY - midY;
+
+                float d1343 = p13x*p43x + p13y*p43y;
+                float d4321 = p43x*p21x + p43y*p21y;
+                float d1321 = p13x*p21x + p13y*p21y;
+                float d2121 = p21x*p21x + p21y*p21y;
+
+                float denom = d2121 * d4343 - d4321 * d4321;
+                if (Math.abs(denom) < kEpsilon)
+                	continue;
+
+                //	s and t as returned by ccpLineIntersect
+                float s = (d1343 * d4321 - d1321 * d4343) / denom;
+                float t = (d1343 + d4321 * s) / d4343;
+
+                //	Since our hit test is on rays we have to deal with the top edge
+                //	being in split in half so we have to test as a segment
+                if ((i == 0 || i == 4)) {
+                    //	s represents the point between edgePtA--edgePtB
+                    if (!(0.f <= s && s <= 1.f)) {
+                        continue;
                     }
-                    //	As long as our t isn't negative we are at least finding a 
-                    //	correct hitpoint from midpoint to percentagePt.
-                    if (t >= 0.f) {
-                        //	Because the percentage line and all the texture edges are
-                        //	rays we should only account for the shortest intersection
-                        if (t < min_t) {
-                            min_t = t;
-                            index = i;
-                        }
+                }
+                //	As long as our t isn't negative we are at least finding a 
+                //	correct hitpoint from midpoint to percentagePt.
+                if (t >= 0.f) {
+                    //	Because the percentage line and all the texture edges are
+                    //	rays we should only account for the shortest intersection
+                    if (t < min_t) {
+                        min_t = t;
+                        index = i;
                     }
                 }
             }
 
             //	Now that we have the minimum magnitude we can use that to find our intersection
-            hit = CGPoint.ccpAdd(midpoint, CGPoint.ccpMult(CGPoint.ccpSub(percentagePt, midpoint),min_t));
-
+            hitX = midX + p43x * min_t;
+            hitY = midY + p43y * min_t;
         }
 
 
         //	The size of the vertex data is the index from the hitpoint
         //	the 3 is for the midpoint, 12 o'clock point and hitpoint position.
 
-        boolean sameIndexCount = true;
-        if(vertexDataCount_ != index + 3){
-            sameIndexCount = false;
-            
-            this.resetVertex();
-        }
-
-        if (this.vertexCoordinates == null) {
+        boolean sameIndexCount = vertexDataCount_ == index + 3;
+        if (!sameIndexCount) {
             this.setVertexDataCount(index + 3);
 
             updateColor();
-        }
 
-        if (!sameIndexCount) {
-        	CGPoint tmpPoint = null;
             //	First we populate the array with the midpoint, then all 
             //	vertices/texcoords/colors of the 12 'o clock start and edges and the hitpoint
-            this.textureCoordinates.put(0, midpoint.x);
-            this.textureCoordinates.put(1, midpoint.y);
-            
-            tmpPoint = vertexFromTexCoord(midpoint);
-            this.vertexCoordinates.put(0, tmpPoint.x);
-            this.vertexCoordinates.put(1, tmpPoint.y);
-
-            this.textureCoordinates.put(2, midpoint.x);
-            this.textureCoordinates.put(3, 0.0f);
-
-            tmpPoint = vertexFromTexCoord(CGPoint.ccp(midpoint.x, 0.f));
-            this.vertexCoordinates.put(2, tmpPoint.x);
-            this.vertexCoordinates.put(3, tmpPoint.y);
+            putVertex(0, midX, midY);
+            putVertex(1, midX, 0.f);
 
             for(int i = 0; i < index; ++i){
-                CGPoint texCoords = CGPoint.ccpCompMult(boundaryTexCoord(i), tMax);
-                
-                this.textureCoordinates.put((i + 2) * 2 + 0, texCoords.x);
-                this.textureCoordinates.put((i + 2) * 2 + 1, texCoords.y);
-
-                tmpPoint = vertexFromTexCoord(texCoords);
-                this.vertexCoordinates.put((i + 2) * 2 + 0, tmpPoint.x);
-                this.vertexCoordinates.put((i + 2) * 2 + 1, tmpPoint.y);
-            }
-
-            //	Flip the texture coordinates if set
-            if (sprite_.flipY_ || sprite_.flipX_) {
-                for(int i = 0; i < vertexDataCount_ - 1; ++i){
-                    if (sprite_.flipX_) {
-                    	textureCoordinates.put(i*2+0, tMax.x - textureCoordinates.get(i*2+0));
-                    }
-                    if(sprite_.flipY_){
-                    	textureCoordinates.put(i*2+1, tMax.y - textureCoordinates.get(i*2+1));
-                    }
-                }
+                putVertex(i + 2, boundaryX(i) * tMaxX, boundaryY(i) * tMaxY);
             }
         }
 
         //	hitpoint will go last
-        this.textureCoordinates.put((vertexDataCount_ - 1) * 2 + 0, hit.x);
-        this.textureCoordinates.put((vertexDataCount_ - 1) * 2 + 1, hit.y);
-
-        CGPoint tmpPoint = vertexFromTexCoord(hit);
-        this.vertexCoordinates.put((vertexDataCount_ - 1) * 2 + 0, tmpPoint.x);
-        this.vertexCoordinates.put((vertexDataCount_ - 1) * 2 + 1, tmpPoint.y);
-
-        if (sprite_.flipY_ || sprite_.flipX_) {
-            if (sprite_.flipX_) {
-                textureCoordinates.put((vertexDataCount_ - 1) * 2 + 0, tMax.x - this.textureCoordinates.get((vertexDataCount_ - 1) * 2 + 0));
-            }
-            if(sprite_.flipY_){
-                textureCoordinates.put((vertexDataCount_ - 1) * 2 + 1, tMax.y - this.textureCoordinates.get((vertexDataCount_ - 1) * 2 + 1));
-            }
-        }
+        putVertex(vertexDataCount_ - 1, hitX, hitY);
         
         textureCoordinates.position(0);
         vertexCoordinates.position(0);
@@ -385,142 +412,48 @@ public class CCProgressTimer extends CCNode {
     //	sprite property and enable the methods flipX, flipY.
     ///
     public void updateBar() {	
+    	beginUpdate();
 
         float alpha = percentage_ / 100.f;
 
-        CGPoint tMax = CGPoint.ccp(sprite_.getTexture().maxS(),sprite_.getTexture().maxT());
-
-        char vIndexes[] = {0,0};
+        final float tMaxX = tMaxX_;
+        final float tMaxY = tMaxY_;
 
         //	We know vertex data is always equal to the 4 corners
         //	If we don't have vertex data then we create it here and populate
         //	the side of the bar vertices that won't ever change.
-        if (this.vertexCoordinates == null) {
-            vertexDataCount_ = kProgressTextureCoordsCount;
-            this.setVertexDataCount(vertexDataCount_);
+        if (vertexDataCount_ != kProgressTextureCoordsCount) {
+            this.setVertexDataCount(kProgressTextureCoordsCount);
 
             if(type_ == kCCProgressTimerTypeHorizontalBarLR){
-            	vIndexes[0] = 0;
-            	vIndexes[1] = 1;
-            	
-            	this.textureCoordinates.put(vIndexes[0]*2 + 0, 0);
-            	this.textureCoordinates.put(vIndexes[0]*2 + 1, 0);
-            	this.textureCoordinates.put(vIndexes[1]*2 + 0, 0);
-            	this.textureCoordinates.put(vIndexes[1]*2 + 1, tMax.y);
+            	putVertex(0, 0, 0);
+            	putVertex(1, 0, tMaxY);
             }else if (type_ == kCCProgressTimerTypeHorizontalBarRL) {
-            	vIndexes[0] = 2;
-            	vIndexes[1] = 3;
-            	
-            	this.textureCoordinates.put(vIndexes[0]*2 + 0, tMax.x);
-            	this.textureCoordinates.put(vIndexes[0]*2 + 1, tMax.y);
-            	this.textureCoordinates.put(vIndexes[1]*2 + 0, tMax.x);
-            	this.textureCoordinates.put(vIndexes[1]*2 + 1, 0);
+            	putVertex(2, tMaxX, tMaxY);
+            	putVertex(3, tMaxX, 0);
             }else if (type_ == kCCProgressTimerTypeVerticalBarBT) {
-            	vIndexes[0] = 1;
-            	vIndexes[1] = 3;
-            	
-            	this.textureCoordinates.put(vIndexes[0]*2 + 0, 0);
-            	this.textureCoordinates.put(vIndexes[0]*2 + 1, tMax.y);
-            	this.textureCoordinates.put(vIndexes[1]*2 + 0, tMax.x);
-            	this.textureCoordinates.put(vIndexes[1]*2 + 1, tMax.y);
+            	putVertex(1, 0, tMaxY);
+            	putVertex(3, tMaxX, tMaxY);
             }else if (type_ == kCCProgressTimerTypeVerticalBarTB) {
-            	vIndexes[0] = 0;
-            	vIndexes[1] = 2;
-            	
-            	this.textureCoordinates.put(vIndexes[0]*2 + 0, 0);
-            	this.textureCoordinates.put(vIndexes[0]*2 + 1, 0);
-            	this.textureCoordinates.put(vIndexes[1]*2 + 0, tMax.x);
-            	this.textureCoordinates.put(vIndexes[1]*2 + 1, 0);
-            }
-
-            char index = vIndexes[0];
-            CGPoint tmpPoint = vertexFromTexCoord(CGPoint.ccp(this.textureCoordinates.get(index*2+0), this.textureCoordinates.get(index*2+1)));
-            this.vertexCoordinates.put(index*2+0, tmpPoint.x);
-            this.vertexCoordinates.put(index*2+1, tmpPoint.y);
-
-            index = vIndexes[1];
-            tmpPoint = vertexFromTexCoord(CGPoint.ccp(this.textureCoordinates.get(index*2+0), this.textureCoordinates.get(index*2+1)));
-            this.vertexCoordinates.put(index*2+0, tmpPoint.x);
-            this.vertexCoordinates.put(index*2+1, tmpPoint.y);
-
-            if (sprite_.flipY_ || sprite_.flipX_) {
-                if (sprite_.flipX_) {
-                    index = vIndexes[0];
-                    this.textureCoordinates.put(index*2+0, tMax.x - this.textureCoordinates.get(index*2+0));
-                    index = vIndexes[1];
-                    this.textureCoordinates.put(index*2+0, tMax.x - this.textureCoordinates.get(index*2+0));
-                }
-                if(sprite_.flipY_){
-                    index = vIndexes[0];
-                    this.textureCoordinates.put(index*2+1, tMax.y - this.textureCoordinates.get(index*2+1));
-
-                    index = vIndexes[1];
-                    this.textureCoordinates.put(index*2+1, tMax.y - this.textureCoordinates.get(index*2+1));
-                }
+            	putVertex(0, 0, 0);
+            	putVertex(2, tMaxX, 0);
             }
 
             updateColor();
         }
 
         if (type_ == kCCProgressTimerTypeHorizontalBarLR){
-        	vIndexes[0] = 3;
-        	vIndexes[1] = 2;
-        	
-        	this.textureCoordinates.put(vIndexes[0]*2 + 0, tMax.x*alpha);
-        	this.textureCoordinates.put(vIndexes[0]*2 + 1, tMax.y);
-        	this.textureCoordinates.put(vIndexes[1]*2 + 0, tMax.x*alpha);
-        	this.textureCoordinates.put(vIndexes[1]*2 + 1, 0);
+        	putVertex(3, tMaxX*alpha, tMaxY);
+        	putVertex(2, tMaxX*alpha, 0);
         } else if (type_ == kCCProgressTimerTypeHorizontalBarRL) {
-            vIndexes[0] = 1;
-        	vIndexes[1] = 0;
-        	
-        	this.textureCoordinates.put(vIndexes[0]*2 + 0, tMax.x*(1.f - alpha));
-        	this.textureCoordinates.put(vIndexes[0]*2 + 1, 0);
-        	this.textureCoordinates.put(vIndexes[1]*2 + 0, tMax.x*(1.f - alpha));
-        	this.textureCoordinates.put(vIndexes[1]*2 + 1, tMax.y);
+        	putVertex(1, tMaxX*(1.f - alpha), 0);
+        	putVertex(0, tMaxX*(1.f - alpha), tMaxY);
         } else if (type_ == kCCProgressTimerTypeVerticalBarBT) {
-            vIndexes[0] = 0;
-        	vIndexes[1] = 2;
-        	
-        	this.textureCoordinates.put(vIndexes[0]*2 + 0, 0);
-        	this.textureCoordinates.put(vIndexes[0]*2 + 1, tMax.y*(1.f - alpha));
-        	this.textureCoordinates.put(vIndexes[1]*2 + 0, tMax.x);
-        	this.textureCoordinates.put(vIndexes[1]*2 + 1, tMax.y*(1.f - alpha));
+        	putVertex(0, 0, tMaxY*(1.f - alpha));
+        	putVertex(2, tMaxX, tMaxY*(1.f - alpha));
         } else if (type_ == kCCProgressTimerTypeVerticalBarTB) {
-            vIndexes[0] = 1;
-        	vIndexes[1] = 3;
-        	
-        	this.textureCoordinates.put(vIndexes[0]*2 + 0, 0);
-        	this.textureCoordinates.put(vIndexes[0]*2 + 1, tMax.y*alpha);
-        	this.textureCoordinates.put(vIndexes[1]*2 + 0, tMax.x);
-        	this.textureCoordinates.put(vIndexes[1]*2 + 1, tMax.y*alpha);
-        }
-
-        char index = vIndexes[0];
-        CGPoint tmpPoint = vertexFromTexCoord(CGPoint.ccp(this.textureCoordinates.get(index*2+0), this.textureCoordinates.get(index*2+1)));
-        this.vertexCoordinates.put(index*2+0, tmpPoint.x);
-        this.vertexCoordinates.put(index*2+1, tmpPoint.y);
-
-        index = vIndexes[1];
-        tmpPoint = vertexFromTexCoord(CGPoint.ccp(this.textureCoordinates.get(index*2+0), this.textureCoordinates.get(index*2+1)));
-        this.vertexCoordinates.put(index*2+0, tmpPoint.x);
-        this.vertexCoordinates.put(index*2+1, tmpPoint.y);
-        
-        if (sprite_.flipY_ || sprite_.flipX_) {
-            if (sprite_.flipX_) {
-                index = vIndexes[0];
-                this.textureCoordinates.put(index*2+0, tMax.x - this.textureCoordinates.get(index*2+0));
-
-                index = vIndexes[1];
-                this.textureCoordinates.put(index*2+0, tMax.x - this.textureCoordinates.get(index*2+0));
-            }
-            if(sprite_.flipY_){
-                index = vIndexes[0];
-                this.textureCoordinates.put(index*2+1, tMax.y - this.textureCoordinates.get(index*2+1));
-
-                index = vIndexes[1];
-                this.textureCoordinates.put(index*2+1, tMax.y - this.textureCoordinates.get(index*2+1));
-            }
+        	putVertex(1, 0, tMaxY*alpha);
+        	putVertex(3, tMaxX, tMaxY*alpha);
         }
         
         this.textureCoordinates.position(0);
@@ -543,10 +476,22 @@ public class CCProgressTimer extends CCNode {
 
     @Override
     public void draw(GL10 gl) {
-        if (this.vertexCoordinates == null)
+        if (vertexDataCount_ == 0)
         	return;
         if (sprite_==null)
         	return;
+
+        boolean radial = type_ == kCCProgressTimerTypeRadialCCW || type_ == kCCProgressTimerTypeRadialCW;
+
+        //	timers sharing the texture are drawn in one batch
+        CCBatchRenderer batch = CCBatchRenderer.sharedRenderer();
+        if (batch.isActive()) {
+        	if (batch.addPolygon(gl, this, sprite_.getTexture(), sprite_.getBlendFunc(),
+        			vertexCoordinates, textureCoordinates, colors, vertexDataCount_, radial))
+        		return;
+        	batch.flush(gl);
+        }
+
         boolean newBlend = false;
         if( sprite_.getBlendFunc().src != ccConfig.CC_BLEND_SRC || sprite_.getBlendFunc().dst != ccConfig.CC_BLEND_DST ) {
             newBlend = true;
@@ -563,7 +508,7 @@ public class CCProgressTimer extends CCNode {
         gl.glTexCoordPointer(2, GL10.GL_FLOAT, 0, this.textureCoordinates);
         gl.glColorPointer(4, GL10.GL_FLOAT, 0, this.colors);
 
-        if (type_ == kCCProgressTimerTypeRadialCCW || type_ == kCCProgressTimerTypeRadialCW){
+        if (radial){
             gl.glDrawArrays(GL10.GL_TRIANGLE_FAN, 0, vertexDataCount_);
         } else if (type_ == kCCProgressTimerTypeHorizontalBarLR ||
                 type_ == kCCProgressTimerTypeHorizontalBarRL ||
@@ -577,7 +522,8 @@ public class CCProgressTimer extends CCNode {
 
         if (newBlend)
             gl.glBlendFunc(ccConfig.CC_BLEND_SRC, ccConfig.CC_BLEND_DST);
+
+        batch.countDrawCall();
     }
 
 }
-
@@ -1,11 +1,10 @@
 package org.cocos2d.actions;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.cocos2d.config.ccConfig;
+import org.cocos2d.nodes.CCRedrawTracker;
 import org.cocos2d.utils.collections.ConcurrentArrayHashMap;
 
 //
@@ -27,11 +26,15 @@ public class CCScheduler {
     // A list double-linked list used for "updates with priority"
     private static class tListEntry {
         // struct	_listEntry *prev, *next;
-        public Method impMethod;
-        public UpdateCallback callback; // instead of method invocation
+        public UpdateCallback callback; // target itself or binding of update selector
         public Object	target;				// not retained (retained by hashUpdateEntry)
         public int		priority;
         public boolean	paused;
+        int				lodInterval = 1;	// see setUpdateLOD()
+        int				lodCounter;
+        int				lodPhase;			// staggers targets of the same interval
+        int				lodEpoch;			// see setUpdateLOD()
+        float			lodDt;
     };
 
     // Hash Element used for "selectors with interval"
@@ -44,6 +47,11 @@ public class CCScheduler {
         CCTimer			currentTimer;
         boolean			currentTimerSalvaged;
         boolean			paused;
+        int				lodInterval = 1;
+        int				lodCounter;
+        int				lodPhase;
+        int				lodEpoch;
+        float			lodDt;
         void setPaused(boolean b){
             paused = b;
             if (entry != null){
@@ -90,6 +98,58 @@ public class CCScheduler {
         timeScale_ = ts;
     }
 
+    private long tickCount_;
+
+    /* update LOD, see setUpdateLOD() */
+    private volatile CCUpdateLOD updateLOD_;
+    private long lodUpdates_;
+    private long lodSkipped_;
+    /* order of scheduled entries, gives their LOD phase */
+    private int lodSequence_;
+    /* changed with the policy, entries of an older epoch start over */
+    private volatile int lodEpoch_;
+
+    /** Sets relevance function of update LOD, null (default) turns it off.
+      Targets for which it returns n > 1 are updated, and their timers ticked,
+      only every n-th tick with dt of the skipped ticks added, so their logic
+      keeps the same pace at a lower rate. The function is asked again each
+      time the target is updated.
+      When the function is changed, including to null, each target is updated
+      in its next tick with the dt it has pending and starts over with the new
+      function, so no time is lost or given twice.
+      Actions are not affected, see CCActionManager.setUpdateLOD().
+    */
+    public void setUpdateLOD(CCUpdateLOD lod) {
+        if( lod != updateLOD_ ) {
+            updateLOD_ = lod;
+            lodEpoch_++;
+        }
+    }
+
+    public CCUpdateLOD getUpdateLOD() {
+        return updateLOD_;
+    }
+
+    /** count of updates and timer ticks of targets done while update LOD was set */
+    public long getLODUpdateCount() {
+        return lodUpdates_;
+    }
+
+    /** count of updates and timer ticks of targets skipped by update LOD */
+    public long getLODSkippedCount() {
+        return lodSkipped_;
+    }
+
+    public void resetLODStats() {
+        lodUpdates_ = 0;
+        lodSkipped_ = 0;
+    }
+
+    /** count of tick() calls, deterministic runs count steps with it */
+    public long getTickCount() {
+        return tickCount_;
+    }
+
     private static CCScheduler _sharedScheduler = null;
 
     /** returns a shared instance of the Scheduler */
@@ -152,8 +212,13 @@ public class CCScheduler {
       You should NEVER call this method, unless you know what you are doing.
     */
     public void tick(float dt) {
+        tickCount_++;
+
         if( timeScale_ != 1.0f )
             dt *= timeScale_;
+
+        final CCUpdateLOD lod = updateLOD_;
+        final int epoch = lodEpoch_;
         
         currentTargetSalvaged = false;
         // updates with priority < 0
@@ -165,19 +230,11 @@ public class CCScheduler {
         			tListEntry e = updatesNeg.get(i);
         			currentEntry = e;
         			if( ! e.paused ) {
-        				if(e.callback !=null) {
-        					e.callback.update(dt);
-        				} else {
-        					try {
-        						e.impMethod.invoke(e.target, dt);
-        					} catch (InvocationTargetException e1) {
-        						if(e1.getTargetException() instanceof RuntimeException)
-        	        				throw (RuntimeException)e1.getTargetException();
-        	        			else
-        	        				e1.printStackTrace();
-        					} catch (Exception e1) {
-        						e1.printStackTrace();
-        					}
+        				if(e.callback != null) {
+        					if(lod == null && e.lodDt == 0)
+        						e.callback.update(dt);
+        					else
+        						updateWithLOD(e, dt, lod, epoch);
         				}
         				if(currentTargetSalvaged) {
         					updatesNeg.remove(i);
@@ -203,15 +260,11 @@ public class CCScheduler {
         			tListEntry e = updates0.get(i);
         			currentEntry = e;
         			if( ! e.paused ) {
-        				if(e.callback !=null) {
-        					e.callback.update(dt);
-        				} else {
-        					try {
-        						e.impMethod.invoke(e.target, dt);
-        					} catch (Exception e1) {
-        						// TODO Auto-generated catch block
-        						e1.printStackTrace();
-        					}
+        				if(e.callback != null) {
+        					if(lod == null && e.lodDt == 0)
+        						e.callback.update(dt);
+        					else
+        						updateWithLOD(e, dt, lod, epoch);
         				}
         				if(currentTargetSalvaged) {
         					updates0.remove(i);
@@ -237,14 +290,11 @@ public class CCScheduler {
         			tListEntry e = updatesPos.get(i);
         			currentEntry = e;
         			if( ! e.paused ) {
-        				if(e.callback !=null) {
-        					e.callback.update(dt);
-        				} else {
-        					try {
-        						e.impMethod.invoke(e.target, dt);
-        					} catch (Exception e1) {
-        						e1.printStackTrace();
-        					}
+        				if(e.callback != null) {
+        					if(lod == null && e.lodDt == 0)
+        						e.callback.update(dt);
+        					else
+        						updateWithLOD(e, dt, lod, epoch);
         				}
         				if(currentTargetSalvaged) {
         					updatesPos.remove(i);
@@ -268,13 +318,38 @@ public class CCScheduler {
         	currentTarget = elt;
             currentTargetSalvaged = false;
 
-            if( ! currentTarget.paused && elt.timers != null) {
+            float timerDt = dt;
+            boolean due = true;
+            if( (lod != null || elt.lodDt != 0) && ! currentTarget.paused && elt.timers != null) {
+                if( elt.lodEpoch != epoch ) {
+                    // the policy has changed, pending dt is given now
+                    elt.lodEpoch = epoch;
+                    elt.lodCounter = 0;
+                    elt.lodInterval = 1;
+                }
+                elt.lodDt += dt;
+                if( ++elt.lodCounter < elt.lodInterval ) {
+                    lodSkipped_++;
+                    due = false;
+                } else {
+                    timerDt = elt.lodDt;
+                    elt.lodDt = 0;
+                }
+                if( due && lod != null ) {
+                    final int interval = lodInterval(lod, elt.target);
+                    elt.lodCounter = lodCounter(elt.lodPhase, elt.lodInterval, interval);
+                    elt.lodInterval = interval;
+                    lodUpdates_++;
+                }
+            }
+
+            if( due && ! currentTarget.paused && elt.timers != null) {
                 // The 'timers' ccArray may change while inside this loop.
                 for( elt.timerIndex = 0; elt.timerIndex < elt.timers.size(); elt.timerIndex++) {
                     elt.currentTimer = elt.timers.get(elt.timerIndex);
                     elt.currentTimerSalvaged = false;
 
-                    elt.currentTimer.update(dt);
+                    elt.currentTimer.update(timerDt);
 
                     if( elt.currentTimerSalvaged ) {
                         // The currentTimer told the remove itself. To prevent the timer from
@@ -302,6 +377,89 @@ public class CCScheduler {
 //        }
     }
 
+    /** calls update of the entry when due, CCActionManager has its own LOD */
+    private void updateWithLOD(tListEntry e, float dt, CCUpdateLOD lod, int epoch) {
+        if( e.target instanceof CCActionManager ) {
+            e.callback.update(dt);
+            return;
+        }
+
+        if( e.lodEpoch != epoch ) {
+            // the policy has changed, pending dt is given now
+            e.lodEpoch = epoch;
+            e.lodCounter = 0;
+            e.lodInterval = 1;
+        }
+
+        e.lodDt += dt;
+        if( ++e.lodCounter < e.lodInterval ) {
+            lodSkipped_++;
+            return;
+        }
+
+        final float d = e.lodDt;
+        e.lodDt = 0;
+        if( lod == null ) {
+            e.callback.update(d);
+            return;
+        }
+        lodUpdates_++;
+        e.callback.update(d);
+        final int interval = lodInterval(lod, e.target);
+        e.lodCounter = lodCounter(e.lodPhase, e.lodInterval, interval);
+        e.lodInterval = interval;
+    }
+
+    static int lodInterval(CCUpdateLOD lod, Object target) {
+        final int interval = lod.getUpdateInterval(target);
+        return interval < 1 ? 1 : interval;
+    }
+
+    /** Counter after an update. When the interval changes the target starts
+      at its phase, so targets getting the same interval don't all update in
+      the same tick. The phase is the order of scheduling, which replays the
+      same, unlike identity hashes.
+    */
+    static int lodCounter(int phase, int oldInterval, int interval) {
+        return interval != oldInterval ? phase % interval : 0;
+    }
+
+    /** Returns true if an update or a timer of a not paused target is scheduled.
+      The update of CCActionManager and of idle IdleUpdateCallback targets is not counted,
+      see CCActionManager.hasRunningActions().
+      Used by CCDirector to detect static scenes.
+    */
+    public boolean hasActiveTargets() {
+        final Object actionManager = CCActionManager.sharedManager();
+
+        if (hasActiveUpdates(updatesNeg, actionManager)
+                || hasActiveUpdates(updates0, actionManager)
+                || hasActiveUpdates(updatesPos, actionManager))
+            return true;
+
+        for(ConcurrentArrayHashMap<Object, tHashSelectorEntry>.Entry e = hashForSelectors.firstValue();
+        	e != null; e = hashForSelectors.nextValue(e)) {
+        	tHashSelectorEntry elt = e.getValue();
+        	if( ! elt.paused && elt.timers != null && ! elt.timers.isEmpty())
+        		return true;
+        }
+        return false;
+    }
+
+    private static boolean hasActiveUpdates(ArrayList<tListEntry> list, Object ignore) {
+        synchronized (list) {
+            for (int i = 0, len = list.size(); i < len; i++) {
+                tListEntry e = list.get(i);
+                if( e.paused || e.target == ignore)
+                    continue;
+                if( e.target instanceof IdleUpdateCallback && ((IdleUpdateCallback)e.target).isUpdateIdle())
+                    continue;
+                return true;
+            }
+        }
+        return false;
+    }
+
     static class SchedulerTimerAlreadyScheduled extends RuntimeException {
 
 		/**
@@ -340,6 +498,8 @@ public class CCScheduler {
         if( element == null ) {
             element = new tHashSelectorEntry();
             element.target = target;
+            element.lodPhase = lodSequence_++ & Integer.MAX_VALUE;
+            element.lodEpoch = lodEpoch_;
             hashForSelectors.put(target, element);
             // Is this the 1st element ? Then set the pause level to all the selectors of this target
             element.paused = paused;
@@ -355,6 +515,7 @@ public class CCScheduler {
 		*/
         CCTimer timer = new CCTimer(target, selector, interval);
         element.timers.add(timer);
+        CCRedrawTracker.setNeedsRedraw();
     }
     
     /*
@@ -370,6 +531,8 @@ public class CCScheduler {
         if( element == null ) {
             element = new tHashSelectorEntry();
             element.target = target;
+            element.lodPhase = lodSequence_++ & Integer.MAX_VALUE;
+            element.lodEpoch = lodEpoch_;
             hashForSelectors.put(target, element);
             // Is this the 1st element ? Then set the pause level to all the selectors of this target
             element.paused = paused;
@@ -385,6 +548,7 @@ public class CCScheduler {
 		*/
         CCTimer timer = new CCTimer(target, callback, interval);
         element.timers.add(timer);
+        CCRedrawTracker.setNeedsRedraw();
     }
 
     /** Unshedules a selector for a given target.
@@ -577,6 +741,7 @@ public class CCScheduler {
             assert elementUpdate.target != null: "resumeTarget: unknown error";
             elementUpdate.setPaused(false);
         }	
+        CCRedrawTracker.setNeedsRedraw();
 
 	}
 
@@ -623,6 +788,7 @@ public class CCScheduler {
         } else { // priority > 0
         	this.priority(updatesPos, target, priority, paused);
         }
+        CCRedrawTracker.setNeedsRedraw();
 	}
 	
     /*
@@ -646,6 +812,7 @@ public class CCScheduler {
         } else { // priority > 0
         	this.priority(updatesPos, target, priority, paused);
         }
+        CCRedrawTracker.setNeedsRedraw();
 	}
 
     /** schedules a Timer.
@@ -688,14 +855,12 @@ public class CCScheduler {
 
         listElement.target = target;
         listElement.paused = paused;
+        listElement.lodPhase = lodSequence_++ & Integer.MAX_VALUE;
+        listElement.lodEpoch = lodEpoch_;
         if(target instanceof UpdateCallback) {
         	listElement.callback = (UpdateCallback)target;
         } else {
-            try {
-    			listElement.impMethod = target.getClass().getMethod(updateSelector, Float.TYPE);
-            } catch (NoSuchMethodException e) {
-        		e.printStackTrace();
-        	}       	
+        	listElement.callback = CCBindings.updateCallback(target, updateSelector);
         }
 
 		synchronized (list) {
@@ -716,14 +881,12 @@ public class CCScheduler {
         listElement.target = target;
         listElement.priority = priority;
         listElement.paused = paused;
+        listElement.lodPhase = lodSequence_++ & Integer.MAX_VALUE;
+        listElement.lodEpoch = lodEpoch_;
         if(target instanceof UpdateCallback) {
         	listElement.callback = (UpdateCallback)target;
         } else {
-	        try {
-				listElement.impMethod = target.getClass().getMethod(updateSelector, Float.TYPE);
-	        } catch (NoSuchMethodException e) {
-        		e.printStackTrace();
-        	}
+        	listElement.callback = CCBindings.updateCallback(target, updateSelector);
         }
 		
 		synchronized (list) {
@@ -1,8 +1,5 @@
 package org.cocos2d.actions;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-
 public class CCTimer {
     //
     // CCTimer
@@ -11,7 +8,7 @@ public class CCTimer {
 
     private Object target;
     private String selector;
-    private Method invocation;
+    private UpdateCallback invocation;
     
     /*
      * Alternative way, use instead of invocation.
@@ -43,12 +40,7 @@ public class CCTimer {
         interval = seconds;
         elapsed = -1;
 
-        try {
-            Class<?> cls = target.getClass();
-            invocation = cls.getMethod(s, Float.TYPE);
-        } catch (NoSuchMethodException e) {
-    		e.printStackTrace();
-    	}
+        invocation = CCBindings.updateCallback(target, s);
     }
     
     /** Initializes a timer with a target, a callback and an interval in seconds.  */
@@ -78,17 +70,8 @@ public class CCTimer {
         if (elapsed >= interval) {
         	if(callback != null) {
         		callback.update(elapsed);
-        	} else {
-                try {
-                    invocation.invoke(target, elapsed);
-                } catch (InvocationTargetException e) {
-                	if(e.getTargetException() instanceof RuntimeException)
-        				throw (RuntimeException)e.getTargetException();
-        			else
-        				e.printStackTrace();
-				} catch (Exception e) {
-                    e.printStackTrace();
-                }        		
+        	} else if(invocation != null) {
+        		invocation.update(elapsed);
         	}
             elapsed = 0;
         }
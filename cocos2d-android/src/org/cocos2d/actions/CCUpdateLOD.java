@@ -0,0 +1,12 @@
+package org.cocos2d.actions;
+
+/** Relevance function of update LOD, see CCScheduler.setUpdateLOD()
+ * and CCActionManager.setUpdateLOD().
+ * Called on the thread which ticks the scheduler, each time the target is updated.
+ */
+public interface CCUpdateLOD {
+	/** Returns how often the target is updated: 1 every tick, n every n-th tick
+	 * with dt of the skipped ticks added. Values below 1 count as 1.
+	 */
+	int getUpdateInterval(Object target);
+}
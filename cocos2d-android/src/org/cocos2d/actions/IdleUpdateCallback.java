@@ -0,0 +1,10 @@
+package org.cocos2d.actions;
+
+/** UpdateCallback which can tell that its update() does nothing at the moment,
+ * e.g. a particle system without live particles.
+ * Such targets don't keep CCDirector rendering, see CCScheduler.hasActiveTargets().
+ */
+public interface IdleUpdateCallback extends UpdateCallback {
+	/** true if update() would change nothing */
+	boolean isUpdateIdle();
+}
@@ -25,6 +25,9 @@ public abstract class CCAction implements Copyable {
     /** The action tag. An identifier of the action */
     private int tag;
 
+    /** template which owns this instance, null for ordinary actions */
+    CCActionTemplate template_;
+
     public CCNode getOriginalTarget() {
         return originalTarget;
     }
@@ -49,6 +52,11 @@ public abstract class CCAction implements Copyable {
         tag = value;
     }
 
+    /** returns the template this instance was obtained from, or null */
+    public CCActionTemplate getTemplate() {
+        return template_;
+    }
+
     /** Allocates and initializes the action */
     public static CCAction action() {
     	return null;
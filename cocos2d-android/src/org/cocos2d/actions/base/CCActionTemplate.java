@@ -0,0 +1,101 @@
+package org.cocos2d.actions.base;
+
+import org.cocos2d.utils.pool.ConcOneClassPool;
+
+/** Immutable description of an action with a pool of runtime instances.
+ *
+ * Instead of running copy() of the same action on every node:
+ *
+ *	CCActionTemplate dieTemplate = CCActionTemplate.make(CCSequence.actions(...));
+ *	...
+ *	enemy.runAction(dieTemplate);
+ *
+ * Each run takes an instance from the pool, or copies the prototype when
+ * the pool is empty. CCActionManager gives instances back when they are
+ * finished or removed, so repeating spawns stop allocating actions once
+ * the pool holds as many instances as run at the same time.
+ *
+ * The prototype is a private copy, changes of the passed action don't
+ * affect the template. Actions reset their state in start(), so recycled
+ * instances behave like fresh copies.
+ * Don't keep references to running instances after they are finished,
+ * the same object will be used by the next run.
+ */
+public final class CCActionTemplate {
+	private final CCAction prototype;
+	private final ConcOneClassPool<CCAction> pool;
+
+	private int created_;
+	private int obtained_;
+
+	/** creates the template, the action is copied */
+	public static CCActionTemplate make(CCAction action) {
+		return new CCActionTemplate(action);
+	}
+
+	private CCActionTemplate(CCAction action) {
+		assert action != null : "CCActionTemplate: action must be non-null";
+		assert action.template_ == null : "CCActionTemplate: action is already pooled";
+
+		prototype = action.copy();
+		prototype.setTag(action.getTag());
+		pool = new ConcOneClassPool<CCAction>() {
+			@Override
+			protected CCAction allocate() {
+				created_++;
+				CCAction a = prototype.copy();
+				a.template_ = CCActionTemplate.this;
+				return a;
+			}
+		};
+	}
+
+	/** tag given to every instance */
+	public int getTag() {
+		return prototype.getTag();
+	}
+
+	/** Returns an instance not used by anyone.
+	 * It must be run by CCActionManager (e.g. CCNode.runAction) or given back with recycle().
+	 */
+	public CCAction obtain() {
+		obtained_++;
+		CCAction a = pool.get();
+		a.setTag(prototype.getTag());
+		return a;
+	}
+
+	/** creates count instances ahead, e.g. while loading a level */
+	public void prefill(int count) {
+		CCAction[] tmp = new CCAction[count];
+		for (int i = 0; i < count; ++i) {
+			tmp[i] = pool.get();
+		}
+		for (int i = 0; i < count; ++i) {
+			recycle(tmp[i]);
+		}
+	}
+
+	/** count of copies of the prototype made so far */
+	public int getCreatedCount() {
+		return created_;
+	}
+
+	/** count of obtain() calls, obtained - created is the count of reuses */
+	public int getObtainedCount() {
+		return obtained_;
+	}
+
+	/** Gives the instance back to its template, does nothing for other actions.
+	 * Called by CCActionManager when the action is not used any more.
+	 */
+	public static void recycle(CCAction action) {
+		CCActionTemplate template = action.template_;
+		if (template == null)
+			return;
+
+		action.target = null;
+		action.setOriginalTarget(null);
+		template.pool.free(action);
+	}
+}
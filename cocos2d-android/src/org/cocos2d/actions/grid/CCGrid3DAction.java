@@ -22,6 +22,12 @@ public class CCGrid3DAction extends CCGridAction {
         return new CCGrid3D(gridSize);
     }
 
+    /** returns the grid of the target, actions can change its
+     * vertex arrays in place */
+    public CCGrid3D getGrid3D() {
+        return (CCGrid3D) target.getGrid();
+    }
+
     /** returns the vertex than belongs to certain position
      * 	 in the grid */
     public CCVertex3D vertex(ccGridSize pos) {
@@ -49,9 +49,7 @@ public abstract class CCGridAction extends CCIntervalAction {
                 targetGrid.setActive(false);
             
             target.setGrid(newgrid);
-            
-            if (targetGrid != null)
-            	target.getGrid().setActive(true);
+            target.getGrid().setActive(true);
         }
     }
     
@@ -1,6 +1,6 @@
 package org.cocos2d.actions.grid;
 
-import org.cocos2d.types.CCVertex3D;
+import org.cocos2d.grid.CCGrid3D;
 import org.cocos2d.types.CGPoint;
 import org.cocos2d.types.ccGridSize;
 
@@ -41,33 +41,35 @@ public class CCLens3D extends CCGrid3DAction {
 	@Override
 	public void update(float time) {
 		if ( position.x != lastPosition.x || position.y != lastPosition.y ) {
-			int i, j;
-			
-			for( i = 0; i < gridSize.x+1; i++ ) {
-				for( j = 0; j < gridSize.y+1; j++ ) {
-					CCVertex3D	v = originalVertex(ccGridSize.ccg(i,j));
-					CGPoint vect = CGPoint.ccpSub(position, CGPoint.ccp(v.x,v.y));
-					float r = CGPoint.ccpLength(vect);
-					
-					if ( r < radius ) {
-						r = radius - r;
-						float pre_log = r / radius;
-						if ( pre_log == 0 ) pre_log = 0.001f;
-						float l = (float)Math.log(pre_log) * lensEffect;
-						float new_r = (float)Math.exp( l ) * radius;
-						
-						if ( CGPoint.ccpLength(vect) > 0 ) {
-							vect = CGPoint.ccpNormalize(vect);
-							CGPoint new_vect = CGPoint.ccpMult(vect, new_r);
-							v.z += CGPoint.ccpLength(new_vect) * lensEffect;
-						}
-					}
-					
-					setVertex(ccGridSize.ccg(i,j), v);
+			CCGrid3D g = getGrid3D();
+			final float[] orig = g.getOriginalVertexArray();
+			final float[] v = g.getVertexArray();
+
+			final float px = position.x, py = position.y;
+			final float radiusSq = radius * radius;
+
+			for( int idx = 0; idx < v.length; idx += 3 ) {
+				float x = orig[idx];
+				float y = orig[idx+1];
+				float z = orig[idx+2];
+
+				float dx = px - x, dy = py - y;
+				float distSq = dx*dx + dy*dy;
+				if ( distSq < radiusSq && distSq > 0 ) {
+					float r = radius - (float)Math.sqrt(distSq);
+					float pre_log = r / radius;
+					if ( pre_log == 0 ) pre_log = 0.001f;
+					float l = (float)Math.log(pre_log) * lensEffect;
+					float new_r = (float)Math.exp( l ) * radius;
+					z += new_r * lensEffect;
 				}
+
+				v[idx] = x;
+				v[idx+1] = y;
+				v[idx+2] = z;
 			}
 			
-			lastPosition = position;
+			lastPosition.set(position.x, position.y);
 		}
 	}
 
@@ -1,6 +1,6 @@
 package org.cocos2d.actions.grid;
 
-import org.cocos2d.types.CCVertex3D;
+import org.cocos2d.grid.CCGrid3D;
 import org.cocos2d.types.ccGridSize;
 
 ////////////////////////////////////////////////////////////
@@ -28,21 +28,23 @@ public class CCLiquid extends CCGrid3DAction {
 
 	@Override
 	public void update(float time) {
-		int i, j;
-		
-		for( i = 1; i < gridSize.x; i++ ) {
-			for( j = 1; j < gridSize.y; j++ ) {
-				CCVertex3D	v = originalVertex(ccGridSize.ccg(i,j));
-				v.x = (float)(v.x + (Math.sin(time*Math.PI*waves*2 + v.x * .01f) * amplitude * amplitudeRate));
-				v.y = (float)(v.y + (Math.sin(time*Math.PI*waves*2 + v.y * .01f) * amplitude * amplitudeRate));
-				setVertex(ccGridSize.ccg(i,j), v);
+		CCGrid3D g = getGrid3D();
+		final float[] orig = g.getOriginalVertexArray();
+		final float[] v = g.getVertexArray();
+
+		final double phase = time*Math.PI*waves*2;
+		final float amp = amplitude * amplitudeRate;
+
+		// border vertices are not moved
+		for( int i = 1; i < gridSize.x; i++ ) {
+			int idx = g.vertexIndex(i, 1);
+			for( int j = 1; j < gridSize.y; j++, idx += 3 ) {
+				float x = orig[idx];
+				float y = orig[idx+1];
+				v[idx] = (float)(x + Math.sin(phase + x * .01f) * amp);
+				v[idx+1] = (float)(y + Math.sin(phase + y * .01f) * amp);
+				v[idx+2] = orig[idx+2];
 			}
 		}
 	}	
-
-	@Override
-	public CCLiquid copy() {
-		CCLiquid copy = new CCLiquid(waves, amplitude, gridSize, duration);
-		return copy;
-	}
 }
@@ -1,6 +1,6 @@
 package org.cocos2d.actions.grid;
 
-import org.cocos2d.types.CCVertex3D;
+import org.cocos2d.grid.CCGrid3D;
 import org.cocos2d.types.CGPoint;
 import org.cocos2d.types.ccGridSize;
 
@@ -46,22 +46,31 @@ public class CCRipple3D extends CCGrid3DAction {
 
 	@Override
 	public void update(float time) {
-		int i, j;
-		
-		for( i = 0; i < (gridSize.x+1); i++ ) {
-			for( j = 0; j < (gridSize.y+1); j++ ) {
-				CCVertex3D	v = originalVertex(ccGridSize.ccg(i,j));
-				CGPoint vect = CGPoint.ccpSub(position, CGPoint.ccp(v.x,v.y));
-				float r = CGPoint.ccpLength(vect);
-				
-				if ( r < radius ) {
-					r = radius - r;
-					float rate = (float)Math.pow( r / radius, 2);
-					v.z += (Math.sin( time*Math.PI*waves*2 + r * 0.1f) * amplitude * amplitudeRate * rate );
-				}
-				
-				setVertex(ccGridSize.ccg(i,j), v);
+		CCGrid3D g = getGrid3D();
+		final float[] orig = g.getOriginalVertexArray();
+		final float[] v = g.getVertexArray();
+
+		final double phase = time*Math.PI*waves*2;
+		final float amp = amplitude * amplitudeRate;
+		final float px = position.x, py = position.y;
+		final float radiusSq = radius * radius;
+
+		for( int idx = 0; idx < v.length; idx += 3 ) {
+			float x = orig[idx];
+			float y = orig[idx+1];
+			float z = orig[idx+2];
+
+			float dx = px - x, dy = py - y;
+			float distSq = dx*dx + dy*dy;
+			if ( distSq < radiusSq ) {
+				float r = radius - (float)Math.sqrt(distSq);
+				float rate = (r / radius) * (r / radius);
+				z += (float)(Math.sin(phase + r * 0.1f) * amp * rate);
 			}
+
+			v[idx] = x;
+			v[idx+1] = y;
+			v[idx+2] = z;
 		}
 	}
 
@@ -1,6 +1,6 @@
 package org.cocos2d.actions.grid;
 
-import org.cocos2d.types.CCVertex3D;
+import org.cocos2d.grid.CCGrid3D;
 import org.cocos2d.types.ccGridSize;
 
 ////////////////////////////////////////////////////////////
@@ -31,19 +31,15 @@ public class CCShaky3D extends CCGrid3DAction {
 
 	@Override
 	public void update(float time) {
-		int i, j;
-		
-		for( i = 0; i < (gridSize.x+1); i++ ) {
-			for( j = 0; j < (gridSize.y+1); j++ ) {
-				CCVertex3D	v = originalVertex(ccGridSize.ccg(i,j));
-				float r = (float)Math.random() * (randrange*2);
-				v.x += r - randrange;
-				v.y += r - randrange;
-				if( shakeZ )
-					v.z += r - randrange;
-				
-				setVertex(ccGridSize.ccg(i,j), v);
-			}
+		CCGrid3D g = getGrid3D();
+		final float[] orig = g.getOriginalVertexArray();
+		final float[] v = g.getVertexArray();
+
+		for( int idx = 0; idx < v.length; idx += 3 ) {
+			float r = (float)Math.random() * (randrange*2) - randrange;
+			v[idx] = orig[idx] + r;
+			v[idx+1] = orig[idx+1] + r;
+			v[idx+2] = shakeZ ? orig[idx+2] + r : orig[idx+2];
 		}
 	}
 
@@ -1,6 +1,6 @@
 package org.cocos2d.actions.grid;
 
-import org.cocos2d.types.CCVertex3D;
+import org.cocos2d.grid.CCGrid3D;
 import org.cocos2d.types.CGPoint;
 import org.cocos2d.types.ccGridSize;
 
@@ -32,29 +32,31 @@ public class CCTwirl extends CCGrid3DAction {
 
 	@Override
 	public void update (float time) {
-		int i, j;
-		CGPoint		c = position;
+		CCGrid3D g = getGrid3D();
+		final float[] orig = g.getOriginalVertexArray();
+		final float[] v = g.getVertexArray();
 
-		CGPoint	d = new CGPoint();
-		
-		for( i = 0; i < (gridSize.x+1); i++ ) {
-			for( j = 0; j < (gridSize.y+1); j++ ) {
-				CCVertex3D	v = originalVertex(ccGridSize.ccg(i,j));
-				
-				CGPoint	avg = CGPoint.ccp(i-(gridSize.x/2.0f), j-(gridSize.y/2.0f));
-				float r = CGPoint.ccpLength( avg );
-				
-				float amp = 0.1f * amplitude * amplitudeRate;
-				float a = (float)(r * Math.cos(Math.PI/2.0f + time * Math.PI * twirls * 2 ) * amp);
-				
-				
-				d.x = (float)(Math.sin(a) * (v.y-c.y) + Math.cos(a) * (v.x-c.x));
-				d.y = (float)(Math.cos(a) * (v.y-c.y) - Math.sin(a) * (v.x-c.x));
-				
-				v.x = c.x + d.x;
-				v.y = c.y + d.y;
-				
-				setVertex(ccGridSize.ccg(i,j), v);
+		final float cx = position.x, cy = position.y;
+		final float amp = (float)(Math.cos(Math.PI/2.0f + time * Math.PI * twirls * 2)
+				* 0.1f * amplitude * amplitudeRate);
+		final float halfX = gridSize.x/2.0f, halfY = gridSize.y/2.0f;
+
+		for( int i = 0; i < (gridSize.x+1); i++ ) {
+			int idx = g.vertexIndex(i, 0);
+			float ax = i - halfX;
+			for( int j = 0; j < (gridSize.y+1); j++, idx += 3 ) {
+				float ay = j - halfY;
+				float r = (float)Math.sqrt(ax*ax + ay*ay);
+				float a = r * amp;
+
+				float sin = (float)Math.sin(a);
+				float cos = (float)Math.cos(a);
+				float ox = orig[idx] - cx;
+				float oy = orig[idx+1] - cy;
+
+				v[idx] = cx + sin * oy + cos * ox;
+				v[idx+1] = cy + cos * oy - sin * ox;
+				v[idx+2] = orig[idx+2];
 			}
 		}
 	}
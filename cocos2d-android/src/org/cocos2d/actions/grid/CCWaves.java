@@ -1,6 +1,6 @@
 package org.cocos2d.actions.grid;
 
-import org.cocos2d.types.CCVertex3D;
+import org.cocos2d.grid.CCGrid3D;
 import org.cocos2d.types.ccGridSize;
 
 ////////////////////////////////////////////////////////////
@@ -33,20 +33,28 @@ public class CCWaves extends CCGrid3DAction {
 
 	@Override
 	public void update(float time) {
-		int i, j;
-		
-		for( i = 0; i < (gridSize.x+1); i++ ) {
-			for( j = 0; j < (gridSize.y+1); j++ ) {
-				CCVertex3D	v = originalVertex(ccGridSize.ccg(i,j));
-				
-				if ( vertical )
-					v.x = (float)(v.x + (Math.sin(time*Math.PI*waves*2 + v.y * .01f) * amplitude * amplitudeRate));
-				
-				if ( horizontal )
-					v.y = (float)(v.y + (Math.sin(time*Math.PI*waves*2 + v.x * .01f) * amplitude * amplitudeRate));
-						
-				setVertex(ccGridSize.ccg(i,j), v);
-			}
+		CCGrid3D g = getGrid3D();
+		final float[] orig = g.getOriginalVertexArray();
+		final float[] v = g.getVertexArray();
+
+		final double phase = time*Math.PI*waves*2;
+		final float amp = amplitude * amplitudeRate;
+
+		for( int idx = 0; idx < v.length; idx += 3 ) {
+			float x = orig[idx];
+			float y = orig[idx+1];
+
+			if ( vertical )
+				v[idx] = (float)(x + Math.sin(phase + y * .01f) * amp);
+			else
+				v[idx] = x;
+
+			if ( horizontal )
+				v[idx+1] = (float)(y + Math.sin(phase + x * .01f) * amp);
+			else
+				v[idx+1] = y;
+
+			v[idx+2] = orig[idx+2];
 		}
 	}
 
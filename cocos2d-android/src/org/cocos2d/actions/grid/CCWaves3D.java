@@ -1,6 +1,6 @@
 package org.cocos2d.actions.grid;
 
-import org.cocos2d.types.CCVertex3D;
+import org.cocos2d.grid.CCGrid3D;
 import org.cocos2d.types.ccGridSize;
 
 /** CCWaves3D action */
@@ -30,14 +30,19 @@ public class CCWaves3D extends CCGrid3DAction {
 
 	@Override
 	public void update(float time) {
-		int i, j;
-		
-		for( i = 0; i < (gridSize.x+1); i++ ) {
-			for( j = 0; j < (gridSize.y+1); j++ ) {
-				CCVertex3D	v = originalVertex(ccGridSize.ccg(i,j));
-				v.z += (float)(Math.sin(Math.PI*time*waves*2 + (v.y+v.x) * .01f) * amplitude * amplitudeRate);
-				setVertex(ccGridSize.ccg(i,j), v);
-			}
+		CCGrid3D g = getGrid3D();
+		final float[] orig = g.getOriginalVertexArray();
+		final float[] v = g.getVertexArray();
+
+		final double phase = Math.PI*time*waves*2;
+		final float amp = amplitude * amplitudeRate;
+
+		for( int idx = 0; idx < v.length; idx += 3 ) {
+			float x = orig[idx];
+			float y = orig[idx+1];
+			v[idx] = x;
+			v[idx+1] = y;
+			v[idx+2] = orig[idx+2] + (float)(Math.sin(phase + (y+x) * .01f) * amp);
 		}
 	}
 }
@@ -1,8 +1,6 @@
 package org.cocos2d.actions.instant;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-
+import org.cocos2d.actions.CCBindings;
 import org.cocos2d.nodes.CCNode;
 
 //
@@ -11,13 +9,14 @@ import org.cocos2d.nodes.CCNode;
 
 /**
  * Calls a 'callback'
+ * The selector is resolved once by CCBindings, copies share the binding.
  */
 public class CCCallFunc extends CCInstantAction {
     protected Object targetCallback;
     protected String selector;
     protected Class<?> partypes[];
 
-    protected Method invocation;
+    protected CCBindings.MethodBinding invocation;
 
     /** creates the action with the callback */
     public static CCCallFunc action(Object target, String selector) {
@@ -28,32 +27,21 @@ public class CCCallFunc extends CCInstantAction {
      * creates an action with a callback
      */
     protected CCCallFunc(Object t, String s, Class<?>[] p) {
+        this(t, s, p, CCBindings.methodBinding(t.getClass(), s, p));
+    }
+
+    /**
+     * creates an action with already resolved callback
+     */
+    protected CCCallFunc(Object t, String s, Class<?>[] p, CCBindings.MethodBinding b) {
         targetCallback = t;
         selector = s;
         partypes = p;
-
-        if (partypes == null)
-        {
-	        try {
-	            Class<?> cls = targetCallback.getClass();
-	            invocation = cls.getMethod(selector);
-	    	} catch (NoSuchMethodException e) {
-	    		e.printStackTrace();
-	    	}
-	    }
-        else
-        {
-        	try {
-                Class<?> cls = targetCallback.getClass();
-                invocation = cls.getMethod(selector, partypes);
-        	} catch (NoSuchMethodException e) {
-        		e.printStackTrace();
-        	}
-        }
+        invocation = b;
     }
 
     public CCCallFunc copy() {
-        return new CCCallFunc(targetCallback, selector, partypes);
+        return new CCCallFunc(targetCallback, selector, partypes, invocation);
     }
 
     @Override
@@ -66,17 +54,7 @@ public class CCCallFunc extends CCInstantAction {
      * executes the callback
      */
     public void execute() {
-        try {
-			invocation.invoke(targetCallback);
-		} catch (IllegalArgumentException e) {
-			e.printStackTrace();
-		} catch (IllegalAccessException e) {
-			e.printStackTrace();
-		} catch (InvocationTargetException e) {
-			if(e.getTargetException() instanceof RuntimeException)
-				throw (RuntimeException)e.getTargetException();
-			else
-				e.printStackTrace();
-		}
+        if (invocation != null)
+            invocation.invoke(targetCallback, null, null);
     }
 }
@@ -1,6 +1,6 @@
 package org.cocos2d.actions.instant;
 
-import java.lang.reflect.InvocationTargetException;
+import org.cocos2d.actions.CCBindings;
 
 /**
  * Calls a 'callback' with the node as the first argument
@@ -20,21 +20,20 @@ public class CCCallFuncN extends CCCallFunc {
         super(t, s, p);
     }
 
+    protected CCCallFuncN(Object t, String s, Class<?>[] p, CCBindings.MethodBinding b) {
+        super(t, s, p, b);
+    }
+
+    @Override
+    public CCCallFuncN copy() {
+        return new CCCallFuncN(targetCallback, selector, partypes, invocation);
+    }
+
     /**
      * executes the callback
      */
     public void execute() {
-        try {
-			invocation.invoke(targetCallback, new Object[]{target});
-		} catch (IllegalArgumentException e) {
-			e.printStackTrace();
-		} catch (IllegalAccessException e) {
-			e.printStackTrace();
-		} catch (InvocationTargetException e) {
-			if(e.getTargetException() instanceof RuntimeException)
-				throw (RuntimeException)e.getTargetException();
-			else
-				e.printStackTrace();
-		}
+        if (invocation != null)
+            invocation.invoke(targetCallback, target, null);
     }
 }
@@ -1,6 +1,6 @@
 package org.cocos2d.actions.instant;
 
-import java.lang.reflect.InvocationTargetException;
+import org.cocos2d.actions.CCBindings;
 
 
 /**
@@ -25,21 +25,21 @@ public class CCCallFuncND extends CCCallFuncN {
 		data = d;
 	}
 
+	protected CCCallFuncND(Object t, String s, Object d, Class<?>[] p, CCBindings.MethodBinding b) {
+		super(t, s, p, b);
+		data = d;
+	}
+
+	@Override
+	public CCCallFuncND copy() {
+		return new CCCallFuncND(targetCallback, selector, data, partypes, invocation);
+	}
+
 	/**
 	 * executes the callback
 	 */
 	public void execute() {
-		try {
-			invocation.invoke(targetCallback, new Object[]{target, data});
-		} catch (IllegalArgumentException e) {
-			e.printStackTrace();
-		} catch (IllegalAccessException e) {
-			e.printStackTrace();
-		} catch (InvocationTargetException e) {
-			if(e.getTargetException() instanceof RuntimeException)
-				throw (RuntimeException)e.getTargetException();
-			else
-				e.printStackTrace();
-		}
+		if (invocation != null)
+			invocation.invoke(targetCallback, target, data);
 	}
 }
@@ -1,8 +1,6 @@
 package org.cocos2d.actions.interval;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-
+import org.cocos2d.actions.CCBindings;
 import org.cocos2d.nodes.CCNode;
 
 
@@ -22,11 +20,14 @@ import org.cocos2d.nodes.CCNode;
 	id scaleB = [CCPropertyAction actionWithDuration:2 key:@"scale" from:1 to:3];
 
  
+ The key is resolved once per class of the target by CCBindings.
+
  @since v0.99.2
  */
 public class CCPropertyAction extends CCIntervalAction {
 
-    Method          setMethod_;   // setScale, like this
+    CCBindings.FloatBinding setter_;   // setScale, like this
+    Class<?>        setterClass_;
     String          key_;
     float			from_, to_;
     float			delta_;
@@ -41,9 +42,8 @@ public class CCPropertyAction extends CCIntervalAction {
         super(aDuration);
         key_    = key;
 
-        setMethod_ = null;
-		
-		
+        setter_ = null;
+
         to_		= to;
         from_	= from;
     }
@@ -57,29 +57,17 @@ public class CCPropertyAction extends CCIntervalAction {
     public void start(CCNode aTarget) {
         super.start(aTarget);
         delta_ = to_ - from_;
+
+        if (setterClass_ != aTarget.getClass()) {
+        	setterClass_ = aTarget.getClass();
+        	setter_ = CCBindings.floatBinding(setterClass_, key_);
+        }
     }
 
     @Override
     public void update(float dt) {
-        try {
-        	if (setMethod_ == null) {        		
-        		setMethod_    = target.getClass().getMethod(key_, new Class[] {Float.TYPE});        		
-        	}
-        	setMethod_.invoke(target, new Object[] {
-        			to_  - delta_ * (1 - dt)
-        	});
-    	} catch (NoSuchMethodException e) {
-    		e.printStackTrace();
-    	} catch (IllegalArgumentException e) {
-			e.printStackTrace();
-		} catch (IllegalAccessException e) {
-			e.printStackTrace();
-		} catch (InvocationTargetException e) {
-			if(e.getTargetException() instanceof RuntimeException)
-				throw (RuntimeException)e.getTargetException();
-			else
-				e.printStackTrace();
-		}
+    	if (setter_ != null)
+    		setter_.set(target, to_  - delta_ * (1 - dt));
     }
 
     @Override
@@ -8,10 +8,17 @@ import org.cocos2d.nodes.CCNode;
 //
 
 /** Runs actions sequentially, one after another
+ *
+ * All actions are kept in one array with end times of actions. Active action is
+ * found from the previous one when time goes forward, otherwise by binary search.
+ * Actions skipped by a big step are started, updated to 1 and stopped in order,
+ * like in a chain of two-action sequences. When time goes back, e.g. in
+ * CCReverseTime or an elastic ease, they are updated to 0 in reverse order.
  */
 public class CCSequence extends CCIntervalAction {
     private CCFiniteTimeAction[] actions;
-    private float split;
+    // ends[i] is the time in seconds when actions[i] finishes
+    private float[] ends;
     private int last;
 
     /** helper contructor to create an array of sequenceable actions */
@@ -19,11 +26,10 @@ public class CCSequence extends CCIntervalAction {
         if(actions.length == 0) {
         	return new CCSequence(action1, CCFiniteTimeAction.action(0));
         } else {
-	    	CCFiniteTimeAction prev = action1;
-	        for (CCFiniteTimeAction now : actions) {
-	            prev = new CCSequence(prev, now);
-	        }
-	        return (CCSequence) prev;
+            CCFiniteTimeAction[] all = new CCFiniteTimeAction[actions.length + 1];
+            all[0] = action1;
+            System.arraycopy(actions, 0, all, 1, actions.length);
+            return new CCSequence(all);
         }
     }
     
@@ -32,62 +38,86 @@ public class CCSequence extends CCIntervalAction {
         //assert one != null : "Sequence: argument one must be non-null";
         //assert two != null : "Sequence: argument two must be non-null";
 
-        super(one.getDuration() + two.getDuration());
+        this(new CCFiniteTimeAction[] { one, two });
+    }
+
+    /** initializes the action with the array of actions, array is not copied */
+    protected CCSequence(CCFiniteTimeAction[] list) {
+        super(totalDuration(list));
+
+        actions = list;
+        ends = new float[list.length];
+
+        float end = 0;
+        for (int i = 0; i < list.length; ++i) {
+            end += list[i].getDuration();
+            ends[i] = end;
+        }
+    }
 
-        actions = new CCFiniteTimeAction[2];
-        actions[0] = one;
-        actions[1] = two;
+    private static float totalDuration(CCFiniteTimeAction[] list) {
+        assert list.length > 0 : "Sequence: at least one action is expected";
+
+        float d = 0;
+        for (int i = 0; i < list.length; ++i)
+            d += list[i].getDuration();
+        return d;
     }
 
     @Override
     public CCSequence copy() {
-        return new CCSequence(actions[0].copy(), actions[1].copy());
+        CCFiniteTimeAction[] list = new CCFiniteTimeAction[actions.length];
+        for (int i = 0; i < list.length; ++i)
+            list[i] = actions[i].copy();
+        return new CCSequence(list);
     }
 
     @Override
     public void start(CCNode aTarget) {
         super.start(aTarget);
-        split = actions[0].getDuration() / duration;
         last = -1;
     }
 
     public void stop() {
-    	actions[0].stop();
-        actions[1].stop();
-        
+        if (last != -1)
+            actions[last].stop();
+
         super.stop();
     }
 
-
     @Override
     public void update(float t) {
-        int found = 0;
-        float new_t = 0.f;
+        // in seconds, so rounding of split ratios doesn't move the boundaries
+        float time = t * ends[ends.length - 1];
+        int found = find(time);
 
-        if (t >= split) {
-            found = 1;
-            if (split == 1)
-                new_t = 1;
-            else
-                new_t = (t - split) / (1 - split);
-        } else {
-            found = 0;
-            if (split != 0)
-                new_t = t / split;
-            else
-                new_t = 1;
-        }
-
-        if (last == -1 && found == 1) {
-            actions[0].start(target);
-            actions[0].update(1.0f);
-            actions[0].stop();
-        }
+        float begin = found == 0 ? 0 : ends[found - 1];
+        float d = ends[found] - begin;
+        float new_t = d != 0 ? Math.min(1, (time - begin) / d) : 1;
 
         if (last != found) {
-            if (last != -1) {
-                actions[last].update(1.0f);
-                actions[last].stop();
+            final int from = last;
+            if (from > found) {
+                // time went back, actions after the found one are rewound
+                actions[from].update(0);
+                actions[from].stop();
+                for (int i = from - 1; i > found; --i) {
+                    actions[i].start(target);
+                    actions[i].update(0);
+                    actions[i].stop();
+                }
+            } else {
+                if (from != -1) {
+                    actions[from].update(1.0f);
+                    actions[from].stop();
+                }
+
+                // actions between the previous and the found one are run instantly
+                for (int i = from + 1; i < found; ++i) {
+                    actions[i].start(target);
+                    actions[i].update(1.0f);
+                    actions[i].stop();
+                }
             }
             actions[found].start(target);
         }
@@ -95,8 +125,35 @@ public class CCSequence extends CCIntervalAction {
         last = found;
     }
 
+    /** returns index of the first action which ends after time, or the last one */
+    private int find(float time) {
+        final float[] e = ends;
+        final int n = e.length;
+
+        // cursor, time usually goes forward by less than one action
+        if (last != -1 && (last == 0 || time >= e[last - 1])) {
+            int i = last;
+            while (i < n - 1 && time >= e[i])
+                ++i;
+            return i;
+        }
+
+        int lo = 0, hi = n - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (time < e[mid])
+                hi = mid;
+            else
+                lo = mid + 1;
+        }
+        return lo;
+    }
+
     @Override
     public CCSequence reverse() {
-        return new CCSequence(actions[1].reverse(), actions[0].reverse());
+        CCFiniteTimeAction[] list = new CCFiniteTimeAction[actions.length];
+        for (int i = 0; i < list.length; ++i)
+            list[i] = actions[actions.length - 1 - i].reverse();
+        return new CCSequence(list);
     }
 }
@@ -4,24 +4,27 @@ import org.cocos2d.actions.base.CCFiniteTimeAction;
 import org.cocos2d.nodes.CCNode;
 
 /** Spawn a new action immediately
+ *
+ * All actions are kept in one array and run with the same time in seconds.
+ * Actions shorter than the spawn are updated to 1 and stopped when they end,
+ * as if they were followed by a delay. They are started again if time
+ * goes back before their end.
  */
 //
 // Spawn
 //
 public class CCSpawn extends CCIntervalAction {
 
-    private CCFiniteTimeAction one;
-    private CCFiniteTimeAction two;
+    private CCFiniteTimeAction[] actions;
+    // actions which ended before the spawn
+    private boolean[] finished;
 
     /** helper constructor to create an array of spawned actions */
     public static CCSpawn actions(CCFiniteTimeAction action1, CCFiniteTimeAction... params) {
-        CCFiniteTimeAction prev = action1;
-
-        if (action1 != null) {
-            for (CCFiniteTimeAction now : params)
-                prev = new CCSpawn(prev, now);
-        }
-        return (CCSpawn) prev;
+        CCFiniteTimeAction[] all = new CCFiniteTimeAction[params.length + 1];
+        all[0] = action1;
+        System.arraycopy(params, 0, all, 1, params.length);
+        return new CCSpawn(all);
     }
     
     /** initializes the Spawn action with the 2 actions to spawn */
@@ -29,48 +32,92 @@ public class CCSpawn extends CCIntervalAction {
         // assert one != null : "Spawn: argument one must be non-null";
         // assert two != null : "Spawn: argument two must be non-null";
 
-        super(Math.max(one_.getDuration(), two_.getDuration()));
+        this(new CCFiniteTimeAction[] { one_, two_ });
+    }
+
+    /** initializes the Spawn action with the array of actions, array is not copied */
+    protected CCSpawn(CCFiniteTimeAction[] list) {
+        super(maxDuration(list));
 
-        float d1 = one_.getDuration();
-        float d2 = two_.getDuration();
+        actions = list;
+        finished = new boolean[list.length];
+    }
 
-        one = one_;
-        two = two_;
+    private static float maxDuration(CCFiniteTimeAction[] list) {
+        assert list.length > 0 : "Spawn: at least one action is expected";
 
-        if (d1 > d2)
-            two = new CCSequence(two_, new CCDelayTime(d1 - d2));
-        else if (d1 < d2)
-            one = new CCSequence(one_, new CCDelayTime(d2 - d1));
+        float d = 0;
+        for (int i = 0; i < list.length; ++i)
+            d = Math.max(d, list[i].getDuration());
+        return d;
     }
 
     @Override
     public CCIntervalAction copy() {
-        return new CCSpawn(one.copy(), two.copy());
+        CCFiniteTimeAction[] list = new CCFiniteTimeAction[actions.length];
+        for (int i = 0; i < list.length; ++i)
+            list[i] = actions[i].copy();
+        return new CCSpawn(list);
     }
 
 
     @Override
     public void start(CCNode aTarget) {
         super.start(aTarget);
-        one.start(target);
-        two.start(target);
+        for (int i = 0; i < actions.length; ++i) {
+            finished[i] = false;
+            actions[i].start(target);
+        }
     }
 
     @Override
     public void stop() {
-        one.stop();
-        two.stop();
+        for (int i = 0; i < actions.length; ++i) {
+            if (!finished[i])
+                actions[i].stop();
+        }
         super.stop();
     }
 
     @Override
     public void update(float t) {
-        one.update(t);
-        two.update(t);
+        float time = t * duration;
+        for (int i = 0; i < actions.length; ++i) {
+            CCFiniteTimeAction action = actions[i];
+            float d = action.getDuration();
+            if (finished[i]) {
+                if (time >= d)
+                    continue;
+
+                // time went back, e.g. CCReverseTime or elastic and back eases
+                action.start(target);
+                finished[i] = false;
+            }
+
+            if (d >= duration) {
+                action.update(t);
+            } else if (time >= d) {
+                action.update(1.0f);
+                action.stop();
+                finished[i] = true;
+            } else {
+                action.update(time / d);
+            }
+        }
     }
 
     @Override
     public CCIntervalAction reverse() {
-        return new CCSpawn(one.reverse(), two.reverse());
+        // shorter actions end together with the spawn after reverse
+        CCFiniteTimeAction[] list = new CCFiniteTimeAction[actions.length];
+        for (int i = 0; i < list.length; ++i) {
+            CCFiniteTimeAction action = actions[i];
+            float d = action.getDuration();
+            if (d < duration)
+                list[i] = CCSequence.actions(new CCDelayTime(duration - d), action.reverse());
+            else
+                list[i] = action.reverse();
+        }
+        return new CCSpawn(list);
     }
 }
@@ -1,7 +1,7 @@
 package org.cocos2d.actions.tile;
 
+import org.cocos2d.grid.CCTiledGrid3D;
 import org.cocos2d.types.ccGridSize;
-import org.cocos2d.types.ccQuad3;
 
 /** CCShakyTiles3D action */
 public class CCShakyTiles3D extends CCTiledGrid3DAction {
@@ -28,33 +28,18 @@ public class CCShakyTiles3D extends CCTiledGrid3DAction {
 
     @Override
     public void update(float time) {
-        int i, j;
-
-        for( i = 0; i < gridSize.x; i++ ) {
-            for( j = 0; j < gridSize.y; j++ ) {
-                ccQuad3 coords = originalTile(ccGridSize.ccg(i,j));
-
-                // X
-                coords.bl_x += ( Math.random() * (randrange*2) ) - randrange;
-                coords.br_x += ( Math.random() * (randrange*2) ) - randrange;
-                coords.tl_x += ( Math.random() * (randrange*2) ) - randrange;
-                coords.tr_x += ( Math.random() * (randrange*2) ) - randrange;
-
-                // Y
-                coords.bl_y += ( Math.random() * (randrange*2) ) - randrange;
-                coords.br_y += ( Math.random() * (randrange*2) ) - randrange;
-                coords.tl_y += ( Math.random() * (randrange*2) ) - randrange;
-                coords.tr_y += ( Math.random() * (randrange*2) ) - randrange;
-
-                if( shakeZ ) {
-                    coords.bl_z += ( Math.random() * (randrange*2) ) - randrange;
-                    coords.br_z += ( Math.random() * (randrange*2) ) - randrange;
-                    coords.tl_z += ( Math.random() * (randrange*2) ) - randrange;
-                    coords.tr_z += ( Math.random() * (randrange*2) ) - randrange;
-                }
-
-                setTile(ccGridSize.ccg(i,j), coords);
-            }
+        CCTiledGrid3D g = getTiledGrid();
+        final float[] orig = g.getOriginalVertexArray();
+        final float[] v = g.getVertexArray();
+
+        // corners of each tile are shaken separately
+        for( int idx = 0; idx < v.length; idx += 3 ) {
+            v[idx] = orig[idx] + (float)(Math.random() * (randrange*2)) - randrange;
+            v[idx+1] = orig[idx+1] + (float)(Math.random() * (randrange*2)) - randrange;
+            if( shakeZ )
+                v[idx+2] = orig[idx+2] + (float)(Math.random() * (randrange*2)) - randrange;
+            else
+                v[idx+2] = orig[idx+2];
         }
     }
 }
@@ -2,10 +2,10 @@ package org.cocos2d.actions.tile;
 
 import java.util.Random;
 
+import org.cocos2d.grid.CCTiledGrid3D;
 import org.cocos2d.nodes.CCNode;
 import org.cocos2d.types.CGPoint;
 import org.cocos2d.types.ccGridSize;
-import org.cocos2d.types.ccQuad3;
 
 /** CCShuffleTiles action
   Shuffle the tiles in random order
@@ -57,22 +57,9 @@ public class CCShuffleTiles extends CCTiledGrid3DAction {
     }
 
     public void placeTile(ccGridSize pos, Tile t) {
-        ccQuad3	coords = originalTile(pos);
-
         CGPoint step = target.getGrid().getStep();
-        coords.bl_x += (int)(t.position.x * step.x);
-        coords.bl_y += (int)(t.position.y * step.y);
-
-        coords.br_x += (int)(t.position.x * step.x);
-        coords.br_y += (int)(t.position.y * step.y);
-
-        coords.tl_x += (int)(t.position.x * step.x);
-        coords.tl_y += (int)(t.position.y * step.y);
-
-        coords.tr_x += (int)(t.position.x * step.x);
-        coords.tr_y += (int)(t.position.y * step.y);
-
-        setTile(pos, coords);
+        getTiledGrid().moveTile(pos.x, pos.y,
+        		(int)(t.position.x * step.x), (int)(t.position.y * step.y), 0);
     }
 
     @Override
@@ -108,20 +95,20 @@ public class CCShuffleTiles extends CCTiledGrid3DAction {
 
     @Override
     public void update(float time) {
-        int i, j;
+        CCTiledGrid3D g = getTiledGrid();
+        CGPoint step = g.getStep();
 
         Tile tileArray[] = tiles;
         int idx = 0;
 
-        for( i = 0; i < gridSize.x; i++ ) {
-            for( j = 0; j < gridSize.y; j++ ) {
-                tileArray[idx].position = CGPoint.ccpMult(
-                            CGPoint.ccp(tileArray[idx].delta.x, tileArray[idx].delta.y), time);
-                placeTile(ccGridSize.ccg(i,j), tileArray[idx]);
+        for( int i = 0; i < gridSize.x; i++ ) {
+            for( int j = 0; j < gridSize.y; j++ ) {
+                Tile t = tileArray[idx];
+                t.position.set(t.delta.x * time, t.delta.y * time);
+                g.moveTile(i, j, (int)(t.position.x * step.x), (int)(t.position.y * step.y), 0);
                 idx ++;
             }
         }
     }
 }
 
-
@@ -1,10 +1,10 @@
 package org.cocos2d.actions.tile;
 
+import org.cocos2d.grid.CCTiledGrid3D;
 import org.cocos2d.nodes.CCDirector;
 import org.cocos2d.nodes.CCNode;
 import org.cocos2d.types.CGSize;
 import org.cocos2d.types.ccGridSize;
-import org.cocos2d.types.ccQuad3;
 
 ////////////////////////////////////////////////////////////
 
@@ -37,21 +37,15 @@ public class CCSplitCols extends CCTiledGrid3DAction {
 
     @Override
     public void update(float time) {
-        int i;
+        CCTiledGrid3D g = getTiledGrid();
 
-        for( i = 0; i < gridSize.x; i++ ) {
-            ccQuad3 coords = originalTile(ccGridSize.ccg(i,0));
+        for( int i = 0; i < gridSize.x; i++ ) {
             float	direction = 1;
 
             if ( (i % 2 ) == 0 )
                 direction = -1;
 
-            coords.bl_y += direction * winSize.height * time;
-            coords.br_y += direction * winSize.height * time;
-            coords.tl_y += direction * winSize.height * time;
-            coords.tr_y += direction * winSize.height * time;
-
-            setTile(ccGridSize.ccg(i,0), coords);
+            g.moveTile(i, 0, 0, direction * winSize.height * time, 0);
         }
     }
 
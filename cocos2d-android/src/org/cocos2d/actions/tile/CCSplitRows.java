@@ -1,10 +1,10 @@
 package org.cocos2d.actions.tile;
 
+import org.cocos2d.grid.CCTiledGrid3D;
 import org.cocos2d.nodes.CCDirector;
 import org.cocos2d.nodes.CCNode;
 import org.cocos2d.types.CGSize;
 import org.cocos2d.types.ccGridSize;
-import org.cocos2d.types.ccQuad3;
 
 ////////////////////////////////////////////////////////////
 
@@ -37,21 +37,15 @@ public class CCSplitRows extends CCTiledGrid3DAction {
 
     @Override
     public void update(float time) {
-        int j;
+        CCTiledGrid3D g = getTiledGrid();
 
-        for( j = 0; j < gridSize.y; j++ ) {
-            ccQuad3 coords = originalTile(ccGridSize.ccg(0,j));
+        for( int j = 0; j < gridSize.y; j++ ) {
             float	direction = 1;
 
             if ( (j % 2 ) == 0 )
                 direction = -1;
 
-            coords.bl_x += direction * winSize.width * time;
-            coords.br_x += direction * winSize.width * time;
-            coords.tl_x += direction * winSize.width * time;
-            coords.tr_x += direction * winSize.width * time;
-
-            setTile(ccGridSize.ccg(0,j), coords);
+            g.moveTile(0, j, direction * winSize.width * time, 0, 0);
         }
     }
 
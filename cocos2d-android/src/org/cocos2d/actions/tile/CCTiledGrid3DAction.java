@@ -22,6 +22,12 @@ public class CCTiledGrid3DAction extends CCGridAction {
 		return CCTiledGrid3D.make(gridSize);
 	}
 
+	/** returns the grid of the target, actions can change its
+	 * vertex arrays in place */
+	public CCTiledGrid3D getTiledGrid() {
+		return (CCTiledGrid3D)target.getGrid();
+	}
+
 	/** returns the tile that belongs to a certain position of the grid */
 	public ccQuad3 tile(ccGridSize pos) {
 		CCTiledGrid3D g = (CCTiledGrid3D)target.getGrid();
@@ -1,5 +1,6 @@
 package org.cocos2d.actions.tile;
 
+import org.cocos2d.grid.CCTiledGrid3D;
 import org.cocos2d.types.ccGridSize;
 import org.cocos2d.types.ccQuad3;
 
@@ -34,19 +35,20 @@ public class CCWavesTiles3D extends CCTiledGrid3DAction {
 
     @Override
     public void update(float time) {
-        int i, j;
-
-        for( i = 0; i < gridSize.x; i++ ) {
-            for( j = 0; j < gridSize.y; j++ ) {
-                ccQuad3 coords = originalTile(ccGridSize.ccg(i,j));
-
-                coords.bl_z = (float)(Math.sin(time*Math.PI*waves*2 + (coords.bl_y+coords.bl_x) * .01f)
-                                * amplitude * amplitudeRate );
-                coords.br_z	= coords.bl_z;
-                coords.tl_z = coords.bl_z;
-                coords.tr_z = coords.bl_z;
-
-                setTile(ccGridSize.ccg(i,j), coords);
+        CCTiledGrid3D g = getTiledGrid();
+        final float[] orig = g.getOriginalVertexArray();
+        final float[] v = g.getVertexArray();
+
+        final double phase = time*Math.PI*waves*2;
+        final float amp = amplitude * amplitudeRate;
+
+        // all corners of a tile get z of its bottom left corner
+        for( int idx = 0; idx < v.length; idx += ccQuad3.size ) {
+            float z = (float)(Math.sin(phase + (orig[idx+1]+orig[idx]) * .01f) * amp);
+            for( int k = 0; k < ccQuad3.size; k += 3 ) {
+                v[idx+k] = orig[idx+k];
+                v[idx+k+1] = orig[idx+k+1];
+                v[idx+k+2] = z;
             }
         }
     }
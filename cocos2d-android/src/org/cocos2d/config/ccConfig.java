@@ -95,6 +95,25 @@ public class ccConfig {
     */
     public static final boolean CC_NODE_TRANSFORM_USING_AFFINE_MATRIX  = true;
 
+    /** @def CC_NODE_SYNCHRONIZED_CHILDREN
+      If enabled, children of CCNode are kept in Collections.synchronizedList,
+      so children may be added and removed from other threads than the GL thread.
+      If the scene graph is only changed on the GL thread, disable it to avoid
+      locking on every access to the child list.
+
+      To disable set it to false. Enabled by default.
+      */
+    public static final boolean CC_NODE_SYNCHRONIZED_CHILDREN = true;
+
+    /** @def CC_USE_RUNTIME_ATLAS
+      If enabled, CCLabel and sprites made of Bitmaps are packed into pages of CCRuntimeAtlas
+      instead of getting a texture each, so they can be batched. Their images are released
+      by cleanup() of the nodes, so nodes removed without cleanup keep them in the atlas.
+
+      To enable set it to true. Disabled by default.
+      */
+    public static final boolean CC_USE_RUNTIME_ATLAS = false;
+
     /** @def CC_TEXTURE_ATLAS_USE_TRIANGLE_STRIP
       Use GL_TRIANGLE_STRIP instead of GL_TRIANGLES when rendering the texture atlas.
       It seems it is the recommend way, but it is much slower, so, enable it at your own risk
@@ -124,6 +143,26 @@ public class ccConfig {
       */
     public static final int CC_SPRITE_DEBUG_DRAW =  0;
 
+    /** @def CC_SPRITE_AUTO_BATCHING
+      If enabled, CCSprite nodes which are not rendered by CCSpriteSheet are collected
+      in a frame batch and drawn together while they share texture and blend function.
+      It can be changed at runtime with CCBatchRenderer.sharedRenderer().setEnabled().
+
+      To enable set it to true. Disabled by default.
+      */
+    public static final boolean CC_SPRITE_AUTO_BATCHING = false;
+
+    /** @def CC_PARTICLE_PARALLEL_UPDATE
+      If enabled, CCArrayParticleSystem nodes are stepped on worker threads of
+      CCParticleUpdateExecutor while the GL thread draws the previous step.
+      It can be changed per system with setParallelUpdate().
+      CCQuadParticleSystem and CCPointParticleSystem are not affected, they
+      are always updated on the thread which ticks the scheduler.
+
+      To enable set it to true. Disabled by default.
+      */
+    public static final boolean CC_PARTICLE_PARALLEL_UPDATE = false;
+
     /** @def CC_SPRITESHEET_DEBUG_DRAW
       If enabled, all subclasses of CCSprite that are rendered using an CCSpriteSheet draw a bounding box.
       Useful for debugging purposes only. It is recommened to leave it disabled.
@@ -1,5 +1,7 @@
 package org.cocos2d.config;
 
+import java.util.Random;
+
 import javax.microedition.khronos.opengles.GL10;
 
 import org.cocos2d.nodes.CCDirector;
@@ -55,18 +57,28 @@ public class ccMacros {
     /// java doesn't support swap primitive types.
     /// public static void CC_SWAP(T x, T y);
 
+    // generator of CCRANDOM_*, seeded for deterministic runs
+    private static final Random random_ = new Random();
+
+    /** @def CCRANDOM_SEED
+      seeds the generator of CCRANDOM_MINUS1_1 and CCRANDOM_0_1
+    */
+    public static final void CCRANDOM_SEED(long seed) {
+        random_.setSeed(seed);
+    }
+
     /** @def CCRANDOM_MINUS1_1
       returns a random float between -1 and 1
     */
     public static final float CCRANDOM_MINUS1_1() {
-        return (float) Math.random() * 2.0f - 1.0f;
+        return random_.nextFloat() * 2.0f - 1.0f;
     }
 
     /** @def CCRANDOM_0_1
       returns a random float between 0 and 1
     */
     public static final float CCRANDOM_0_1() {
-        return (float) Math.random();
+        return random_.nextFloat();
     }
 
     /** @def M_PI_2
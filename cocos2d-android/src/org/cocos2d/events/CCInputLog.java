@@ -0,0 +1,253 @@
+package org.cocos2d.events;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+/**
+ * Touch and key events of a deterministic run, each stamped with the
+ * scheduler step before which it was dispatched.
+ *
+ * Filled by CCTouchDispatcher and CCKeyDispatcher while recording, see
+ * CCDirector.startInputRecording(), and played back by CCInputReplay.
+ * Besides events the log keeps random seed, step delta and count of
+ * recorded steps, which is all a replay needs except the initial scene.
+ *
+ * write() and read() use a compact binary format.
+ * This class doesn't depend on android.
+ */
+public class CCInputLog {
+	public static final int kTypeTouch = 0;
+	public static final int kTypeKey = 1;
+
+	private static final int kMagic = 0x4343494C; // "CCIL"
+	private static final int kVersion = 1;
+
+	/** One recorded event */
+	public static final class Entry {
+		int type;
+		long step;
+
+		// touch, coordinates and coalesced history
+		final CCTouchQueue.Record touch = new CCTouchQueue.Record();
+
+		// key
+		final CCKeyRecord key = new CCKeyRecord();
+
+		/** one of kType* constants */
+		public int getType() {
+			return type;
+		}
+
+		/** count of scheduler steps done before the event, counted from the start of recording */
+		public long getStep() {
+			return step;
+		}
+
+		/** touch record, payload is always null */
+		public CCTouchQueue.Record getTouch() {
+			return touch;
+		}
+
+		/** key record, payload is always null */
+		public CCKeyRecord getKey() {
+			return key;
+		}
+
+		public long getEventTime() {
+			return type == kTypeTouch ? touch.eventTime : key.eventTime;
+		}
+	}
+
+	private final long seed_;
+	private final float stepDelta_;
+	private final long startTick_;
+	private long stepCount_;
+	private boolean finished_;
+
+	private final ArrayList<Entry> entries = new ArrayList<Entry>();
+
+	/**
+	 * @param seed seed given to random generators at start
+	 * @param stepDelta duration of one scheduler step
+	 * @param startTick CCScheduler.getTickCount() at start, steps are counted from it
+	 */
+	public CCInputLog(long seed, float stepDelta, long startTick) {
+		seed_ = seed;
+		stepDelta_ = stepDelta;
+		startTick_ = startTick;
+	}
+
+	public long getSeed() {
+		return seed_;
+	}
+
+	public float getStepDelta() {
+		return stepDelta_;
+	}
+
+	/** count of recorded steps, valid after finish() */
+	public synchronized long getStepCount() {
+		return stepCount_;
+	}
+
+	public synchronized boolean isFinished() {
+		return finished_;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/** entries are in order of dispatch */
+	public synchronized Entry get(int index) {
+		return entries.get(index);
+	}
+
+	/** copies the touch, its payload is not kept */
+	public synchronized void addTouch(long tick, CCTouchQueue.Record touch) {
+		if (finished_)
+			return;
+
+		Entry e = add(kTypeTouch, tick);
+		e.touch.set(touch);
+		e.touch.payload = null;
+	}
+
+	/** copies the key, its payload is not kept */
+	public synchronized void addKey(long tick, CCKeyRecord key) {
+		if (finished_)
+			return;
+
+		Entry e = add(kTypeKey, tick);
+		e.key.set(key);
+		e.key.payload = null;
+	}
+
+	/** ends recording, events added later are ignored */
+	public synchronized void finish(long tick) {
+		if (finished_)
+			return;
+		finished_ = true;
+		stepCount_ = tick - startTick_;
+	}
+
+	private Entry add(int type, long tick) {
+		Entry e = new Entry();
+		e.type = type;
+		e.step = tick - startTick_;
+		entries.add(e);
+		return e;
+	}
+
+	/** writes the finished log, the stream is not closed */
+	public synchronized void write(OutputStream os) throws IOException {
+		assert finished_ : "CCInputLog: write() before finish()";
+
+		DataOutputStream out = new DataOutputStream(os);
+		out.writeInt(kMagic);
+		out.writeInt(kVersion);
+		out.writeLong(seed_);
+		out.writeFloat(stepDelta_);
+		out.writeLong(stepCount_);
+		out.writeInt(entries.size());
+
+		for (int i = 0; i < entries.size(); ++i) {
+			Entry e = entries.get(i);
+			out.writeByte(e.type);
+			out.writeLong(e.step);
+			if (e.type == kTypeTouch) {
+				CCTouchQueue.Record r = e.touch;
+				out.writeByte(r.action);
+				out.writeByte(r.actionIndex);
+				out.writeLong(r.eventTime);
+				out.writeByte(r.pointerCount);
+				for (int p = 0; p < r.pointerCount; ++p) {
+					out.writeInt(r.ids[p]);
+					out.writeFloat(r.xs[p]);
+					out.writeFloat(r.ys[p]);
+				}
+				out.writeByte(r.historySize);
+				for (int h = 0; h < r.historySize; ++h) {
+					out.writeLong(r.historyTime[h]);
+					for (int p = 0; p < r.pointerCount; ++p) {
+						out.writeFloat(r.historyX[h * CCTouchQueue.kMaxPointers + p]);
+						out.writeFloat(r.historyY[h * CCTouchQueue.kMaxPointers + p]);
+					}
+				}
+			} else {
+				CCKeyRecord k = e.key;
+				out.writeByte(k.action);
+				out.writeInt(k.keyCode);
+				out.writeInt(k.repeatCount);
+				out.writeInt(k.metaState);
+				out.writeLong(k.downTime);
+				out.writeLong(k.eventTime);
+			}
+		}
+		out.flush();
+	}
+
+	/** reads a log written by write(), the stream is not closed */
+	public static CCInputLog read(InputStream is) throws IOException {
+		DataInputStream in = new DataInputStream(is);
+		if (in.readInt() != kMagic)
+			throw new IOException("CCInputLog: not an input log");
+		final int version = in.readInt();
+		if (version != kVersion)
+			throw new IOException("CCInputLog: unsupported version " + version);
+
+		CCInputLog log = new CCInputLog(in.readLong(), in.readFloat(), 0);
+		final long stepCount = in.readLong();
+		final int count = in.readInt();
+
+		for (int i = 0; i < count; ++i) {
+			final int type = in.readByte();
+			final long step = in.readLong();
+			if (type == kTypeTouch) {
+				Entry e = log.add(kTypeTouch, step);
+				CCTouchQueue.Record r = e.touch;
+				r.action = in.readByte();
+				r.actionIndex = in.readByte();
+				r.eventTime = in.readLong();
+				r.pointerCount = checkRange(in.readByte(), CCTouchQueue.kMaxPointers);
+				for (int p = 0; p < r.pointerCount; ++p) {
+					r.ids[p] = in.readInt();
+					r.xs[p] = in.readFloat();
+					r.ys[p] = in.readFloat();
+				}
+				r.historySize = checkRange(in.readByte(), CCTouchQueue.kMaxHistory);
+				for (int h = 0; h < r.historySize; ++h) {
+					r.historyTime[h] = in.readLong();
+					for (int p = 0; p < r.pointerCount; ++p) {
+						r.historyX[h * CCTouchQueue.kMaxPointers + p] = in.readFloat();
+						r.historyY[h * CCTouchQueue.kMaxPointers + p] = in.readFloat();
+					}
+				}
+			} else if (type == kTypeKey) {
+				Entry e = log.add(kTypeKey, step);
+				CCKeyRecord k = e.key;
+				k.action = in.readByte();
+				k.keyCode = in.readInt();
+				k.repeatCount = in.readInt();
+				k.metaState = in.readInt();
+				k.downTime = in.readLong();
+				k.eventTime = in.readLong();
+			} else {
+				throw new IOException("CCInputLog: unknown event type " + type);
+			}
+		}
+
+		log.finish(stepCount);
+		return log;
+	}
+
+	private static int checkRange(int value, int max) throws IOException {
+		if (value < 0 || value > max)
+			throw new IOException("CCInputLog: invalid count " + value);
+		return value;
+	}
+}
@@ -0,0 +1,118 @@
+package org.cocos2d.events;
+
+import org.cocos2d.actions.CCScheduler;
+import org.cocos2d.config.ccMacros;
+import org.cocos2d.particlesystem.CCArrayParticleSystem;
+
+/**
+ * Plays a CCInputLog back as fast as possible.
+ *
+ * Each step() queues the events recorded before the step to the touch and
+ * key dispatchers, dispatches them with their update() as a frame does,
+ * and ticks CCScheduler once with the recorded step delta. Events are plain
+ * records, so no android classes are needed unless a delegate takes
+ * MotionEvent or KeyEvent. Nothing is drawn unless the caller draws between
+ * steps, e.g. with HeadlessDirector.replayFrame() of the benchmarks, so long
+ * sessions can be fast-forwarded or run headless for reproducible
+ * performance measurements.
+ *
+ * Usage:
+ *
+ *	CCInputReplay replay = new CCInputReplay(log);
+ *	replay.begin();                 // seeds random generators
+ *	... build the same scene as when recording started ...
+ *	replay.run(Long.MAX_VALUE);
+ *
+ * The director must not tick the scheduler meanwhile, pause it or run
+ * the replay without a surface.
+ */
+public class CCInputReplay {
+	private final CCInputLog log_;
+	private int next_;
+	private long step_;
+
+	public CCInputReplay(CCInputLog log) {
+		assert log.isFinished() : "CCInputReplay: log is still recording";
+		log_ = log;
+	}
+
+	/** seeds CCRANDOM_* and the streams of new CCArrayParticleSystem */
+	public static void seedRandom(long seed) {
+		ccMacros.CCRANDOM_SEED(seed);
+		CCArrayParticleSystem.setNextRandomSeed(seed);
+	}
+
+	public CCInputLog getLog() {
+		return log_;
+	}
+
+	/** rewinds to the first step and seeds random generators with the seed of the log */
+	public void begin() {
+		next_ = 0;
+		step_ = 0;
+		seedRandom(log_.getSeed());
+	}
+
+	/** count of steps done since begin() */
+	public long getStep() {
+		return step_;
+	}
+
+	public boolean isFinished() {
+		return step_ >= log_.getStepCount() && next_ >= log_.size();
+	}
+
+	/** Dispatches events of the current step and ticks the scheduler.
+	 * @return false if all steps were done, events recorded after the last step are dispatched
+	 */
+	public boolean step() {
+		dispatchEvents(step_);
+		if (step_ >= log_.getStepCount())
+			return false;
+
+		CCScheduler.sharedScheduler().tick(log_.getStepDelta());
+		step_++;
+		return true;
+	}
+
+	/** does up to maxSteps steps, returns count of done steps */
+	public long run(long maxSteps) {
+		long done = 0;
+		while (done < maxSteps && step())
+			done++;
+		return done;
+	}
+
+	/** queues events of the step, a run of one type is dispatched before the next type is queued */
+	private void dispatchEvents(long step) {
+		final int count = log_.size();
+		int queued = -1;
+		while (next_ < count) {
+			CCInputLog.Entry e = log_.get(next_);
+			if (e.getStep() > step)
+				break;
+			next_++;
+
+			if (e.getType() != queued) {
+				flush(queued);
+				queued = e.getType();
+			}
+
+			if (e.getType() == CCInputLog.kTypeTouch) {
+				CCTouchDispatcher.sharedDispatcher().getTouchQueue().push(e.getTouch());
+			} else {
+				CCKeyRecord key = new CCKeyRecord();
+				key.set(e.getKey());
+				CCKeyDispatcher.sharedDispatcher().queueKey(key);
+			}
+		}
+		flush(queued);
+	}
+
+	private static void flush(int type) {
+		if (type == CCInputLog.kTypeTouch)
+			CCTouchDispatcher.sharedDispatcher().update();
+		else if (type == CCInputLog.kTypeKey)
+			CCKeyDispatcher.sharedDispatcher().update();
+	}
+}
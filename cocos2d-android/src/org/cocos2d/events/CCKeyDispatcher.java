@@ -2,7 +2,10 @@ package org.cocos2d.events;
 
 import java.util.ArrayList;
 
+import org.cocos2d.actions.CCScheduler;
+import org.cocos2d.nodes.CCRedrawTracker;
 import org.cocos2d.protocols.CCKeyDelegateProtocol;
+import org.cocos2d.protocols.CCKeyRecordDelegateProtocol;
 import org.cocos2d.utils.collections.ConcNodeCachingLinkedQueue;
 
 import android.view.KeyEvent;
@@ -41,10 +44,11 @@ public class CCKeyDispatcher {
 				CCKeyHandler h = keyHandlers.get(ind);
 				if(h.getPriority() < handler.getPriority())
 					i++;
-				if(h.getDelegate() == handler.getDelegate())
+				if(h.anyDelegate() == handler.anyDelegate())
 					return;
 			}
 			keyHandlers.add(i, handler);
+			updateNeedsKeyEvents();
 		}
 	}
 
@@ -52,68 +56,142 @@ public class CCKeyDispatcher {
 		addHandler(new CCKeyHandler(delegate, prio));
 	}
 
+	/** Adds a delegate which gets key records, no KeyEvent is made for it */
+	public void addDelegate(CCKeyRecordDelegateProtocol delegate, int prio) {
+		addHandler(new CCKeyHandler(delegate, prio));
+	}
+
 	public void removeDelegate(CCKeyDelegateProtocol delegate) {
+		removeAnyDelegate(delegate);
+	}
+
+	public void removeDelegate(CCKeyRecordDelegateProtocol delegate) {
+		removeAnyDelegate(delegate);
+	}
+
+	private void removeAnyDelegate(Object delegate) {
 		if (delegate == null)
 			return;
 		synchronized (keyHandlers) {
 			for (int ind = 0; ind < keyHandlers.size(); ind++) {
 				CCKeyHandler handler = keyHandlers.get(ind);
-				if (handler.getDelegate() == delegate) {
+				if (handler.anyDelegate() == delegate) {
 					keyHandlers.remove(handler);
 					break;
 				}
 			}
+			updateNeedsKeyEvents();
 		}
 	}
 
 	public void removeAllDelegates() {
-		keyHandlers.clear();
+		synchronized (keyHandlers) {
+			keyHandlers.clear();
+			updateNeedsKeyEvents();
+		}
+	}
+
+	/** whether any delegate takes KeyEvent, read on UI thread */
+	private volatile boolean needsKeyEvents_;
+
+	private void updateNeedsKeyEvents() {
+		boolean needs = false;
+		for (int ind = 0; ind < keyHandlers.size(); ind++) {
+			if (keyHandlers.get(ind).getDelegate() != null) {
+				needs = true;
+				break;
+			}
+		}
+		needsKeyEvents_ = needs;
 	}
 
-	private final ConcNodeCachingLinkedQueue<KeyEvent> eventQueue = new ConcNodeCachingLinkedQueue<KeyEvent>();
+	private final ConcNodeCachingLinkedQueue<CCKeyRecord> eventQueue = new ConcNodeCachingLinkedQueue<CCKeyRecord>();
 
 	public void queueMotionEvent(KeyEvent event) {
-		// copy event for queue
-		KeyEvent eventForQueue = new KeyEvent(event);
+		CCKeyRecord key = new CCKeyRecord(event.getAction(), event.getKeyCode(), event.getRepeatCount(),
+				event.getMetaState(), event.getDownTime(), event.getEventTime());
+		// copy event for delegates of KeyEvents, it has more than the record
+		if (needsKeyEvents_)
+			key.payload = new KeyEvent(event);
+		queueKey(key);
+	}
 
-		eventQueue.push(eventForQueue);
+	/** Queues a key for dispatch in the next frame, the record is kept by the queue */
+	public void queueKey(CCKeyRecord key) {
+		eventQueue.push(key);
+		// keys are dispatched in the next frame
+		CCRedrawTracker.setNeedsRedraw();
+	}
+
+	private volatile CCInputLog inputLog_;
+
+	/** while set, dispatched keys are added to the log, see CCDirector.startInputRecording() */
+	public void setInputLog(CCInputLog log) {
+		inputLog_ = log;
+	}
+
+	public CCInputLog getInputLog() {
+		return inputLog_;
 	}
 
 	public void update() {
-		KeyEvent event;
-		while ((event = eventQueue.poll()) != null) {
-			switch (event.getAction()) {
-			case KeyEvent.ACTION_DOWN:
-				onKeyDown(event);
-				break;
-			case KeyEvent.ACTION_UP:
-				onKeyUp(event);
-				break;
+		CCKeyRecord key;
+		while ((key = eventQueue.poll()) != null) {
+			if (dispatchEvents) {
+				final CCInputLog log = inputLog_;
+				if (log != null)
+					log.addKey(CCScheduler.sharedScheduler().getTickCount(), key);
+
+				dispatch(key);
 			}
+			keyEvent_ = null;
 		}
 	}
 
-	public void onKeyDown(KeyEvent event) {
-		if (dispatchEvents) {
-
-			synchronized (keyHandlers) {
-				for (int ind = 0; ind < keyHandlers.size(); ind++) {
-					CCKeyHandler handler = keyHandlers.get(ind);
-					if (handler.ccKeyDown(event.getKeyCode(), event) == kEventHandled)
-						break;
-				}
-			}
+	// KeyEvent of the dispatched key, made when the first delegate needs it
+	private KeyEvent keyEvent_;
+
+	/** Returns KeyEvent of the key being dispatched, the queued copy or one rebuilt from the record */
+	KeyEvent keyEventFor(CCKeyRecord key) {
+		if (keyEvent_ == null) {
+			if (key.payload != null)
+				keyEvent_ = (KeyEvent)key.payload;
+			else
+				keyEvent_ = new KeyEvent(key.getDownTime(), key.getEventTime(), key.getAction(),
+						key.getKeyCode(), key.getRepeatCount(), key.getMetaState());
 		}
+		return keyEvent_;
+	}
+
+	public void onKeyDown(KeyEvent event) {
+		dispatchEvent(event);
 	}
 
 	public void onKeyUp(KeyEvent event) {
+		dispatchEvent(event);
+	}
+
+	private void dispatchEvent(KeyEvent event) {
 		if (dispatchEvents) {
-			synchronized (keyHandlers) {
-				for (int ind = 0; ind < keyHandlers.size(); ind++) {
-					CCKeyHandler handler = keyHandlers.get(ind);
-					if (handler.ccKeyUp(event.getKeyCode(), event) == kEventHandled)
-						break;
-				}
+			CCKeyRecord key = new CCKeyRecord(event.getAction(), event.getKeyCode(), event.getRepeatCount(),
+					event.getMetaState(), event.getDownTime(), event.getEventTime());
+			key.payload = event;
+			dispatch(key);
+			keyEvent_ = null;
+		}
+	}
+
+	/** gives the key to handlers by priority until one handles it */
+	private void dispatch(CCKeyRecord key) {
+		final int action = key.getAction();
+		if (action != CCKeyRecord.ACTION_DOWN && action != CCKeyRecord.ACTION_UP)
+			return;
+
+		synchronized (keyHandlers) {
+			for (int ind = 0; ind < keyHandlers.size(); ind++) {
+				CCKeyHandler handler = keyHandlers.get(ind);
+				if (handler.key(key, this) == kEventHandled)
+					break;
 			}
 		}
 	}
@@ -1,11 +1,14 @@
 package org.cocos2d.events;
 
 import org.cocos2d.protocols.CCKeyDelegateProtocol;
+import org.cocos2d.protocols.CCKeyRecordDelegateProtocol;
 
 import android.view.KeyEvent;
 
 public class CCKeyHandler implements CCKeyDelegateProtocol {
 	private CCKeyDelegateProtocol delegate_;
+	/** delegate taking key records, used instead of delegate_ */
+	private CCKeyRecordDelegateProtocol recordDelegate_;
 	boolean enabledSelectors_;
     private int priority_;
 
@@ -14,6 +17,15 @@ public class CCKeyHandler implements CCKeyDelegateProtocol {
 		return delegate_;
 	}
 
+	public CCKeyRecordDelegateProtocol getRecordDelegate() {
+		return recordDelegate_;
+	}
+
+	/** the delegate of either type */
+	Object anyDelegate() {
+		return delegate_ != null ? delegate_ : recordDelegate_;
+	}
+
 	public void setSelectorFlag(boolean sf) {
 		enabledSelectors_ = sf;
 	}
@@ -41,6 +53,30 @@ public class CCKeyHandler implements CCKeyDelegateProtocol {
 		priority_ = priority;
 	}
 
+	/** initializes a KeyHandler with a delegate of key records and a priority */
+	public CCKeyHandler(CCKeyRecordDelegateProtocol delegate, int priority) {
+        assert delegate !=null : "Key delegate may not be nil";
+		recordDelegate_ = delegate;
+		enabledSelectors_ = false;
+		priority_ = priority;
+	}
+
+	/** Calls the delegate with the dispatched key.
+	 * KeyEvent is asked from the dispatcher only for CCKeyDelegateProtocol.
+	 */
+	boolean key(CCKeyRecord key, CCKeyDispatcher dispatcher) {
+		if (recordDelegate_ != null) {
+			if (key.getAction() == CCKeyRecord.ACTION_DOWN)
+				return recordDelegate_.ccKeyDown(key);
+			return recordDelegate_.ccKeyUp(key);
+		}
+
+		KeyEvent event = dispatcher.keyEventFor(key);
+		if (key.getAction() == CCKeyRecord.ACTION_DOWN)
+			return ccKeyDown(key.getKeyCode(), event);
+		return ccKeyUp(key.getKeyCode(), event);
+	}
+
 	@Override
 	public boolean ccKeyDown(int keyCode, KeyEvent event) {
 		// TODO Auto-generated method stub
@@ -0,0 +1,73 @@
+package org.cocos2d.events;
+
+/**
+ * One key event as plain data, dispatched by CCKeyDispatcher.
+ *
+ * Delegates of CCKeyRecordDelegateProtocol get records only, a KeyEvent
+ * is made at dispatch for CCKeyDelegateProtocol delegates. Recorded keys
+ * are kept in CCInputLog as records, so they can be replayed off-device.
+ * This class doesn't depend on android.
+ */
+public final class CCKeyRecord {
+	/** action codes, the same values as in KeyEvent */
+	public static final int ACTION_DOWN = 0;
+	public static final int ACTION_UP 	= 1;
+
+	int action;
+	int keyCode;
+	int repeatCount;
+	int metaState;
+	long downTime;
+	long eventTime;
+
+	/** KeyEvent given to delegates of KeyEvents, null if not needed */
+	Object payload;
+
+	public CCKeyRecord() {
+	}
+
+	public CCKeyRecord(int action, int keyCode, int repeatCount, int metaState,
+			long downTime, long eventTime) {
+		this.action = action;
+		this.keyCode = keyCode;
+		this.repeatCount = repeatCount;
+		this.metaState = metaState;
+		this.downTime = downTime;
+		this.eventTime = eventTime;
+	}
+
+	/** one of ACTION_* codes */
+	public int getAction() {
+		return action;
+	}
+
+	public int getKeyCode() {
+		return keyCode;
+	}
+
+	public int getRepeatCount() {
+		return repeatCount;
+	}
+
+	public int getMetaState() {
+		return metaState;
+	}
+
+	public long getDownTime() {
+		return downTime;
+	}
+
+	public long getEventTime() {
+		return eventTime;
+	}
+
+	void set(CCKeyRecord r) {
+		action = r.action;
+		keyCode = r.keyCode;
+		repeatCount = r.repeatCount;
+		metaState = r.metaState;
+		downTime = r.downTime;
+		eventTime = r.eventTime;
+		payload = r.payload;
+	}
+}
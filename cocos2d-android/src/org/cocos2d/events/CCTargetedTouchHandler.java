@@ -2,11 +2,19 @@ package org.cocos2d.events;
 
 import java.util.ArrayList;
 
+import org.cocos2d.nodes.CCNode;
 import org.cocos2d.protocols.CCTouchDelegateProtocol;
+import org.cocos2d.protocols.CCTouchRecordDelegateProtocol;
 
 public class CCTargetedTouchHandler extends CCTouchHandler {
 
 	boolean swallowsTouches;
+
+	/** node which bounds receive touches, null means whole screen */
+	CCNode hitArea;
+
+	/** position in the list of targeted handlers */
+	int order;
 	
 	private ArrayList<Integer> claimedSet;
 	
@@ -15,6 +23,12 @@ public class CCTargetedTouchHandler extends CCTouchHandler {
 		swallowsTouches = swallow;
 		claimedSet = new ArrayList<Integer>();
 	}
+
+	public CCTargetedTouchHandler(CCTouchRecordDelegateProtocol delegate, int priority, boolean swallow) {
+		super(delegate, priority);
+		swallowsTouches = swallow;
+		claimedSet = new ArrayList<Integer>();
+	}
 	
 	void addClaimed(int pid) {
 		if (!claimedSet.contains(pid)) {
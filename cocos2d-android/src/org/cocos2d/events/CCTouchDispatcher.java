@@ -4,11 +4,17 @@ import java.util.ArrayList;
 
 import javax.microedition.khronos.opengles.GL10;
 
+import org.cocos2d.actions.CCScheduler;
+import org.cocos2d.nodes.CCDirector;
+import org.cocos2d.nodes.CCHitTestIndex;
+import org.cocos2d.nodes.CCNode;
+import org.cocos2d.nodes.CCRedrawTracker;
 import org.cocos2d.opengl.GLResourceHelper;
 import org.cocos2d.protocols.CCMotionEventProtocol;
 import org.cocos2d.protocols.CCTouchDelegateProtocol;
+import org.cocos2d.protocols.CCTouchRecordDelegateProtocol;
+import org.cocos2d.types.CGPoint;
 import org.cocos2d.utils.Util5;
-import org.cocos2d.utils.collections.ConcNodeCachingLinkedQueue;
 
 import android.os.Build;
 import android.view.MotionEvent;
@@ -87,6 +93,13 @@ public class CCTouchDispatcher {
    
     private ArrayList<CCTargetedTouchHandler> targetedHandlers;
     private ArrayList<CCTouchHandler> touchHandlers;
+
+    /** bounds of targeted handlers added with hit area */
+    private CCHitTestIndex<CCTargetedTouchHandler> hitTestIndex;
+    /** targeted handlers without hit area, they get all touches */
+    private ArrayList<CCTargetedTouchHandler> unboundedHandlers;
+    private ArrayList<CCTargetedTouchHandler> candidates;
+    private CGPoint touchLocation;
     /** Whether or not the events are going to be dispatched. Default: YES */
     private boolean dispatchEvents;
     
@@ -110,6 +123,18 @@ public class CCTouchDispatcher {
         targetedHandlers = new ArrayList<CCTargetedTouchHandler>();
         touchHandlers = new ArrayList<CCTouchHandler>();
         motionListeners = new ArrayList<CCMotionEventProtocol>();
+
+        hitTestIndex = new CCHitTestIndex<CCTargetedTouchHandler>();
+        unboundedHandlers = new ArrayList<CCTargetedTouchHandler>();
+        candidates = new ArrayList<CCTargetedTouchHandler>();
+        touchLocation = CGPoint.zero();
+
+        touchQueue.setPayloadRecycler(new CCTouchQueue.PayloadRecycler() {
+			@Override
+			public void recycle(Object payload) {
+				((MotionEvent)payload).recycle();
+			}
+		});
     }
 
     //
@@ -136,10 +161,14 @@ public class CCTouchDispatcher {
 		            if( h.getPriority() < handler.getPriority() )
 		                i++;
 		
-		            if( h.getDelegate() == handler.getDelegate() )
+		            if( h.anyDelegate() == handler.anyDelegate() )
 		                throw new RuntimeException("Delegate already added to touch dispatcher.");
 		        }
 	            array.add(i, handler);
+
+	            if( array == targetedHandlers )
+	            	targetedHandlersChanged();
+	            updateNeedsMotionEvents();
 			}
 		});
     }
@@ -147,12 +176,52 @@ public class CCTouchDispatcher {
     public void addDelegate(CCTouchDelegateProtocol delegate, int prio) {
         addHandler(new CCTouchHandler(delegate, prio), touchHandlers);
     }
+
+    /** Adds a standard delegate which gets touch records, no MotionEvent is made for it */
+    public void addDelegate(CCTouchRecordDelegateProtocol delegate, int prio) {
+        addHandler(new CCTouchHandler(delegate, prio), touchHandlers);
+    }
+
+    /** Adds a targeted delegate which gets touch records, no MotionEvent is made for it */
+    public void addTargetedDelegate(CCTouchRecordDelegateProtocol delegate, int prio, boolean swallowsTouches) {
+    	addHandler(new CCTargetedTouchHandler(delegate, prio, swallowsTouches), targetedHandlers);
+    }
+
+    /** Adds a targeted delegate of touch records with hit area,
+     see addTargetedDelegate(CCTouchDelegateProtocol, int, boolean, CCNode).
+     */
+    public void addTargetedDelegate(CCTouchRecordDelegateProtocol delegate, int prio, boolean swallowsTouches, CCNode hitArea) {
+    	CCTargetedTouchHandler handler = new CCTargetedTouchHandler(delegate, prio, swallowsTouches);
+    	handler.hitArea = hitArea;
+    	addHandler(handler, targetedHandlers);
+    }
     
     public void addTargetedDelegate(CCTouchDelegateProtocol delegate, int prio, boolean swallowsTouches) {
     	addHandler(new CCTargetedTouchHandler(delegate, prio, swallowsTouches), targetedHandlers);
     }
+
+    /** Adds a targeted touch delegate which gets only touches began inside the hit area node.
+     Hit areas are kept in a spatial index, so began touches are dispatched
+     only to the handlers under the touch and to handlers without hit area,
+     priority order and swallowing are the same as for other targeted handlers.
+     Hit areas which are not running or are hidden, by themselves or by an ancestor, get no began touches.
+     Moved, ended and cancelled touches are dispatched to the handlers which claimed them.
+     */
+    public void addTargetedDelegate(CCTouchDelegateProtocol delegate, int prio, boolean swallowsTouches, CCNode hitArea) {
+    	CCTargetedTouchHandler handler = new CCTargetedTouchHandler(delegate, prio, swallowsTouches);
+    	handler.hitArea = hitArea;
+    	addHandler(handler, targetedHandlers);
+    }
     
-    public void removeDelegate(final CCTouchDelegateProtocol delegate) {
+    public void removeDelegate(CCTouchDelegateProtocol delegate) {
+    	removeAnyDelegate(delegate);
+    }
+
+    public void removeDelegate(CCTouchRecordDelegateProtocol delegate) {
+    	removeAnyDelegate(delegate);
+    }
+
+    private void removeAnyDelegate(final Object delegate) {
         if( delegate == null )
             return;
      
@@ -163,19 +232,21 @@ public class CCTouchDispatcher {
 				
 		        for( int ind = 0; ind < targetedHandlers.size(); ind++ ) {
 		        	CCTouchHandler handler = targetedHandlers.get(ind);
-		            if( handler.getDelegate() == delegate ) {
+		            if( handler.anyDelegate() == delegate ) {
 		            	targetedHandlers.remove(handler);
+		            	targetedHandlersChanged();
 		                break;
 		            }
 		        }
 	        
 		        for( int ind = 0; ind < touchHandlers.size(); ind++ ) {
 		        	CCTouchHandler handler = touchHandlers.get(ind);
-		            if( handler.getDelegate() == delegate ) {
+		            if( handler.anyDelegate() == delegate ) {
 		                touchHandlers.remove(handler);
 		                break;
 		            }
 		        }
+		        updateNeedsMotionEvents();
 			}
 		});
     }
@@ -189,6 +260,8 @@ public class CCTouchDispatcher {
 				
 	    		targetedHandlers.clear();
 	    		touchHandlers.clear();
+	    		targetedHandlersChanged();
+	    		updateNeedsMotionEvents();
 			}
     	});
     }
@@ -198,6 +271,7 @@ public class CCTouchDispatcher {
     	synchronized (motionListeners)
 		{
     		motionListeners.add(listener);
+    		needsMotionEvents_ = true;
 		}
     }
     
@@ -207,6 +281,12 @@ public class CCTouchDispatcher {
 		{
     		motionListeners.remove(listener);
 		}
+    	GLResourceHelper.sharedHelper().perform(new GLResourceHelper.GLResorceTask() {
+			@Override
+			public void perform(GL10 gl) {
+				updateNeedsMotionEvents();
+			}
+		});
     }
     
     public void removeAllMotionListeners()
@@ -215,6 +295,12 @@ public class CCTouchDispatcher {
 		{
     		motionListeners.clear();
 		}
+    	GLResourceHelper.sharedHelper().perform(new GLResourceHelper.GLResorceTask() {
+			@Override
+			public void perform(GL10 gl) {
+				updateNeedsMotionEvents();
+			}
+		});
     }
 
     /** Changes the priority of a previously added delegate. The lower the number,
@@ -264,158 +350,298 @@ public class CCTouchDispatcher {
 		});
     }
 
-    private final ConcNodeCachingLinkedQueue<MotionEvent> eventQueue = new ConcNodeCachingLinkedQueue<MotionEvent>();
-    
+    /** whether any delegate or listener takes MotionEvent, read on UI thread */
+    private volatile boolean needsMotionEvents_;
+
+    /** called on GL thread after handlers or listeners changed */
+    private void updateNeedsMotionEvents() {
+    	boolean needs = false;
+    	for( int ind = 0; !needs && ind < targetedHandlers.size(); ind++ )
+    		needs = targetedHandlers.get(ind).getDelegate() != null;
+    	for( int ind = 0; !needs && ind < touchHandlers.size(); ind++ )
+    		needs = touchHandlers.get(ind).getDelegate() != null;
+    	// under the lock, so a listener added meanwhile is not lost
+    	synchronized (motionListeners) {
+    		needsMotionEvents_ = needs || !motionListeners.isEmpty();
+    	}
+    }
+
+    /** updates order of targeted handlers and index of their hit areas */
+    private void targetedHandlersChanged() {
+    	hitTestIndex.clear();
+    	unboundedHandlers.clear();
+    	for( int ind = 0; ind < targetedHandlers.size(); ind++ ) {
+    		CCTargetedTouchHandler handler = targetedHandlers.get(ind);
+    		handler.order = ind;
+    		if( handler.hitArea != null )
+    			hitTestIndex.put(handler, handler.hitArea);
+    		else
+    			unboundedHandlers.add(handler);
+    	}
+    }
+
+    /** targeted handlers which may claim began touch, in priority order */
+    private ArrayList<CCTargetedTouchHandler> candidatesForTouch(CCTouchQueue.Record touch) {
+    	int pindex = touch.getActionIndex();
+    	CCDirector.sharedDirector().convertToGL(touch.getX(pindex), touch.getY(pindex), touchLocation);
+
+    	candidates.clear();
+    	candidates.addAll(unboundedHandlers);
+    	hitTestIndex.query(touchLocation.x, touchLocation.y, candidates);
+
+    	// usually there are few candidates, insertion sort by position in targetedHandlers
+    	for( int i = 1; i < candidates.size(); i++ ) {
+    		CCTargetedTouchHandler handler = candidates.get(i);
+    		int j = i - 1;
+    		while( j >= 0 && candidates.get(j).order > handler.order ) {
+    			candidates.set(j + 1, candidates.get(j));
+    			j--;
+    		}
+    		candidates.set(j + 1, handler);
+    	}
+    	return candidates;
+    }
+
+    /** events from UI thread, converted to plain records */
+    private final CCTouchQueue touchQueue = new CCTouchQueue();
+
+    // pointer data of event being queued, used only on UI thread
+    private final int[] queueIds = new int[CCTouchQueue.kMaxPointers];
+    private final float[] queueXs = new float[CCTouchQueue.kMaxPointers];
+    private final float[] queueYs = new float[CCTouchQueue.kMaxPointers];
+
+    /** touch being dispatched, valid only inside of delegate callbacks */
+    private final CCTouchQueue.Record currentTouch = new CCTouchQueue.Record();
+
+    /** Whether consecutive ACTION_MOVE events of the same pointers, queued
+     between two frames, are merged into one. Delegates get only the latest
+     move, previous samples are available from getCurrentTouch(). Default: true
+     */
+    public void setCoalesceMoves(boolean coalesce) {
+    	touchQueue.setCoalescing(coalesce);
+    }
+
+    public boolean getCoalesceMoves() {
+    	return touchQueue.isCoalescing();
+    }
+
+    /** Returns record of the touch event being dispatched, with coalesced
+     move samples as history. Valid only inside of delegate callbacks.
+     */
+    public CCTouchQueue.Record getCurrentTouch() {
+    	return currentTouch;
+    }
+
+    /** queue of events waiting for dispatch */
+    public CCTouchQueue getTouchQueue() {
+    	return touchQueue;
+    }
+
     public void queueMotionEvent(MotionEvent event) {
     	if(dispatchEvents) {
-	    	// copy event for queue
-	    	MotionEvent eventForQueue  = MotionEvent.obtain(event);
+    		int action = event.getAction();
+    		int actionCode = action & MotionEvent.ACTION_MASK;
+    		int pindex = action >> MotionEvent.ACTION_POINTER_ID_SHIFT;
+
+    		int count;
+    		if(Build.VERSION.SDK_INT >= 5) {
+    			count = Math.min(event.getPointerCount(), CCTouchQueue.kMaxPointers);
+    			for( int i = 0; i < count; i++ ) {
+    				queueIds[i] = Util5.getPointerId(event, i);
+    				queueXs[i] = Util5.getX(event, i);
+    				queueYs[i] = Util5.getY(event, i);
+    			}
+    		} else {
+    			count = 1;
+    			queueIds[0] = pindex;
+    			queueXs[0] = event.getX();
+    			queueYs[0] = event.getY();
+    			pindex = 0;
+    		}
+
+	    	// Delegates taking MotionEvent get one rebuilt from the record at dispatch.
+	    	// android-7 can't rebuild several pointers or a pointer id, only such
+	    	// events are copied, coalesced copies are recycled to MotionEvent pool.
+	    	MotionEvent eventForQueue = null;
+	    	if(needsMotionEvents_ && (count > 1 || queueIds[0] != 0))
+	    		eventForQueue = MotionEvent.obtain(event);
 
-	    	eventQueue.push(eventForQueue);
+	    	touchQueue.push(actionCode, pindex, event.getEventTime(), count, queueIds, queueXs, queueYs, eventForQueue);
+	    	// touches are dispatched in the next frame
+	    	CCRedrawTracker.setNeedsRedraw();
     	}
     }
     
+    private volatile CCInputLog inputLog_;
+
+    /** While set, dispatched touches are added to the log,
+     see CCDirector.startInputRecording()
+     */
+    public void setInputLog(CCInputLog log) {
+    	inputLog_ = log;
+    }
+
+    public CCInputLog getInputLog() {
+    	return inputLog_;
+    }
+
     public void update() {
-    	MotionEvent event;
+    	final CCTouchQueue.Record touch = currentTouch;
 
-    	while( (event = eventQueue.poll()) != null) {
-    		
+    	while( touchQueue.poll(touch) ) {
     		if(dispatchEvents) {
+    			final CCInputLog log = inputLog_;
+    			if(log != null)
+    				log.addTouch(CCScheduler.sharedScheduler().getTickCount(), touch);
 
-	    		proccessTouches(event);
-	    		
-	    		int action = event.getAction();
-	    		int actionCode = action & MotionEvent.ACTION_MASK;
-	    		int pid = action >> MotionEvent.ACTION_POINTER_ID_SHIFT;     
-				        
-				if(Build.VERSION.SDK_INT >= 5) {
-		    		pid = Util5.getPointerId(event, pid);
-		    	}
-	    		
-				boolean swallowed = false;
-				        
-	    		for( int ind = 0; ind < targetedHandlers.size(); ind++ ) {
-	    			CCTargetedTouchHandler handler = targetedHandlers.get(ind);
-	    			
-	    			boolean claimed = false;
-	    			
-	    			switch (actionCode) {
-	    			case MotionEvent.ACTION_DOWN:
-	    			case MotionEvent.ACTION_POINTER_DOWN:
-	    				claimed = handler.ccTouchesBegan(event);
-	    				if(claimed) {
-	    					handler.addClaimed(pid);
-	    				}
-	    				break;
-	    			case MotionEvent.ACTION_CANCEL:
-	    				if(handler.hasClaimed(pid)) {
-	    					claimed = true;
-	    					handler.ccTouchesCancelled(event);
-	    					handler.removeClaimed(pid);
-	    				}
-	    				break;
-	    			case MotionEvent.ACTION_MOVE:
-	    				if(handler.hasClaimed(pid)) {
-	    					claimed = true;
-	    					handler.ccTouchesMoved(event);
-	    				}
-	    				break;
-	    			case MotionEvent.ACTION_UP:
-	    			case MotionEvent.ACTION_POINTER_UP:
-	    				if(handler.hasClaimed(pid)) {
-	    					claimed = true;
-	    					handler.ccTouchesEnded(event);
-	    					handler.removeClaimed(pid);
-	    				}
-	    				break;
-	    			}
-	
-	    			
-	    			if(claimed && handler.swallowsTouches) {
-	    				swallowed = true;
-	    				break;
-	    			}
-	    		}
-	    		
-	    		if(!swallowed) {
-		    		// handle standart delegates
-					switch (actionCode) {
-					case MotionEvent.ACTION_DOWN:
-					case MotionEvent.ACTION_POINTER_DOWN:
-						touchesBegan(event);
-						break;
-					case MotionEvent.ACTION_CANCEL:
-						touchesCancelled(event);
-						break;
-					case MotionEvent.ACTION_MOVE:
-						touchesMoved(event);
-						break;
-					case MotionEvent.ACTION_UP:
-					case MotionEvent.ACTION_POINTER_UP:
-						touchesEnded(event);
-						break;
-					}
-	    		}
-    		
+	    		dispatch(touch);
     		}
-    		
-			event.recycle();
+    		recycleMotionEvent(touch);
     	}
     }
-    
-    //
-    // dispatch events
-    //
-    private void touchesBegan(MotionEvent event) {
-        if( dispatchEvents )  {
-            for( int ind = 0; ind < touchHandlers.size(); ind++ ) {
-            	CCTouchHandler handler = touchHandlers.get(ind);
-            	handler.ccTouchesBegan(event);
-//                if( handler.ccTouchesBegan(event) == kEventHandled )
-//                    break;
-            }
-        }
-    }
 
-    private void touchesMoved(MotionEvent event) {
-        if( dispatchEvents )  {
-            for( int ind = 0; ind < touchHandlers.size(); ind++ ) {
-            	CCTouchHandler handler = touchHandlers.get(ind);
-            	handler.ccTouchesMoved(event);
-//                if( handler.ccTouchesMoved(event) == kEventHandled )
-//                    break;
-            }
-        }
+    // down time of the dispatched gesture, for rebuilt MotionEvents
+    private long downTime_;
+
+    // MotionEvent of the dispatched touch, made when the first delegate or listener needs it
+    private MotionEvent motionEvent_;
+
+    /** Returns MotionEvent of the touch being dispatched, it is made at most once per touch.
+     Events of several pointers or of a pointer id other than 0 are copies made
+     by queueMotionEvent(), others are rebuilt with the action pointer only.
+     */
+    MotionEvent motionEventFor(CCTouchQueue.Record touch) {
+    	if(motionEvent_ == null) {
+    		if(touch.payload != null) {
+    			motionEvent_ = (MotionEvent)touch.payload;
+    			touch.payload = null;
+    		} else {
+    			final int index = touch.getActionIndex();
+    			final int actionCode = touch.getAction();
+    			int action = actionCode;
+    			if(actionCode == CCTouchQueue.ACTION_POINTER_DOWN || actionCode == CCTouchQueue.ACTION_POINTER_UP)
+    				action |= index << MotionEvent.ACTION_POINTER_ID_SHIFT;
+
+    			motionEvent_ = MotionEvent.obtain(downTime_, touch.getEventTime(), action,
+    					touch.getX(index), touch.getY(index), 0);
+    		}
+    	}
+    	return motionEvent_;
     }
 
-    private void touchesEnded(MotionEvent event) {
-        if( dispatchEvents )  {
-            for( int ind = 0; ind < touchHandlers.size(); ind++ ) {
-            	CCTouchHandler handler = touchHandlers.get(ind);
-            	handler.ccTouchesEnded(event);
-//                if( handler.ccTouchesEnded(event) == kEventHandled )
-//                    break;
-            }
-        }
+    /** gives MotionEvent of the dispatched touch back to the pool */
+    private void recycleMotionEvent(CCTouchQueue.Record touch) {
+    	if(motionEvent_ != null) {
+    		motionEvent_.recycle();
+    		motionEvent_ = null;
+    	}
+    	if(touch.payload != null) {
+    		((MotionEvent)touch.payload).recycle();
+    		touch.payload = null;
+    	}
     }
 
-    private void touchesCancelled(MotionEvent event) {
+    /** dispatches one touch, decisions are made on the record */
+    private void dispatch(CCTouchQueue.Record touch) {
+		int actionCode = touch.getAction();
+		int pid = touch.getActionPointerId();
+
+		if(actionCode == CCTouchQueue.ACTION_DOWN)
+			downTime_ = touch.getEventTime();
+
+		proccessTouches(touch);
+
+		boolean swallowed = false;
+
+		// began touches go only to handlers whose hit area contains the touch
+		ArrayList<CCTargetedTouchHandler> handlers = targetedHandlers;
+		if( hitTestIndex.size() > 0 &&
+				(actionCode == CCTouchQueue.ACTION_DOWN || actionCode == CCTouchQueue.ACTION_POINTER_DOWN) ) {
+			handlers = candidatesForTouch(touch);
+		}
+		        
+		for( int ind = 0; ind < handlers.size(); ind++ ) {
+			CCTargetedTouchHandler handler = handlers.get(ind);
+			
+			boolean claimed = false;
+			
+			switch (actionCode) {
+			case CCTouchQueue.ACTION_DOWN:
+			case CCTouchQueue.ACTION_POINTER_DOWN:
+				claimed = handler.touch(ccTouchBegan, touch, this);
+				if(claimed) {
+					handler.addClaimed(pid);
+				}
+				break;
+			case CCTouchQueue.ACTION_CANCEL:
+				if(handler.hasClaimed(pid)) {
+					claimed = true;
+					handler.touch(ccTouchCancelled, touch, this);
+					handler.removeClaimed(pid);
+				}
+				break;
+			case CCTouchQueue.ACTION_MOVE:
+				if(handler.hasClaimed(pid)) {
+					claimed = true;
+					handler.touch(ccTouchMoved, touch, this);
+				}
+				break;
+			case CCTouchQueue.ACTION_UP:
+			case CCTouchQueue.ACTION_POINTER_UP:
+				if(handler.hasClaimed(pid)) {
+					claimed = true;
+					handler.touch(ccTouchEnded, touch, this);
+					handler.removeClaimed(pid);
+				}
+				break;
+			}
+
+			
+			if(claimed && handler.swallowsTouches) {
+				swallowed = true;
+				break;
+			}
+		}
+		
+		if(!swallowed) {
+    		// handle standart delegates
+			switch (actionCode) {
+			case CCTouchQueue.ACTION_DOWN:
+			case CCTouchQueue.ACTION_POINTER_DOWN:
+				touches(ccTouchBegan, touch);
+				break;
+			case CCTouchQueue.ACTION_CANCEL:
+				touches(ccTouchCancelled, touch);
+				break;
+			case CCTouchQueue.ACTION_MOVE:
+				touches(ccTouchMoved, touch);
+				break;
+			case CCTouchQueue.ACTION_UP:
+			case CCTouchQueue.ACTION_POINTER_UP:
+				touches(ccTouchEnded, touch);
+				break;
+			}
+		}
+    }
+    
+    //
+    // dispatch events
+    //
+    private void touches(int type, CCTouchQueue.Record touch) {
         if( dispatchEvents )  {
             for( int ind = 0; ind < touchHandlers.size(); ind++ ) {
             	CCTouchHandler handler = touchHandlers.get(ind);
-            	handler.ccTouchesCancelled(event);
-//                if( handler.ccTouchesCancelled(event) == kEventHandled )
-//                    break;
+            	handler.touch(type, touch, this);
             }
         }
     }
     
-    private void proccessTouches(MotionEvent event)
+    private void proccessTouches(CCTouchQueue.Record touch)
     {
     	synchronized (motionListeners)
 		{
 			for (int i = 0; i < motionListeners.size(); i++)
-				motionListeners.get(i).onTouch(event);
+				motionListeners.get(i).onTouch(motionEventFor(touch));
 		}
     }
 }
@@ -2,6 +2,7 @@ package org.cocos2d.events;
 
 import org.cocos2d.events.CCTouchDispatcher.ccTouchSelectorFlag;
 import org.cocos2d.protocols.CCTouchDelegateProtocol;
+import org.cocos2d.protocols.CCTouchRecordDelegateProtocol;
 
 import android.view.MotionEvent;
 
@@ -19,6 +20,8 @@ import android.view.MotionEvent;
 public class CCTouchHandler implements CCTouchDelegateProtocol {
     /** delegate */
     private CCTouchDelegateProtocol delegate_;
+    /** delegate taking touch records, used instead of delegate_ */
+    private CCTouchRecordDelegateProtocol recordDelegate_;
     /** priority */
     private int priority_;
     /** enabled selectors */
@@ -28,6 +31,15 @@ public class CCTouchHandler implements CCTouchDelegateProtocol {
         return delegate_;
     }
 
+    public CCTouchRecordDelegateProtocol getRecordDelegate() {
+        return recordDelegate_;
+    }
+
+    /** the delegate of either type */
+    Object anyDelegate() {
+        return delegate_ != null ? delegate_ : recordDelegate_;
+    }
+
     public int getPriority() {
         return priority_;
     }
@@ -57,6 +69,44 @@ public class CCTouchHandler implements CCTouchDelegateProtocol {
         enabledSelectors_ = ccTouchSelectorFlag.ccTouchSelectorNoneBit.getFlag();
     }
 
+    /** initializes a TouchHandler with a delegate of touch records and a priority */
+    public CCTouchHandler(CCTouchRecordDelegateProtocol delegate, int priority) {
+        assert delegate !=null : "Touch delegate may not be nil";
+        recordDelegate_ = delegate;
+        priority_ = priority;
+        enabledSelectors_ = ccTouchSelectorFlag.ccTouchSelectorNoneBit.getFlag();
+    }
+
+    /** Calls the delegate with the dispatched touch, type is one of CCTouchDispatcher.ccTouch*.
+      MotionEvent is asked from the dispatcher only for CCTouchDelegateProtocol.
+    */
+    boolean touch(int type, CCTouchQueue.Record touch, CCTouchDispatcher dispatcher) {
+        if( recordDelegate_ != null ) {
+            switch (type) {
+            case CCTouchDispatcher.ccTouchBegan:
+                return recordDelegate_.ccTouchBegan(touch);
+            case CCTouchDispatcher.ccTouchMoved:
+                return recordDelegate_.ccTouchMoved(touch);
+            case CCTouchDispatcher.ccTouchEnded:
+                return recordDelegate_.ccTouchEnded(touch);
+            default:
+                return recordDelegate_.ccTouchCancelled(touch);
+            }
+        }
+
+        MotionEvent event = dispatcher.motionEventFor(touch);
+        switch (type) {
+        case CCTouchDispatcher.ccTouchBegan:
+            return ccTouchesBegan(event);
+        case CCTouchDispatcher.ccTouchMoved:
+            return ccTouchesMoved(event);
+        case CCTouchDispatcher.ccTouchEnded:
+            return ccTouchesEnded(event);
+        default:
+            return ccTouchesCancelled(event);
+        }
+    }
+
     public boolean ccTouchesBegan(MotionEvent event) {
         if( delegate_ != null )
             return delegate_.ccTouchesBegan(event);
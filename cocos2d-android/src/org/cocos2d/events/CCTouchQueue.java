@@ -0,0 +1,315 @@
+package org.cocos2d.events;
+
+/**
+ * Ring buffer of touch records passed from UI thread to GL thread.
+ *
+ * Records are preallocated plain objects, push() copies pointer data into
+ * the next free slot and poll() copies the oldest slot out, so steady state
+ * doesn't allocate. Buffer grows only if consumer falls far behind.
+ *
+ * When coalescing is on, a move which follows queued move of the same
+ * pointers replaces its coordinates, replaced samples are kept as history
+ * of the record. So each frame dispatches at most one move per pointer set
+ * while all samples are still available.
+ *
+ * Each record may carry a payload (e.g. copy of MotionEvent for delegates),
+ * payload of coalesced record is given to PayloadRecycler.
+ * This class doesn't depend on android.
+ */
+public class CCTouchQueue {
+	/** action codes, the same values as in MotionEvent */
+	public static final int ACTION_DOWN 		= 0;
+	public static final int ACTION_UP 			= 1;
+	public static final int ACTION_MOVE 		= 2;
+	public static final int ACTION_CANCEL 		= 3;
+	public static final int ACTION_POINTER_DOWN = 5;
+	public static final int ACTION_POINTER_UP 	= 6;
+
+	/** pointers above this count are dropped */
+	public static final int kMaxPointers = 10;
+
+	/** coalesced samples kept per record, older ones are dropped */
+	public static final int kMaxHistory = 16;
+
+	private static final int kInitialCapacity = 32;
+
+	public interface PayloadRecycler {
+		void recycle(Object payload);
+	}
+
+	/** One touch event */
+	public static final class Record {
+		int action;
+		int actionIndex;
+		long eventTime;
+		int pointerCount;
+		final int[] ids = new int[kMaxPointers];
+		final float[] xs = new float[kMaxPointers];
+		final float[] ys = new float[kMaxPointers];
+
+		int historySize;
+		final long[] historyTime = new long[kMaxHistory];
+		final float[] historyX = new float[kMaxHistory * kMaxPointers];
+		final float[] historyY = new float[kMaxHistory * kMaxPointers];
+
+		Object payload;
+
+		/** action code, one of ACTION_* */
+		public int getAction() {
+			return action;
+		}
+
+		/** index of pointer which went down or up */
+		public int getActionIndex() {
+			return actionIndex;
+		}
+
+		/** id of pointer which went down or up */
+		public int getActionPointerId() {
+			return ids[actionIndex];
+		}
+
+		public long getEventTime() {
+			return eventTime;
+		}
+
+		public int getPointerCount() {
+			return pointerCount;
+		}
+
+		public int getPointerId(int index) {
+			return ids[index];
+		}
+
+		/** returns index of pointer with given id or -1 */
+		public int findPointerIndex(int id) {
+			for (int i = 0; i < pointerCount; ++i) {
+				if (ids[i] == id)
+					return i;
+			}
+			return -1;
+		}
+
+		public float getX(int index) {
+			return xs[index];
+		}
+
+		public float getY(int index) {
+			return ys[index];
+		}
+
+		/** count of coalesced samples older than current coordinates */
+		public int getHistorySize() {
+			return historySize;
+		}
+
+		/** time of historical sample, 0 is the oldest */
+		public long getHistoricalEventTime(int pos) {
+			return historyTime[pos];
+		}
+
+		public float getHistoricalX(int index, int pos) {
+			return historyX[pos * kMaxPointers + index];
+		}
+
+		public float getHistoricalY(int index, int pos) {
+			return historyY[pos * kMaxPointers + index];
+		}
+
+		public Object getPayload() {
+			return payload;
+		}
+
+		void set(Record r) {
+			action = r.action;
+			actionIndex = r.actionIndex;
+			eventTime = r.eventTime;
+			pointerCount = r.pointerCount;
+			System.arraycopy(r.ids, 0, ids, 0, pointerCount);
+			System.arraycopy(r.xs, 0, xs, 0, pointerCount);
+			System.arraycopy(r.ys, 0, ys, 0, pointerCount);
+
+			historySize = r.historySize;
+			System.arraycopy(r.historyTime, 0, historyTime, 0, historySize);
+			System.arraycopy(r.historyX, 0, historyX, 0, historySize * kMaxPointers);
+			System.arraycopy(r.historyY, 0, historyY, 0, historySize * kMaxPointers);
+
+			payload = r.payload;
+		}
+
+		boolean samePointers(int count, int[] pointerIds) {
+			if (count != pointerCount)
+				return false;
+			for (int i = 0; i < count; ++i) {
+				if (ids[i] != pointerIds[i])
+					return false;
+			}
+			return true;
+		}
+
+		/** moves current coordinates to history */
+		void pushHistory() {
+			if (historySize == kMaxHistory) {
+				System.arraycopy(historyTime, 1, historyTime, 0, kMaxHistory - 1);
+				System.arraycopy(historyX, kMaxPointers, historyX, 0, (kMaxHistory - 1) * kMaxPointers);
+				System.arraycopy(historyY, kMaxPointers, historyY, 0, (kMaxHistory - 1) * kMaxPointers);
+				historySize--;
+			}
+
+			historyTime[historySize] = eventTime;
+			System.arraycopy(xs, 0, historyX, historySize * kMaxPointers, pointerCount);
+			System.arraycopy(ys, 0, historyY, historySize * kMaxPointers, pointerCount);
+			historySize++;
+		}
+	}
+
+	private Record[] ring;
+	private int head;
+	private int count;
+
+	private boolean coalescing_;
+	private PayloadRecycler recycler_;
+
+	private int pushed_;
+	private int coalesced_;
+
+	public CCTouchQueue() {
+		ring = new Record[kInitialCapacity];
+		for (int i = 0; i < ring.length; ++i) {
+			ring[i] = new Record();
+		}
+		coalescing_ = true;
+	}
+
+	/** whether consecutive moves of the same pointers are merged, default true */
+	public synchronized void setCoalescing(boolean coalescing) {
+		coalescing_ = coalescing;
+	}
+
+	public synchronized boolean isCoalescing() {
+		return coalescing_;
+	}
+
+	/** receives payloads of merged and cleared records */
+	public synchronized void setPayloadRecycler(PayloadRecycler recycler) {
+		recycler_ = recycler;
+	}
+
+	/** count of queued records */
+	public synchronized int size() {
+		return count;
+	}
+
+	/** count of pushed events since creation */
+	public synchronized int getPushedCount() {
+		return pushed_;
+	}
+
+	/** count of pushed moves merged into previous record */
+	public synchronized int getCoalescedCount() {
+		return coalesced_;
+	}
+
+	/**
+	 * Adds event to the queue, arrays are copied.
+	 * @param action one of ACTION_* codes
+	 * @param actionIndex index of pointer which went down or up
+	 * @param pointerCount count of valid entries in ids, xs and ys
+	 * @param payload object kept with record or null
+	 */
+	public synchronized void push(int action, int actionIndex, long eventTime,
+			int pointerCount, int[] ids, float[] xs, float[] ys, Object payload) {
+		pushed_++;
+		if (pointerCount > kMaxPointers)
+			pointerCount = kMaxPointers;
+
+		if (coalescing_ && action == ACTION_MOVE && count > 0) {
+			Record last = ring[(head + count - 1) % ring.length];
+			if (last.action == ACTION_MOVE && last.samePointers(pointerCount, ids)) {
+				last.pushHistory();
+				last.eventTime = eventTime;
+				System.arraycopy(xs, 0, last.xs, 0, pointerCount);
+				System.arraycopy(ys, 0, last.ys, 0, pointerCount);
+
+				if (last.payload != null && recycler_ != null)
+					recycler_.recycle(last.payload);
+				last.payload = payload;
+
+				coalesced_++;
+				return;
+			}
+		}
+
+		if (count == ring.length)
+			grow();
+
+		Record r = ring[(head + count) % ring.length];
+		r.action = action;
+		r.actionIndex = actionIndex < pointerCount ? actionIndex : 0;
+		r.eventTime = eventTime;
+		r.pointerCount = pointerCount;
+		System.arraycopy(ids, 0, r.ids, 0, pointerCount);
+		System.arraycopy(xs, 0, r.xs, 0, pointerCount);
+		System.arraycopy(ys, 0, r.ys, 0, pointerCount);
+		r.historySize = 0;
+		r.payload = payload;
+		count++;
+	}
+
+	/** Adds a copy of the record as it is, without coalescing, e.g. a recorded touch.
+	 * Payload is not copied.
+	 */
+	public synchronized void push(Record record) {
+		pushed_++;
+		if (count == ring.length)
+			grow();
+
+		Record r = ring[(head + count) % ring.length];
+		r.set(record);
+		r.payload = null;
+		count++;
+	}
+
+	/**
+	 * Copies the oldest record to out and removes it from the queue.
+	 * Payload is passed to out, the caller is responsible for it.
+	 * @return false if queue is empty
+	 */
+	public synchronized boolean poll(Record out) {
+		if (count == 0)
+			return false;
+
+		Record r = ring[head];
+		out.set(r);
+		r.payload = null;
+
+		head = (head + 1) % ring.length;
+		count--;
+		return true;
+	}
+
+	/** removes all records, payloads are recycled */
+	public synchronized void clear() {
+		while (count > 0) {
+			Record r = ring[head];
+			if (r.payload != null && recycler_ != null)
+				recycler_.recycle(r.payload);
+			r.payload = null;
+			head = (head + 1) % ring.length;
+			count--;
+		}
+		head = 0;
+	}
+
+	private void grow() {
+		Record[] r = new Record[ring.length * 2];
+		for (int i = 0; i < count; ++i) {
+			r[i] = ring[(head + i) % ring.length];
+		}
+		for (int i = count; i < r.length; ++i) {
+			r[i] = new Record();
+		}
+		ring = r;
+		head = 0;
+	}
+}
@@ -3,6 +3,7 @@ package org.cocos2d.extensions.scroll;
 import javax.microedition.khronos.opengles.GL10;
 
 import org.cocos2d.layers.CCLayer;
+import org.cocos2d.nodes.CCBatchRenderer;
 import org.cocos2d.nodes.CCDirector;
 import org.cocos2d.nodes.CCNode;
 import org.cocos2d.types.CGPoint;
@@ -51,6 +52,8 @@ public class CCClipNode extends CCLayer {
 	@SuppressWarnings("static-access")
 	@Override
 	public void visit(GL10 gl) {
+		// batched quads must be drawn with the scissor state they were added in
+		CCBatchRenderer.sharedRenderer().flush(gl);
 		if(_clippedRect.origin.x < RECT_ORIGIN_INVALID){
 			/*CGRect globalRect =*/ clipRectFromRect();
 			gl.glEnable(gl.GL_SCISSOR_TEST);
@@ -58,6 +61,7 @@ public class CCClipNode extends CCLayer {
 					(int)globalRect.size.width, (int)globalRect.size.height);*/
 		}
 		super.visit(gl);
+		CCBatchRenderer.sharedRenderer().flush(gl);
 		if(_clippedRect.origin.x < RECT_ORIGIN_INVALID)
 			gl.glDisable(gl.GL_SCISSOR_TEST);
 	}
@@ -6,8 +6,7 @@
 package org.cocos2d.extensions.scroll;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.HashMap;
 
 import org.cocos2d.nodes.CCNode;
 import org.cocos2d.types.CGPoint;
@@ -15,6 +14,16 @@ import org.cocos2d.types.CGSize;
 
 import android.view.MotionEvent;
 
+/**
+ * Table of cells in a scroll view.
+ *
+ * Table is virtualized: cells are requested from data source only for
+ * visible rows and rows which leave the view are recycled, so cost of
+ * scrolling doesn't depend on number of rows.
+ * Visible range is computed in O(1) for cells of one size, and with
+ * binary search over prefix sums of sizes when data source implements
+ * CCTableViewVariableSizeDataSource.
+ */
 public class CCTableView extends CCScrollView implements CCScrollViewDelegate{
 
     public static final int CCTableViewFillTopDown = 1;
@@ -25,20 +34,27 @@ public class CCTableView extends CCScrollView implements CCScrollViewDelegate{
      */
     int      m_vordering;
     /**
-     * index set to query the indexes of the cells used.
-     */
-    //TODO: use C++ object
-    //NSMutableIndexSet* indices_;
-    HashSet<Integer>  m_indices;
-//    CCMutableArray<int*> *m_indices;
-    /**
-     * cells that are currently in the table
+     * cells that are currently in the table, sorted by index
      */
     ArrayList<CCTableViewCell> m_cellsUsed;
     /**
-     * free list of cells
+     * free list of cells without reuse identifier
      */
     ArrayList<CCTableViewCell> m_cellsFreed;
+    /**
+     * free lists of cells by reuse identifier
+     */
+    HashMap<String, ArrayList<CCTableViewCell>> m_cellsFreedById;
+    /**
+     * count of rows and size of a cell, cached on reloadData()
+     */
+    int      m_cellCount;
+    CGSize   m_cellSize;
+    /**
+     * offsets of cells along scroll axis, m_cellCount + 1 values,
+     * null if all cells have the same size
+     */
+    float[]  m_cellOffsets;
     /**
      * weak link to the delegate object
      */
@@ -79,8 +95,8 @@ public class CCTableView extends CCScrollView implements CCScrollViewDelegate{
     	
         m_cellsUsed         = new ArrayList<CCTableViewCell>();
         m_cellsFreed        = new ArrayList<CCTableViewCell>();
-//        m_indices           = new CCMutableArray<int*>();
-        m_indices           = new HashSet<Integer>();
+        m_cellsFreedById    = new HashMap<String, ArrayList<CCTableViewCell>>();
+        m_cellSize          = CGSize.zero();
         tDelegate           = null;
         m_vordering         = CCTableViewFillBottomUp;
         super.direction		= CCScrollViewDirectionVertical;
@@ -106,34 +122,37 @@ public class CCTableView extends CCScrollView implements CCScrollViewDelegate{
     
     public void reloadData()
     {
-        CCTableViewCell cell;
         for (int i=0;i < m_cellsUsed.size(); i++) {
-            cell = m_cellsUsed.get(i);
-            m_cellsFreed.add(cell);
-            cell.setObjectID(m_cellsFreed.indexOf(cell));
+            CCTableViewCell cell = m_cellsUsed.get(i);
+            _freeCell(cell);
             cell.reset();
             if (cell.getParent() == container_) {
                 container_.removeChild(cell, true);
             }
         }
-        
-        m_indices.clear();
-        m_cellsUsed = new ArrayList<CCTableViewCell>();
+        m_cellsUsed.clear();
         
         _updateContentSize();
-        if (dataSource.numberOfCellsInTableView(this) > 0) {
+        if (m_cellCount > 0) {
             scrollViewDidScroll(this);
         }
     }
     
-    private CCTableViewCell cellAtIndex(int idx)
+    /** returns cell at index if the row is visible, null otherwise */
+    public CCTableViewCell cellAtIndex(int idx)
     {
         return _cellWithIndex(idx);
     }
     
+    /** count of rows, cached on reloadData() */
+    public int numberOfCells()
+    {
+        return m_cellCount;
+    }
+    
     private void updateCellAtIndex(int idx)
     {
-        if (idx == Integer.MAX_VALUE || idx > dataSource.numberOfCellsInTableView(this)-1) {
+        if (idx == Integer.MAX_VALUE || idx > m_cellCount-1) {
             return;
         }
         
@@ -210,17 +229,43 @@ public class CCTableView extends CCScrollView implements CCScrollViewDelegate{
          */
     }
 
+    /** Returns free cell without reuse identifier, or null */
     public CCTableViewCell dequeueCell()
     {
-        CCTableViewCell cell;
-        
-        if (m_cellsFreed.size() == 0) {
+        return _dequeue(m_cellsFreed);
+    }
+    
+    /** Returns free cell with given reuse identifier, or null */
+    public CCTableViewCell dequeueCell(String identifier)
+    {
+        if (identifier == null) {
+            return dequeueCell();
+        }
+        return _dequeue(m_cellsFreedById.get(identifier));
+    }
+    
+    private CCTableViewCell _dequeue(ArrayList<CCTableViewCell> freed)
+    {
+        if (freed == null || freed.size() == 0) {
             return null;
-        } else {
-            cell = (CCTableViewCell)m_cellsFreed.get(0);
-            m_cellsFreed.remove(0);
         }
-        return cell;
+        return freed.remove(freed.size() - 1);
+    }
+    
+    private void _freeCell(CCTableViewCell cell)
+    {
+        String identifier = cell.getReuseIdentifier();
+        if (identifier == null) {
+            m_cellsFreed.add(cell);
+            return;
+        }
+        
+        ArrayList<CCTableViewCell> freed = m_cellsFreedById.get(identifier);
+        if (freed == null) {
+            freed = new ArrayList<CCTableViewCell>();
+            m_cellsFreedById.put(identifier, freed);
+        }
+        freed.add(cell);
     }
     
     private void _addCellIfNecessary(CCTableViewCell cell)
@@ -230,17 +275,34 @@ public class CCTableView extends CCScrollView implements CCScrollViewDelegate{
         }
         
         //Inserting the new cell on the proper place (sorted by indexes)
-        boolean inserted = false;
-        for (int i = 0; i < m_cellsUsed.size(); i++) {
-            if(m_cellsUsed.get(i).getObjectID() > cell.getObjectID()){
-                m_cellsUsed.add(i, cell);
-                inserted = true;
-                break;
+        int pos = _searchCell(cell.getObjectID());
+        if (pos < 0) {
+            m_cellsUsed.add(-pos - 1, cell);
+        } else {
+            m_cellsUsed.add(pos, cell);
+        }
+    }
+    
+    /**
+     * Binary search of used cell by index.
+     * @return position of the cell or (-(insertion point) - 1)
+     */
+    private int _searchCell(int cellIndex)
+    {
+        int low = 0;
+        int high = m_cellsUsed.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = m_cellsUsed.get(mid).getObjectID();
+            if (id < cellIndex) {
+                low = mid + 1;
+            } else if (id > cellIndex) {
+                high = mid - 1;
+            } else {
+                return mid;
             }
         }
-        if(!inserted) m_cellsUsed.add(cell);
-        
-        m_indices.add(cell.getObjectID());
+        return -(low + 1);
     }
     
     void _updateContentSize()
@@ -251,117 +313,132 @@ public class CCTableView extends CCScrollView implements CCScrollViewDelegate{
         cellSize  = dataSource.cellSizeForTable(this);
         cellCount = dataSource.numberOfCellsInTableView(this);
         
+        m_cellSize.set(cellSize);
+        m_cellCount = cellCount;
+        
+        boolean horizontal = super.direction == CCScrollViewDirectionHorizontal;
+        float length;
+        if (dataSource instanceof CCTableViewVariableSizeDataSource) {
+            CCTableViewVariableSizeDataSource source = (CCTableViewVariableSizeDataSource)dataSource;
+            if (m_cellOffsets == null || m_cellOffsets.length < cellCount + 1) {
+                m_cellOffsets = new float[cellCount + 1];
+            }
+            
+            float offset = 0;
+            for (int i = 0; i < cellCount; i++) {
+                m_cellOffsets[i] = offset;
+                CGSize s = source.tableCellSizeForIndex(this, i);
+                offset += horizontal ? s.width : s.height;
+            }
+            m_cellOffsets[cellCount] = offset;
+            length = offset;
+        } else {
+            m_cellOffsets = null;
+            length = cellCount * (horizontal ? cellSize.width : cellSize.height);
+        }
+        
         switch (super.direction) {
             case CCScrollViewDirectionHorizontal:
-                size = CGSize.make(cellCount * cellSize.width, cellSize.height);
+                size = CGSize.make(length, cellSize.height);
                 break;
             default:
-                size = CGSize.make(cellSize.width, cellCount * cellSize.height);
+                size = CGSize.make(cellSize.width, length);
                 break;
         }
         setContentSize(size);
     }
 
-    private CGPoint _offsetFromIndex(int index)
+    /** start of cell along scroll axis, counted from the first row */
+    private float _cellStart(int index)
     {
-        CGPoint offset = __offsetFromIndex(index);
-        
-        CGSize cellSize = dataSource.cellSizeForTable(this);
-        if (m_vordering == CCTableViewFillTopDown) {
-            offset.y = container_.getContentSize().height - offset.y - cellSize.height;
+        if (m_cellOffsets != null) {
+            return m_cellOffsets[index];
         }
-        return offset;
+        return index * _fixedLength();
     }
     
-    private CGPoint __offsetFromIndex(int index)
+    /** size of cell along scroll axis */
+    private float _cellLength(int index)
     {
-        CGPoint offset;
-        CGSize  cellSize;
-        
-        cellSize = dataSource.cellSizeForTable(this);
-        switch (super.direction) {
-            case CCScrollViewDirectionHorizontal:
-                offset = CGPoint.ccp(cellSize.width * index, 0.0f);
-                break;
-            default:
-                offset = CGPoint.ccp(0.0f, cellSize.height * index);
-                break;
+        if (m_cellOffsets != null) {
+            return m_cellOffsets[index + 1] - m_cellOffsets[index];
         }
-        
-        return offset;
+        return _fixedLength();
     }
     
-    private int _indexFromOffset(CGPoint offset)
+    private float _fixedLength()
     {
-        int index;
-        int maxIdx = dataSource.numberOfCellsInTableView(this)-1;
-        
-        CGPoint newOffset = CGPoint.make(offset.x, offset.y);
-        CGSize cellSize = dataSource.cellSizeForTable(this);
+        return super.direction == CCScrollViewDirectionHorizontal ? m_cellSize.width : m_cellSize.height;
+    }
+    
+    /** converts container coordinate along scroll axis to distance from the first row */
+    private float _distanceFromStart(float x, float y)
+    {
+        if (super.direction == CCScrollViewDirectionHorizontal) {
+            return x;
+        }
         if (m_vordering == CCTableViewFillTopDown) {
-            newOffset.y = container_.getContentSize().height - offset.y - cellSize.height;
+            return container_.getContentSize().height - y;
         }
-        index = Math.max(0, __indexFromOffset(newOffset));
-        index = Math.min(index, maxIdx);
-        return index;
+        return y;
     }
     
-    private int __indexFromOffset(CGPoint offset)
+    private void _offsetFromIndex(int index, CGPoint ret)
     {
-        int  	   index;
-        CGSize     cellSize;
-        
-        cellSize = dataSource.cellSizeForTable(this);
-        
-        switch (super.direction) {
-            case CCScrollViewDirectionHorizontal:
-                index = (int) (offset.x/cellSize.width);
-                break;
-            default:
-                index = (int) (offset.y/cellSize.height);
-                break;
+        float start = _cellStart(index);
+        if (super.direction == CCScrollViewDirectionHorizontal) {
+            ret.set(start, 0.0f);
+        } else if (m_vordering == CCTableViewFillTopDown) {
+            ret.set(0.0f, container_.getContentSize().height - start - _cellLength(index));
+        } else {
+            ret.set(0.0f, start);
         }
-        
-        return index;
     }
     
-    private CCTableViewCell _cellWithIndex(int cellIndex)
+    /** index of row at distance from the first row, clamped to valid rows */
+    private int _indexFromDistance(float distance)
     {
-        CCTableViewCell found;
-        
-        found = null;
+        int maxIdx = m_cellCount - 1;
+        int index;
         
-        Iterator<Integer> i = m_indices.iterator();
-        while(i.hasNext()){
-        	if(cellIndex == i.next()){
-
-                for (int index = 0; index < m_cellsUsed.size(); index++) {
-                    if(m_cellsUsed.get(index).getObjectID() == cellIndex){
-                        found = (CCTableViewCell)m_cellsUsed.get(index);
-                        break;
-                    }
+        if (m_cellOffsets == null) {
+            float length = _fixedLength();
+            index = length > 0 ? (int) (distance / length) : 0;
+        } else {
+            // the last offset not greater than distance
+            int low = 0;
+            int high = maxIdx;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (m_cellOffsets[mid] <= distance) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
                 }
-                break;
-        	}
+            }
+            index = low;
         }
         
-        return found;
+        index = Math.max(0, index);
+        index = Math.min(index, maxIdx);
+        return index;
+    }
+    
+    private CCTableViewCell _cellWithIndex(int cellIndex)
+    {
+        int pos = _searchCell(cellIndex);
+        return pos >= 0 ? m_cellsUsed.get(pos) : null;
     }
     
     private void _moveCellOutOfSight(CCTableViewCell cell)
     {
-        m_cellsFreed.add(cell);
-        m_cellsUsed.remove(cell);
-
-        Integer number;
-        Iterator<Integer> it = m_indices.iterator();
-        while(it.hasNext()){
-        	number = it.next();
-        	if(cell.getObjectID() == number){
-        		m_indices.remove(number);
-        		break;
-        	}
+        int pos = _searchCell(cell.getObjectID());
+        if (pos >= 0 && m_cellsUsed.get(pos) == cell) {
+            m_cellsUsed.remove(pos);
+        } else {
+            m_cellsUsed.remove(cell);
         }
+        _freeCell(cell);
         
         cell.reset();
         if (cell.getParent() == container_) {
@@ -369,83 +446,81 @@ public class CCTableView extends CCScrollView implements CCScrollViewDelegate{
         }
     }
     
+    private final CGPoint tmpOffset = CGPoint.zero();
+    
     private void _setIndex(int index, CCTableViewCell cell)
     {
-        cell.setAnchorPoint(CGPoint.ccp(0.0f, 0.0f));
-        cell.setPosition(_offsetFromIndex(index));
+        cell.setAnchorPoint(0.0f, 0.0f);
+        _offsetFromIndex(index, tmpOffset);
+        cell.setPosition(tmpOffset);
         cell.setObjectID(index);
     }
     
     public void scrollViewDidScroll(CCScrollView view)
     {
         int		          startIdx, endIdx, idx, maxIdx;
-        CGPoint           offset;
         
-        maxIdx = dataSource.numberOfCellsInTableView(this);
+        maxIdx = m_cellCount;
         
         if (maxIdx == 0) {
             return; // early termination
         }
         
-        offset   = CGPoint.ccpMult(contentOffset(), -1);
         maxIdx   = Math.max(maxIdx - 1, 0);
         
-        CGSize cellSize = dataSource.cellSizeForTable(this);
-        
-        if (m_vordering == CCTableViewFillTopDown) {
-            offset.y = offset.y + (viewSize.height/container_.getScaleY()) - cellSize.height;
-        }
-        startIdx = _indexFromOffset(offset);
-        if (m_vordering == CCTableViewFillTopDown) {
-            offset.y -= viewSize.height / container_.getScaleY();
+        // visible rect of the container
+        CGPoint offset = container_.getPositionRef();
+        float left   = -offset.x;
+        float bottom = -offset.y;
+        float right  = left + viewSize.width/container_.getScaleX();
+        float top    = bottom + viewSize.height/container_.getScaleY();
+        
+        float startDistance, endDistance;
+        if (super.direction == CCScrollViewDirectionHorizontal) {
+            startDistance = _distanceFromStart(left, 0);
+            endDistance   = _distanceFromStart(right, 0);
+        } else if (m_vordering == CCTableViewFillTopDown) {
+            startDistance = _distanceFromStart(0, top);
+            endDistance   = _distanceFromStart(0, bottom);
         } else {
-            offset.y += viewSize.height/container_.getScaleY();
+            startDistance = _distanceFromStart(0, bottom);
+            endDistance   = _distanceFromStart(0, top);
         }
-        offset.x += viewSize.width/container_.getScaleX();
-            
-        endIdx   = _indexFromOffset(offset);
+        startIdx = _indexFromDistance(startDistance);
+        endIdx   = _indexFromDistance(endDistance);
 
         //Removing cells out of sight starting from the top or left until find the first visible cell
-        if (m_cellsUsed.size() > 0) {
+        while (m_cellsUsed.size() > 0) {
             idx = m_cellsUsed.get(0).getObjectID();
-            while(idx <startIdx) {
-                CCTableViewCell cell = m_cellsUsed.get(0);
-                _moveCellOutOfSight(cell);
-                if (m_cellsUsed.size() > 0) {
-                    idx = m_cellsUsed.get(0).getObjectID();
-                } else {
-                    break;
-                }
+            if (idx >= startIdx) {
+                break;
             }
+            _moveCellOutOfSight(m_cellsUsed.get(0));
         }
         
         //Removing cells out of sight starting from the bottom or right until find the last visible cell
-        if (m_cellsUsed.size() > 0) {
+        while (m_cellsUsed.size() > 0) {
             idx = m_cellsUsed.get(m_cellsUsed.size()-1).getObjectID();
-            while(idx <= maxIdx && idx > endIdx) {
-                CCTableViewCell cell = m_cellsUsed.get(m_cellsUsed.size()-1);
-                _moveCellOutOfSight(cell);
-                if (m_cellsUsed.size() > 0) {
-                    idx = m_cellsUsed.get(m_cellsUsed.size()-1).getObjectID();
-                } else {
-                    break;
-                }
+            if (!(idx <= maxIdx && idx > endIdx)) {
+                break;
             }
+            _moveCellOutOfSight(m_cellsUsed.get(m_cellsUsed.size()-1));
         }
         
+        //Used cells are sorted, walk them together with visible range to find missing rows
+        int pos = _searchCell(startIdx);
+        if (pos < 0) {
+            pos = -pos - 1;
+        }
         for (int i=startIdx; i <= endIdx; i++) {
-            //Checking if there are pending cell to show on screen
-            boolean canUpdate = true;
-            Iterator<Integer> it = m_indices.iterator();
-            while(it.hasNext()){
-            	if(i == it.next()){
-            		canUpdate = false;
-            		break;
-            	}
+            if (pos < m_cellsUsed.size() && m_cellsUsed.get(pos).getObjectID() == i) {
+                pos++;
+                continue;
             }
             
             //updating cell for showing on screen
-            if(canUpdate)updateCellAtIndex(i);
+            updateCellAtIndex(i);
+            pos = _searchCell(i) + 1;
         }
     }
 
@@ -456,20 +531,16 @@ public class CCTableView extends CCScrollView implements CCScrollViewDelegate{
         }
         
       //  if (touches_.size() == 1 && !touchMoved_) {
-        if (!touchMoved_) {
+        if (!touchMoved_ && m_cellCount > 0) {
             int		          index;
             CCTableViewCell   cell;
             CGPoint           point;
             
             point = container_.convertTouchToNodeSpace(event);
-            if (m_vordering == CCTableViewFillTopDown) {
-                CGSize cellSize = dataSource.cellSizeForTable(this);
-                point.y -= cellSize.height;
-            }
-            index = _indexFromOffset(point);
+            index = _indexFromDistance(_distanceFromStart(point.x, point.y));
             cell  = _cellWithIndex(index);
             
-            if (cell != null) {
+            if (cell != null && tDelegate != null) {
                 tDelegate.tableCellTouched(this, cell);
             }
         }
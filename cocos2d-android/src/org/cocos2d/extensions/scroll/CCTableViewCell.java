@@ -9,6 +9,7 @@ import org.cocos2d.nodes.CCNode;
 
 public class CCTableViewCell extends CCNode {
 	private int m_idx;
+	private String m_reuseIdentifier;
 		
 	public void reset() {
 	    m_idx = Integer.MAX_VALUE;
@@ -22,4 +23,13 @@ public class CCTableViewCell extends CCNode {
 	    return m_idx;
 	}
 
+	/** cells are recycled only for rows with the same identifier, null by default */
+	public void setReuseIdentifier(String identifier) {
+	    m_reuseIdentifier = identifier;
+	}
+
+	public String getReuseIdentifier() {
+	    return m_reuseIdentifier;
+	}
+
 }
@@ -0,0 +1,24 @@
+/*
+ *	Port from SWScrollView and SWTableView for iphone 
+ *	by Rodrigo Collavo on 02/03/2012
+ */
+
+package org.cocos2d.extensions.scroll;
+
+import org.cocos2d.types.CGSize;
+
+/**
+ * Data source of table with cells of different sizes.
+ * Sizes are queried for all rows on reloadData() only, cells are
+ * still created only for visible rows.
+ */
+public interface CCTableViewVariableSizeDataSource extends CCTableViewDataSource {
+        /**
+         * size of cell at a given index, height is used by vertical
+         * tables and width by horizontal ones.
+         *
+         * @param idx index of the cell
+         * @return cell size
+         */
+        public CGSize tableCellSizeForIndex(CCTableView table, int idx);
+}
@@ -8,20 +8,24 @@ import java.nio.ShortBuffer;
 import javax.microedition.khronos.opengles.GL10;
 
 import org.cocos2d.types.CCVertex3D;
-import org.cocos2d.types.CGPoint;
 import org.cocos2d.types.ccGridSize;
-import org.cocos2d.types.ccQuad3;
+import org.cocos2d.utils.BufferUtils;
 
 
 /**
  CCGrid3D is a 3D grid implementation. Each vertex has 3 dimensions: x,y,z
+
+ Vertices are kept in float arrays, x, y and z of vertex (i, j) start at
+ vertexIndex(i, j). Actions may change getVertexArray() in place, the whole
+ array is uploaded to the GL buffer by blit().
  */
 public class CCGrid3D extends CCGridBase {
 	protected FloatBuffer texCoordinates;
 	protected FloatBuffer vertices;
-	protected FloatBuffer originalVertices;
     protected ShortBuffer indices;
-    protected FloatBuffer mVertexBuffer;
+
+    protected float[] vertexArray;
+    protected float[] originalVertexArray;
 
     public CCGrid3D(ccGridSize gSize) {
         super(gSize);
@@ -37,20 +41,11 @@ public class CCGrid3D extends CCGridBase {
         // Unneeded states: GL_COLOR_ARRAY
 	    gl.glDisableClientState(GL10.GL_COLOR_ARRAY);	
 
-        ByteBuffer vbb = ByteBuffer.allocateDirect(vertices.limit()*3*4);
-        //System.out.printf("vertices limit = %d\n", vertices.limit());
-        vbb.order(ByteOrder.nativeOrder());
-        mVertexBuffer = vbb.asFloatBuffer();            
-        mVertexBuffer.clear();          
-        mVertexBuffer.position(0);
-        for (int i = 0; i < vertices.limit(); i=i+3) {            
-            mVertexBuffer.put(vertices.get(i));
-            mVertexBuffer.put(vertices.get(i+1));
-            mVertexBuffer.put(vertices.get(i+2));
-        }
-        mVertexBuffer.position(0);
-        gl.glVertexPointer(3, GL10.GL_FLOAT, 0, mVertexBuffer);
-        // gl.glVertexPointer(3, GL10.GL_FLOAT, 0, vertices);
+        vertices.position(0);
+        BufferUtils.copyFloats(vertexArray, 0, vertices, vertexArray.length);
+        vertices.position(0);
+
+        gl.glVertexPointer(3, GL10.GL_FLOAT, 0, vertices);
         gl.glTexCoordPointer(2, GL10.GL_FLOAT, 0, texCoordinates);
         indices.position(0);
 
@@ -65,122 +60,117 @@ public class CCGrid3D extends CCGridBase {
         float width = (float)texture_.pixelsWide();
         float height = (float)texture_.pixelsHigh();
         // float imageH = texture_.getContentSize().height;
-	
-        int x, y, i;
 
-        ByteBuffer vfb = ByteBuffer.allocateDirect(ccQuad3.size * (gridSize_.x + 1) * (gridSize_.y + 1) * 4);
+        final int numVertices = (gridSize_.x + 1) * (gridSize_.y + 1);
+
+        ByteBuffer vfb = ByteBuffer.allocateDirect(3 * numVertices * 4);
         vfb.order(ByteOrder.nativeOrder());
         vertices = vfb.asFloatBuffer();
-        // vertices = BufferProvider.createFloatBuffer(ccQuad3.size * (gridSize_.x + 1) * (gridSize_.y + 1));
-
-        ByteBuffer ofb = ByteBuffer.allocateDirect(ccQuad3.size * (gridSize_.x + 1) * (gridSize_.y + 1) * 4);
-        ofb.order(ByteOrder.nativeOrder());
-        originalVertices = ofb.asFloatBuffer();
-        // originalVertices = BufferProvider.createFloatBuffer(ccQuad3.size * (gridSize_.x + 1) * (gridSize_.y + 1));
-                
-        ByteBuffer tfb = ByteBuffer.allocateDirect(2 * (gridSize_.x + 1) * (gridSize_.y + 1) * 4);
+
+        ByteBuffer tfb = ByteBuffer.allocateDirect(2 * numVertices * 4);
         tfb.order(ByteOrder.nativeOrder());
         texCoordinates = tfb.asFloatBuffer();
-        // texCoordinates = BufferProvider.createFloatBuffer(2 * (gridSize_.x + 1) * (gridSize_.y + 1));
-        
-        ByteBuffer isb = ByteBuffer.allocateDirect(6 * (gridSize_.x + 1) * (gridSize_.y + 1) * 2);
+
+        ByteBuffer isb = ByteBuffer.allocateDirect(6 * gridSize_.x * gridSize_.y * 2);
         isb.order(ByteOrder.nativeOrder());
         indices = isb.asShortBuffer();
-        // indices = BufferProvider.createShortBuffer(6 * (gridSize_.x + 1) * (gridSize_.y + 1));
-        
-        for (y = 0; y < (gridSize_.y + 1); y++) {
-            for (x = 0; x < (gridSize_.x + 1); x++) {
-                int idx = (y * (gridSize_.x + 1)) + x;
-
-                vertices.put(idx * 3 + 0, -1);
-                vertices.put(idx * 3 + 1, -1);
-                vertices.put(idx * 3 + 2, -1);
-                vertices.put(idx * 2 + 0, -1);
-                vertices.put(idx * 2 + 1, -1);
-            }
-        }
-        vertices.position(0);
 
-        for (x = 0; x < gridSize_.x; x++) {
-            for (y = 0; y < gridSize_.y; y++) {
-                int idx = (y * gridSize_.x) + x;
-
-                float x1 = x * step_.x;
-                float x2 = x1 + step_.x;
-                float y1 = y * step_.y;
-                float y2 = y1 + step_.y;
+        vertexArray = new float[3 * numVertices];
+        originalVertexArray = new float[3 * numVertices];
+        float[] texArray = new float[2 * numVertices];
+        short[] idxArray = new short[6 * gridSize_.x * gridSize_.y];
 
-                short a = (short) (x * (getGridHeight() + 1) + y);
-                short b = (short) ((x + 1) * (getGridHeight() + 1) + y);
-                short c = (short) ((x + 1) * (getGridHeight() + 1) + (y + 1));
-                short d = (short) (x * (getGridHeight() + 1) + (y + 1));
+        // vertex (x, y) lies at (x * step, y * step)
+        for (int x = 0; x <= gridSize_.x; x++) {
+            for (int y = 0; y <= gridSize_.y; y++) {
+                int v = x * (gridSize_.y + 1) + y;
+                float vx = x * step_.x;
+                float vy = y * step_.y;
 
-                short[] tempidx = {a, b, d, b, c, d};
+                vertexArray[v * 3 + 0] = vx;
+                vertexArray[v * 3 + 1] = vy;
+                vertexArray[v * 3 + 2] = 0;
 
-               	indices.position(6 * idx);
-               	indices.put(tempidx, 0, 6);
+                texArray[v * 2 + 0] = vx / width;
+                texArray[v * 2 + 1] = vy / height;
+            }
+        }
 
-                int[] l1 = {a * 3, b * 3, c * 3, d * 3};
-                CCVertex3D e = new CCVertex3D(x1, y1, 0);
-                CCVertex3D f = new CCVertex3D(x2, y1, 0);
-                CCVertex3D g = new CCVertex3D(x2, y2, 0);
-                CCVertex3D h = new CCVertex3D(x1, y2, 0);
+        for (int x = 0; x < gridSize_.x; x++) {
+            for (int y = 0; y < gridSize_.y; y++) {
+                int idx = (y * gridSize_.x) + x;
 
-                CCVertex3D[] l2 = {e, f, g, h};
+                short a = (short) (x * (gridSize_.y + 1) + y);
+                short b = (short) ((x + 1) * (gridSize_.y + 1) + y);
+                short c = (short) ((x + 1) * (gridSize_.y + 1) + (y + 1));
+                short d = (short) (x * (gridSize_.y + 1) + (y + 1));
+
+                idxArray[6 * idx + 0] = a;
+                idxArray[6 * idx + 1] = b;
+                idxArray[6 * idx + 2] = d;
+                idxArray[6 * idx + 3] = b;
+                idxArray[6 * idx + 4] = c;
+                idxArray[6 * idx + 5] = d;
+            }
+        }
 
-                int[] tex1 = {a * 2, b * 2, c * 2, d * 2};
-                CGPoint[] tex2 = {CGPoint.ccp(x1, y1), CGPoint.ccp(x2, y1), CGPoint.ccp(x2, y2), CGPoint.ccp(x1, y2)};
+        System.arraycopy(vertexArray, 0, originalVertexArray, 0, vertexArray.length);
 
-                for (i = 0; i < 4; i++) {
-                    vertices.put(l1[i] + 0, l2[i].x);
-                    vertices.put(l1[i] + 1, l2[i].y);
-                    vertices.put(l1[i] + 2, l2[i].z);
+        BufferUtils.copyFloats(vertexArray, 0, vertices, vertexArray.length);
+        BufferUtils.copyFloats(texArray, 0, texCoordinates, texArray.length);
+        indices.put(idxArray);
 
-                    texCoordinates.put(tex1[i] + 0, tex2[i].x / width);
-                    texCoordinates.put(tex1[i] + 1, tex2[i].y / height);
-                }
-            }
-        }
         indices.position(0);
         vertices.position(0);
         texCoordinates.position(0);
+    }
+
+    /** index of x coordinate of vertex (x, y) in vertex arrays */
+    public int vertexIndex(int x, int y) {
+        return (x * (gridSize_.y + 1) + y) * 3;
+    }
 
-        originalVertices.put(vertices);
-        originalVertices.position(0);
+    /** current vertices, actions may change them in place */
+    public float[] getVertexArray() {
+        return vertexArray;
+    }
+
+    /** original (non-transformed) vertices, must not be changed */
+    public float[] getOriginalVertexArray() {
+        return originalVertexArray;
+    }
+
+    /** copies all original vertices to current ones */
+    public void resetVertices() {
+        System.arraycopy(originalVertexArray, 0, vertexArray, 0, vertexArray.length);
     }
 
     /** returns the vertex at a given position */
     public CCVertex3D vertex(ccGridSize pos) {
-        int index = (pos.x * (gridSize_.y + 1) + pos.y) * 3;
-        CCVertex3D vert = new CCVertex3D(vertices.get(index + 0), vertices.get(index + 1), vertices.get(index + 2));
-
-        return vert;
+        int index = vertexIndex(pos.x, pos.y);
+        return new CCVertex3D(vertexArray[index + 0], vertexArray[index + 1], vertexArray[index + 2]);
     }
 
     /** returns the original (non-transformed) vertex at a given position */
     public CCVertex3D originalVertex(ccGridSize pos) {
-        int index = (pos.x * (gridSize_.y + 1) + pos.y) * 3;
-        CCVertex3D vert = new CCVertex3D(originalVertices.get(index + 0), originalVertices.get(index + 1), originalVertices.get(index + 2));
-
-        return vert;
+        int index = vertexIndex(pos.x, pos.y);
+        return new CCVertex3D(originalVertexArray[index + 0], originalVertexArray[index + 1], originalVertexArray[index + 2]);
     }
 
     /** sets a new vertex at a given position */
     public void setVertex(ccGridSize pos, CCVertex3D vertex) {
-        int index = (pos.x * (gridSize_.y + 1) + pos.y) * 3;
-        vertices.put(index + 0, vertex.x);
-        vertices.put(index + 1, vertex.y);
-        vertices.put(index + 2, vertex.z);
+        int index = vertexIndex(pos.x, pos.y);
+        vertexArray[index + 0] = vertex.x;
+        vertexArray[index + 1] = vertex.y;
+        vertexArray[index + 2] = vertex.z;
     }
 
     @Override
     public void reuse(GL10 gl) {
         if (reuseGrid_ > 0) {
-//            memcpy(originalVertices, vertices, (getGridWidth()+1)*(getGridHeight()+1)*sizeof(CCVertex3D));
+            System.arraycopy(vertexArray, 0, originalVertexArray, 0, vertexArray.length);
             reuseGrid_--;
         }
 
     }
 }
-
-
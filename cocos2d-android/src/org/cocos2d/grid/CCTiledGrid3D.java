@@ -10,19 +10,26 @@ import javax.microedition.khronos.opengles.GL10;
 import org.cocos2d.types.ccGridSize;
 import org.cocos2d.types.ccQuad2;
 import org.cocos2d.types.ccQuad3;
+import org.cocos2d.utils.BufferUtils;
 
 
 /**
  CCTiledGrid3D is a 3D grid implementation. It differs from Grid3D in that
  the tiles can be separated from the grid.
+
+ Each tile has 12 floats in vertex arrays starting at tileIndex(x, y):
+ x, y, z of bottom left, bottom right, top left and top right corners.
+ Actions may change getVertexArray() in place, it is uploaded by blit().
 */
 
 public class CCTiledGrid3D extends CCGridBase {
     FloatBuffer texCoordinates;
     FloatBuffer vertices;
-    FloatBuffer originalVertices;
     ShortBuffer indices;
 
+    float[] vertexArray;
+    float[] originalVertexArray;
+
     public static CCTiledGrid3D make(ccGridSize gSize) {
     	return new CCTiledGrid3D(gSize);
     }
@@ -40,6 +47,10 @@ public class CCTiledGrid3D extends CCGridBase {
     	// Unneeded states: GL_COLOR_ARRAY
         gl.glDisableClientState(GL10.GL_COLOR_ARRAY);
 
+        vertices.position(0);
+        BufferUtils.copyFloats(vertexArray, 0, vertices, vertexArray.length);
+        vertices.position(0);
+
         gl.glVertexPointer(3, GL10.GL_FLOAT, 0, vertices);
         gl.glTexCoordPointer(2, GL10.GL_FLOAT, 0, texCoordinates);
         gl.glDrawElements(GL10.GL_TRIANGLES, n * 6, GL10.GL_UNSIGNED_SHORT, indices);
@@ -132,10 +143,6 @@ public class CCTiledGrid3D extends CCGridBase {
         vfb.order(ByteOrder.nativeOrder());
         vertices = vfb.asFloatBuffer();
 
-        ByteBuffer ofb = ByteBuffer.allocateDirect(ccQuad3.size * numQuads * 4);
-        ofb.order(ByteOrder.nativeOrder());
-        originalVertices = ofb.asFloatBuffer();
-
         ByteBuffer tfb = ByteBuffer.allocateDirect(ccQuad2.size * numQuads * 4);
         tfb.order(ByteOrder.nativeOrder());
         texCoordinates = tfb.asFloatBuffer();
@@ -144,6 +151,12 @@ public class CCTiledGrid3D extends CCGridBase {
         isb.order(ByteOrder.nativeOrder());
         indices = isb.asShortBuffer();
 
+        vertexArray = new float[ccQuad3.size * numQuads];
+        originalVertexArray = new float[ccQuad3.size * numQuads];
+        float[] texArray = new float[ccQuad2.size * numQuads];
+        short[] idxArray = new short[6 * numQuads];
+
+        int v = 0, t = 0;
         for (int x = 0; x < gridSize_.x; x++) {
             for (int y = 0; y < gridSize_.y; y++) {
                 float x1 = x * step_.x;
@@ -151,89 +164,117 @@ public class CCTiledGrid3D extends CCGridBase {
                 float y1 = y * step_.y;
                 float y2 = y1 + step_.y;
 
-                vertices.put(x1);
-                vertices.put(y1);
-                vertices.put(0);
-                vertices.put(x2);
-                vertices.put(y1);
-                vertices.put(0);
-                vertices.put(x1);
-                vertices.put(y2);
-                vertices.put(0);
-                vertices.put(x2);
-                vertices.put(y2);
-                vertices.put(0);
-
-                texCoordinates.put(x1 / width);
-                texCoordinates.put(y1 / height);
-                texCoordinates.put(x2 / width);
-                texCoordinates.put(y1 / height);
-                texCoordinates.put(x1 / width);
-                texCoordinates.put(y2 / height);
-                texCoordinates.put(x2 / width);
-                texCoordinates.put(y2 / height);
+                vertexArray[v++] = x1;
+                vertexArray[v++] = y1;
+                vertexArray[v++] = 0;
+                vertexArray[v++] = x2;
+                vertexArray[v++] = y1;
+                vertexArray[v++] = 0;
+                vertexArray[v++] = x1;
+                vertexArray[v++] = y2;
+                vertexArray[v++] = 0;
+                vertexArray[v++] = x2;
+                vertexArray[v++] = y2;
+                vertexArray[v++] = 0;
+
+                texArray[t++] = x1 / width;
+                texArray[t++] = y1 / height;
+                texArray[t++] = x2 / width;
+                texArray[t++] = y1 / height;
+                texArray[t++] = x1 / width;
+                texArray[t++] = y2 / height;
+                texArray[t++] = x2 / width;
+                texArray[t++] = y2 / height;
             }
         }
-        vertices.position(0);
-        texCoordinates.position(0);
 
         for (int x = 0; x < numQuads; x++) {
-            indices.put(x * 6 + 0, (short) (x * 4 + 0));
-            indices.put(x * 6 + 1, (short) (x * 4 + 1));
-            indices.put(x * 6 + 2, (short) (x * 4 + 2));
+            idxArray[x * 6 + 0] = (short) (x * 4 + 0);
+            idxArray[x * 6 + 1] = (short) (x * 4 + 1);
+            idxArray[x * 6 + 2] = (short) (x * 4 + 2);
 
-            indices.put(x * 6 + 3, (short) (x * 4 + 1));
-            indices.put(x * 6 + 4, (short) (x * 4 + 2));
-            indices.put(x * 6 + 5, (short) (x * 4 + 3));
+            idxArray[x * 6 + 3] = (short) (x * 4 + 1);
+            idxArray[x * 6 + 4] = (short) (x * 4 + 2);
+            idxArray[x * 6 + 5] = (short) (x * 4 + 3);
         }
 
-        originalVertices.put(vertices);
-        originalVertices.position(0);
+        System.arraycopy(vertexArray, 0, originalVertexArray, 0, vertexArray.length);
+
+        BufferUtils.copyFloats(vertexArray, 0, vertices, vertexArray.length);
+        BufferUtils.copyFloats(texArray, 0, texCoordinates, texArray.length);
+        indices.put(idxArray);
+
+        vertices.position(0);
+        texCoordinates.position(0);
+        indices.position(0);
+    }
+
+    /** index of the first float of tile (x, y) in vertex arrays */
+    public int tileIndex(int x, int y) {
+        return (gridSize_.y * x + y) * ccQuad3.size;
+    }
+
+    /** current tile vertices, actions may change them in place */
+    public float[] getVertexArray() {
+        return vertexArray;
+    }
+
+    /** original (untransformed) tile vertices, must not be changed */
+    public float[] getOriginalVertexArray() {
+        return originalVertexArray;
+    }
+
+    /** copies all original tiles to current ones */
+    public void resetTiles() {
+        System.arraycopy(originalVertexArray, 0, vertexArray, 0, vertexArray.length);
+    }
+
+    /** moves tile (x, y) from its original place by dx, dy, dz */
+    public void moveTile(int x, int y, float dx, float dy, float dz) {
+        int idx = tileIndex(x, y);
+        for (int i = idx; i < idx + ccQuad3.size; i += 3) {
+            vertexArray[i + 0] = originalVertexArray[i + 0] + dx;
+            vertexArray[i + 1] = originalVertexArray[i + 1] + dy;
+            vertexArray[i + 2] = originalVertexArray[i + 2] + dz;
+        }
     }
 
     /** sets a new tile */
     public void setTile(ccGridSize pos, ccQuad3 coords) {
-        int idx = (gridSize_.y * pos.x + pos.y) * 4 * 3;
-        float[] vertArray = coords.toFloatArray();
-        for (int i = 0; i < ccQuad3.size; i++) {
-            vertices.put(idx + i, vertArray[i]);
-        }
-        vertices.position(0);
+        int idx = tileIndex(pos.x, pos.y);
+        float[] v = vertexArray;
+        v[idx + 0] = coords.bl_x;
+        v[idx + 1] = coords.bl_y;
+        v[idx + 2] = coords.bl_z;
+        v[idx + 3] = coords.br_x;
+        v[idx + 4] = coords.br_y;
+        v[idx + 5] = coords.br_z;
+        v[idx + 6] = coords.tl_x;
+        v[idx + 7] = coords.tl_y;
+        v[idx + 8] = coords.tl_z;
+        v[idx + 9] = coords.tr_x;
+        v[idx + 10] = coords.tr_y;
+        v[idx + 11] = coords.tr_z;
     }
 
     /** returns the original tile (untransformed) at the given position */
     public ccQuad3 originalTile(ccGridSize pos) {
-        int idx = (gridSize_.y * pos.x + pos.y) * ccQuad3.size;
-
         float[] vertArray = new float[ccQuad3.size];
-        for (int i = 0; i < ccQuad3.size; i++) {
-            vertArray[i] = originalVertices.get(idx + i);
-        }
-
+        System.arraycopy(originalVertexArray, tileIndex(pos.x, pos.y), vertArray, 0, ccQuad3.size);
         return new ccQuad3(vertArray);
     }
     
     /** returns the tile at the given position */
     public ccQuad3 tile(ccGridSize pos) {
-        int idx = (gridSize_.y * pos.x + pos.y) * 4 * 3;
-
         float[] vertArray = new float[ccQuad3.size];
-        for (int i = 0; i < ccQuad3.size; i++) {
-            vertArray[i] = vertices.get(idx + i);
-        }
-
+        System.arraycopy(vertexArray, tileIndex(pos.x, pos.y), vertArray, 0, ccQuad3.size);
         return new ccQuad3(vertArray);
     }
 
     @Override
     public void reuse(GL10 gl) {
         if (reuseGrid_ > 0) {
-            final int numQuads = gridSize_.x * gridSize_.y;
-            final int total = numQuads * 12;
-            for (int i=0; i<total; ++i) {
-            	originalVertices.put(i, vertices.get(i));
-            }
-//            memcpy(originalVertices, vertices, numQuads*12*sizeof(float));
+            System.arraycopy(vertexArray, 0, originalVertexArray, 0, vertexArray.length);
             reuseGrid_--;
         }
     }
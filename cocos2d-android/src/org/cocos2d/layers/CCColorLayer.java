@@ -9,6 +9,7 @@ import javax.microedition.khronos.opengles.GL10;
 import org.cocos2d.config.ccConfig;
 import org.cocos2d.nodes.CCDirector;
 import org.cocos2d.nodes.CCNode;
+import org.cocos2d.nodes.CCRedrawTracker;
 import org.cocos2d.protocols.CCRGBAProtocol;
 import org.cocos2d.types.CGSize;
 import org.cocos2d.types.ccBlendFunc;
@@ -97,6 +98,7 @@ public class CCColorLayer extends CCLayer
             }
             squareColors_.position(0);
         }
+        CCRedrawTracker.setNeedsRedraw();
     }
 
     @Override
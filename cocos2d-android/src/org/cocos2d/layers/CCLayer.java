@@ -9,6 +9,7 @@ import org.cocos2d.protocols.CCTouchDelegateProtocol;
 import org.cocos2d.types.CGPoint;
 import org.cocos2d.types.CGSize;
 
+import android.app.Activity;
 import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
@@ -113,8 +114,12 @@ public class CCLayer extends CCNode
     }
 
     protected CCLayer() {
-    	// get the SensorManager from the Activity
-    	sensorManager = (SensorManager) CCDirector.sharedDirector().getActivity().getSystemService(Context.SENSOR_SERVICE);
+    	// get the SensorManager from the Activity, there is none when running headless
+    	Activity activity = CCDirector.sharedDirector().getActivity();
+    	if (activity != null)
+    		sensorManager = (SensorManager) activity.getSystemService(Context.SENSOR_SERVICE);
+    	else
+    		sensorManager = null;
     	
     	// if we have a SensorManager then get the accelerometer Sensor
     	if (sensorManager != null) 
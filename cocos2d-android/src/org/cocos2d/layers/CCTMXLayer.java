@@ -342,6 +342,12 @@ public class CCTMXLayer extends CCSpriteSheet {
 		return null;
 	}
 
+	/** CCTMXLayer doesn't support reordering its tiles, the atlas index of a tile is its position in the map.
+	 */
+	public void reorderChild(CCNode child, int z) {
+		assert(false):"reorderChild: is not supported on CCTMXLayer";
+	}
+
 	public void removeChild(CCNode node, boolean cleanup) {
 		// allows removing nil objects
 		if( node == null)
@@ -12,10 +12,10 @@ import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
 import org.cocos2d.config.ccMacros;
-import org.cocos2d.nodes.CCDirector;
 import org.cocos2d.types.CGPoint;
 import org.cocos2d.types.CGSize;
 import org.cocos2d.utils.Base64;
+import org.cocos2d.utils.ContentHelper;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -117,10 +117,12 @@ public class CCTMXMapInfo {
 	private void parseXMLFile(String xmlFilename) {
 		try {
 			SAXParserFactory saxFactory = SAXParserFactory.newInstance();
+			// handlers read localName, which is empty without namespace processing
+			saxFactory.setNamespaceAware(true);
 			SAXParser parser = saxFactory.newSAXParser();
 			XMLReader reader = parser.getXMLReader();
 
-			InputStream is = CCDirector.sharedDirector().getActivity().getResources().getAssets().open(xmlFilename);
+			InputStream is = ContentHelper.sharedHelper().openInputStream(xmlFilename);
 			BufferedReader in = new BufferedReader(new InputStreamReader(is));
 
 			CCTMXXMLParser handler = new CCTMXXMLParser();
@@ -159,6 +159,7 @@ public class CCTMXTiledMap extends CCNode {
 	public CCTMXLayer layerNamed(String layerName) {
 		if (children_ == null)
 			return null;
+		sortAllChildren();
 		for (CCNode node : children_) {
 			CCTMXLayer layer = (CCTMXLayer)node;
 			if (layer != null){
@@ -6,6 +6,7 @@ import org.cocos2d.config.ccMacros;
 import org.cocos2d.events.CCTouchDispatcher;
 import org.cocos2d.layers.CCLayer;
 import org.cocos2d.nodes.CCDirector;
+import org.cocos2d.nodes.CCHitTestIndex;
 import org.cocos2d.nodes.CCNode;
 import org.cocos2d.protocols.CCRGBAProtocol;
 import org.cocos2d.types.CGPoint;
@@ -41,6 +42,12 @@ public class CCMenu extends CCLayer {
     /** conforms to CCRGBAProtocol protocol */
     private ccColor3B   color_;
 
+    /** spatial index of items, null if disabled */
+    private CCHitTestIndex<CCMenuItem> hitTestIndex_;
+    private ArrayList<CCMenuItem> hitTestCandidates_;
+    /** CCMenuItem.menuOrder_ of items has to be updated */
+    private boolean itemOrderDirty_ = true;
+
     public CCMenuItem getSelectedItem() {
         return selectedItem;
     }
@@ -92,7 +99,60 @@ public class CCMenu extends CCLayer {
      */
     @Override
     public CCNode addChild(CCNode child, int z, int tag) {
-    	return super.addChild((CCMenuItem)child, z, tag);
+    	CCNode ret = super.addChild((CCMenuItem)child, z, tag);
+    	if (hitTestIndex_ != null)
+    		hitTestIndex_.put((CCMenuItem)child, child);
+    	itemOrderDirty_ = true;
+    	return ret;
+    }
+
+    @Override
+    public void reorderChild(CCNode child, int zOrder) {
+    	super.reorderChild(child, zOrder);
+    	itemOrderDirty_ = true;
+    }
+
+    @Override
+    public void removeChild(CCNode child, boolean cleanup) {
+    	super.removeChild(child, cleanup);
+    	if (hitTestIndex_ != null && child != null)
+    		hitTestIndex_.remove((CCMenuItem)child);
+    	itemOrderDirty_ = true;
+    }
+
+    @Override
+    public void removeAllChildren(boolean cleanup) {
+    	super.removeAllChildren(cleanup);
+    	if (hitTestIndex_ != null)
+    		hitTestIndex_.clear();
+    	itemOrderDirty_ = true;
+    }
+
+    /** Enables spatial index of items for touch lookup.
+     * Items are found by grid of their world bounds instead of testing
+     * each item, it helps menus with many items.
+     * Result is the same as without the index.
+     */
+    public void setHitTestIndexEnabled(boolean enabled) {
+    	if (enabled == (hitTestIndex_ != null))
+    		return;
+
+    	if (enabled) {
+    		hitTestIndex_ = new CCHitTestIndex<CCMenuItem>();
+    		hitTestCandidates_ = new ArrayList<CCMenuItem>();
+    		if (children_ != null) {
+    			for (int i = 0; i < children_.size(); i++) {
+    				hitTestIndex_.put((CCMenuItem)children_.get(i), children_.get(i));
+    			}
+    		}
+    	} else {
+    		hitTestIndex_ = null;
+    		hitTestCandidates_ = null;
+    	}
+    }
+
+    public boolean isHitTestIndexEnabled() {
+    	return hitTestIndex_ != null;
     }
 
     /** Override synthesized setOpacity to recurse items */
@@ -194,6 +254,8 @@ public class CCMenu extends CCLayer {
      * align items vertically with padding
      */
     public void alignItemsVertically(float padding) {
+        sortAllChildren();
+
         float height = -padding;
         for (CCNode item : children_) {
             height += item.getContentSize().height * item.getScaleY() + padding;
@@ -218,6 +280,8 @@ public class CCMenu extends CCLayer {
      * align items horizontally with padding
      */
     public void alignItemsHorizontally(float padding) {
+        sortAllChildren();
+
         float width = -padding;
         for (CCNode item: children_) {
             width += item.getContentSize().width * item.getScaleX() + padding;
@@ -234,6 +298,8 @@ public class CCMenu extends CCLayer {
      * align items in rows of columns
      */
     public void alignItemsInColumns(int columns[]) {
+        sortAllChildren();
+
         ArrayList<Integer> rows = new ArrayList<Integer>();
         for (int i = 0; i < columns.length; i++) {
             rows.add(columns[i]);
@@ -297,6 +363,8 @@ public class CCMenu extends CCLayer {
      * align items in columns of rows
      */
     public void alignItemsInRows(int rows[]) {
+        sortAllChildren();
+
         ArrayList<Integer> columns = new ArrayList<Integer>();
         for (int i = 0; i < rows.length; i++) {
             columns.add(rows[i]);
@@ -365,6 +433,7 @@ public class CCMenu extends CCLayer {
     private CCMenuItem itemForTouch(MotionEvent event) {
     	if(children_ == null)
     		return null;
+    	sortAllChildren();
     	
     	PoolHolder holder = PoolHolder.getInstance();
     	OneClassPool<CGPoint> pointPool = holder.getCGPointPool();
@@ -378,6 +447,14 @@ public class CCMenu extends CCLayer {
     	
     	CCDirector.sharedDirector().convertToGL(event.getX(), event.getY(), touchLocation);
 
+    	if (hitTestIndex_ != null) {
+    		retItem = itemForTouchIndexed(touchLocation.x, touchLocation.y);
+    		pointPool.free(touchLocation);
+    		pointPool.free(local);
+    		rectPool.free(r);
+    		return retItem;
+    	}
+
     	for (int i = 0; i < children_.size(); i++) {
     		CCMenuItem item = (CCMenuItem) children_.get(i);
             if (item.getVisible() && item.isEnabled()){
@@ -397,4 +474,42 @@ public class CCMenu extends CCLayer {
     	
     	return retItem;
     }
+
+    /** candidates from the index are in any order, the first child wins as in itemForTouch() */
+    private CCMenuItem itemForTouchIndexed(float x, float y) {
+    	ArrayList<CCMenuItem> candidates = hitTestCandidates_;
+    	hitTestIndex_.query(x, y, candidates);
+
+    	CCMenuItem retItem = null;
+    	int retIndex = Integer.MAX_VALUE;
+    	for (int i = 0; i < candidates.size(); i++) {
+    		CCMenuItem item = candidates.get(i);
+    		if (!item.getVisible() || !item.isEnabled())
+    			continue;
+
+    		if (candidates.size() == 1) {
+    			retItem = item;
+    			break;
+    		}
+
+    		if (itemOrderDirty_)
+    			updateItemOrder();
+    		if (item.menuOrder_ < retIndex) {
+    			retIndex = item.menuOrder_;
+    			retItem = item;
+    		}
+    	}
+    	candidates.clear();
+
+    	return retItem;
+    }
+
+    /** caches positions of items in children_, so itemForTouchIndexed() needs no indexOf() */
+    private void updateItemOrder() {
+    	sortAllChildren();
+    	for (int i = 0; i < children_.size(); i++) {
+    		((CCMenuItem)children_.get(i)).menuOrder_ = i;
+    	}
+    	itemOrderDirty_ = false;
+    }
 }
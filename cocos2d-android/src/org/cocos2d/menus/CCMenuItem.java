@@ -27,6 +27,9 @@ public class CCMenuItem extends CCNode {
     /** returns whether or not the item is selected @since v0.8.2 */
     protected boolean isSelected_;
 
+    /** position in children of the menu, kept by CCMenu */
+    int menuOrder_;
+
     protected Object targetCallback;
     protected String selector;
 
@@ -0,0 +1,502 @@
+package org.cocos2d.nodes;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.microedition.khronos.opengles.GL10;
+import javax.microedition.khronos.opengles.GL11;
+
+import org.cocos2d.config.ccConfig;
+import org.cocos2d.opengl.CCTexture2D;
+import org.cocos2d.types.ccBlendFunc;
+import org.cocos2d.utils.BufferUtils;
+
+/** Frame level batch of sprite quads.
+ *
+ * When enabled, CCSprite nodes which are not rendered by CCSpriteSheet don't draw
+ * themselves, their quads are transformed on CPU to the scene space and collected
+ * in one batch. Batch is drawn with one glDrawElements when texture or blend
+ * function changes, when any other node is going to draw, or at the end of the frame.
+ * So draw order is preserved, but sprites sharing texture are drawn together
+ * even if they have different parents.
+ *
+ * Cached world matrices of nodes are kept in a stack mirroring the GL matrix stack of CCNode.visit().
+ * Subtrees with active grid, dirty camera or visited out of the usual visit() order
+ * are drawn directly.
+ *
+ * Nodes which override visit() may change GL state around their children, like
+ * CCClipNode does with scissor test, so the batch is flushed when their visit
+ * starts and when CCNode.visit() of them ends. Code which changes GL state
+ * in other places while the scene is drawn should call flush() first.
+ *
+ * Requires GL11 to read the base modelview matrix once per frame.
+ *
+ * getDrawCalls() returns count of draw calls of the last frame issued by
+ * sprites, texture atlases and this batch, it can be used to verify the reduction.
+ *
+ * Other nodes can add their triangles with addPolygon(), triangles are stored
+ * as quads with a degenerate corner.
+ */
+public class CCBatchRenderer {
+	/** Nodes which add their geometry to the batch in draw(),
+	 * the batch is not flushed before they are drawn.
+	 */
+	public interface Batchable {
+	}
+
+	private static final int kInitialCapacity = 64;
+
+	/** indices are unsigned shorts, 4 vertices per quad */
+	private static final int kMaxQuads = 16384;
+
+	// a, b, c, d, tx, ty, z, interpolation offset x, y
+	private static final int kStackStride = 9;
+
+	// flags of node classes
+	private static final int kOverridesDraw = 1;
+	private static final int kOverridesVisit = 2;
+	private static final ConcurrentHashMap<Class<?>, Integer> classFlags_ =
+		new ConcurrentHashMap<Class<?>, Integer>();
+
+	private static CCBatchRenderer _sharedRenderer = new CCBatchRenderer();
+
+	/** returns the shared batch renderer */
+	public static CCBatchRenderer sharedRenderer() {
+		return _sharedRenderer;
+	}
+
+	private boolean enabled_;
+	private boolean active_;
+
+	// modelview matrix at the beginning of the scene drawing
+	private final float[] baseMatrix;
+
+	// world transforms of visited nodes
+	private float[] stack;
+	private CCNode[] stackNodes;
+	private boolean[] stackValid;
+	private int depth;
+
+	// collected quads
+	private float[] vertices;
+	private float[] texCoords;
+	private float[] colors;
+	private int quadCount;
+	private int capacity;
+	private CCTexture2D texture;
+	private int blendSrc;
+	private int blendDst;
+
+	private FloatBuffer vertexBuffer;
+	private FloatBuffer texCoordBuffer;
+	private FloatBuffer colorBuffer;
+	private ShortBuffer indexBuffer;
+
+	private int drawCalls;
+	private int batchedQuads;
+	private int lastDrawCalls_;
+	private int lastBatchedQuads_;
+
+	private CCBatchRenderer() {
+		enabled_ = ccConfig.CC_SPRITE_AUTO_BATCHING;
+		baseMatrix = new float[16];
+
+		stack = new float[16 * kStackStride];
+		stackNodes = new CCNode[16];
+		stackValid = new boolean[16];
+
+		ensureCapacity(kInitialCapacity);
+	}
+
+	/** whether sprites should be collected in frame batch */
+	public void setEnabled(boolean enabled) {
+		enabled_ = enabled;
+	}
+
+	public boolean isEnabled() {
+		return enabled_;
+	}
+
+	/** true while the scene is drawn with batching */
+	public boolean isActive() {
+		return active_;
+	}
+
+	/** draw calls issued in the last frame */
+	public int getDrawCalls() {
+		return lastDrawCalls_;
+	}
+
+	/** sprite quads drawn by the batch in the last frame */
+	public int getBatchedQuads() {
+		return lastBatchedQuads_;
+	}
+
+	/** counts draw call which is not issued by the batch */
+	public void countDrawCall() {
+		drawCalls++;
+	}
+
+	/** Called by CCDirector before the scene is visited.
+	 * Current modelview matrix becomes the base of batched quads.
+	 */
+	public void begin(GL10 gl) {
+		drawCalls = 0;
+		batchedQuads = 0;
+		depth = 0;
+		quadCount = 0;
+		texture = null;
+
+		active_ = enabled_ && gl instanceof GL11;
+		if(active_)
+			((GL11)gl).glGetFloatv(GL11.GL_MODELVIEW_MATRIX, baseMatrix, 0);
+	}
+
+	/** Called by CCDirector after the scene is visited, draws rest of the batch */
+	public void end(GL10 gl) {
+		flush(gl);
+		active_ = false;
+
+		for(int i = 0; i < depth; ++i) {
+			stackNodes[i] = null;
+		}
+		depth = 0;
+
+		lastDrawCalls_ = drawCalls;
+		lastBatchedQuads_ = batchedQuads;
+	}
+
+	/** Pushes world transform of node, called by CCNode.visit() after transform().
+	 * @param world cached world matrix of the node
+	 * @param dx interpolation offset of the node in parent space, see CCNode.setInterpolatesPosition()
+	 * @param dy interpolation offset of the node in parent space
+	 * @param z vertexZ of the node
+	 * @param batchable false if node transform can't be expressed by affine matrix
+	 */
+	void pushNode(CCNode node, float[] world, float dx, float dy, float z, boolean batchable) {
+		ensureStack(depth + 1);
+
+		int dst = depth * kStackStride;
+		boolean valid;
+		float ox, oy;
+		if(depth == 0) {
+			valid = batchable && node.parent_ == null;
+			stack[dst + 6] = z;
+			ox = dx;
+			oy = dy;
+		} else {
+			int src = dst - kStackStride;
+			valid = batchable && stackValid[depth - 1] && stackNodes[depth - 1] == node.parent_;
+			stack[dst + 6] = stack[src + 6] + z;
+			// offsets of ancestors are translations in the scene, which the subtree shares
+			ox = stack[src + 7] + stack[src] * dx + stack[src + 2] * dy;
+			oy = stack[src + 8] + stack[src + 1] * dx + stack[src + 3] * dy;
+		}
+
+		// when node is visited by its parent world matrix is relative to the scene
+		System.arraycopy(world, 0, stack, dst, 6);
+		stack[dst + 4] += ox;
+		stack[dst + 5] += oy;
+		stack[dst + 7] = ox;
+		stack[dst + 8] = oy;
+
+		stackNodes[depth] = node;
+		stackValid[depth] = valid;
+		depth++;
+	}
+
+	/** Pops transform pushed by pushNode() */
+	void popNode() {
+		depth--;
+		stackNodes[depth] = null;
+	}
+
+	/** Called by CCNode.visit() before draw(), flushes the batch if node draws itself */
+	void willDraw(GL10 gl, CCNode node) {
+		if(quadCount == 0 || node instanceof CCSprite || node instanceof Batchable)
+			return;
+
+		if((classFlags(node.getClass()) & kOverridesDraw) != 0)
+			flush(gl);
+	}
+
+	/** Called by CCNode.visit() before a child is visited, flushes the batch if child overrides visit() */
+	void willVisit(GL10 gl, CCNode child) {
+		if(quadCount > 0 && (classFlags(child.getClass()) & kOverridesVisit) != 0)
+			flush(gl);
+	}
+
+	/** Called at the end of CCNode.visit(), flushes the batch if node overrides visit() */
+	void didVisit(GL10 gl, CCNode node) {
+		if(quadCount > 0 && (classFlags(node.getClass()) & kOverridesVisit) != 0)
+			flush(gl);
+	}
+
+	private static int classFlags(Class<?> cls) {
+		Integer ret = classFlags_.get(cls);
+		if(ret == null) {
+			int flags = 0;
+			if(declaringClass(cls, "draw") != CCNode.class)
+				flags |= kOverridesDraw;
+			if(declaringClass(cls, "visit") != CCNode.class)
+				flags |= kOverridesVisit;
+			ret = flags;
+			classFlags_.put(cls, ret);
+		}
+		return ret;
+	}
+
+	private static Class<?> declaringClass(Class<?> cls, String method) {
+		try {
+			return cls.getMethod(method, GL10.class).getDeclaringClass();
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	/** Adds sprite quad to the batch.
+	 * @return false if sprite can't be batched, it should flush the batch and draw itself
+	 */
+	boolean addQuad(GL10 gl, CCSprite sprite, CCTexture2D tex, ccBlendFunc blend,
+			FloatBuffer quadVertices, FloatBuffer quadTexCoords, FloatBuffer quadColors) {
+		if(depth == 0 || tex == null)
+			return false;
+
+		int top = depth - 1;
+		if(!stackValid[top] || stackNodes[top] != sprite)
+			return false;
+
+		if(quadCount > 0 && (tex != texture || blend.src != blendSrc || blend.dst != blendDst))
+			flush(gl);
+
+		if(quadCount == capacity) {
+			if(capacity == kMaxQuads)
+				flush(gl);
+			else
+				ensureCapacity(Math.min(capacity * 2, kMaxQuads));
+		}
+
+		texture = tex;
+		blendSrc = blend.src;
+		blendDst = blend.dst;
+
+		int s = top * kStackStride;
+		float a = stack[s], b = stack[s + 1], c = stack[s + 2], d = stack[s + 3];
+		float tx = stack[s + 4], ty = stack[s + 5], z = stack[s + 6];
+
+		int v = quadCount * 12;
+		for(int i = 0; i < 12; i += 3) {
+			float x = quadVertices.get(i);
+			float y = quadVertices.get(i + 1);
+			vertices[v + i]     = a * x + c * y + tx;
+			vertices[v + i + 1] = b * x + d * y + ty;
+			vertices[v + i + 2] = quadVertices.get(i + 2) + z;
+		}
+
+		int t = quadCount * 8;
+		for(int i = 0; i < 8; ++i) {
+			texCoords[t + i] = quadTexCoords.get(i);
+		}
+
+		int col = quadCount * 16;
+		for(int i = 0; i < 16; ++i) {
+			colors[col + i] = quadColors.get(i);
+		}
+
+		quadCount++;
+		return true;
+	}
+
+	/** Adds 2D triangle fan or strip of node to the batch, should be called from node's draw().
+	 * @param vertices x, y pairs in node space
+	 * @param count count of vertices
+	 * @param fan true for GL_TRIANGLE_FAN, false for GL_TRIANGLE_STRIP
+	 * @return false if node can't be batched, it should flush the batch and draw itself
+	 */
+	public boolean addPolygon(GL10 gl, CCNode node, CCTexture2D tex, ccBlendFunc blend,
+			FloatBuffer vertices, FloatBuffer texCoordsBuffer, FloatBuffer colorsBuffer, int count, boolean fan) {
+		return addPolygon(gl, node, tex, blend, vertices, texCoordsBuffer, colorsBuffer, 0, count, fan);
+	}
+
+	/** Adds part of buffers starting at vertex first, as glDrawArrays(mode, first, count) */
+	public boolean addPolygon(GL10 gl, CCNode node, CCTexture2D tex, ccBlendFunc blend,
+			FloatBuffer vertices, FloatBuffer texCoordsBuffer, FloatBuffer colorsBuffer, int first, int count, boolean fan) {
+		if(depth == 0 || tex == null || count < 3)
+			return false;
+
+		int top = depth - 1;
+		if(!stackValid[top] || stackNodes[top] != node)
+			return false;
+
+		if(quadCount > 0 && (tex != texture || blend.src != blendSrc || blend.dst != blendDst))
+			flush(gl);
+
+		texture = tex;
+		blendSrc = blend.src;
+		blendDst = blend.dst;
+
+		if(fan) {
+			// triangle (0, i, i + 1)
+			for(int i = first + 1; i < first + count - 1; ++i) {
+				reserveQuad(gl);
+				putCorner(top, 0, vertices, texCoordsBuffer, colorsBuffer, first);
+				putCorner(top, 1, vertices, texCoordsBuffer, colorsBuffer, i);
+				putCorner(top, 2, vertices, texCoordsBuffer, colorsBuffer, i + 1);
+				putCorner(top, 3, vertices, texCoordsBuffer, colorsBuffer, i + 1);
+				quadCount++;
+			}
+		} else {
+			// pairs of strip triangles form quads in the same vertex order
+			int end = first + count;
+			for(int i = first; i + 2 < end; i += 2) {
+				reserveQuad(gl);
+				int last = i + 3 < end ? i + 3 : i + 2;
+				putCorner(top, 0, vertices, texCoordsBuffer, colorsBuffer, i);
+				putCorner(top, 1, vertices, texCoordsBuffer, colorsBuffer, i + 1);
+				putCorner(top, 2, vertices, texCoordsBuffer, colorsBuffer, i + 2);
+				putCorner(top, 3, vertices, texCoordsBuffer, colorsBuffer, last);
+				quadCount++;
+			}
+		}
+		return true;
+	}
+
+	/** makes place for one more quad, flushes when the batch is full */
+	private void reserveQuad(GL10 gl) {
+		if(quadCount < capacity)
+			return;
+
+		if(capacity == kMaxQuads) {
+			CCTexture2D tex = texture;
+			int src = blendSrc, dst = blendDst;
+			flush(gl);
+			texture = tex;
+			blendSrc = src;
+			blendDst = dst;
+		} else {
+			ensureCapacity(Math.min(capacity * 2, kMaxQuads));
+		}
+	}
+
+	/** transforms 2D vertex src to the corner of current quad */
+	private void putCorner(int top, int corner, FloatBuffer src, FloatBuffer srcTexCoords, FloatBuffer srcColors, int index) {
+		int s = top * kStackStride;
+		float x = src.get(index * 2);
+		float y = src.get(index * 2 + 1);
+
+		int v = quadCount * 12 + corner * 3;
+		vertices[v]     = stack[s] * x + stack[s + 2] * y + stack[s + 4];
+		vertices[v + 1] = stack[s + 1] * x + stack[s + 3] * y + stack[s + 5];
+		vertices[v + 2] = stack[s + 6];
+
+		int t = quadCount * 8 + corner * 2;
+		texCoords[t]     = srcTexCoords.get(index * 2);
+		texCoords[t + 1] = srcTexCoords.get(index * 2 + 1);
+
+		int c = quadCount * 16 + corner * 4;
+		colors[c]     = srcColors.get(index * 4);
+		colors[c + 1] = srcColors.get(index * 4 + 1);
+		colors[c + 2] = srcColors.get(index * 4 + 2);
+		colors[c + 3] = srcColors.get(index * 4 + 3);
+	}
+
+	/** Draws collected quads */
+	public void flush(GL10 gl) {
+		if(quadCount == 0)
+			return;
+
+		vertexBuffer.position(0);
+		BufferUtils.copyFloats(vertices, 0, vertexBuffer, quadCount * 12);
+		vertexBuffer.position(0);
+
+		texCoordBuffer.position(0);
+		BufferUtils.copyFloats(texCoords, 0, texCoordBuffer, quadCount * 8);
+		texCoordBuffer.position(0);
+
+		colorBuffer.position(0);
+		BufferUtils.copyFloats(colors, 0, colorBuffer, quadCount * 16);
+		colorBuffer.position(0);
+
+		boolean newBlend = false;
+		if( blendSrc != ccConfig.CC_BLEND_SRC || blendDst != ccConfig.CC_BLEND_DST ) {
+			newBlend = true;
+			gl.glBlendFunc( blendSrc, blendDst );
+		}
+
+		texture.loadTexture(gl);
+		gl.glBindTexture(GL10.GL_TEXTURE_2D, texture.name());
+
+		gl.glVertexPointer(3, GL10.GL_FLOAT, 0, vertexBuffer);
+		gl.glColorPointer(4, GL10.GL_FLOAT, 0, colorBuffer);
+		gl.glTexCoordPointer(2, GL10.GL_FLOAT, 0, texCoordBuffer);
+
+		gl.glPushMatrix();
+		gl.glLoadMatrixf(baseMatrix, 0);
+		gl.glDrawElements(GL10.GL_TRIANGLES, quadCount * 6, GL10.GL_UNSIGNED_SHORT, indexBuffer);
+		gl.glPopMatrix();
+
+		if( newBlend )
+			gl.glBlendFunc(ccConfig.CC_BLEND_SRC, ccConfig.CC_BLEND_DST);
+
+		drawCalls++;
+		batchedQuads += quadCount;
+
+		quadCount = 0;
+		texture = null;
+	}
+
+	private void ensureStack(int size) {
+		if(size <= stackNodes.length)
+			return;
+
+		int newSize = stackNodes.length * 2;
+
+		float[] s = new float[newSize * kStackStride];
+		System.arraycopy(stack, 0, s, 0, stack.length);
+		stack = s;
+
+		CCNode[] n = new CCNode[newSize];
+		System.arraycopy(stackNodes, 0, n, 0, stackNodes.length);
+		stackNodes = n;
+
+		boolean[] v = new boolean[newSize];
+		System.arraycopy(stackValid, 0, v, 0, stackValid.length);
+		stackValid = v;
+	}
+
+	private void ensureCapacity(int newCapacity) {
+		float[] v = new float[newCapacity * 12];
+		float[] t = new float[newCapacity * 8];
+		float[] c = new float[newCapacity * 16];
+		if(quadCount > 0) {
+			System.arraycopy(vertices, 0, v, 0, quadCount * 12);
+			System.arraycopy(texCoords, 0, t, 0, quadCount * 8);
+			System.arraycopy(colors, 0, c, 0, quadCount * 16);
+		}
+		vertices = v;
+		texCoords = t;
+		colors = c;
+
+		vertexBuffer = ByteBuffer.allocateDirect(newCapacity * 12 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		texCoordBuffer = ByteBuffer.allocateDirect(newCapacity * 8 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		colorBuffer = ByteBuffer.allocateDirect(newCapacity * 16 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+		// quad vertices are in triangle strip order: tl, bl, tr, br
+		indexBuffer = ByteBuffer.allocateDirect(newCapacity * 6 * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+		for(int i = 0; i < newCapacity; ++i) {
+			short base = (short)(i * 4);
+			indexBuffer.put(base);
+			indexBuffer.put((short)(base + 1));
+			indexBuffer.put((short)(base + 2));
+			indexBuffer.put((short)(base + 1));
+			indexBuffer.put((short)(base + 3));
+			indexBuffer.put((short)(base + 2));
+		}
+		indexBuffer.position(0);
+
+		capacity = newCapacity;
+	}
+}
@@ -22,16 +22,23 @@ import javax.microedition.khronos.egl.EGL10;
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
+import org.cocos2d.actions.CCActionManager;
 import org.cocos2d.actions.CCScheduler;
 import org.cocos2d.config.ccConfig;
 import org.cocos2d.config.ccMacros;
+import org.cocos2d.events.CCInputLog;
+import org.cocos2d.events.CCInputReplay;
 import org.cocos2d.events.CCKeyDispatcher;
 import org.cocos2d.events.CCTouchDispatcher;
 import org.cocos2d.layers.CCScene;
 import org.cocos2d.nodes.CCLabel.TextAlignment;
+import org.cocos2d.opengl.CCGLRecorder;
+import org.cocos2d.opengl.CCRenderBuffers;
+import org.cocos2d.opengl.CCRenderCommandList;
 import org.cocos2d.opengl.CCTexture2D;
 import org.cocos2d.opengl.GLResourceHelper;
 import org.cocos2d.opengl.GLSurfaceView;
+import org.cocos2d.particlesystem.CCParticleUpdateExecutor;
 import org.cocos2d.transitions.CCTransitionScene;
 import org.cocos2d.types.CGPoint;
 import org.cocos2d.types.CGRect;
@@ -44,7 +51,6 @@ import android.app.Activity;
 import android.content.pm.ActivityInfo;
 import android.content.res.Configuration;
 import android.opengl.GLU;
-import android.os.SystemClock;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.View;
@@ -119,6 +125,11 @@ public class CCDirector implements GLSurfaceView.Renderer {
     }
 
     public void setProjection(int p) {
+        applyProjection(gl, p);
+        projection_ = p;
+    }
+
+    private void applyProjection(GL10 gl, int p) {
         CGSize size = screenSize_;
         switch (p) {
             case kCCDirectorProjection2D:
@@ -150,7 +161,6 @@ public class CCDirector implements GLSurfaceView.Renderer {
             	ccMacros.CCLOG(LOG_TAG, "cocos2d: Director: unrecognized projecgtion");
                 break;
         }
-        projection_ = p;
     }
    
 
@@ -316,6 +326,19 @@ public class CCDirector implements GLSurfaceView.Renderer {
     private int frames_;
     private float accumDt_;
     private float frameRate_;
+
+    /* frames drawn since start */
+    private volatile long totalFrames_;
+
+    /** number of frames drawn since the director started */
+    public long getTotalFrames() {
+        return totalFrames_;
+    }
+
+    /** counts a frame drawn without drawCCScene(), e.g. by a headless driver */
+    public void countFrame() {
+        totalFrames_++;
+    }
 	
     CCLabelAtlas FPSLabel_;
 
@@ -348,8 +371,164 @@ public class CCDirector implements GLSurfaceView.Renderer {
     /* scheduled CCScenes */
     private ArrayList<CCScene> CCScenesStack_;
 
-    /* last time the main loop was updated */
-    private long lastUpdate_;
+    /* frame timing and rate limiting */
+    private CCFramePacer framePacer_ = new CCFramePacer();
+
+    /** returns the frame pacer, it configures pacing strategy, delta time
+      clamping and smoothing, and collects frame time statistics */
+    public CCFramePacer getFramePacer() {
+        return framePacer_;
+    }
+
+    /** replaces the frame pacer, e.g. by one with a test Clock.
+      Call it before the animation starts. */
+    public void setFramePacer(CCFramePacer pacer) {
+        assert pacer != null : "CCDirector: frame pacer must not be null";
+        framePacer_ = pacer;
+    }
+
+    /* running nodes with setInterpolatesPosition(true) */
+    private final ArrayList<CCNode> interpolatedNodes_ = new ArrayList<CCNode>();
+
+    /* part of the last fixed step drawn, 1 means current positions */
+    private float renderInterpolation_ = 1;
+
+    /** Drawing interpolation of the current frame, see CCNode.setInterpolatesPosition().
+      It is CCFramePacer.getInterpolation() with kPacingFixedStep, otherwise 1.
+      */
+    public float getRenderInterpolation() {
+        return renderInterpolation_;
+    }
+
+    void addInterpolatedNode(CCNode node) {
+        if (!interpolatedNodes_.contains(node))
+            interpolatedNodes_.add(node);
+    }
+
+    void removeInterpolatedNode(CCNode node) {
+        interpolatedNodes_.remove(node);
+    }
+
+    /* input of deterministic run, see startInputRecording() */
+    private CCInputLog inputLog_;
+
+    /* pacing before recording, restored by stopInputRecording() */
+    private int pacingBeforeRecording_;
+
+    /** Starts a deterministic run which can be played back by CCInputReplay.
+      Frame pacing changes to kPacingFixedStep, random generators are seeded
+      and dispatched touches and keys are recorded with the step they precede.
+      Call it on the GL thread before the scene of the run is created,
+      the replay has to start from the same scene.
+      */
+    public CCInputLog startInputRecording(long seed) {
+        stopInputRecording();
+
+        pacingBeforeRecording_ = framePacer_.getPacing();
+        framePacer_.setPacing(CCFramePacer.kPacingFixedStep);
+        CCInputReplay.seedRandom(seed);
+
+        inputLog_ = new CCInputLog(seed, framePacer_.getStepDelta(),
+                CCScheduler.sharedScheduler().getTickCount());
+        CCTouchDispatcher.sharedDispatcher().setInputLog(inputLog_);
+        CCKeyDispatcher.sharedDispatcher().setInputLog(inputLog_);
+        return inputLog_;
+    }
+
+    /** Ends recording and restores the pacing used before it, call it on the GL thread.
+      @return the finished log, or null if not recording
+      */
+    public CCInputLog stopInputRecording() {
+        CCInputLog log = inputLog_;
+        if (log == null)
+            return null;
+
+        CCTouchDispatcher.sharedDispatcher().setInputLog(null);
+        CCKeyDispatcher.sharedDispatcher().setInputLog(null);
+        log.finish(CCScheduler.sharedScheduler().getTickCount());
+        inputLog_ = null;
+        framePacer_.setPacing(pacingBeforeRecording_);
+        return log;
+    }
+
+    public boolean isRecordingInput() {
+        return inputLog_ != null;
+    }
+
+    /* logic thread of split mode, see setLogicThreadEnabled() */
+    private volatile boolean logicThreadEnabled_;
+    private LogicThread logicThread_;
+    private final CCRenderBuffers renderBuffers_ = new CCRenderBuffers();
+
+    /** Enables split mode, disabled by default.
+      In split mode touch and key events, scheduler and actions run on a logic
+      thread, and the scene is recorded to a CCRenderCommandList by CCGLRecorder.
+      The GL thread performs GLResourceHelper tasks and replays the last
+      recorded frame, so updating a frame overlaps with rendering the previous one.
+      Nodes which render to textures while drawing (CCRenderTexture, grid actions,
+      cross fade and radial transitions) are not supported in this mode.
+     */
+    public void setLogicThreadEnabled(boolean on) {
+        logicThreadEnabled_ = on;
+        if (!on)
+            stopLogicThread();
+    }
+
+    public boolean isLogicThreadEnabled() {
+        return logicThreadEnabled_;
+    }
+
+    /** command lists exchanged by logic and GL threads in split mode */
+    public CCRenderBuffers getRenderBuffers() {
+        return renderBuffers_;
+    }
+
+    /* render on demand, see setRenderOnDemand() */
+    private volatile boolean renderOnDemand_;
+    private volatile boolean idle_;
+    private long lastFrameNanos_;
+    private long skippedFrames_;
+
+    private final CCRedrawTracker.Listener redrawListener_ = new CCRedrawTracker.Listener() {
+        public void redrawRequested() {
+            final GLSurfaceView view = openGLView_;
+            if (idle_ && view != null)
+                view.requestRender();
+        }
+    };
+
+    /** Enables render on demand, disabled by default.
+      After a frame in which nothing changed (see CCRedrawTracker) and no
+      actions, scheduled updates, timers, live particles, GL tasks or scene
+      changes are pending, the view switches to RENDERMODE_WHEN_DIRTY.
+      The next change or input event requests a frame, and continuous
+      rendering resumes when something is active again.
+      The delta time of the first frame after idle time is 0.
+      Ignored in split mode, see setLogicThreadEnabled().
+     */
+    public void setRenderOnDemand(boolean on) {
+        renderOnDemand_ = on;
+        CCRedrawTracker.setListener(on ? redrawListener_ : null);
+        if (!on && idle_) {
+            idle_ = false;
+            if (openGLView_ != null)
+                openGLView_.setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+        }
+    }
+
+    public boolean isRenderOnDemand() {
+        return renderOnDemand_;
+    }
+
+    /** true while the scene is static and frames are rendered on demand only */
+    public boolean isIdle() {
+        return idle_;
+    }
+
+    /** count of frames not rendered because the scene was static */
+    public long getSkippedFrames() {
+        return skippedFrames_;
+    }
 
     /* delta time since last tick to main loop */
     private float dt;
@@ -454,6 +633,7 @@ public class CCDirector implements GLSurfaceView.Renderer {
 
     public void setAnimationInterval(double interval) {
         animationInterval_ = interval;
+        framePacer_.setInterval(interval);
 
 //        if (animationTimer_ != null) {
 //            stopAnimation();
@@ -660,6 +840,14 @@ public class CCDirector implements GLSurfaceView.Renderer {
 //		if (_sharedDirector == null)
 //		return;
 		
+    	if (logicThreadEnabled_) {
+    		drawRecordedScene(gl);
+    		return;
+    	}
+
+    	if (renderOnDemand_)
+    		beginDemandFrame();
+
     	GLResourceHelper.sharedHelper().setInUpdate(true);
     	
 		CCTouchDispatcher.sharedDispatcher().update();
@@ -669,20 +857,60 @@ public class CCDirector implements GLSurfaceView.Renderer {
 		
 		GLResourceHelper.sharedHelper().setInUpdate(false);
 		
+		if (renderOnDemand_)
+			updateRenderMode();
+
 		waitForFPS();
 //        }
     }    
 
-    private double sleepInterval = 0;
-    
-	private void waitForFPS() {
-		if (animationInterval_ >= dt) {
-			sleepInterval = animationInterval_ - dt + sleepInterval;
-			SystemClock.sleep( (long)(sleepInterval * 1000) );
+    /** counts frames skipped while idle, the woken frame gets delta time 0 */
+    private void beginDemandFrame() {
+    	final long now = System.nanoTime();
+    	if (idle_) {
+    		final long interval = (long)(framePacer_.getInterval() * 1e9);
+    		if (interval > 0) {
+    			final long skipped = (now - lastFrameNanos_) / interval - 1;
+    			if (skipped > 0)
+    				skippedFrames_ += skipped;
+    		}
+    		framePacer_.skipNextDelta();
+    	}
+    	lastFrameNanos_ = now;
+    }
+
+    /** true while a change, action, update, GL task or scene change needs the next frame */
+    boolean isSceneActive() {
+    	return CCRedrawTracker.needsRedraw()
+    		|| nextCCScene_ != null
+    		|| displayFPS
+    		|| GLResourceHelper.sharedHelper().getQueueDepth() > 0
+    		|| (!isPaused && (CCScheduler.sharedScheduler().hasActiveTargets()
+    				|| CCActionManager.sharedManager().hasRunningActions()));
+    }
+
+    /** switches between continuous rendering and rendering on demand */
+    private void updateRenderMode() {
+    	final boolean active = isSceneActive();
+
+    	if (active != idle_)
+    		return;
+
+    	idle_ = !active;
+    	final GLSurfaceView view = openGLView_;
+    	if (view != null) {
+    		view.setRenderMode(active ? GLSurfaceView.RENDERMODE_CONTINUOUSLY
+    				: GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+
+    		// A change made after needsRedraw() was read saw idle_ false and
+    		// didn't request a frame, later ones return early as the flag is set.
+    		if (!active && CCRedrawTracker.needsRedraw())
+    			view.requestRender();
+    	}
+    }
 
-		} else {
-			sleepInterval = 0;
-		}
+	private void waitForFPS() {
+		framePacer_.endFrame();
 	}
 
     /** Draw the CCScene.
@@ -692,16 +920,47 @@ public class CCDirector implements GLSurfaceView.Renderer {
     	
         /* calculate "global" dt */
         calculateDeltaTime();
+        countFrame();
         
         /* tick before glClear: issue #533 */
-        if(!isPaused) {
-        	CCScheduler.sharedScheduler().tick(dt);
-        }
+        tick();
+
+        /* changes done by tick are drawn in this frame */
+        CCRedrawTracker.consumeRedraw();
 
         gl.glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
         
         GLResourceHelper.sharedHelper().update(gl);
         
+        renderScene(gl);
+    }
+
+    private void tick() {
+        if(!isPaused) {
+        	if (framePacer_.getPacing() == CCFramePacer.kPacingFixedStep) {
+        		final float step = framePacer_.getStepDelta();
+        		for (int i = framePacer_.getStepCount(); i > 0; --i) {
+        			saveInterpolatedPositions();
+        			CCScheduler.sharedScheduler().tick(step);
+        		}
+        		renderInterpolation_ = framePacer_.getInterpolation();
+        	} else {
+        		CCScheduler.sharedScheduler().tick(dt);
+        		renderInterpolation_ = 1;
+        	}
+        } else {
+        	renderInterpolation_ = 1;
+        }
+    }
+
+    private void saveInterpolatedPositions() {
+    	final ArrayList<CCNode> nodes = interpolatedNodes_;
+    	for (int i = 0, size = nodes.size(); i < size; ++i) {
+    		nodes.get(i).savePositionForInterpolation();
+    	}
+    }
+
+    private void renderScene(GL10 gl) {
         /* to avoid flickr, nextCCScene MUST be here: after tick and before draw.
          XXX: Which bug is this one. It seems that it can't be reproduced with v0.9 */
         if( nextCCScene_ != null)
@@ -714,9 +973,14 @@ public class CCDirector implements GLSurfaceView.Renderer {
         // By default enable VertexArray, ColorArray, TextureCoordArray and Texture2D
         ccMacros.CC_ENABLE_DEFAULT_GL_STATES(gl);
         
+        CCBatchRenderer.sharedRenderer().begin(gl);
+
         /* draw the CCScene */
         if(runningCCScene_ != null)
         	runningCCScene_.visit(gl);
+
+        CCBatchRenderer.sharedRenderer().end(gl);
+
         if( displayFPS )
         	showFPS(gl);
 
@@ -732,19 +996,95 @@ public class CCDirector implements GLSurfaceView.Renderer {
         // openGLView_.swapBuffers();
     }
 
-    private void calculateDeltaTime() {
-        long now = System.currentTimeMillis();
+    /** Records one frame in split mode, called on the logic thread. */
+    private void recordCCScene(GL10 gl) {
+		CCTouchDispatcher.sharedDispatcher().update();
+		CCKeyDispatcher.sharedDispatcher().update();
 
+        calculateDeltaTime();
+        tick();
+
+        // the list is replayed as a whole, so it sets the projection itself
+        applyProjection(gl, projection_);
+        gl.glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+
+        renderScene(gl);
+    }
+
+    /** Replays the last recorded frame in split mode, called on the GL thread. */
+    private void drawRecordedScene(GL10 gl) {
+    	GLResourceHelper.sharedHelper().setInUpdate(true);
+    	GLResourceHelper.sharedHelper().update(gl);
+
+    	startLogicThread();
+
+    	// wait for a new frame at most one interval, then show the last one again
+    	CCRenderCommandList frame = renderBuffers_.acquireFront((long)(animationInterval_ * 1e9));
+    	if (frame != null)
+    		frame.replay(gl);
+    	else
+    		gl.glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+
+    	GLResourceHelper.sharedHelper().setInUpdate(false);
+    }
+
+    private synchronized void startLogicThread() {
+    	if (logicThread_ != null)
+    		return;
+
+    	renderBuffers_.start();
+    	logicThread_ = new LogicThread();
+    	logicThread_.start();
+    }
+
+    private void stopLogicThread() {
+    	LogicThread thread;
+    	synchronized (this) {
+    		thread = logicThread_;
+    		logicThread_ = null;
+    	}
+    	if (thread == null)
+    		return;
+
+    	renderBuffers_.stop();
+    	if (thread != Thread.currentThread()) {
+    		try {
+    			thread.join();
+    		} catch (InterruptedException e) {
+    			Thread.currentThread().interrupt();
+    		}
+    	}
+    }
+
+    /** updates and records frames in split mode */
+    private final class LogicThread extends Thread {
+    	LogicThread() {
+    		super("CCLogicThread");
+    	}
+
+    	@Override
+    	public void run() {
+    		final CCGLRecorder recorder = new CCGLRecorder();
+    		CCRenderCommandList list;
+    		while ((list = renderBuffers_.beginRecord()) != null) {
+    			recorder.begin(list);
+    			recordCCScene(recorder);
+    			recorder.end();
+    			renderBuffers_.endRecord();
+
+    			waitForFPS();
+    		}
+    	}
+    }
+
+    private void calculateDeltaTime() {
         // new delta time
         if (nextDeltaTimeZero_) {
-            dt = 0;
+            framePacer_.skipNextDelta();
             nextDeltaTimeZero_ = false;
-        } else {
-            dt = (now - lastUpdate_) * 0.001f;
-            dt = Math.max(0, dt);
         }
 
-        lastUpdate_ = now;
+        dt = framePacer_.beginFrame();
     }
     
     /** returns the size of the OpenGL view in pixels, according to the landspace */
@@ -1129,6 +1469,7 @@ public class CCDirector implements GLSurfaceView.Renderer {
 	    sendCleanupToCCScene_ = true;
         CCScenesStack_.set(index - 1, CCScene);
         nextCCScene_ = CCScene;
+        CCRedrawTracker.setNeedsRedraw();
     }
 
     /**Suspends the execution of the running CCScene, pushing it on the stack of suspended CCScenes.
@@ -1143,6 +1484,7 @@ public class CCDirector implements GLSurfaceView.Renderer {
 
         CCScenesStack_.add(CCScene);
         nextCCScene_ = CCScene;
+        CCRedrawTracker.setNeedsRedraw();
     }
 
     /**Pops out a CCScene from the queue.
@@ -1161,6 +1503,7 @@ public class CCDirector implements GLSurfaceView.Renderer {
             end();
         } else {
             nextCCScene_ = CCScenesStack_.get(c - 1);
+            CCRedrawTracker.setNeedsRedraw();
         }
     }
 
@@ -1180,6 +1523,8 @@ public class CCDirector implements GLSurfaceView.Renderer {
       It doesn't remove the OpenGL view from its parent. You have to do it manually.
     */
     public void end() {
+    	stopLogicThread();
+
 //    	synchronized(CCDirector.class) {
 //    		if (_sharedDirector == null) {
 //    			return;
@@ -1211,6 +1556,7 @@ public class CCDirector implements GLSurfaceView.Renderer {
 		// CCScheduler.purgeSharedScheduler();
 		// CCActionManager.purgeSharedManager();
 		CCTextureCache.purgeSharedTextureCache();
+		CCParticleUpdateExecutor.purgeSharedExecutor();
 
     		// OpenGL view
 //    		openGLView_ = null;
@@ -1284,10 +1630,11 @@ public class CCDirector implements GLSurfaceView.Renderer {
 
         setAnimationInterval(oldAnimationInterval_);
 
-        lastUpdate_ = System.currentTimeMillis();
+        framePacer_.skipNextDelta();
 
         isPaused = false;
         dt = 0;
+        CCRedrawTracker.setNeedsRedraw();
     }
 
     /** The main loop is triggered again.
@@ -0,0 +1,375 @@
+package org.cocos2d.nodes;
+
+import java.util.Arrays;
+
+/** Frame timing of CCDirector: delta time, frame rate limiting and statistics.
+ *
+ * Times are measured with System.nanoTime, or with the Clock given to
+ * the constructor, so pacing can be tested without real time passing.
+ *
+ * Pacing strategies:
+ *	- kPacingSleepThenSpin: after the frame the thread sleeps until the
+ *	  deadline of the next frame less the measured oversleep of past sleeps,
+ *	  and spins only if it wakes early. Deadlines advance by exactly one
+ *	  interval, so sleep errors don't accumulate.
+ *	- kPacingVSync: no waiting, the rate is given by buffer swaps.
+ *	- kPacingFixedStep: no waiting, logic runs in fixed steps, see
+ *	  getStepCount(), getStepDelta() and getInterpolation().
+ *
+ * Delta time is clamped to getMaxDeltaTime() and averaged over
+ * the smoothing window. Statistics use raw frame times.
+ * This class doesn't depend on android.
+ */
+public class CCFramePacer {
+	/** source of time, sleep(0) is called while spinning */
+	public interface Clock {
+		long nanoTime();
+		void sleep(long nanos);
+	}
+
+	public static final Clock SYSTEM_CLOCK = new Clock() {
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+
+		public void sleep(long nanos) {
+			if (nanos <= 0) {
+				Thread.yield();
+				return;
+			}
+			try {
+				Thread.sleep(nanos / 1000000L, (int)(nanos % 1000000L));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	};
+
+	public static final int kPacingSleepThenSpin = 0;
+	public static final int kPacingVSync = 1;
+	public static final int kPacingFixedStep = 2;
+
+	/** delta time after long stalls, e.g. GC or loading */
+	public static final float kDefaultMaxDeltaTime = 0.25f;
+
+	/** limit of the oversleep estimate, so of the wait which may be spun */
+	public static final long kDefaultSpinNanos = 2000000L;
+
+	public static final int kDefaultMaxStepsPerFrame = 5;
+
+	/** count of frame times kept for percentiles */
+	public static final int kStatsWindow = 256;
+
+	public static final int kMaxSmoothingWindow = 32;
+
+	/** seconds a fixed step may be short of and still run */
+	private static final double kStepTolerance = 1e-6;
+
+	/** frame longer than this part of interval counts as dropped */
+	private static final float kDroppedFrameFactor = 1.5f;
+
+	private final Clock clock_;
+
+	private volatile int pacing_;
+	private volatile long intervalNanos_;
+	private volatile long spinNanos_;
+	private volatile float maxDeltaTime_;
+	private volatile float fixedStep_;
+	private volatile int maxStepsPerFrame_;
+
+	/** average of how much sleeps took longer than asked */
+	private long oversleep_;
+
+	private long lastFrameStart_;
+	private long deadline_;
+	private boolean started_;
+	private volatile boolean resetDeadline_;
+	private boolean skipDelta_;
+	private float rawDelta_;
+	private float delta_;
+
+	private final float[] smoothing = new float[kMaxSmoothingWindow];
+	private volatile int smoothingWindow_;
+	private int smoothingCount;
+	private int smoothingPos;
+
+	private double accumulator_;
+	private int stepCount_;
+	private float interpolation_;
+
+	private final float[] frameTimes = new float[kStatsWindow];
+	private final float[] sorted = new float[kStatsWindow];
+	private int statsCount;
+	private int statsPos;
+	private long frameCount_;
+	private long droppedFrames_;
+
+	public CCFramePacer() {
+		this(SYSTEM_CLOCK);
+	}
+
+	public CCFramePacer(Clock clock) {
+		clock_ = clock;
+		pacing_ = kPacingSleepThenSpin;
+		intervalNanos_ = 1000000000L / 60;
+		spinNanos_ = kDefaultSpinNanos;
+		maxDeltaTime_ = kDefaultMaxDeltaTime;
+		fixedStep_ = 1.0f / 60;
+		maxStepsPerFrame_ = kDefaultMaxStepsPerFrame;
+		smoothingWindow_ = 1;
+	}
+
+	/** one of kPacing* constants, default kPacingSleepThenSpin */
+	public void setPacing(int pacing) {
+		assert pacing >= kPacingSleepThenSpin && pacing <= kPacingFixedStep : "CCFramePacer: unknown pacing";
+		pacing_ = pacing;
+		accumulator_ = 0;
+	}
+
+	public int getPacing() {
+		return pacing_;
+	}
+
+	/** target frame interval in seconds */
+	public void setInterval(double seconds) {
+		intervalNanos_ = (long)(seconds * 1e9);
+		resetDeadline_ = true;
+	}
+
+	public double getInterval() {
+		return intervalNanos_ * 1e-9;
+	}
+
+	/** how long before the deadline sleeping may be replaced by spinning at most,
+	 * the actual margin is the measured oversleep of the clock */
+	public void setSpinNanos(long nanos) {
+		spinNanos_ = nanos;
+	}
+
+	public long getSpinNanos() {
+		return spinNanos_;
+	}
+
+	/** longer frames give this delta time, default kDefaultMaxDeltaTime */
+	public void setMaxDeltaTime(float seconds) {
+		maxDeltaTime_ = seconds;
+	}
+
+	public float getMaxDeltaTime() {
+		return maxDeltaTime_;
+	}
+
+	/** count of frames averaged for delta time, 1 (default) turns smoothing off */
+	public void setSmoothingWindow(int frames) {
+		assert frames >= 1 && frames <= kMaxSmoothingWindow : "CCFramePacer: invalid smoothing window";
+		smoothingWindow_ = frames;
+		smoothingCount = 0;
+		smoothingPos = 0;
+	}
+
+	public int getSmoothingWindow() {
+		return smoothingWindow_;
+	}
+
+	/** logic step of kPacingFixedStep in seconds, default 1/60 */
+	public void setFixedStep(float seconds) {
+		fixedStep_ = seconds;
+	}
+
+	public float getStepDelta() {
+		return fixedStep_;
+	}
+
+	/** limit of logic steps per frame, the rest of time is dropped */
+	public void setMaxStepsPerFrame(int steps) {
+		maxStepsPerFrame_ = steps;
+	}
+
+	public int getMaxStepsPerFrame() {
+		return maxStepsPerFrame_;
+	}
+
+	/** the next beginFrame() returns 0, e.g. after pause or loading */
+	public void skipNextDelta() {
+		skipDelta_ = true;
+	}
+
+	/** Starts a frame and returns its delta time in seconds.
+	 * Called by CCDirector at the beginning of each frame.
+	 */
+	public float beginFrame() {
+		long now = clock_.nanoTime();
+
+		float raw = 0;
+		if (!started_ || skipDelta_) {
+			started_ = true;
+			skipDelta_ = false;
+			deadline_ = now + intervalNanos_;
+			smoothingCount = 0;
+			smoothingPos = 0;
+		} else {
+			raw = (now - lastFrameStart_) * 1e-9f;
+			if (raw < 0)
+				raw = 0;
+			record(raw);
+		}
+		lastFrameStart_ = now;
+		rawDelta_ = raw;
+
+		float d = raw > maxDeltaTime_ ? maxDeltaTime_ : raw;
+		if (raw > 0)
+			d = smooth(d);
+		delta_ = d;
+
+		if (pacing_ == kPacingFixedStep) {
+			final float step = fixedStep_;
+			accumulator_ += d;
+			// float steps like 1/60 don't add up exactly to measured time
+			int steps = (int)((accumulator_ + kStepTolerance) / step);
+			if (steps > maxStepsPerFrame_) {
+				steps = maxStepsPerFrame_;
+				accumulator_ = accumulator_ % step;
+			} else {
+				accumulator_ -= steps * (double)step;
+			}
+			if (accumulator_ < 0)
+				accumulator_ = 0;
+			stepCount_ = steps;
+			interpolation_ = (float)(accumulator_ / step);
+		} else {
+			stepCount_ = 1;
+			interpolation_ = 0;
+		}
+		return d;
+	}
+
+	/** Waits for the next frame according to pacing.
+	 * Called by CCDirector at the end of each frame.
+	 */
+	public void endFrame() {
+		if (pacing_ != kPacingSleepThenSpin)
+			return;
+
+		final long interval = intervalNanos_;
+		if (resetDeadline_) {
+			resetDeadline_ = false;
+			deadline_ = lastFrameStart_ + interval;
+		}
+
+		long now = clock_.nanoTime();
+		long remaining = deadline_ - now;
+
+		if (remaining > 0) {
+			final long margin = Math.min(oversleep_, spinNanos_);
+			if (remaining > margin) {
+				final long asked = remaining - margin;
+				clock_.sleep(asked);
+				final long after = clock_.nanoTime();
+				measureOversleep(after - now - asked);
+				now = after;
+			}
+			while (deadline_ - now > 0) {
+				clock_.sleep(0);
+				now = clock_.nanoTime();
+			}
+			deadline_ += interval;
+		} else if (-remaining > interval) {
+			// too late, don't try to catch up
+			deadline_ = now + interval;
+		} else {
+			deadline_ += interval;
+		}
+	}
+
+	/** delta time of the current frame after clamping and smoothing */
+	public float getDeltaTime() {
+		return delta_;
+	}
+
+	/** measured duration of the previous frame */
+	public float getRawDeltaTime() {
+		return rawDelta_;
+	}
+
+	/** count of logic steps of this frame, 1 unless pacing is kPacingFixedStep */
+	public int getStepCount() {
+		return stepCount_;
+	}
+
+	/** part of logic step elapsed after the last step, in [0, 1) */
+	public float getInterpolation() {
+		return interpolation_;
+	}
+
+	/** count of measured frames since the last resetStats() */
+	public long getFrameCount() {
+		return frameCount_;
+	}
+
+	/** count of frames missed because of long frames */
+	public long getDroppedFrames() {
+		return droppedFrames_;
+	}
+
+	/** Returns frame time in seconds at the given percentile (e.g. 50, 95, 99)
+	 * of the last kStatsWindow frames, or 0 if no frames were measured.
+	 */
+	public float getFrameTimePercentile(float percent) {
+		final int n = statsCount;
+		if (n == 0)
+			return 0;
+
+		System.arraycopy(frameTimes, 0, sorted, 0, n);
+		Arrays.sort(sorted, 0, n);
+
+		int index = (int)Math.ceil(percent / 100 * n) - 1;
+		if (index < 0)
+			index = 0;
+		else if (index >= n)
+			index = n - 1;
+		return sorted[index];
+	}
+
+	public void resetStats() {
+		statsCount = 0;
+		statsPos = 0;
+		frameCount_ = 0;
+		droppedFrames_ = 0;
+	}
+
+	private void record(float frameTime) {
+		frameTimes[statsPos] = frameTime;
+		statsPos = (statsPos + 1) % kStatsWindow;
+		if (statsCount < kStatsWindow)
+			statsCount++;
+		frameCount_++;
+
+		final float interval = intervalNanos_ * 1e-9f;
+		if (interval > 0 && frameTime > interval * kDroppedFrameFactor)
+			droppedFrames_ += Math.max(1, Math.round(frameTime / interval) - 1);
+	}
+
+	private void measureOversleep(long late) {
+		if (late < 0)
+			late = 0;
+		// moving average, a single late wake does not make the next waits spin
+		oversleep_ += (late - oversleep_) / 8;
+	}
+
+	private float smooth(float d) {
+		final int window = smoothingWindow_;
+		if (window <= 1)
+			return d;
+
+		smoothing[smoothingPos] = d;
+		smoothingPos = (smoothingPos + 1) % window;
+		if (smoothingCount < window)
+			smoothingCount++;
+
+		float sum = 0;
+		for (int i = 0; i < smoothingCount; ++i) {
+			sum += smoothing[i];
+		}
+		return sum / smoothingCount;
+	}
+}
@@ -0,0 +1,329 @@
+package org.cocos2d.nodes;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.cocos2d.utils.collections.IntMap;
+
+/** Spatial index of node bounds for touch hit-testing.
+ *
+ * Each target is indexed by the world space bounding box of its node
+ * (content size transformed by nodeToWorldMatrix()). Boxes are kept in a
+ * uniform grid of square cells, so query() tests only targets from
+ * the cell of the point instead of all targets.
+ *
+ * Boxes are rebuilt lazily: a node tells its entries when its world
+ * matrix becomes dirty, and query() moves only those entries to new cells.
+ *
+ * Candidates from the grid are tested exactly in node space, point
+ * belongs to the node if it lies in (0, 0, width, height) rect,
+ * the same test as convertToNodeSpace() and CGRect.containsPoint().
+ * Nodes which are not running, or are hidden by themselves or by
+ * an ancestor, are not hit. Other properties of targets are checked by caller.
+ */
+public class CCHitTestIndex<T> {
+	/** default cell side in points */
+	public static final float kDefaultCellSize = 64;
+
+	/** boxes covering more cells are kept in separate list */
+	private static final int kMaxCellsPerEntry = 64;
+
+	/** boxes are inflated to be sure exact test is not stricter than the box */
+	private static final float kEpsilon = 0.01f;
+
+	static final class Entry<T> {
+		final CCHitTestIndex<T> index;
+		T target;
+		CCNode node;
+		// next entry of the same node, the list starts at CCNode.hitTestEntries_
+		Entry<?> nextForNode;
+		boolean dirty;
+
+		float minX, minY, maxX, maxY;
+		int cellMinX, cellMinY, cellMaxX, cellMaxY;
+		boolean large;
+		boolean inCells;
+
+		Entry(CCHitTestIndex<T> index) {
+			this.index = index;
+		}
+
+		/** called by the node when its world matrix becomes dirty */
+		void setDirty() {
+			index.setDirty(this);
+		}
+	}
+
+	private final float cellSize_;
+
+	private final IntMap<ArrayList<Entry<T>>> cells;
+	private final ArrayList<Entry<T>> largeEntries;
+	private final ArrayList<Entry<T>> entries;
+	private final IdentityHashMap<T, Entry<T>> targets;
+	/** entries whose nodes moved, guarded by itself as nodes may move on another thread */
+	private final ArrayList<Entry<T>> dirtyEntries;
+
+	public CCHitTestIndex() {
+		this(kDefaultCellSize);
+	}
+
+	/** @param cellSize side of grid cell in points */
+	public CCHitTestIndex(float cellSize) {
+		assert cellSize > 0 : "CCHitTestIndex: cell size must be positive";
+
+		cellSize_ = cellSize;
+		cells = new IntMap<ArrayList<Entry<T>>>();
+		largeEntries = new ArrayList<Entry<T>>();
+		entries = new ArrayList<Entry<T>>();
+		targets = new IdentityHashMap<T, Entry<T>>();
+		dirtyEntries = new ArrayList<Entry<T>>();
+	}
+
+	/** count of indexed targets */
+	public int size() {
+		return entries.size();
+	}
+
+	public boolean contains(T target) {
+		return targets.containsKey(target);
+	}
+
+	/** Adds target with bounds of the node, or changes node of already added target */
+	public void put(T target, CCNode node) {
+		assert target != null && node != null : "CCHitTestIndex: target and node must not be null";
+
+		Entry<T> entry = targets.get(target);
+		if (entry == null) {
+			entry = new Entry<T>(this);
+			entry.target = target;
+			targets.put(target, entry);
+			entries.add(entry);
+		} else {
+			unlink(entry);
+			detach(entry);
+		}
+		entry.node = node;
+		attach(entry);
+		link(entry);
+	}
+
+	/** Removes target from the index */
+	public void remove(T target) {
+		Entry<T> entry = targets.remove(target);
+		if (entry == null)
+			return;
+
+		unlink(entry);
+		detach(entry);
+		entries.remove(entry);
+		entry.target = null;
+	}
+
+	/** Removes all targets */
+	public void clear() {
+		for (int i = 0, size = entries.size(); i < size; ++i)
+			detach(entries.get(i));
+		cells.clear();
+		largeEntries.clear();
+		entries.clear();
+		targets.clear();
+	}
+
+	/** Moves targets whose nodes changed world matrix or content size.
+	 * Called by query(), O(1) when no node changed since the last call.
+	 */
+	public void refresh() {
+		synchronized (dirtyEntries) {
+			for (int i = 0, size = dirtyEntries.size(); i < size; ++i) {
+				Entry<T> entry = dirtyEntries.get(i);
+				entry.dirty = false;
+				// removed meanwhile
+				if (entry.node == null)
+					continue;
+				unlink(entry);
+				link(entry);
+			}
+			dirtyEntries.clear();
+		}
+	}
+
+	private void setDirty(Entry<T> entry) {
+		synchronized (dirtyEntries) {
+			if (!entry.dirty) {
+				entry.dirty = true;
+				dirtyEntries.add(entry);
+			}
+		}
+	}
+
+	/** adds entry to the list of its node */
+	private static void attach(Entry<?> entry) {
+		CCNode node = entry.node;
+		entry.nextForNode = node.hitTestEntries_;
+		node.hitTestEntries_ = entry;
+	}
+
+	/** removes entry from the list of its node */
+	private static void detach(Entry<?> entry) {
+		CCNode node = entry.node;
+		if (node == null)
+			return;
+
+		if (node.hitTestEntries_ == entry) {
+			node.hitTestEntries_ = entry.nextForNode;
+		} else {
+			for (Entry<?> e = node.hitTestEntries_; e != null; e = e.nextForNode) {
+				if (e.nextForNode == entry) {
+					e.nextForNode = entry.nextForNode;
+					break;
+				}
+			}
+		}
+		entry.nextForNode = null;
+		entry.node = null;
+	}
+
+	/** Appends targets whose nodes contain the world point to out.
+	 * Order of targets is not defined.
+	 * @return count of appended targets
+	 */
+	public int query(float x, float y, List<T> out) {
+		refresh();
+
+		int count = 0;
+		ArrayList<Entry<T>> cell = cells.get(cellKey(cellCoord(x), cellCoord(y)));
+		if (cell != null) {
+			for (int i = 0, size = cell.size(); i < size; ++i) {
+				Entry<T> entry = cell.get(i);
+				if (hit(entry, x, y)) {
+					out.add(entry.target);
+					count++;
+				}
+			}
+		}
+
+		for (int i = 0, size = largeEntries.size(); i < size; ++i) {
+			Entry<T> entry = largeEntries.get(i);
+			if (hit(entry, x, y)) {
+				out.add(entry.target);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static <T> boolean hit(Entry<T> entry, float x, float y) {
+		if (x < entry.minX || x > entry.maxX || y < entry.minY || y > entry.maxY)
+			return false;
+
+		CCNode node = entry.node;
+		if (!isShown(node))
+			return false;
+
+		final float[] m = node.worldToNodeMatrix();
+		float lx = m[0] * x + m[2] * y + m[4];
+		float ly = m[1] * x + m[3] * y + m[5];
+
+		final float w = node.getContentSizeRef().width;
+		final float h = node.getContentSizeRef().height;
+		return lx >= 0 && ly >= 0 && lx < w && ly < h;
+	}
+
+	/** node is running and neither it nor an ancestor is hidden */
+	private static boolean isShown(CCNode node) {
+		if (!node.isRunning())
+			return false;
+		for (CCNode n = node; n != null; n = n.getParent()) {
+			if (!n.getVisible())
+				return false;
+		}
+		return true;
+	}
+
+	/** computes world box of the node and puts entry to cells */
+	private void link(Entry<T> entry) {
+		CCNode node = entry.node;
+
+		// reading the matrix cleans it, the node tells the entry about the next change
+		final float[] m = node.nodeToWorldMatrix();
+
+		final float w = node.getContentSizeRef().width;
+		final float h = node.getContentSizeRef().height;
+
+		float x0 = m[4], y0 = m[5];
+		float x1 = m[0] * w + m[4], y1 = m[1] * w + m[5];
+		float x2 = m[2] * h + m[4], y2 = m[3] * h + m[5];
+		float x3 = m[0] * w + m[2] * h + m[4], y3 = m[1] * w + m[3] * h + m[5];
+
+		entry.minX = Math.min(Math.min(x0, x1), Math.min(x2, x3)) - kEpsilon;
+		entry.maxX = Math.max(Math.max(x0, x1), Math.max(x2, x3)) + kEpsilon;
+		entry.minY = Math.min(Math.min(y0, y1), Math.min(y2, y3)) - kEpsilon;
+		entry.maxY = Math.max(Math.max(y0, y1), Math.max(y2, y3)) + kEpsilon;
+
+		// degenerate matrices or sizes can't be hit
+		if (!(entry.maxX - entry.minX < Float.POSITIVE_INFINITY && entry.maxY - entry.minY < Float.POSITIVE_INFINITY)) {
+			entry.inCells = false;
+			return;
+		}
+
+		entry.cellMinX = cellCoord(entry.minX);
+		entry.cellMinY = cellCoord(entry.minY);
+		entry.cellMaxX = cellCoord(entry.maxX);
+		entry.cellMaxY = cellCoord(entry.maxY);
+
+		long cellCount = (long)(entry.cellMaxX - entry.cellMinX + 1) * (entry.cellMaxY - entry.cellMinY + 1);
+		entry.large = cellCount > kMaxCellsPerEntry;
+		entry.inCells = true;
+
+		if (entry.large) {
+			largeEntries.add(entry);
+			return;
+		}
+
+		for (int cx = entry.cellMinX; cx <= entry.cellMaxX; ++cx) {
+			for (int cy = entry.cellMinY; cy <= entry.cellMaxY; ++cy) {
+				int key = cellKey(cx, cy);
+				ArrayList<Entry<T>> cell = cells.get(key);
+				if (cell == null) {
+					cell = new ArrayList<Entry<T>>(4);
+					cells.put(key, cell);
+				}
+				cell.add(entry);
+			}
+		}
+	}
+
+	/** removes entry from cells */
+	private void unlink(Entry<T> entry) {
+		if (!entry.inCells)
+			return;
+		entry.inCells = false;
+
+		if (entry.large) {
+			largeEntries.remove(entry);
+			return;
+		}
+
+		for (int cx = entry.cellMinX; cx <= entry.cellMaxX; ++cx) {
+			for (int cy = entry.cellMinY; cy <= entry.cellMaxY; ++cy) {
+				int key = cellKey(cx, cy);
+				ArrayList<Entry<T>> cell = cells.get(key);
+				if (cell == null)
+					continue;
+				cell.remove(entry);
+				if (cell.isEmpty())
+					cells.remove(key);
+			}
+		}
+	}
+
+	private int cellCoord(float v) {
+		return (int)Math.floor(v / cellSize_);
+	}
+
+	/** cells far from origin may share the key, it only adds candidates */
+	private static int cellKey(int cx, int cy) {
+		return ((cx & 0xffff) << 16) | (cy & 0xffff);
+	}
+}
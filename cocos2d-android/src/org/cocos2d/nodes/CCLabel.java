@@ -1,13 +1,16 @@
 package org.cocos2d.nodes;
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.cocos2d.config.ccConfig;
 import org.cocos2d.opengl.CCTexture2D;
 import org.cocos2d.opengl.GLResourceHelper;
 import org.cocos2d.protocols.CCLabelProtocol;
 import org.cocos2d.types.CGRect;
 import org.cocos2d.types.CGSize;
 
+import android.graphics.Bitmap;
 import android.graphics.Typeface;
 
 /** CCLabel is a subclass of CCTextureNode that knows how to render text labels
@@ -33,6 +36,14 @@ public class CCLabel extends CCSprite implements CCLabelProtocol {
     // style for standart fonts
     private int _fontStyle = Typeface.NORMAL;
 
+    // key of the text in CCRuntimeAtlas, null while the label has no image there
+    private String textKey_;
+    private static final AtomicInteger atlasSerial_ = new AtomicInteger();
+
+    // strings set so far, labels changed more often get own textures
+    private int stringCount_;
+    private static final int kMaxAtlasStrings = 2;
+
     /** creates a CCLabel from a fontname, alignment, dimension and font size */
     public static CCLabel makeLabel(String string, final CGSize dimensions, TextAlignment alignment, 
                                     String fontname, float fontsize) {
@@ -117,11 +128,69 @@ public class CCLabel extends CCSprite implements CCLabelProtocol {
     		
     	final String string = seq.toString();
     	_string = string;
+
+    	stringCount_++;
+    	if (usesAtlas()) {
+    		setAtlasString();
+    		return;
+    	}
+    	releaseAtlasString();
+
     	CCTexture2D texture = new CCTexture2D();
     	setTexture(texture);
     	texture.setLoader(new StringReloader(this));
     }
     
+    /** renders the text into CCRuntimeAtlas in place of the previous one */
+    private void setAtlasString() {
+    	CGSize dimensions = _dimensions;
+    	if (CGSize.equalToSize(dimensions, CGSize.zero()))
+    		dimensions = CCTexture2D.calculateTextSize(_string, _fontName, _fontSize);
+
+    	Bitmap bitmap = CCTexture2D.createTextBitmap(_string, dimensions, _alignment, _fontName, _fontSize, _fontStyle, false);
+
+    	CCRuntimeAtlas atlas = CCRuntimeAtlas.sharedAtlas();
+    	final String oldKey = textKey_;
+    	textKey_ = "CCLabel#" + atlasSerial_.incrementAndGet();
+    	CCSpriteFrame frame = atlas.addImage(bitmap, textKey_);
+    	bitmap.recycle();
+
+    	// the page of the old text isn't dropped and created again in between
+    	if (oldKey != null)
+    		atlas.releaseImage(oldKey);
+
+    	setTexture(frame.getTexture());
+    	setDisplayFrame(frame);
+    }
+
+    /** the first strings are packed in CCRuntimeAtlas, labels changed
+      more often get own textures, so the atlas isn't repacked for them */
+    private boolean usesAtlas() {
+    	return ccConfig.CC_USE_RUNTIME_ATLAS && stringCount_ <= kMaxAtlasStrings;
+    }
+
+    private void releaseAtlasString() {
+    	if (textKey_ != null) {
+    		CCRuntimeAtlas.sharedAtlas().releaseImage(textKey_);
+    		textKey_ = null;
+    	}
+    }
+
+    /** the text released by cleanup() is rendered again */
+    @Override
+    public void onEnter() {
+    	if (textKey_ == null && _string != null && usesAtlas())
+    		setAtlasString();
+    	super.onEnter();
+    }
+
+    /** gives back the text image of CCRuntimeAtlas */
+    @Override
+    public void cleanup() {
+    	releaseAtlasString();
+    	super.cleanup();
+    }
+
     public String getString() {
     	return _string;
     }
@@ -28,6 +28,7 @@ public class CCMotionStreak extends CCNode implements UpdateCallback/*implements
     float segThreshold_;
     float width_;
     CGPoint lastLocation_;
+    private final CGPoint location_ = CGPoint.zero();
 
     /**
      * Ribbon used by MotionStreak (weak reference)
@@ -61,12 +62,15 @@ public class CCMotionStreak extends CCNode implements UpdateCallback/*implements
      * polling function
      */
     public void update(float delta) {
-        CGPoint location = convertToWorldSpace(0, 0);
-        ribbon_.setPosition(CGPoint.make(-1 * location.x, -1 * location.y));
-        float len = (float)Math.sqrt((float) Math.pow(lastLocation_.x - location.x, 2) + (float) Math.pow(lastLocation_.y - location.y, 2));
+        CGPoint location = location_;
+        convertToWorldSpace(0, 0, location);
+        ribbon_.setPosition(-1 * location.x, -1 * location.y);
+        float dx = lastLocation_.x - location.x;
+        float dy = lastLocation_.y - location.y;
+        float len = (float)Math.sqrt(dx * dx + dy * dy);
         if (len > segThreshold_) {
             ribbon_.addPoint(location, width_);
-            lastLocation_ = location;
+            lastLocation_.set(location);
         }
         ribbon_.update(delta);
     }
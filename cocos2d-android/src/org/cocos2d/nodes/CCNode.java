@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.microedition.khronos.opengles.GL10;
 
@@ -11,6 +12,7 @@ import org.cocos2d.actions.CCActionManager;
 import org.cocos2d.actions.CCScheduler;
 import org.cocos2d.actions.UpdateCallback;
 import org.cocos2d.actions.base.CCAction;
+import org.cocos2d.actions.base.CCActionTemplate;
 import org.cocos2d.config.ccConfig;
 import org.cocos2d.config.ccMacros;
 import org.cocos2d.grid.CCGridBase;
@@ -20,12 +22,13 @@ import org.cocos2d.types.CGPoint;
 import org.cocos2d.types.CGRect;
 import org.cocos2d.types.CGSize;
 import org.cocos2d.types.util.CGAffineTransformUtil;
-import org.cocos2d.types.util.CGPointUtil;
 import org.cocos2d.types.util.PoolHolder;
 import org.cocos2d.utils.Util5;
 import org.cocos2d.utils.javolution.MathLib;
 import org.cocos2d.utils.pool.OneClassPool;
 
+import com.badlogic.gdx.utils.Sort;
+
 import android.os.Build;
 import android.util.Log;
 import android.view.MotionEvent;
@@ -109,10 +112,7 @@ public class CCNode {
     // getters synthesized, setters explicit
     public void setRotation(float rot) {
         rotation_ = rot;
-        isTransformDirty_ = isInverseDirty_ = true;
-        if (ccConfig.CC_NODE_TRANSFORM_USING_AFFINE_MATRIX) {
-            isTransformGLDirty_ = true;
-        }
+        setTransformDirty();
     }
 
 	// scaling factors
@@ -129,10 +129,7 @@ public class CCNode {
 
     public void setScaleX(float sx) {
         scaleX_ = sx;
-        isTransformDirty_ = isInverseDirty_ = true;
-        if (ccConfig.CC_NODE_TRANSFORM_USING_AFFINE_MATRIX) {
-            isTransformGLDirty_ = true;
-        }
+        setTransformDirty();
     }
 
     /** The scale factor of the node. 
@@ -144,10 +141,7 @@ public class CCNode {
 
     public void setScaleY(float sy) {
         scaleY_ = sy;
-        isTransformDirty_ = isInverseDirty_ = true;
-        if (ccConfig.CC_NODE_TRANSFORM_USING_AFFINE_MATRIX) {
-            isTransformGLDirty_ = true;
-        }	
+        setTransformDirty();	
     }
 
     /** The scale factor of the node.
@@ -155,10 +149,7 @@ public class CCNode {
     */
     public void setScale(float s) {
         scaleX_ = scaleY_ = s;
-        isTransformDirty_ = isInverseDirty_ = true;
-        if (ccConfig.CC_NODE_TRANSFORM_USING_AFFINE_MATRIX) {
-            isTransformGLDirty_ = true;
-        }
+        setTransformDirty();
     }
 
     public float getScale() {
@@ -180,10 +171,7 @@ public class CCNode {
      */
     public void setSkewX(float s) {
     	skewX_ = s;
-    	isTransformDirty_ = isInverseDirty_ = true;
-    	if (ccConfig.CC_NODE_TRANSFORM_USING_AFFINE_MATRIX) {
-    		isTransformGLDirty_ = true;
-    	}
+    	setTransformDirty();
     }
     
     public float getSkewX() {
@@ -195,10 +183,7 @@ public class CCNode {
      */
     public void setSkewY(float s) {
     	skewY_ = s;
-    	isTransformDirty_ = isInverseDirty_ = true;
-    	if (ccConfig.CC_NODE_TRANSFORM_USING_AFFINE_MATRIX) {
-    		isTransformGLDirty_ = true;
-    	}
+    	setTransformDirty();
     }
     
     public float getSkewY() {
@@ -226,10 +211,7 @@ public class CCNode {
     */
     public void setRelativeAnchorPoint(boolean newValue) {
         isRelativeAnchorPoint_ = newValue;
-        isTransformDirty_ = isInverseDirty_ = true;
-        if (ccConfig.CC_NODE_TRANSFORM_USING_AFFINE_MATRIX) {
-            isTransformGLDirty_ = true;
-        }
+        setTransformDirty();
     }
 
     public boolean getRelativeAnchorPoint() {
@@ -256,10 +238,7 @@ public class CCNode {
             contentSize_.set(w, h);// = CGSize.make(size.width, size.height);
             anchorPointInPixels_.set(contentSize_.width * anchorPoint_.x,
                                               contentSize_.height * anchorPoint_.y);
-            isTransformDirty_ = isInverseDirty_ = true;
-            if (ccConfig.CC_NODE_TRANSFORM_USING_AFFINE_MATRIX) {
-                isTransformGLDirty_ = true;
-            }
+            setTransformDirty();
 
         }
     }
@@ -290,10 +269,7 @@ public class CCNode {
             anchorPointInPixels_.set(contentSize_.width * anchorPoint_.x,// = CGPoint.ccp(contentSize_.width * anchorPoint_.x, 
             						contentSize_.height * anchorPoint_.y);//   contentSize_.height * anchorPoint_.y);
 
-            isTransformDirty_ = isInverseDirty_ = true;
-            if (ccConfig.CC_NODE_TRANSFORM_USING_AFFINE_MATRIX) {
-                isTransformGLDirty_ = true;
-            }
+            setTransformDirty();
         }
     }
    
@@ -311,10 +287,23 @@ public class CCNode {
     // #endif
     private CGAffineTransform transform_, inverse_;
 
+    // float matrices { a, b, c, d, tx, ty }: x' = a*x + c*y + tx, y' = b*x + d*y + ty
+    private final float[] localMatrix_ = new float[6];
+    private final float[] worldMatrix_ = new float[6];
+    private final float[] worldInverse_ = new float[6];
+
 	// To reduce memory, place BOOLs that are not properties here:
     private boolean isTransformDirty_;
     private boolean isInverseDirty_;
 
+    // world dirty flag is propagated to all descendants,
+    // so dirty node never has clean descendants
+    private boolean isWorldDirty_ = true;
+    private boolean isWorldInverseDirty_ = true;
+
+    // entries of hit test indexes, they are told when world matrix becomes dirty
+    CCHitTestIndex.Entry<?> hitTestEntries_;
+
     //#if	CC_NODE_TRANSFORM_USING_AFFINE_MATRIX
 	private boolean isTransformGLDirty_;
     //#endif
@@ -348,11 +337,45 @@ public class CCNode {
     
 	public void setPosition(float x, float y) {
         position_.set(x, y);// = CGPoint.make(pnt.x, pnt.y);
-        isTransformDirty_ = isInverseDirty_ = true;
-        if (ccConfig.CC_NODE_TRANSFORM_USING_AFFINE_MATRIX) {
-            isTransformGLDirty_ = true;
-        }
+        setTransformDirty();
     }	
+
+    /* position before the last fixed logic step, null if not interpolated */
+    private CGPoint prevPosition_;
+
+    /** Whether the node is drawn between its positions of the last two logic
+      steps when CCFramePacer uses kPacingFixedStep, by getInterpolation().
+      Logic sees the stepped position, only drawing is smoothed.
+      Children and sprites collected by CCBatchRenderer are drawn with the
+      offset too. Nodes drawn by a CCSpriteSheet are not interpolated.
+    */
+    public void setInterpolatesPosition(boolean interpolates) {
+        if (interpolates == (prevPosition_ != null))
+            return;
+
+        if (interpolates) {
+            prevPosition_ = CGPoint.make(position_.x, position_.y);
+            if (isRunning_)
+                CCDirector.sharedDirector().addInterpolatedNode(this);
+        } else {
+            prevPosition_ = null;
+            if (isRunning_)
+                CCDirector.sharedDirector().removeInterpolatedNode(this);
+        }
+    }
+
+    public boolean getInterpolatesPosition() {
+        return prevPosition_ != null;
+    }
+
+    /* interpolation offset applied by the last transform(), in parent space */
+    private float drawOffsetX_;
+    private float drawOffsetY_;
+
+    /** called by CCDirector before each fixed logic step */
+    void savePositionForInterpolation() {
+        prevPosition_.set(position_.x, position_.y);
+    }
 	
     /** A CCCamera object that lets you move the node using a gluLookAt */
     private CCCamera camera_;
@@ -382,6 +405,7 @@ public class CCNode {
 
     public void setGrid(CCGridBase grid) {
         this.grid_ = grid;
+        CCRedrawTracker.setNeedsRedraw();
     }
 
 	// is visible
@@ -393,7 +417,10 @@ public class CCNode {
     }
 
     public void setVisible(boolean visible) {
-        this.visible_ = visible;
+        if (visible_ != visible) {
+            visible_ = visible;
+            CCRedrawTracker.setNeedsRedraw();
+        }
     }
 
 	// weakref to parent
@@ -406,6 +433,8 @@ public class CCNode {
 
     public void setParent(CCNode parent) {
         parent_ = parent;
+        setWorldDirty();
+        CCRedrawTracker.setNeedsRedraw();
     }
 
 	// a tag. any number you want to assign to the node
@@ -437,6 +466,7 @@ public class CCNode {
 
     public void setVertexZ(float z) {
         vertexZ_ = z;
+        CCRedrawTracker.setNeedsRedraw();
     }
 
 
@@ -456,10 +486,19 @@ public class CCNode {
 	// array of children
     protected List<CCNode> children_;
 
+    /** returns children sorted by z order */
     public List<CCNode> getChildren() {
+        sortAllChildren();
         return children_;
     }
 
+    // children are sorted lazily, before visit or getChildren()
+    private boolean isReorderChildDirty_;
+
+    // order of children with equal z, the latest added or reordered child goes last
+    private long orderOfArrival_;
+    private static final AtomicLong globalOrderOfArrival = new AtomicLong();
+
     // user data field
     private Object userData;
 
@@ -509,11 +548,7 @@ public class CCNode {
         anchorPoint_ = CGPoint.ccp(0,0);
         contentSize_ = CGSize.zero();
 
-        isTransformDirty_ = isInverseDirty_ = true;
-	
-        if (ccConfig.CC_NODE_TRANSFORM_USING_AFFINE_MATRIX) {
-		    isTransformGLDirty_ = true;
-        }	
+        setTransformDirty();	
 		
 		zOrder_ = 0;
         vertexZ_ = 0;
@@ -689,8 +724,12 @@ public class CCNode {
     */
     public void reorderChild(CCNode child, int zOrder) {
         assert child != null : "Child must be non-null";
-        children_.remove(child);
-        this.insertChild(child, zOrder);
+        assert child.parent_ == this : "Child doesn't belong to the node";
+
+        child._setZOrder(zOrder);
+        child.orderOfArrival_ = globalOrderOfArrival.incrementAndGet();
+        isReorderChildDirty_ = true;
+        CCRedrawTracker.setNeedsRedraw();
     }
 
     /** Override this method to draw your own node.
@@ -718,38 +757,61 @@ public class CCNode {
         if (!visible_)
             return;
 
+        sortAllChildren();
+
+        final CCBatchRenderer batch = CCBatchRenderer.sharedRenderer();
+        final boolean batching = batch.isActive();
+        final boolean gridActive = grid_ != null && grid_.isActive();
+
         gl.glPushMatrix();
 
-        if (grid_ != null && grid_.isActive()) {
+        if (gridActive) {
+            if (batching)
+                batch.flush(gl);
             grid_.beforeDraw(gl);
             transformAncestors(gl);
         }
 
         transform(gl);
 
+        if (batching)
+            batch.pushNode(this, nodeToWorldMatrix(), drawOffsetX_, drawOffsetY_, vertexZ_,
+            		!gridActive && (camera_ == null || !camera_.getDirty()));
+
         if (children_ != null) {
         	for (int i=0; i<children_.size(); ++i) {
         		CCNode child = children_.get(i);
         		if (child.zOrder_ < 0) {
+        			if (batching)
+        				batch.willVisit(gl, child);
         			child.visit(gl);
         		} else
         			break;
         	}
         }
 
+        if (batching)
+            batch.willDraw(gl, this);
+
         draw(gl);
 
         if (children_ != null) {
         	for (int i=0; i<children_.size(); ++i) {
         		CCNode child = children_.get(i);
         		if (child.zOrder_ >= 0) {
+        			if (batching)
+        				batch.willVisit(gl, child);
         			child.visit(gl);
         		}
         	}
         }
 
+        if (batching) {
+            batch.didVisit(gl, this);
+            batch.popNode();
+        }
 
-        if (grid_ != null && grid_.isActive()) {
+        if (gridActive) {
             grid_.afterDraw(gl, this);
         }
 
@@ -760,14 +822,32 @@ public class CCNode {
      * performs OpenGL view-matrix transformation based on position, scale, rotation and other attributes.
     */
     public void transform(GL10 gl) {	
+        // drawn between previous and current step, in parent space
+        float dx = 0, dy = 0;
+        if (prevPosition_ != null) {
+            final float t = CCDirector.sharedDirector().getRenderInterpolation();
+            if (t < 1) {
+                dx = (prevPosition_.x - position_.x) * (1 - t);
+                dy = (prevPosition_.y - position_.y) * (1 - t);
+                if (dx != 0 || dy != 0)
+                    gl.glTranslatef(dx, dy, 0);
+            }
+        }
+        drawOffsetX_ = dx;
+        drawOffsetY_ = dy;
+
         // transformations
 
         if ( ccConfig.CC_NODE_TRANSFORM_USING_AFFINE_MATRIX ) {
             // BEGIN alternative -- using cached transform
             //
             if( isTransformGLDirty_ ) {
-                CGAffineTransform t = nodeToParentTransform();
-                CGAffineTransform.CGAffineToGL(t, transformGL_);
+                final float[] m = nodeToParentMatrix();
+                final float[] gm = transformGL_;
+                gm[2] = gm[3] = gm[6] = gm[7] = gm[8] = gm[9] = gm[11] = gm[14] = 0.0f;
+                gm[10] = gm[15] = 1.0f;
+                gm[0] = m[0]; gm[4] = m[2]; gm[12] = m[4];
+                gm[1] = m[1]; gm[5] = m[3]; gm[13] = m[5];
                 isTransformGLDirty_ = false;
             }
 
@@ -851,6 +931,16 @@ public class CCNode {
         return action;
     }
 
+    /** Executes a pooled instance of the template and returns it.
+      The instance goes back to the template when it is finished or stopped,
+      don't use the returned action after that.
+    */
+    public CCAction runAction(CCActionTemplate template) {
+        assert template != null : "Argument must be non-null";
+
+        return runAction(template.obtain());
+    }
+
     /** Removes all actions from the running action list */
     public void stopAllActions() {
         CCActionManager.sharedManager().removeAllActions(this);
@@ -1016,38 +1106,132 @@ public class CCNode {
     */
     private CGAffineTransform nodeToParentTransform() {
         if (isTransformDirty_) {
-        	CGPoint zero = CGPoint.getZero();
-            transform_.setToIdentity();
+        	final float[] m = nodeToParentMatrix();
+        	transform_.setTransform(m[0], m[1], m[2], m[3], m[4], m[5]);
+        }
 
-            if (!isRelativeAnchorPoint_ && !CGPoint.equalToPoint(anchorPointInPixels_, zero)) {
-            	transform_.translate(anchorPointInPixels_.x, anchorPointInPixels_.y);
-            }
+        return transform_;
+    }
 
-            if (!CGPoint.equalToPoint(position_, zero))
-            	transform_.translate(position_.x, position_.y);
-            
-            if (rotation_ != 0)
-            	transform_.rotate(-ccMacros.CC_DEGREES_TO_RADIANS(rotation_));
-            
-            if (skewX_ != 0 || skewY_ != 0) {
-            	/** create a skewed coordinate system */
-            	CGAffineTransform skew = CGAffineTransform.make(1.0f, MathLib.tan(ccMacros.CC_DEGREES_TO_RADIANS(skewY_)), MathLib.tan(ccMacros.CC_DEGREES_TO_RADIANS(skewX_)), 1.0f, 0.0f, 0.0f);
-            	/** apply the skew to the transform */
-            	transform_ = transform_.getTransformConcat(skew);
-            }
-            
-            if( ! (scaleX_ == 1 && scaleY_ == 1) ) 
-            	transform_.scale(scaleX_, scaleY_);
-           
-            if (!CGPoint.equalToPoint(anchorPointInPixels_, zero))
-            	transform_.translate(-anchorPointInPixels_.x, -anchorPointInPixels_.y);
+    /** Returns the local affine transform matrix as floats { a, b, c, d, tx, ty }.
+      The array is owned by the node, don't modify it.
+    */
+    public float[] nodeToParentMatrix() {
+        if (isTransformDirty_) {
+        	final float[] m = localMatrix_;
+
+        	// rotation * skew * scale
+        	float cr = 1, sr = 0;
+        	if (rotation_ != 0) {
+        		float radians = -ccMacros.CC_DEGREES_TO_RADIANS(rotation_);
+        		cr = (float)Math.cos(radians);
+        		sr = (float)Math.sin(radians);
+        	}
+
+        	float kx = 0, ky = 0;
+        	if (skewX_ != 0 || skewY_ != 0) {
+        		kx = (float)MathLib.tan(ccMacros.CC_DEGREES_TO_RADIANS(skewX_));
+        		ky = (float)MathLib.tan(ccMacros.CC_DEGREES_TO_RADIANS(skewY_));
+        	}
 
-            isTransformDirty_ = false;
+        	m[0] = (cr - sr * ky) * scaleX_;
+        	m[1] = (sr + cr * ky) * scaleX_;
+        	m[2] = (cr * kx - sr) * scaleY_;
+        	m[3] = (sr * kx + cr) * scaleY_;
+
+        	// position, then anchor point back to origin
+        	float ax = anchorPointInPixels_.x;
+        	float ay = anchorPointInPixels_.y;
+        	float tx = position_.x - (m[0] * ax + m[2] * ay);
+        	float ty = position_.y - (m[1] * ax + m[3] * ay);
+        	if (!isRelativeAnchorPoint_) {
+        		tx += ax;
+        		ty += ay;
+        	}
+        	m[4] = tx;
+        	m[5] = ty;
+
+        	transform_.setTransform(m[0], m[1], m[2], m[3], m[4], m[5]);
+        	isTransformDirty_ = false;
         }
 
-        return transform_;
+        return localMatrix_;
     }
- 
+
+    /** Returns the world affine transform matrix as floats { a, b, c, d, tx, ty }.
+      World matrix is cached and recomputed only after the node or any of
+      its ancestors has changed, so it's O(1) for unchanged nodes.
+      The array is owned by the node, don't modify it.
+    */
+    public float[] nodeToWorldMatrix() {
+        if (isWorldDirty_) {
+        	final float[] l = nodeToParentMatrix();
+        	final float[] w = worldMatrix_;
+        	if (parent_ == null) {
+        		System.arraycopy(l, 0, w, 0, 6);
+        	} else {
+        		final float[] p = parent_.nodeToWorldMatrix();
+        		w[0] = p[0] * l[0] + p[2] * l[1];
+        		w[1] = p[1] * l[0] + p[3] * l[1];
+        		w[2] = p[0] * l[2] + p[2] * l[3];
+        		w[3] = p[1] * l[2] + p[3] * l[3];
+        		w[4] = p[0] * l[4] + p[2] * l[5] + p[4];
+        		w[5] = p[1] * l[4] + p[3] * l[5] + p[5];
+        	}
+        	isWorldDirty_ = false;
+        }
+        return worldMatrix_;
+    }
+
+    /** Returns the inverse world matrix as floats { a, b, c, d, tx, ty }.
+      The array is owned by the node, don't modify it.
+    */
+    public float[] worldToNodeMatrix() {
+        if (isWorldDirty_ || isWorldInverseDirty_) {
+        	final float[] w = nodeToWorldMatrix();
+        	final float[] i = worldInverse_;
+        	float det = w[0] * w[3] - w[1] * w[2];
+        	if (Math.abs(det) < CGAffineTransform.ZERO) {
+        		System.arraycopy(w, 0, i, 0, 6);
+        	} else {
+        		float invDet = 1 / det;
+        		i[0] =  w[3] * invDet;
+        		i[1] = -w[1] * invDet;
+        		i[2] = -w[2] * invDet;
+        		i[3] =  w[0] * invDet;
+        		i[4] = (w[2] * w[5] - w[3] * w[4]) * invDet;
+        		i[5] = (w[1] * w[4] - w[0] * w[5]) * invDet;
+        	}
+        	isWorldInverseDirty_ = false;
+        }
+        return worldInverse_;
+    }
+
+    /** marks local matrix and world matrices of the node and its descendants dirty */
+    private void setTransformDirty() {
+        isTransformDirty_ = isInverseDirty_ = true;
+        if (ccConfig.CC_NODE_TRANSFORM_USING_AFFINE_MATRIX) {
+            isTransformGLDirty_ = true;
+        }
+        setWorldDirty();
+        CCRedrawTracker.setNeedsRedraw();
+    }
+
+    private void setWorldDirty() {
+        if (isWorldDirty_)
+        	return;
+
+        isWorldDirty_ = isWorldInverseDirty_ = true;
+        for (CCHitTestIndex.Entry<?> e = hitTestEntries_; e != null; e = e.nextForNode) {
+        	e.setDirty();
+        }
+        if (children_ != null) {
+        	for (int i = 0, size = children_.size(); i < size; ++i) {
+        		children_.get(i).setWorldDirty();
+        	}
+        }
+    }
+
     /** Returns the inverse local affine transform matrix
       @since v0.7.1
     */
@@ -1064,53 +1248,25 @@ public class CCNode {
     /** Retrusn the world affine transform matrix
       @since v0.7.1
     */
-    private CGAffineTransform nodeToWorldTransform() {
-        CGAffineTransform t = new CGAffineTransform(nodeToParentTransform());
-
-        for (CCNode p = parent_; p != null; p = p.parent_) {
-            // t = t.getTransformConcat(p.nodeToParentTransform());
-            t = t.preConcatenate(p.nodeToParentTransform());
-        }
-
-        return t;
-    }
-    
-    private void nodeToWorldTransform(CGAffineTransform ret) {
-        ret.setTransform(nodeToParentTransform());
-
-        for (CCNode p = parent_; p != null; p = p.parent_) {
-        	CGAffineTransformUtil.preConcate(ret, p.nodeToParentTransform());
-        }
+    public CGAffineTransform nodeToWorldTransform() {
+        final float[] w = nodeToWorldMatrix();
+        return CGAffineTransform.make(w[0], w[1], w[2], w[3], w[4], w[5]);
     }
     
     /** Returns the inverse world affine transform matrix
       @since v0.7.1
     */
     public CGAffineTransform worldToNodeTransform() {
-        return nodeToWorldTransform().getTransformInvert();
-    }
-    
-    /**
-     * This is analog method, result is written to ret. No garbage.
-     */
-    private void worldToNodeTransform(CGAffineTransform ret) {
-    	nodeToWorldTransform(ret);
-        CGAffineTransformUtil.inverse(ret);
+        final float[] i = worldToNodeMatrix();
+        return CGAffineTransform.make(i[0], i[1], i[2], i[3], i[4], i[5]);
     }
 
     /** converts a world coordinate to local coordinate
       @since v0.7.1
     */
     public CGPoint convertToNodeSpace(float x, float y) {
-        OneClassPool<CGAffineTransform> pool = PoolHolder.getInstance().getCGAffineTransformPool();
-        
-        CGAffineTransform temp = pool.get();
-        worldToNodeTransform(temp);
-        
         CGPoint ret = new CGPoint();
-    	CGPointUtil.applyAffineTransform(x, y, temp, ret);
-    	
-        pool.free(temp);
+        convertToNodeSpace(x, y, ret);
         return ret;
     }
     
@@ -1132,36 +1288,25 @@ public class CCNode {
      * This is analog method, result is written to ret. No garbage.
      */
     public void convertToNodeSpace(float x, float y, CGPoint ret) {
-        OneClassPool<CGAffineTransform> pool = PoolHolder.getInstance().getCGAffineTransformPool();
-        
-        CGAffineTransform temp = pool.get();
-        worldToNodeTransform(temp);
-        
-        CGPointUtil.applyAffineTransform(x, y, temp, ret);
-        
-        pool.free(temp);
+        final float[] m = worldToNodeMatrix();
+        ret.set(m[0] * x + m[2] * y + m[4], m[1] * x + m[3] * y + m[5]);
     }
 
     /** converts local coordinate to world space
       @since v0.7.1
     */
     public CGPoint convertToWorldSpace(float x, float y) {
-        CGPoint nodePoint = CGPoint.make(x, y);
-        return CGPoint.applyAffineTransform(nodePoint, nodeToWorldTransform());
+        CGPoint ret = new CGPoint();
+        convertToWorldSpace(x, y, ret);
+        return ret;
     }
     
     /**
      * This is analog method, result is written to ret. No garbage.
      */
     public void convertToWorldSpace(float x, float y , CGPoint ret) {
-        OneClassPool<CGAffineTransform> pool = PoolHolder.getInstance().getCGAffineTransformPool();
-        
-        CGAffineTransform temp = pool.get();
-        nodeToWorldTransform(temp);
-        
-        CGPointUtil.applyAffineTransform(x, y, temp, ret);
-        
-        pool.free(temp);
+        final float[] m = nodeToWorldMatrix();
+        ret.set(m[0] * x + m[2] * y + m[4], m[1] * x + m[3] * y + m[5]);
     }
     
     /** converts a world coordinate to local coordinate
@@ -1254,48 +1399,87 @@ public class CCNode {
 
     // lazy allocs
     private void childrenAlloc() {
-        children_ = Collections.synchronizedList(new ArrayList<CCNode>(4));
+        if (ccConfig.CC_NODE_SYNCHRONIZED_CHILDREN)
+            children_ = Collections.synchronizedList(new ArrayList<CCNode>(4));
+        else
+            children_ = new ArrayList<CCNode>(4);
     }
 
     private static Comparator<CCNode> zOrderComparator = new Comparator<CCNode>() {
 
 		@Override
 		public int compare(CCNode o1, CCNode o2) {
-			return o1.zOrder_ - o2.zOrder_;
+			if (o1.zOrder_ != o2.zOrder_)
+				return o1.zOrder_ < o2.zOrder_ ? -1 : 1;
+			if (o1.orderOfArrival_ != o2.orderOfArrival_)
+				return o1.orderOfArrival_ < o2.orderOfArrival_ ? -1 : 1;
+			return 0;
 		}
 	};
-	
+
     // helper that reorder a child
     private void insertChild(CCNode node, int z) {
     	node._setZOrder(z);
-    	int ind = Collections.binarySearch(children_, node, zOrderComparator);
-    	// let's find new index
-		if(ind >= 0) { // go to last if index is found
-			int size = children_.size();
-			CCNode prev;
-			
-			do {
-				prev = children_.get(ind);
-				ind++;
-			} while(ind < size && children_.get(ind).zOrder_ == prev.zOrder_);
-		} else { // index not found
-			ind = -(ind + 1);
-		}
-		children_.add(ind, node);
-//        int index = 0;
-//        boolean added = false;
-//        for (int i=0; i<children_.size(); ++i) {
-//        	CCNode child = children_.get(i);
-//            if (child.getZOrder() > z) {
-//                added = true;
-//                children_.add(index, node);
-//                break;
-//            }
-//            ++index;
-//        }
-//        if (!added)
-//            children_.add(node);
-//        node._setZOrder(z);
+    	node.orderOfArrival_ = globalOrderOfArrival.incrementAndGet();
+
+    	// appending in order keeps the list sorted
+    	int size = children_.size();
+    	if (size > 0 && children_.get(size - 1).zOrder_ > z)
+    		isReorderChildDirty_ = true;
+
+    	children_.add(node);
+    }
+
+    /** shifts allowed per child before insertion sort gives up in favour of TimSort */
+    private static final int kInsertionSortBudget = 4;
+
+    // TimSort state and its buffer are shared by all nodes, guarded by childSort
+    private static final Sort childSort = new Sort();
+    private static CCNode[] sortBuffer = new CCNode[16];
+
+    /** Sorts children by z order and order of arrival if they were added or reordered.
+      Called before visit and by getChildren(), subclasses which read children_
+      directly and depend on the order should call it first.
+      Nearly sorted list (e.g. children re-sorted by Y every frame)
+      is fixed by insertion sort, otherwise TimSort is used.
+    */
+    protected void sortAllChildren() {
+        if (!isReorderChildDirty_)
+            return;
+        isReorderChildDirty_ = false;
+
+        final List<CCNode> list = children_;
+        if (list == null)
+            return;
+
+        final int size = list.size();
+        int budget = size * kInsertionSortBudget;
+        int i = 1;
+        for (; i < size && budget >= 0; ++i) {
+            CCNode node = list.get(i);
+            int j = i - 1;
+            while (j >= 0 && zOrderComparator.compare(list.get(j), node) > 0) {
+                list.set(j + 1, list.get(j));
+                --j;
+            }
+            list.set(j + 1, node);
+            budget -= i - 1 - j;
+        }
+
+        if (i < size) {
+            synchronized (childSort) {
+                CCNode[] buffer = sortBuffer;
+                if (buffer.length < size) {
+                    buffer = sortBuffer = new CCNode[Math.max(size, buffer.length * 2)];
+                }
+                list.toArray(buffer);
+                childSort.sort(buffer, zOrderComparator, 0, size);
+                for (int k = 0; k < size; ++k) {
+                    list.set(k, buffer[k]);
+                    buffer[k] = null;
+                }
+            }
+        }
     }
 
     /** Stops all running actions and schedulers
@@ -1355,6 +1539,11 @@ public class CCNode {
         resumeSchedulerAndActions();
         // activateTimers();
         isRunning_ = true;
+
+        if (prevPosition_ != null) {
+            prevPosition_.set(position_.x, position_.y);
+            CCDirector.sharedDirector().addInterpolatedNode(this);
+        }
     }
 
     /** callback that is called when the CCNode enters in the 'stage'.
@@ -1381,6 +1570,9 @@ public class CCNode {
         pauseSchedulerAndActions();
         isRunning_ = false;
 
+        if (prevPosition_ != null)
+            CCDirector.sharedDirector().removeInterpolatedNode(this);
+
         if (children_ != null)
             for (CCNode child: children_) {
                 child.onExit();
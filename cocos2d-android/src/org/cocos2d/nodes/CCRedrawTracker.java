@@ -0,0 +1,59 @@
+package org.cocos2d.nodes;
+
+/** Tracks whether the scene changed since the last rendered frame.
+ *
+ * Nodes, sprites, labels and input dispatchers call setNeedsRedraw() when
+ * something visible changes. CCDirector uses it for render on demand,
+ * see CCDirector.setRenderOnDemand(). The listener is notified only when
+ * the scene becomes dirty, not on every change.
+ * This class doesn't depend on android.
+ */
+public final class CCRedrawTracker {
+	public interface Listener {
+		/** called on the thread which changed the scene */
+		void redrawRequested();
+	}
+
+	private static volatile boolean dirty_ = true;
+	private static volatile Listener listener_;
+	private static volatile long requests_;
+
+	private CCRedrawTracker() {
+	}
+
+	/** marks the scene as changed */
+	public static void setNeedsRedraw() {
+		if (dirty_)
+			return;
+		dirty_ = true;
+		requests_++;
+
+		final Listener l = listener_;
+		if (l != null)
+			l.redrawRequested();
+	}
+
+	/** true if something changed since the last consumeRedraw() */
+	public static boolean needsRedraw() {
+		return dirty_;
+	}
+
+	/** Returns and clears the dirty flag.
+	 * Called by CCDirector before the scene is visited, so changes done
+	 * while drawing mark the next frame.
+	 */
+	static boolean consumeRedraw() {
+		final boolean d = dirty_;
+		dirty_ = false;
+		return d;
+	}
+
+	/** count of clean to dirty transitions */
+	public static long getRequestCount() {
+		return requests_;
+	}
+
+	public static void setListener(Listener l) {
+		listener_ = l;
+	}
+}
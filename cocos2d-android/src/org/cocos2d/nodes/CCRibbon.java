@@ -3,7 +3,6 @@ package org.cocos2d.nodes;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.util.ArrayList;
 
 import javax.microedition.khronos.opengles.GL10;
 
@@ -21,125 +20,39 @@ import org.cocos2d.types.ccColor4B;
  * and pass in the parameters for the next location in the ribbon. The system will automatically
  * generate new polygons, texture them accourding to your texture width, etc, etc.
  * <p/>
- * Ribbon data is stored in a RibbonSegment class. This class statically allocates enough verticies and
- * texture coordinates for 50 locations (100 verts or 48 triangles). The ribbon class will allocate
- * new segments when they are needed, and reuse old ones if available. The idea is to avoid constantly
- * allocating new memory and prefer a more static method. However, since there is no way to determine
- * the maximum size of some ribbons (motion streaks), a truely static allocation is not possible.
+ * Ribbon data is stored in one circular buffer of edges (two vertices per added point)
+ * with vertex, texture coordinate and color streams. Faded edges are dropped from the
+ * tail and new edges are written to the head, so memory is allocated only when more
+ * edges are alive than the buffer holds. Fading rewrites only the alpha entries.
+ * The last slot mirrors the first one, so a wrapped ribbon is drawn by two contiguous
+ * triangle strips. Ribbons are added to CCBatchRenderer, ribbons sharing the texture
+ * are drawn together.
  *
  * @since v0.8.1
  */
-public class CCRibbon extends CCNode {
-    /** object to hold ribbon segment data */
-    public static class CCRibbonSegment {
-
-        private static final int COUNT = 50;
-
-        float[] verts = new float[COUNT * 3 * 2];
-        float[] coords = new float[COUNT * 2 * 2];
-        float[] colors = new float[COUNT * 4 * 2];
-        float[] creationTime = new float[COUNT];
-        boolean finished;
-        int end;
-        int begin;
-
-        FloatBuffer mVertices;
-        FloatBuffer mCoordinates;
-        FloatBuffer mColors;
-
-        public CCRibbonSegment() {
-            ByteBuffer vfb = ByteBuffer.allocateDirect(COUNT * 3 * 2 * 4);
-            vfb.order(ByteOrder.nativeOrder());
-            mVertices = vfb.asFloatBuffer();
-
-            ByteBuffer tfb = ByteBuffer.allocateDirect(COUNT * 2 * 2 * 4);
-            tfb.order(ByteOrder.nativeOrder());
-            mCoordinates = tfb.asFloatBuffer();
-
-            ByteBuffer cbb = ByteBuffer.allocateDirect(COUNT * 4 * 2 * 4);
-            cbb.order(ByteOrder.nativeOrder());
-            mColors = cbb.asFloatBuffer();
-
-            reset();
-        }
-
-        public void reset() {
-            end = 0;
-            begin = 0;
-            finished = false;
-        }
-
-        public void draw(GL10 gl, float curTime, float fadeTime, ccColor4B color) {
-            int r = color.r;
-            int g = color.g;
-            int b = color.b;
-            int a = color.a;
-
-            if (begin < COUNT) {
-                // the motion streak class will call update and cause time to change, thus, if mCurTime != 0
-                // we have to generate alpha for the ribbon each frame.
-                if (curTime == 0) {
-                    // no alpha over time, so just set the color
-                    gl.glColor4f(r / 255f, g / 255f, b / 255f, a / 255f);
-                } else {
-                    // generate alpha/color for each point
-                    gl.glEnableClientState(GL10.GL_COLOR_ARRAY);
-                    int i = begin;
-                    for (; i < end; ++i) {
-                        int idx = i * 8;
-                        colors[idx + 0] = r / 255f;
-                        colors[idx + 1] = g / 255f;
-                        colors[idx + 2] = b / 255f;
-                        colors[idx + 4] = r / 255f;
-                        colors[idx + 5] = g / 255f;
-                        colors[idx + 6] = b / 255f;
-                        float alive = ((curTime - creationTime[i]) / fadeTime);
-                        if (alive > 1) {
-                            begin++;
-                            colors[idx + 3] = 0;
-                            colors[idx + 7] = 0;
-                        } else {
-                            float o = 1.0f - alive;
-                            colors[idx + 3] = o;
-                            colors[idx + 7] = o;
-                        }
-                    }
-                    mColors.put(colors, begin * 4 * 2, (end - begin) * 4 * 2);
-                    mColors.position(0);
-
-                    gl.glColorPointer(4, GL10.GL_FLOAT, 0, mColors);
-                }
-
-                mVertices.put(verts, begin * 3 * 2, (end - begin) * 3 * 2);
-                mVertices.position(0);
-
-                gl.glVertexPointer(3, GL10.GL_FLOAT, 0, mVertices);
-
-                mCoordinates.put(coords, begin * 2 * 2, (end - begin) * 2 * 2);
-                mCoordinates.position(0);
-
-                gl.glTexCoordPointer(2, GL10.GL_FLOAT, 0, mCoordinates);
-                gl.glDrawArrays(GL10.GL_TRIANGLE_STRIP, 0, (end - begin) * 2);
-            } else
-                finished = true;
-        }
-
-    }
-
-    ArrayList<CCRibbonSegment> segments_;
-    ArrayList<CCRibbonSegment> deletedSegments_;
+public class CCRibbon extends CCNode implements CCBatchRenderer.Batchable {
+    /** edges allocated by the ribbon initially */
+    private static final int kInitialCapacity = 64;
+
+    // ring of edges, slot capacity_ is a copy of slot 0
+    private FloatBuffer vertices_;
+    private FloatBuffer texCoords_;
+    private FloatBuffer colors_;
+    private float[] creationTime_;
+    private int capacity_;
+    private int head_;
+    private int count_;
 
     CGPoint lastPoint1_;
     CGPoint lastPoint2_;
     CGPoint lastLocation_;
-    int vertCount_;
     float texVPos_;
     float curTime_;
     float fadeTime_;
     float delta_;
     float lastWidth_;
-    float lastSign_;
     boolean pastFirstPoint_;
+    boolean pastFirstEdge_;
 
     /** Texture used by the ribbon. Conforms to CCTextureProtocol protocol */
     CCTexture2D texture_;
@@ -160,24 +73,21 @@ public class CCRibbon extends CCNode {
 
     /** init the ribbon */
     protected CCRibbon(float w, String path, float l, ccColor4B color, float fade) {
-
-        segments_ = new ArrayList<CCRibbonSegment>();
-        deletedSegments_ = new ArrayList<CCRibbonSegment>();
-
-        /* 1 initial segment */
-        CCRibbonSegment seg = new CCRibbonSegment();
-        segments_.add(seg);
+        allocate(kInitialCapacity);
 
         textureLength_ = l;
 
         color_ = color;
         fadeTime_ = fade;
         lastLocation_ = CGPoint.make(0, 0);
+        lastPoint1_ = CGPoint.make(0, 0);
+        lastPoint2_ = CGPoint.make(0, 0);
         lastWidth_ = w / 2;
         texVPos_ = 0.0f;
 
         curTime_ = 0;
         pastFirstPoint_ = false;
+        pastFirstEdge_ = false;
 
         /* XXX:
          Ribbon, by default uses this blend function, which might not be correct
@@ -193,12 +103,14 @@ public class CCRibbon extends CCNode {
         texture_.setTexParameters(params);
     }
 
-    // rotates a point around 0, 0
-    private CGPoint rotatePoint(CGPoint vec, float a) {
-        float xtemp = (vec.x * (float)Math.cos(a)) - (vec.y * (float)Math.sin(a));
-        vec.y = (vec.x * (float)Math.sin(a)) + (vec.y * (float)Math.cos(a));
-        vec.x = xtemp;
-        return vec;
+    /** count of edges which are not faded yet */
+    public int getEdgeCount() {
+        return count_;
+    }
+
+    /** count of edges the buffer holds without growing */
+    public int getCapacity() {
+        return capacity_;
     }
 
     /**
@@ -209,110 +121,48 @@ public class CCRibbon extends CCNode {
         // if this is the first point added, cache it and return
         if (!pastFirstPoint_) {
             lastWidth_ = w;
-            lastLocation_ = location;
+            lastLocation_.set(location);
             pastFirstPoint_ = true;
             return;
         }
 
-        CGPoint sub = CGPoint.ccpSub(lastLocation_, location);
-        float r = CGPoint.ccpToAngle(sub) + (float) Math.PI * 2;
-        CGPoint p1 = CGPoint.ccpAdd(rotatePoint(CGPoint.ccp(-w, 0), r), location);
-        CGPoint p2 = CGPoint.ccpAdd(rotatePoint(CGPoint.ccp(w, 0), r), location);
-        float len = (float) Math.sqrt((float) Math.pow(lastLocation_.x - location.x, 2) + (float) Math.pow(lastLocation_.y - location.y, 2));
-        float tend = texVPos_ + len / textureLength_;
-        CCRibbonSegment seg;
-        // grab last segment
-        seg = segments_.get(segments_.size() - 1);
-        // lets kill old segments
-        for (CCRibbonSegment seg2 : segments_) {
-            if (seg2 != seg && seg2.finished) {
-                deletedSegments_.add(seg2);
-            }
-        }
-        segments_.removeAll(deletedSegments_);
-
-        // is the segment full?
-        if (seg.end >= 50)
-            segments_.removeAll(deletedSegments_);
-        // grab last segment and appent to it if it's not full
-        seg = segments_.get(segments_.size() - 1);
-
-        // is the segment full?
-        if (seg.end >= 50) {
-            CCRibbonSegment newSeg;
-            // grab it from the cache if we can
-            if (deletedSegments_.size() > 0) {
-                newSeg = deletedSegments_.get(0);
-                deletedSegments_.remove(newSeg);
-                newSeg.reset();
-            } else {
-                newSeg = new CCRibbonSegment();
-            }
+        // angle of (last - location) + 2PI, (-w, 0) and (w, 0) are rotated by it
+        float r = (float)Math.atan2(lastLocation_.y - location.y, lastLocation_.x - location.x) + (float)Math.PI * 2;
+        float cos = (float)Math.cos(r);
+        float sin = (float)Math.sin(r);
 
-            int v = (seg.end - 1) * 6;
-            int c = (seg.end - 1) * 4;
-            newSeg.verts[0] = seg.verts[v];
-            newSeg.verts[1] = seg.verts[v + 1];
-            newSeg.verts[2] = seg.verts[v + 2];
-            newSeg.verts[3] = seg.verts[v + 3];
-            newSeg.verts[4] = seg.verts[v + 4];
-            newSeg.verts[5] = seg.verts[v + 5];
-
-            newSeg.coords[0] = seg.coords[c];
-            newSeg.coords[1] = seg.coords[c + 1];
-            newSeg.coords[2] = seg.coords[c + 2];
-            newSeg.coords[3] = seg.coords[c + 3];
-            newSeg.end++;
-            seg = newSeg;
-            segments_.add(seg);
-        }
+        float dx = lastLocation_.x - location.x;
+        float dy = lastLocation_.y - location.y;
+        float len = (float)Math.sqrt(dx * dx + dy * dy);
+        float tend = texVPos_ + len / textureLength_;
 
-        if (seg.end == 0) {
+        if (!pastFirstEdge_) {
             // first edge has to get rotation from the first real polygon
-            CGPoint lp1 = CGPoint.ccpAdd(rotatePoint(CGPoint.ccp(-lastWidth_, 0), r), lastLocation_);
-            CGPoint lp2 = CGPoint.ccpAdd(rotatePoint(CGPoint.ccp(+lastWidth_, 0), r), lastLocation_);
-            seg.creationTime[0] = curTime_ - delta_;
-            seg.verts[0] = lp1.x;
-            seg.verts[1] = lp1.y;
-            seg.verts[2] = 0.0f;
-            seg.verts[3] = lp2.x;
-            seg.verts[4] = lp2.y;
-            seg.verts[5] = 0.0f;
-            seg.coords[0] = 0.0f;
-            seg.coords[1] = texVPos_;
-            seg.coords[2] = 1.0f;
-            seg.coords[3] = texVPos_;
-            seg.end++;
+            pushEdge(lastLocation_.x - lastWidth_ * cos, lastLocation_.y - lastWidth_ * sin,
+                    lastLocation_.x + lastWidth_ * cos, lastLocation_.y + lastWidth_ * sin,
+                    texVPos_, curTime_ - delta_);
+            pastFirstEdge_ = true;
         }
 
-        int v = seg.end * 6;
-        int c = seg.end * 4;
-        // add new vertex
-        seg.creationTime[seg.end] = curTime_;
-        seg.verts[v] = p1.x;
-        seg.verts[v + 1] = p1.y;
-        seg.verts[v + 2] = 0.0f;
-        seg.verts[v + 3] = p2.x;
-        seg.verts[v + 4] = p2.y;
-        seg.verts[v + 5] = 0.0f;
-
-        seg.coords[c] = 0.0f;
-        seg.coords[c + 1] = tend;
-        seg.coords[c + 2] = 1.0f;
-        seg.coords[c + 3] = tend;
+        lastPoint1_.set(location.x - w * cos, location.y - w * sin);
+        lastPoint2_.set(location.x + w * cos, location.y + w * sin);
+        pushEdge(lastPoint1_.x, lastPoint1_.y, lastPoint2_.x, lastPoint2_.y, tend, curTime_);
 
         texVPos_ = tend;
-        lastLocation_ = location;
-        lastPoint1_ = p1;
-        lastPoint2_ = p2;
+        lastLocation_.set(location);
         lastWidth_ = w;
-        seg.end++;
     }
 
     /** polling function */
     public void update(float delta) {
         curTime_ += delta;
         delta_ = delta;
+
+        // drop faded edges
+        while (count_ > 0 && (curTime_ - creationTime_[head_]) / fadeTime_ > 1) {
+            head_ = head_ + 1 == capacity_ ? 0 : head_ + 1;
+            count_--;
+        }
     }
 
     /** determine side of line */
@@ -324,26 +174,166 @@ public class CCRibbon extends CCNode {
 
     @Override
     public void draw(GL10 gl) {
-        if (segments_.size() > 0) {
-            // Default GL states: GL_TEXTURE_2D, GL_VERTEX_ARRAY, GL_COLOR_ARRAY, GL_TEXTURE_COORD_ARRAY
-            // Needed states: GL_TEXTURE_2D, GL_VERTEX_ARRAY, GL_TEXTURE_COORD_ARRAY
-            // Unneeded states: GL_COLOR_ARRAY
-            gl.glDisableClientState(GL10.GL_COLOR_ARRAY);
-            gl.glBindTexture(GL10.GL_TEXTURE_2D, texture_.name());
-
-            boolean newBlend = false;
-            if (blendFunc_.src != ccConfig.CC_BLEND_SRC || blendFunc_.dst != ccConfig.CC_BLEND_DST) {
-                newBlend = true;
-                gl.glBlendFunc(blendFunc_.src, blendFunc_.dst);
+        if (count_ < 2)
+            return;
+
+        // the motion streak class will call update and cause time to change, thus, if curTime_ != 0
+        // we have to generate alpha for the ribbon each frame.
+        if (curTime_ != 0)
+            updateAlpha();
+
+        // first run ends with the mirror of slot 0 when the ribbon is wrapped
+        boolean wrapped = head_ + count_ > capacity_;
+        int firstCount = wrapped ? capacity_ - head_ + 1 : count_;
+        int secondCount = wrapped ? head_ + count_ - capacity_ : 0;
+        if (secondCount < 2)
+            secondCount = 0;
+
+        // ribbons sharing the texture are drawn in one batch
+        CCBatchRenderer batch = CCBatchRenderer.sharedRenderer();
+        if (batch.isActive()) {
+            if (batch.addPolygon(gl, this, texture_, blendFunc_, vertices_, texCoords_, colors_,
+                    head_ * 2, firstCount * 2, false)) {
+                if (secondCount != 0)
+                    batch.addPolygon(gl, this, texture_, blendFunc_, vertices_, texCoords_, colors_,
+                            0, secondCount * 2, false);
+                return;
+            }
+            batch.flush(gl);
+        }
+
+        // Default GL states: GL_TEXTURE_2D, GL_VERTEX_ARRAY, GL_COLOR_ARRAY, GL_TEXTURE_COORD_ARRAY
+        // Needed states: GL_TEXTURE_2D, GL_VERTEX_ARRAY, GL_COLOR_ARRAY, GL_TEXTURE_COORD_ARRAY
+        // Unneeded states: -
+        gl.glBindTexture(GL10.GL_TEXTURE_2D, texture_.name());
+
+        boolean newBlend = false;
+        if (blendFunc_.src != ccConfig.CC_BLEND_SRC || blendFunc_.dst != ccConfig.CC_BLEND_DST) {
+            newBlend = true;
+            gl.glBlendFunc(blendFunc_.src, blendFunc_.dst);
+        }
+
+        gl.glVertexPointer(2, GL10.GL_FLOAT, 0, vertices_);
+        gl.glTexCoordPointer(2, GL10.GL_FLOAT, 0, texCoords_);
+        gl.glColorPointer(4, GL10.GL_FLOAT, 0, colors_);
+
+        gl.glDrawArrays(GL10.GL_TRIANGLE_STRIP, head_ * 2, firstCount * 2);
+        batch.countDrawCall();
+        if (secondCount != 0) {
+            gl.glDrawArrays(GL10.GL_TRIANGLE_STRIP, 0, secondCount * 2);
+            batch.countDrawCall();
+        }
+
+        if (newBlend)
+            gl.glBlendFunc(ccConfig.CC_BLEND_SRC, ccConfig.CC_BLEND_DST);
+    }
+
+    /** writes alpha of alive edges, other streams are not touched */
+    private void updateAlpha() {
+        final FloatBuffer colors = colors_;
+        int slot = head_;
+        for (int i = 0; i < count_; ++i) {
+            float o = 1.0f - (curTime_ - creationTime_[slot]) / fadeTime_;
+            colors.put(slot * 8 + 3, o);
+            colors.put(slot * 8 + 7, o);
+            if (slot == 0) {
+                colors.put(capacity_ * 8 + 3, o);
+                colors.put(capacity_ * 8 + 7, o);
             }
+            slot = slot + 1 == capacity_ ? 0 : slot + 1;
+        }
+    }
+
+    /** appends edge at the head of the ring, grows the ring if all edges are alive */
+    private void pushEdge(float x1, float y1, float x2, float y2, float v, float time) {
+        if (count_ == capacity_)
+            grow();
 
-            for (CCRibbonSegment seg : segments_)
-                seg.draw(gl, curTime_, fadeTime_, color_);
+        int slot = head_ + count_;
+        if (slot >= capacity_)
+            slot -= capacity_;
 
-            if (newBlend)
-                gl.glBlendFunc(ccConfig.CC_BLEND_SRC, ccConfig.CC_BLEND_DST);
+        putEdge(slot, x1, y1, x2, y2, v, time);
+        if (slot == 0)
+            putEdge(capacity_, x1, y1, x2, y2, v, time);
+        count_++;
+    }
+
+    private void putEdge(int slot, float x1, float y1, float x2, float y2, float v, float time) {
+        creationTime_[slot] = time;
+
+        int i = slot * 4;
+        vertices_.put(i, x1);
+        vertices_.put(i + 1, y1);
+        vertices_.put(i + 2, x2);
+        vertices_.put(i + 3, y2);
+
+        texCoords_.put(i, 0.0f);
+        texCoords_.put(i + 1, v);
+        texCoords_.put(i + 2, 1.0f);
+        texCoords_.put(i + 3, v);
+
+        float r = color_.r / 255f;
+        float g = color_.g / 255f;
+        float b = color_.b / 255f;
+        float a = color_.a / 255f;
+        int c = slot * 8;
+        colors_.put(c, r);
+        colors_.put(c + 1, g);
+        colors_.put(c + 2, b);
+        colors_.put(c + 3, a);
+        colors_.put(c + 4, r);
+        colors_.put(c + 5, g);
+        colors_.put(c + 6, b);
+        colors_.put(c + 7, a);
+    }
+
+    private void allocate(int capacity) {
+        capacity_ = capacity;
+        creationTime_ = new float[capacity + 1];
+        vertices_ = allocateFloats((capacity + 1) * 4);
+        texCoords_ = allocateFloats((capacity + 1) * 4);
+        colors_ = allocateFloats((capacity + 1) * 8);
+    }
+
+    private static FloatBuffer allocateFloats(int count) {
+        ByteBuffer bb = ByteBuffer.allocateDirect(count * 4);
+        bb.order(ByteOrder.nativeOrder());
+        return bb.asFloatBuffer();
+    }
+
+    /** doubles the ring, alive edges are moved to the beginning in order */
+    private void grow() {
+        FloatBuffer vertices = vertices_;
+        FloatBuffer texCoords = texCoords_;
+        FloatBuffer colors = colors_;
+        float[] creationTime = creationTime_;
+        int capacity = capacity_;
+
+        allocate(capacity * 2);
+
+        int slot = head_;
+        for (int i = 0; i < count_; ++i) {
+            creationTime_[i] = creationTime[slot];
+            for (int k = 0; k < 4; ++k) {
+                vertices_.put(i * 4 + k, vertices.get(slot * 4 + k));
+                texCoords_.put(i * 4 + k, texCoords.get(slot * 4 + k));
+            }
+            for (int k = 0; k < 8; ++k) {
+                colors_.put(i * 8 + k, colors.get(slot * 8 + k));
+            }
+            slot = slot + 1 == capacity ? 0 : slot + 1;
+        }
+        head_ = 0;
 
-            gl.glEnableClientState(GL10.GL_COLOR_ARRAY);
+        // mirror of slot 0
+        creationTime_[capacity_] = creationTime_[0];
+        for (int k = 0; k < 4; ++k) {
+            vertices_.put(capacity_ * 4 + k, vertices_.get(k));
+            texCoords_.put(capacity_ * 4 + k, texCoords_.get(k));
+        }
+        for (int k = 0; k < 8; ++k) {
+            colors_.put(capacity_ * 8 + k, colors_.get(k));
         }
     }
 
@@ -0,0 +1,490 @@
+package org.cocos2d.nodes;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import org.cocos2d.config.ccMacros;
+import org.cocos2d.opengl.CCTexture2D;
+import org.cocos2d.opengl.GLResourceHelper;
+import org.cocos2d.opengl.GLResourceHelper.Resource;
+import org.cocos2d.types.CGPoint;
+import org.cocos2d.types.CGRect;
+import org.cocos2d.utils.SkylinePacker;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/** Singleton that packs small runtime images into shared texture pages.
+ * Images added with addImage() are drawn into a page bitmap and the changed
+ * region is uploaded with glTexSubImage2D once per frame.
+ * The returned CCSpriteFrame references the page texture, so sprites made
+ * of such frames can be batched by one CCSpriteSheet.
+ *
+ * Page bitmaps are kept in memory to reload textures after context loss.
+ * Page textures are counted in the memory budget of CCTextureCache and
+ * are never evicted by it.
+ *
+ * Each addImage() takes a reference of the image, like sprites made of it
+ * do, and releaseImage() gives it back. The image is removed with the last
+ * reference, removeImage() removes it at once.
+ *
+ * When a page has lost too much area to removed images it is defragmented:
+ * live images are packed again and rects of their frames are updated in place.
+ * Sprites which display a moved frame get it set again, CCSprite.setDisplayFrame
+ * registers them. getFrameGeneration() is increased on every defragmentation.
+ *
+ * A8 images, e.g. text of CCLabel, are drawn white with their alpha.
+ * The atlas may be used from loader threads, its state is guarded by the atlas.
+ */
+public class CCRuntimeAtlas {
+	/** default size of page texture */
+	public static final int kDefaultPageSize = 1024;
+
+	/** images with bigger side get own texture from CCTextureCache */
+	public static final int kMaxImageSide = kDefaultPageSize / 2;
+
+	/** page is defragmented when live area is less then this part of packed area */
+	private static final float kDefragmentThreshold = 0.5f;
+
+	private static final int kPadding = 1;
+
+	/** pages are ARGB_8888 */
+	private static final int kBytesPerPixel = 4;
+
+	private static CCRuntimeAtlas _sharedAtlas;
+
+	/** returns the shared instance of the atlas */
+	public static CCRuntimeAtlas sharedAtlas() {
+		synchronized (CCRuntimeAtlas.class) {
+			if (_sharedAtlas == null) {
+				_sharedAtlas = new CCRuntimeAtlas();
+			}
+			return _sharedAtlas;
+		}
+	}
+
+	/** purges the atlas, all pages are released */
+	public static void purgeSharedAtlas() {
+		if (_sharedAtlas != null) {
+			_sharedAtlas.removeAllImages();
+		}
+	}
+
+	/** bitmap is referenced separately from page, loader can't reference texture */
+	private static class PageImage {
+		Bitmap bitmap;
+	}
+
+	private static class PageLoader implements GLResourceHelper.GLResourceLoader {
+		private final PageImage image;
+
+		public PageLoader(PageImage image) {
+			this.image = image;
+		}
+
+		@Override
+		public void load(Resource res) {
+			Bitmap bmp = image.bitmap;
+			if(bmp != null)
+				((CCTexture2D)res).initWithImage(bmp.copy(bmp.getConfig(), false));
+		}
+	}
+
+	private class Page {
+		final String key;
+		final PageImage image;
+		final CCTexture2D texture;
+		final SkylinePacker packer;
+		final ArrayList<Entry> entries;
+
+		int liveArea;
+
+		// dirty region waiting for upload
+		final Rect dirty;
+		boolean uploadQueued;
+
+		Page(int size) {
+			key = "CCRuntimeAtlas#" + (++pageSerial);
+			image = new PageImage();
+			image.bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+			image.bitmap.eraseColor(Color.TRANSPARENT);
+
+			packer = new SkylinePacker(size, size, kPadding);
+			entries = new ArrayList<Entry>();
+			dirty = new Rect();
+
+			texture = new CCTexture2D();
+			texture.setLoader(new PageLoader(image));
+			CCTextureCache.sharedTextureCache().addPinnedTexture(key, texture, size * size * kBytesPerPixel);
+		}
+
+		void invalidate(int x, int y, int w, int h) {
+			dirty.union(x, y, x + w, y + h);
+			if(uploadQueued)
+				return;
+
+			uploadQueued = true;
+			GLResourceHelper.sharedHelper().perform(new GLResourceHelper.GLResorceTask() {
+				@Override
+				public void perform(GL10 gl) {
+					upload(gl);
+				}
+			});
+		}
+
+		void upload(GL10 gl) {
+			synchronized (CCRuntimeAtlas.this) {
+				uploadLocked(gl);
+			}
+		}
+
+		private void uploadLocked(GL10 gl) {
+			uploadQueued = false;
+			Bitmap bmp = image.bitmap;
+			// page was removed before the upload
+			if(dirty.isEmpty() || bmp == null)
+				return;
+
+			if(dirty.width() == bmp.getWidth() && dirty.height() == bmp.getHeight()) {
+				texture.updateSubImage(gl, bmp, 0, 0);
+			} else {
+				Bitmap part = Bitmap.createBitmap(bmp, dirty.left, dirty.top, dirty.width(), dirty.height());
+				texture.updateSubImage(gl, part, dirty.left, dirty.top);
+				part.recycle();
+			}
+			dirty.setEmpty();
+		}
+	}
+
+	static class Entry {
+		Page page;
+		CCSpriteFrame frame;
+		int width;
+		int height;
+		int refs;
+		/** sprites which were given the frame */
+		final ArrayList<WeakReference<CCSprite>> sprites = new ArrayList<WeakReference<CCSprite>>(1);
+	}
+
+	private final ArrayList<Page> pages;
+	private final HashMap<String, Entry> entries;
+	/** too big images which got own textures from CCTextureCache */
+	private final HashMap<String, Entry> ownTextures;
+	private final int pageSize;
+	private final int[] position;
+
+	/** draws A8 images as white */
+	private final Paint alphaPaint;
+
+	private int frameGeneration;
+	private int pageSerial;
+
+	private CCRuntimeAtlas() {
+		assert _sharedAtlas == null : "Attempted to allocate a second instance of a singleton.";
+
+		pages = new ArrayList<Page>();
+		entries = new HashMap<String, Entry>();
+		ownTextures = new HashMap<String, Entry>();
+		pageSize = kDefaultPageSize;
+		position = new int[2];
+		alphaPaint = new Paint();
+		alphaPaint.setColor(Color.WHITE);
+	}
+
+	/** count of page textures */
+	public synchronized int getPageCount() {
+		return pages.size();
+	}
+
+	/** count of images in the atlas */
+	public synchronized int getImageCount() {
+		return entries.size();
+	}
+
+	/** increased each time frames are moved by defragmentation */
+	public synchronized int getFrameGeneration() {
+		return frameGeneration;
+	}
+
+	/** Returns frame of previously added image, or null */
+	public synchronized CCSpriteFrame getFrame(String key) {
+		Entry entry = entries.get(key);
+		return entry != null ? entry.frame : null;
+	}
+
+	/** Adds image to the atlas and returns its frame, the caller gets a reference
+	 * of the image which is given back by releaseImage().
+	 * If image with the key is already added its frame is returned.
+	 * Image is copied, caller may recycle it.
+	 * Too big images are added to CCTextureCache as separate textures.
+	 */
+	public synchronized CCSpriteFrame addImage(Bitmap image, String key) {
+		assert image != null : "CCRuntimeAtlas: image must not be null";
+		assert key != null : "CCRuntimeAtlas: key must not be null";
+
+		Entry entry = entries.get(key);
+		if(entry == null)
+			entry = ownTextures.get(key);
+		if(entry != null) {
+			entry.refs++;
+			return entry.frame;
+		}
+
+		int w = image.getWidth();
+		int h = image.getHeight();
+
+		if(w > kMaxImageSide || h > kMaxImageSide) {
+			CCTexture2D tex = CCTextureCache.sharedTextureCache().addImage(image, key);
+			if(tex == null)
+				return null;
+			entry = new Entry();
+			entry.width = w;
+			entry.height = h;
+			entry.refs = 1;
+			entry.frame = CCSpriteFrame.frame(tex, CGRect.make(0, 0, w, h), CGPoint.zero());
+			ownTextures.put(key, entry);
+			return entry.frame;
+		}
+
+		Page page = findPage(w, h);
+
+		entry = new Entry();
+		entry.refs = 1;
+		entry.page = page;
+		entry.width = w;
+		entry.height = h;
+		entry.frame = CCSpriteFrame.frame(page.texture, CGRect.make(position[0], position[1], w, h), CGPoint.zero());
+		entry.frame.atlasEntry_ = entry;
+
+		page.entries.add(entry);
+		page.liveArea += w * h;
+		entries.put(key, entry);
+
+		draw(page, image, position[0], position[1]);
+
+		return entry.frame;
+	}
+
+	/** Gives back a reference taken by addImage(), the last one removes the image */
+	public synchronized void releaseImage(String key) {
+		Entry entry = entries.get(key);
+		if(entry == null)
+			entry = ownTextures.get(key);
+		if(entry != null && --entry.refs <= 0)
+			removeImage(key);
+	}
+
+	/** Removes image from the atlas, whatever references it has.
+	 * Place of the image is reused after defragmentation of its page.
+	 */
+	public synchronized void removeImage(String key) {
+		if(ownTextures.remove(key) != null) {
+			CCTextureCache.sharedTextureCache().removeTexture(key);
+			return;
+		}
+
+		Entry entry = entries.remove(key);
+		if(entry == null)
+			return;
+
+		Page page = entry.page;
+		page.entries.remove(entry);
+		page.liveArea -= entry.width * entry.height;
+		entry.page = null;
+		entry.sprites.clear();
+
+		if(page.entries.isEmpty()) {
+			removePage(page);
+		} else if(page.liveArea < page.packer.getUsedArea() * kDefragmentThreshold) {
+			defragment(page);
+		}
+	}
+
+	/** Removes all images and releases page textures */
+	public synchronized void removeAllImages() {
+		for(int i = pages.size() - 1; i >= 0; --i) {
+			removePage(pages.get(i));
+		}
+		for(Entry entry : entries.values()) {
+			entry.page = null;
+			entry.sprites.clear();
+		}
+		entries.clear();
+
+		for(String key : ownTextures.keySet()) {
+			CCTextureCache.sharedTextureCache().removeTexture(key);
+		}
+		ownTextures.clear();
+	}
+
+	/** Defragments all pages */
+	public synchronized void defragment() {
+		for(int i = 0; i < pages.size(); ++i) {
+			defragment(pages.get(i));
+		}
+	}
+
+	/** Called by CCSprite.setDisplayFrame, the sprite gets the frame again when it's moved */
+	synchronized void bindSprite(CCSpriteFrame frame, CCSprite sprite) {
+		Entry entry = frame.atlasEntry_;
+		if(entry == null || entry.page == null)
+			return;
+
+		ArrayList<WeakReference<CCSprite>> sprites = entry.sprites;
+		for(int i = 0; i < sprites.size(); ++i) {
+			if(sprites.get(i).get() == sprite)
+				return;
+		}
+		sprites.add(new WeakReference<CCSprite>(sprite));
+	}
+
+	private void draw(Page page, Bitmap image, int x, int y) {
+		Canvas canvas = new Canvas(page.image.bitmap);
+		canvas.drawBitmap(image, x, y, image.getConfig() == Bitmap.Config.ALPHA_8 ? alphaPaint : null);
+		page.invalidate(x, y, image.getWidth(), image.getHeight());
+	}
+
+	/** sets the moved frame again to sprites which still display its old place */
+	private static void updateSprites(Entry entry, CCTexture2D oldTexture, float oldX, float oldY) {
+		final CGRect rect = entry.frame.rect_;
+		ArrayList<WeakReference<CCSprite>> sprites = entry.sprites;
+		for(int i = sprites.size() - 1; i >= 0; --i) {
+			CCSprite sprite = sprites.get(i).get();
+			if(sprite == null) {
+				sprites.remove(i);
+				continue;
+			}
+
+			CGRect shown = sprite.getTextureRect();
+			if(sprite.getTexture() != oldTexture || shown.origin.x != oldX || shown.origin.y != oldY
+					|| shown.size.width != rect.size.width || shown.size.height != rect.size.height) {
+				// displays another frame now
+				sprites.remove(i);
+				continue;
+			}
+
+			if(sprite.getTexture() != entry.frame.texture_)
+				sprite.setTexture(entry.frame.texture_);
+			sprite.setDisplayFrame(entry.frame);
+		}
+	}
+
+	/** finds page with free place, position is written to position[] */
+	private Page findPage(int w, int h) {
+		for(int i = 0; i < pages.size(); ++i) {
+			Page page = pages.get(i);
+			if(page.packer.insert(w, h, position))
+				return page;
+		}
+
+		Page page = new Page(pageSize);
+		pages.add(page);
+		page.packer.insert(w, h, position);
+		return page;
+	}
+
+	private void removePage(Page page) {
+		pages.remove(page);
+		CCTextureCache cache = CCTextureCache.sharedTextureCache();
+		cache.removeTexture(page.key);
+		cache.unpinTexture(page.key);
+
+		final CCTexture2D tex = page.texture;
+		GLResourceHelper.sharedHelper().perform(new GLResourceHelper.GLResorceTask() {
+			@Override
+			public void perform(GL10 gl) {
+				tex.releaseTexture(gl);
+			}
+		});
+
+		page.image.bitmap.recycle();
+		page.image.bitmap = null;
+	}
+
+	private static final Comparator<Entry> heightComparator = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry e1, Entry e2) {
+			return e2.height - e1.height;
+		}
+	};
+
+	/** packs live images of the page again, from the highest to the lowest */
+	private void defragment(Page page) {
+		ArrayList<Entry> live = new ArrayList<Entry>(page.entries);
+		Collections.sort(live, heightComparator);
+
+		Bitmap old = page.image.bitmap;
+		Bitmap bmp = Bitmap.createBitmap(old.getWidth(), old.getHeight(), old.getConfig());
+		bmp.eraseColor(Color.TRANSPARENT);
+		Canvas canvas = new Canvas(bmp);
+
+		Rect src = new Rect();
+		Rect dst = new Rect();
+
+		page.packer.reset();
+		page.entries.clear();
+		page.liveArea = 0;
+
+		ArrayList<Entry> moved = null;
+		for(int i = 0; i < live.size(); ++i) {
+			Entry entry = live.get(i);
+			CGRect rect = entry.frame.rect_;
+			src.set((int)rect.origin.x, (int)rect.origin.y,
+					(int)rect.origin.x + entry.width, (int)rect.origin.y + entry.height);
+
+			if(page.packer.insert(entry.width, entry.height, position)) {
+				dst.set(position[0], position[1], position[0] + entry.width, position[1] + entry.height);
+				canvas.drawBitmap(old, src, dst, null);
+				rect.origin.set(position[0], position[1]);
+
+				page.entries.add(entry);
+				page.liveArea += entry.width * entry.height;
+
+				if(src.left != position[0] || src.top != position[1])
+					updateSprites(entry, page.texture, src.left, src.top);
+			} else {
+				// sorted packing may differ, move the image to another page
+				if(moved == null)
+					moved = new ArrayList<Entry>();
+				Bitmap part = Bitmap.createBitmap(old, src.left, src.top, entry.width, entry.height);
+				entry.page = null;
+				entry.frame.rect_.origin.set(src.left, src.top);
+				moved.add(entry);
+				relocate(entry, part);
+				part.recycle();
+				updateSprites(entry, page.texture, src.left, src.top);
+			}
+		}
+
+		page.image.bitmap = bmp;
+		old.recycle();
+
+		page.invalidate(0, 0, bmp.getWidth(), bmp.getHeight());
+		frameGeneration++;
+
+		if(moved != null)
+			ccMacros.CCLOG("CCRuntimeAtlas", "defragmentation moved " + moved.size() + " images to another page");
+	}
+
+	/** places image of entry into other page, frame gets the new texture */
+	private void relocate(Entry entry, Bitmap image) {
+		Page page = findPage(entry.width, entry.height);
+
+		entry.page = page;
+		entry.frame.texture_ = page.texture;
+		entry.frame.rect_.origin.set(position[0], position[1]);
+
+		page.entries.add(entry);
+		page.liveArea += entry.width * entry.height;
+
+		draw(page, image, position[0], position[1]);
+	}
+}
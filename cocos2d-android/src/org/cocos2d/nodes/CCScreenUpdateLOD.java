@@ -0,0 +1,98 @@
+package org.cocos2d.nodes;
+
+import org.cocos2d.actions.CCUpdateLOD;
+import org.cocos2d.types.CGSize;
+
+/** Update LOD by distance of a node from the screen.
+ *
+ * Nodes whose world bounding box is on the screen, or at most margin
+ * points away, are updated every tick. Invisible nodes and nodes up to
+ * farDistance points away use the offscreen interval, farther ones the
+ * far interval. Targets which are not nodes are updated every tick.
+ *
+ * The box is computed from the content size and the cached world matrix,
+ * so nodes with empty content size (e.g. plain CCNode) count as points.
+ */
+public class CCScreenUpdateLOD implements CCUpdateLOD {
+	private float margin_;
+	private float farDistance_;
+	private int offscreenInterval_;
+	private int farInterval_;
+
+	public CCScreenUpdateLOD() {
+		this(64, 480, 4, 16);
+	}
+
+	public CCScreenUpdateLOD(float margin, float farDistance, int offscreenInterval, int farInterval) {
+		margin_ = margin;
+		farDistance_ = farDistance;
+		offscreenInterval_ = offscreenInterval;
+		farInterval_ = farInterval;
+	}
+
+	/** distance from the screen still counted as on the screen, in points */
+	public void setMargin(float margin) {
+		margin_ = margin;
+	}
+
+	public float getMargin() {
+		return margin_;
+	}
+
+	/** distance from the screen where far interval starts, in points */
+	public void setFarDistance(float distance) {
+		farDistance_ = distance;
+	}
+
+	public float getFarDistance() {
+		return farDistance_;
+	}
+
+	public void setOffscreenInterval(int ticks) {
+		offscreenInterval_ = ticks;
+	}
+
+	public int getOffscreenInterval() {
+		return offscreenInterval_;
+	}
+
+	public void setFarInterval(int ticks) {
+		farInterval_ = ticks;
+	}
+
+	public int getFarInterval() {
+		return farInterval_;
+	}
+
+	public int getUpdateInterval(Object target) {
+		if (!(target instanceof CCNode))
+			return 1;
+
+		final CCNode node = (CCNode)target;
+		final float distance = distanceFromScreen(node);
+		if (distance <= margin_)
+			return node.getVisible() ? 1 : offscreenInterval_;
+		return distance <= farDistance_ ? offscreenInterval_ : farInterval_;
+	}
+
+	/** distance of the world bounding box from the screen, 0 if they intersect */
+	public static float distanceFromScreen(CCNode node) {
+		final float[] m = node.nodeToWorldMatrix();
+		final CGSize size = node.getContentSizeRef();
+		final float w = size.width;
+		final float h = size.height;
+
+		// corners (0,0) (w,0) (0,h) (w,h)
+		final float x0 = m[4], x1 = m[0] * w + m[4], x2 = m[2] * h + m[4], x3 = m[0] * w + m[2] * h + m[4];
+		final float y0 = m[5], y1 = m[1] * w + m[5], y2 = m[3] * h + m[5], y3 = m[1] * w + m[3] * h + m[5];
+		final float minX = Math.min(Math.min(x0, x1), Math.min(x2, x3));
+		final float maxX = Math.max(Math.max(x0, x1), Math.max(x2, x3));
+		final float minY = Math.min(Math.min(y0, y1), Math.min(y2, y3));
+		final float maxY = Math.max(Math.max(y0, y1), Math.max(y2, y3));
+
+		final CGSize win = CCDirector.sharedDirector().winSizeRef();
+		final float dx = Math.max(0, Math.max(minX - win.width, -maxX));
+		final float dy = Math.max(0, Math.max(minY - win.height, -maxY));
+		return Math.max(dx, dy);
+	}
+}
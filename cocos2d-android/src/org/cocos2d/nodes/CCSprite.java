@@ -3,6 +3,7 @@ package org.cocos2d.nodes;
 import java.nio.FloatBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.microedition.khronos.opengles.GL10;
 
@@ -12,7 +13,6 @@ import org.cocos2d.opengl.CCTexture2D;
 import org.cocos2d.opengl.CCTextureAtlas;
 import org.cocos2d.protocols.CCRGBAProtocol;
 import org.cocos2d.protocols.CCTextureProtocol;
-import org.cocos2d.types.CGAffineTransform;
 import org.cocos2d.types.CGPoint;
 import org.cocos2d.types.CGRect;
 import org.cocos2d.types.CGSize;
@@ -79,6 +79,10 @@ public class CCSprite extends CCNode implements CCRGBAProtocol, CCTextureProtoco
 	// Animations that belong to the sprite
     private HashMap<String, CCAnimation> animations_;
 
+    // image of the sprite in CCRuntimeAtlas, released by cleanup()
+    private String atlasKey_;
+    private static final AtomicInteger atlasSerial_ = new AtomicInteger();
+
 	// image is flipped
     /** whether or not the sprite is flipped vertically.
      * It only flips the texture of the sprite, and not the texture of the sprite's children.
@@ -288,7 +292,7 @@ public class CCSprite extends CCNode implements CCRGBAProtocol, CCTextureProtoco
     }
 
     /** Creates an sprite with a CGImageRef and a key.
-      The key is used by the CCTextureCache to know if a texture was already created with this CGImage.
+      The key is used by the CCRuntimeAtlas (CCTextureCache if the atlas is disabled) to know if the image was already added.
       For example, a valid key is: @"sprite_frame_01".
       If key is nil, then a new texture will be created each time by the CCTextureCache. 
 
@@ -399,25 +403,33 @@ public class CCSprite extends CCNode implements CCRGBAProtocol, CCTextureProtoco
         assert image!=null:"Invalid CGImageRef for sprite";
 
         // XXX: possible bug. See issue #349. New API should be added
-        String key = image.toString();
-        CCTexture2D texture = CCTextureCache.sharedTextureCache().addImage(image, key);
-
-        CGSize size = texture.getContentSize();
-        CGRect rect = CGRect.make(0, 0, size.width, size.height );
-
-        init(texture, rect);
+        // identity of the Bitmap may be reused, the atlas gets a key of its own
+        String key = ccConfig.CC_USE_RUNTIME_ATLAS ? "CCSprite#" + atlasSerial_.incrementAndGet() : image.toString();
+        initWithImage(image, key);
     }
 
     /** Initializes an sprite with a CGImageRef and a key
-      The key is used by the CCTextureCache to know if a texture was already created with this CGImage.
+      The key is used by the CCRuntimeAtlas (CCTextureCache if the atlas is disabled) to know if the image was already added.
       For example, a valid key is: @"sprite_frame_01".
       If key is nil, then a new texture will be created each time by the CCTextureCache. 
+      The image stays in the atlas until cleanup() of the last sprite made of it.
       @since v0.99.0
       */
     public CCSprite(Bitmap image, String key) {
         assert image!=null:"Invalid CGImageRef for sprite";
 
         // XXX: possible bug. See issue #349. New API should be added
+        initWithImage(image, key);
+    }
+
+    // small images share pages of the runtime atlas
+    private void initWithImage(Bitmap image, String key) {
+        if (ccConfig.CC_USE_RUNTIME_ATLAS && key != null) {
+            init(CCRuntimeAtlas.sharedAtlas().addImage(image, key));
+            atlasKey_ = key;
+            return;
+        }
+
         CCTexture2D texture = CCTextureCache.sharedTextureCache().addImage(image, key);
 
         CGSize size = texture.getContentSize();
@@ -566,6 +578,10 @@ public class CCSprite extends CCNode implements CCRGBAProtocol, CCTextureProtoco
 
     		// update rect
     		setTextureRect(frame.rect_, frame.originalSize_, frame.rotated_);
+
+    		// frames of the runtime atlas may move
+    		if (frame.atlasEntry_ != null)
+    			CCRuntimeAtlas.sharedAtlas().bindSprite(frame, this);
     	}
     }
 
@@ -580,6 +596,18 @@ public class CCSprite extends CCNode implements CCRGBAProtocol, CCTextureProtoco
         setDisplayFrame(frame);
     }
 
+    /** Releases the image of CCRuntimeAtlas the sprite was made of,
+      such sprite can't be shown again after cleanup.
+    */
+    @Override
+    public void cleanup() {
+        if (atlasKey_ != null) {
+            CCRuntimeAtlas.sharedAtlas().releaseImage(atlasKey_);
+            atlasKey_ = null;
+        }
+        super.cleanup();
+    }
+
     @Override
     public void setVisible(boolean v) {
         if( v != visible_ ) {
@@ -623,6 +651,7 @@ public class CCSprite extends CCNode implements CCRGBAProtocol, CCTextureProtoco
         	  .put(tmpR).put(tmpG).put(tmpB).put(tmpA)
         	  .put(tmpR).put(tmpG).put(tmpB).put(tmpA);
         colors.position(0);
+        CCRedrawTracker.setNeedsRedraw();
         
         // renders using Sprite Manager
         if( usesSpriteSheet_ ) {
@@ -670,6 +699,7 @@ public class CCSprite extends CCNode implements CCRGBAProtocol, CCTextureProtoco
         	: "setTexture expects a CCTexture2D. Invalid argument";
         texture_ = texture;
         updateBlendFunc();
+        CCRedrawTracker.setNeedsRedraw();
     }
 
     public CCTexture2D getTexture() {
@@ -728,6 +758,7 @@ public class CCSprite extends CCNode implements CCRGBAProtocol, CCTextureProtoco
 	private void setTextureRect(float x, float y, float w, float h, float sw, float sh, boolean rotated) {
         rect_.set(x, y, w, h);
         rectRotated_ = rotated;
+        CCRedrawTracker.setNeedsRedraw();
 
         setContentSize(sw, sh);
         updateTextureCoords(rect_);
@@ -866,17 +897,18 @@ public class CCSprite extends CCNode implements CCRGBAProtocol, CCTextureProtoco
         if( z == child.getZOrder() )
             return;
 
-        if( usesSpriteSheet_ ) {
-            // XXX: Instead of removing/adding, it is more efficient to reorder manually
-            removeChild(child, false);
-            addChild(child, z);
-        } else {
-            super.reorderChild(child, z);
-        }
+        super.reorderChild(child, z);
+
+        // the sheet reorders its atlas once before the next draw
+        if( usesSpriteSheet_ )
+            spriteSheet_.reorderDirty_ = true;
     }
 
     @Override
     public CCNode addChild(CCNode child, int z, int aTag) {
+        if( usesSpriteSheet_ )
+            spriteSheet_.updateAtlasOrder();
+
         super.addChild(child, z, aTag);
         
         if(child instanceof CCSprite && usesSpriteSheet_) {
@@ -916,6 +948,13 @@ public class CCSprite extends CCNode implements CCRGBAProtocol, CCTextureProtoco
     public void draw(GL10 gl) {	
         assert !usesSpriteSheet_:"If CCSprite is being rendered by CCSpriteSheet, CCSprite#draw SHOULD NOT be called";
 
+        CCBatchRenderer batch = CCBatchRenderer.sharedRenderer();
+        if (batch.isActive()) {
+        	if (batch.addQuad(gl, this, texture_, blendFunc_, vertexes, texCoords, colors))
+        		return;
+        	batch.flush(gl);
+        }
+
         // Default GL states: GL_TEXTURE_2D, GL_VERTEX_ARRAY, GL_COLOR_ARRAY, GL_TEXTURE_COORD_ARRAY
         // Needed states: GL_TEXTURE_2D, GL_VERTEX_ARRAY, GL_COLOR_ARRAY, GL_TEXTURE_COORD_ARRAY
         // Unneeded states: -
@@ -947,6 +986,7 @@ public class CCSprite extends CCNode implements CCRGBAProtocol, CCTextureProtoco
         gl.glTexCoordPointer(2, GL10.GL_FLOAT, 0, texCoords);
 
         gl.glDrawArrays(GL10.GL_TRIANGLE_STRIP, 0, 4);
+        batch.countDrawCall();
 
         if( newBlend )
             gl.glBlendFunc(ccConfig.CC_BLEND_SRC, ccConfig.CC_BLEND_DST);
@@ -1055,16 +1095,42 @@ public class CCSprite extends CCNode implements CCRGBAProtocol, CCTextureProtoco
         	textureAtlas_.putTexCoords( texCoords, atlasIndex);
     }
 
-    private final static CGAffineTransform tmpMatrix = CGAffineTransform.identity();
-    private final static CGAffineTransform tmpNewMatrix = CGAffineTransform.identity();
     private final static float tmpV[] = new float[] { 
         	0, 0, 0 , 	0, 0, 0,
         	0, 0, 0,  	0, 0, 0
         };  
+
+    // sheet relative matrices { a, b, c, d, tx, ty }, valid after updateTransform()
+    // transform of ancestors as seen by this sprite according to honorParentTransform_
+    private final float[] ancestorMatrix_ = new float[6];
+    // transform of this sprite
+    private final float[] sheetMatrix_ = new float[6];
+
     /** updates the quad according the the rotation, position, scale values.
+     * Sheet relative matrix is computed from the cached matrix of the parent,
+     * dirty parent is updated first, so each sprite is computed once per frame.
     */
     public void updateTransform() {
-    	tmpMatrix.setToIdentity();
+        final float[] am = ancestorMatrix_;
+
+        if( parent_ == null || parent_ == spriteSheet_ ) {
+        	am[0] = 1; am[1] = 0; am[2] = 0; am[3] = 1; am[4] = 0; am[5] = 0;
+        } else {
+        	// do affine transformation according to the HonorParentTransform
+        	CCSprite sprP = (CCSprite)parent_;
+        	if( sprP.dirty_ )
+        		sprP.updateTransform();
+
+        	if( honorParentTransform_ == CC_HONOR_PARENT_TRANSFORM_ALL ) {
+        		System.arraycopy(sprP.sheetMatrix_, 0, am, 0, 6);
+        	} else {
+        		localMatrix(sprP, honorParentTransform_, tmpLocal);
+        		concat(sprP.ancestorMatrix_, tmpLocal, am);
+        	}
+        }
+
+        localMatrix(this, CC_HONOR_PARENT_TRANSFORM_ALL, tmpLocal);
+        concat(am, tmpLocal, sheetMatrix_);
 
         // Optimization: if it is not visible, then do nothing
         if( ! visible_ ) {
@@ -1074,46 +1140,6 @@ public class CCSprite extends CCNode implements CCRGBAProtocol, CCTextureProtoco
             return ;
         }
 
-        // Optimization: If parent is spritesheet, or parent is nil
-        // build Affine transform manually
-        if( parent_==null || parent_ == spriteSheet_ ) {
-            float radians = -ccMacros.CC_DEGREES_TO_RADIANS(rotation_);
-            float c = (float)Math.cos(radians);
-            float s = (float)Math.sin(radians);
-            
-            tmpMatrix.set(c * scaleX_,  s * scaleX_,
-                    -s * scaleY_, c * scaleY_,
-                    position_.x, position_.y);
-
-            tmpMatrix.translate(-anchorPointInPixels_.x, -anchorPointInPixels_.y);
-        } 
-
-        // else do affine transformation according to the HonorParentTransform
-        else if( parent_ != spriteSheet_ ) {
-
-            int prevHonor = CC_HONOR_PARENT_TRANSFORM_ALL;
-
-            for (CCNode p = this; p != null && p != spriteSheet_; p = p.getParent()) {
-            	CCSprite sprP = (CCSprite)p;
-                
-                tmpNewMatrix.setToIdentity();
-                // 2nd: Translate, Rotate, Scale
-                if( (prevHonor & CC_HONOR_PARENT_TRANSFORM_TRANSLATE) !=0 )
-                	tmpNewMatrix.translate(sprP.position_.x, sprP.position_.y);
-                if( (prevHonor & CC_HONOR_PARENT_TRANSFORM_ROTATE) != 0 )
-                	tmpNewMatrix.rotate(-ccMacros.CC_DEGREES_TO_RADIANS(sprP.rotation_));
-                if( (prevHonor & CC_HONOR_PARENT_TRANSFORM_SCALE) != 0 ) {
-                	tmpNewMatrix.scale(sprP.scaleX_, sprP.scaleY_);
-                }
-
-                // 3rd: Translate anchor point
-                tmpNewMatrix.translate(-sprP.anchorPointInPixels_.x, -sprP.anchorPointInPixels_.y);
-                // 4th: Matrix multiplication
-                tmpMatrix.multiply(tmpNewMatrix);
-                prevHonor = sprP.honorParentTransform_;
-            }		
-        }
-
         //
         // calculate the Quad based on the Affine Matrix
         //	
@@ -1125,13 +1151,14 @@ public class CCSprite extends CCNode implements CCRGBAProtocol, CCTextureProtoco
 
         float x2 = x1 + size.width;
         float y2 = y1 + size.height;
-        float x = (float) tmpMatrix.m02;
-        float y = (float) tmpMatrix.m12;
+        final float[] m = sheetMatrix_;
+        float x = m[4];
+        float y = m[5];
 
-        float cr = (float) tmpMatrix.m00;
-        float sr = (float) tmpMatrix.m10;
-        float cr2 = (float) tmpMatrix.m11;
-        float sr2 = (float) -tmpMatrix.m01;
+        float cr = m[0];
+        float sr = m[1];
+        float cr2 = m[3];
+        float sr2 = -m[2];
 
         float ax = x1 * cr - y1 * sr2 + x;
         float ay = x1 * sr + y1 * cr2 + y;
@@ -1154,6 +1181,49 @@ public class CCSprite extends CCNode implements CCRGBAProtocol, CCTextureProtoco
         dirty_ = recursiveDirty_ = false;
     }
 
+    private final static float tmpLocal[] = new float[6];
+
+    /** translate, rotate, scale of the sprite filtered by honor flags, then anchor point */
+    private static void localMatrix(CCSprite sp, int honor, float[] out) {
+    	float c = 1, s = 0;
+    	if( (honor & CC_HONOR_PARENT_TRANSFORM_ROTATE) != 0 && sp.rotation_ != 0 ) {
+            float radians = -ccMacros.CC_DEGREES_TO_RADIANS(sp.rotation_);
+            c = (float)Math.cos(radians);
+            s = (float)Math.sin(radians);
+    	}
+
+    	float sx = 1, sy = 1;
+    	if( (honor & CC_HONOR_PARENT_TRANSFORM_SCALE) != 0 ) {
+    		sx = sp.scaleX_;
+    		sy = sp.scaleY_;
+    	}
+
+    	out[0] = c * sx;
+    	out[1] = s * sx;
+    	out[2] = -s * sy;
+    	out[3] = c * sy;
+
+    	float ax = sp.anchorPointInPixels_.x;
+    	float ay = sp.anchorPointInPixels_.y;
+    	out[4] = -(out[0] * ax + out[2] * ay);
+    	out[5] = -(out[1] * ax + out[3] * ay);
+    	if( (honor & CC_HONOR_PARENT_TRANSFORM_TRANSLATE) != 0 ) {
+    		out[4] += sp.position_.x;
+    		out[5] += sp.position_.y;
+    	}
+    }
+
+    /** out = p * l, l is applied first */
+    private static void concat(float[] p, float[] l, float[] out) {
+    	float a  = p[0] * l[0] + p[2] * l[1];
+    	float b  = p[1] * l[0] + p[3] * l[1];
+    	float c  = p[0] * l[2] + p[2] * l[3];
+    	float d  = p[1] * l[2] + p[3] * l[3];
+    	float tx = p[0] * l[4] + p[2] * l[5] + p[4];
+    	float ty = p[1] * l[4] + p[3] * l[5] + p[5];
+    	out[0] = a; out[1] = b; out[2] = c; out[3] = d; out[4] = tx; out[5] = ty;
+    }
+
 	public ccBlendFunc getBlendFunc() {
 		return blendFunc_;
 	}
@@ -45,6 +45,9 @@ public class CCSpriteFrame {
     	return texture_;
     }
     
+    /** place of the frame in CCRuntimeAtlas, null for other frames */
+    CCRuntimeAtlas.Entry atlasEntry_;
+
     /** Flag shows that Zwoptex rotated texture for optimizations */
     Boolean rotated_;
     public Boolean getRotated() {
@@ -49,6 +49,10 @@ public class CCSpriteSheet extends CCNode implements CCTextureProtocol {
     /** descendants (children, gran children, etc) */
     ArrayList<CCSprite>	descendants_;
 
+    // set by reorderChild of the sheet or of a sprite in it,
+    // descendants_ and the atlas are put in z order again before they are used
+    boolean reorderDirty_;
+
     /** creates a CCSpriteSheet with a texture2d and a default capacity of 29 children.
       The capacity will be increased in 33% in runtime if it run out of space.
       */
@@ -169,6 +173,7 @@ public class CCSpriteSheet extends CCNode implements CCTextureProtocol {
         // NSAssert( [child isKindOfClass:[CCSprite class]], @"CCSpriteSheet only supports CCSprites as children");
         // NSAssert( child.texture.name == textureAtlas_.texture.name, @"CCSprite is not using the same texture id");
 
+        updateAtlasOrder();
     	super.addChild(child, z, aTag);
     	
     	CCSprite sprite = (CCSprite)child;
@@ -182,6 +187,7 @@ public class CCSpriteSheet extends CCNode implements CCTextureProtocol {
     }
 
     // override reorderChild
+    // the atlas is reordered once before the next draw, not on every call
     public void reorderChild(CCNode child, int z) {
         // NSAssert( child != nil, @"Child must be non-nil");
         // NSAssert( [children_ containsObject:child], @"Child doesn't belong to Sprite" );
@@ -189,9 +195,8 @@ public class CCSpriteSheet extends CCNode implements CCTextureProtocol {
         if( z == child.getZOrder())
             return;
 
-        // XXX: Instead of removing/adding, it is more efficient to reorder manually
-        removeChild(child, false);
-        addChild(child, z);
+        super.reorderChild(child, z);
+        reorderDirty_ = true;
     }
 
     /** removes a child given a reference. It will also cleanup the running actions depending on the cleanup parameter.
@@ -214,7 +219,7 @@ public class CCSpriteSheet extends CCNode implements CCTextureProtocol {
       @warning Removing a child from a CCSpriteSheet is very slow
       */
     public void removeChildAtIndex(int index, boolean doCleanup) {
-    	CCSprite sprite = (CCSprite)children_.get(index);
+    	CCSprite sprite = (CCSprite)getChildren().get(index);
         removeChild(sprite, doCleanup);
     }
 
@@ -228,11 +233,14 @@ public class CCSpriteSheet extends CCNode implements CCTextureProtocol {
         super.removeAllChildren(doCleanup);
 
         descendants_.clear();
+        reorderDirty_ = false;
         textureAtlas_.removeAllQuads();
     }
 
     @Override
     public void draw(GL10 gl) {
+        updateAtlasOrder();
+
         if( textureAtlas_.getTotalQuads() == 0 )
             return;
 
@@ -372,6 +380,46 @@ public class CCSpriteSheet extends CCNode implements CCTextureProtocol {
         }
     }
 
+    /** Puts descendants_ and the quads of the atlas in z order after reorderChild.
+      Any number of reorders cost one O(n) pass, only the quads of sprites that moved are rewritten.
+      */
+    protected void updateAtlasOrder() {
+        if( !reorderDirty_ )
+            return;
+        reorderDirty_ = false;
+
+        descendants_.clear();
+        addDescendantsInOrder(this);
+
+        final int count = descendants_.size();
+        for (int i = 0; i < count; i++) {
+            CCSprite sprite = descendants_.get(i);
+            if( sprite.atlasIndex != i ) {
+                sprite.atlasIndex = i;
+                textureAtlas_.putTexCoords(sprite.getTexCoords(), i);
+                sprite.updateColor();
+                // vertices are written by updateTransform in draw
+                sprite.dirty_ = true;
+            }
+        }
+    }
+
+    // same order as rebuildIndexInOrder
+    private void addDescendantsInOrder(CCNode node) {
+        List<CCNode> children = node.getChildren();
+        final int count = children == null ? 0 : children.size();
+        int i = 0;
+        for (; i < count && children.get(i).getZOrder() < 0; i++)
+            addDescendantsInOrder(children.get(i));
+
+        // ignore self (spritesheet)
+        if( node != this )
+            descendants_.add((CCSprite)node);
+
+        for (; i < count; i++)
+            addDescendantsInOrder(children.get(i));
+    }
+
     // add child helper
     protected void insertChild(CCSprite sprite, int index) {
         sprite.useSpriteSheetRender(this);
@@ -405,6 +453,8 @@ public class CCSpriteSheet extends CCNode implements CCTextureProtocol {
 
     // remove child helper
     public void removeSpriteFromAtlas(CCSprite sprite) {
+        updateAtlasOrder();
+
         // remove from TextureAtlas
         textureAtlas_.removeQuad(sprite.atlasIndex);
 
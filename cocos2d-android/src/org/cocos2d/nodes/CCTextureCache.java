@@ -6,11 +6,19 @@ import java.io.InputStream;
 import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.cocos2d.config.ccMacros;
+import org.cocos2d.opengl.CCCompressedTextureData;
 import org.cocos2d.opengl.CCTexture2D;
 import org.cocos2d.opengl.GLResourceHelper;
 import org.cocos2d.opengl.GLResourceHelper.Resource;
+import org.cocos2d.protocols.CCTextureProtocol;
 import org.cocos2d.utils.ContentHelper;
 
 import android.graphics.Bitmap;
@@ -19,10 +27,51 @@ import android.graphics.BitmapFactory;
 /** Singleton that handles the loading of textures
  * Once the texture is loaded, the next time it will return
  * a reference of the previously loaded texture reducing GPU & CPU memory
+ *
+ * Textures are kept resident in LRU order while their summary size
+ * (width * height * bpp) fits the memory budget. When budget is exceeded
+ * least recently used textures which are not pinned and not used
+ * by the running scene are evicted and deleted from video memory.
+ * Evicted textures are still found while somebody references them and
+ * are loaded again when they are bound, they are freed by GC otherwise.
+ *
+ * The cache may be used from loader threads, its state is guarded by the cache.
  */
 public class CCTextureCache {
+	/** default memory budget for resident textures, in bytes */
+	public static final long kDefaultMemoryBudget = 16 * 1024 * 1024;
+
     private HashMap<String, WeakReference<CCTexture2D> > textures;
 
+    /** strong references to resident textures in access order */
+    private LinkedHashMap<String, ResidentEntry> resident;
+    private HashSet<String> pinned;
+
+    private long memoryBudget_;
+    private long residentBytes_;
+
+    private int hits_;
+    private int misses_;
+    private int evictions_;
+
+    /** textures of running scene, collected once per frame when budget is exceeded */
+    private final IdentityHashMap<CCTexture2D, Boolean> used_ = new IdentityHashMap<CCTexture2D, Boolean>();
+    private long usedFrame_ = -1;
+    private CCNode usedScene_;
+
+    private static class ResidentEntry {
+    	CCTexture2D texture;
+    	int bytes;
+    	/** frame of the last lookup, textures asked for in current frame are not evicted */
+    	long frame;
+
+    	ResidentEntry(CCTexture2D tex, long frame) {
+    		texture = tex;
+    		bytes = tex.memorySize();
+    		this.frame = frame;
+    	}
+    }
+
     private static CCTextureCache _sharedTextureCache;
 
     /** Retruns ths shared instance of the cache */
@@ -49,26 +98,199 @@ public class CCTextureCache {
 
         synchronized (CCTextureCache.class) {
             textures = new HashMap<String, WeakReference<CCTexture2D> >(10);
+            resident = new LinkedHashMap<String, ResidentEntry>(10, 0.75f, true);
+            pinned = new HashSet<String>();
+            memoryBudget_ = kDefaultMemoryBudget;
         }
     }
 
+    /** Sets maximum size in bytes of resident textures.
+     * Textures over budget are evicted immediately.
+     */
+    public synchronized void setMemoryBudget(long bytes) {
+    	memoryBudget_ = bytes;
+    	trimToBudget(null);
+    }
+
+    public synchronized long getMemoryBudget() {
+    	return memoryBudget_;
+    }
+
+    /** summary size of resident textures in bytes */
+    public synchronized long getResidentBytes() {
+    	return residentBytes_;
+    }
+
+    /** count of resident textures */
+    public synchronized int getResidentCount() {
+    	return resident.size();
+    }
+
+    /** count of lookups which found loaded texture */
+    public synchronized int getHits() {
+    	return hits_;
+    }
+
+    /** count of lookups which caused texture loading */
+    public synchronized int getMisses() {
+    	return misses_;
+    }
+
+    /** count of textures evicted because of memory budget */
+    public synchronized int getEvictions() {
+    	return evictions_;
+    }
+
+    public synchronized void resetStats() {
+    	hits_ = misses_ = evictions_ = 0;
+    }
+
+    /** Pins texture with given key, pinned texture is never evicted.
+     * Use it for preloaded assets. Key may be pinned before texture is added.
+     */
+    public synchronized void pinTexture(String key) {
+    	if(key != null)
+    		pinned.add(key);
+    }
+
+    /** Allows texture with given key to be evicted again */
+    public synchronized void unpinTexture(String key) {
+    	if(key != null && pinned.remove(key))
+    		trimToBudget(null);
+    }
+
+    public synchronized boolean isPinned(String key) {
+    	return pinned.contains(key);
+    }
+
+    /** lookup texture and update LRU order */
+    private CCTexture2D getTexture(String key) {
+    	if(key == null)
+    		return null;
+
+    	ResidentEntry entry = resident.get(key);
+    	if(entry != null) {
+    		entry.frame = currentFrame();
+    		hits_++;
+
+    		// texture could be reinited with another size
+    		int bytes = entry.texture.memorySize();
+    		if(bytes != entry.bytes) {
+    			residentBytes_ += bytes - entry.bytes;
+    			entry.bytes = bytes;
+    			trimToBudget(key);
+    		}
+    		return entry.texture;
+    	}
+
+    	WeakReference<CCTexture2D> texSR = textures.get(key);
+    	CCTexture2D tex = null;
+    	if(texSR != null)
+    		tex = texSR.get();
+
+    	if(tex != null) {
+    		// evicted but still alive, make it resident again
+    		hits_++;
+    		makeResident(key, tex);
+    	} else {
+    		misses_++;
+    	}
+    	return tex;
+    }
+
+    private void putTexture(String key, CCTexture2D tex) {
+    	textures.put(key, new WeakReference<CCTexture2D>(tex));
+    	makeResident(key, tex);
+    }
+
+    private void makeResident(String key, CCTexture2D tex) {
+    	tex.cancelEvict();
+    	ResidentEntry entry = new ResidentEntry(tex, currentFrame());
+    	ResidentEntry old = resident.put(key, entry);
+    	if(old != null)
+    		residentBytes_ -= old.bytes;
+    	residentBytes_ += entry.bytes;
+    	trimToBudget(key);
+    }
+
+    private static long currentFrame() {
+    	return CCDirector.sharedDirector().getTotalFrames();
+    }
+
+    private void removeResident(String key) {
+    	ResidentEntry entry = resident.remove(key);
+    	if(entry != null)
+    		residentBytes_ -= entry.bytes;
+    }
+
+    /** evicts least recently used textures until resident bytes fit the budget,
+     * texture with key keep is just requested and is never evicted */
+    private void trimToBudget(String keep) {
+    	if(residentBytes_ <= memoryBudget_)
+    		return;
+
+    	final long frame = currentFrame();
+    	IdentityHashMap<CCTexture2D, Boolean> used = usedTextures(frame);
+
+    	Iterator<Map.Entry<String, ResidentEntry>> it = resident.entrySet().iterator();
+    	while(residentBytes_ > memoryBudget_ && it.hasNext()) {
+    		Map.Entry<String, ResidentEntry> e = it.next();
+    		ResidentEntry entry = e.getValue();
+    		if(entry.frame == frame || e.getKey().equals(keep) || pinned.contains(e.getKey())
+    				|| used.containsKey(entry.texture))
+    			continue;
+
+    		it.remove();
+    		residentBytes_ -= entry.bytes;
+    		evictions_++;
+    		entry.texture.evict();
+    	}
+    }
+
+    /** textures of running scene, the scene is walked once per frame,
+     * textures added to it later in the same frame are protected by ResidentEntry.frame */
+    private IdentityHashMap<CCTexture2D, Boolean> usedTextures(long frame) {
+    	CCNode scene = CCDirector.sharedDirector().getRunningScene();
+    	if(frame != usedFrame_ || scene != usedScene_) {
+    		used_.clear();
+    		if(scene != null)
+    			collectTextures(scene, used_);
+    		usedFrame_ = frame;
+    		usedScene_ = scene;
+    	}
+    	return used_;
+    }
+
+    private static void collectTextures(CCNode node, IdentityHashMap<CCTexture2D, Boolean> ret) {
+    	if(node instanceof CCTextureProtocol) {
+    		CCTexture2D tex = ((CCTextureProtocol)node).getTexture();
+    		if(tex != null)
+    			ret.put(tex, Boolean.TRUE);
+    	}
+
+    	List<CCNode> children = node.getChildren();
+    	if(children != null) {
+    		for(int i = 0, size = children.size(); i < size; ++i) {
+    			collectTextures(children.get(i), ret);
+    		}
+    	}
+    }
+
     /** Returns a Texture2D object given an file image
      * If the file image was not previously loaded, it will create a new CCTexture2D
      *  object and it will return it. It will use the filename as a key.
      * Otherwise it will return a reference of a previosly loaded image.
-     * Supported image extensions: .png, .bmp, .tiff, .jpeg, .pvr, .gif
+     * Supported image extensions: .png, .bmp, .tiff, .jpeg, .pvr, .pkm, .gif
+     * .pvr (PVRTC, ETC1) and .pkm (ETC1) are uploaded compressed with their mipmaps.
      */
-    public CCTexture2D addImage(String path) {
+    public synchronized CCTexture2D addImage(String path) {
         assert path != null : "TextureMgr: path must not be null";
 
-        WeakReference<CCTexture2D> texSR = textures.get(path);
-        CCTexture2D tex = null;
-        if(texSR != null)
-        	tex = texSR.get();
+        CCTexture2D tex = getTexture(path);
 
         if (tex == null) {
             tex = createTextureFromFilePath(path);
-            textures.put(path, new WeakReference<CCTexture2D>(tex));
+            putTexture(path, tex);
         }
         return tex;
     }
@@ -76,17 +298,14 @@ public class CCTextureCache {
     /**
      * Returns a Texture2D object given an file image from external path.
      */
-    public CCTexture2D addImageExternal(String path) {
+    public synchronized CCTexture2D addImageExternal(String path) {
         assert path != null : "TextureMgr: path must not be null";
 
-        WeakReference<CCTexture2D> texSR = textures.get(path);
-        CCTexture2D tex = null;
-        if(texSR != null)
-        	tex = texSR.get();
+        CCTexture2D tex = getTexture(path);
 
         if (tex == null) {
             tex = createTextureFromFilePathExternal(path);
-            textures.put( path, new WeakReference<CCTexture2D>(tex) );
+            putTexture(path, tex);
         }
         return tex;
     }
@@ -101,13 +320,10 @@ public class CCTextureCache {
      * use assets method if you can.
      * @since v0.8
     */
-    public CCTexture2D addImage(Bitmap image, String key) {
+    public synchronized CCTexture2D addImage(Bitmap image, String key) {
         assert (image != null) : "TextureCache: image must not be null";
 
-        WeakReference<CCTexture2D> texSR = textures.get(key);
-        CCTexture2D tex = null;
-        if(texSR != null)
-        	tex = texSR.get();
+        CCTexture2D tex = getTexture(key);
         
     	if( key !=null && tex != null ) {
     		return tex;
@@ -125,7 +341,7 @@ public class CCTextureCache {
 				}
 			});
 	    	if( key!= null ) {
-	    		textures.put(key, new WeakReference<CCTexture2D>(texNew) );
+	    		putTexture(key, texNew);
 	    	}
 	    	
 	    	return texNew;
@@ -142,7 +358,7 @@ public class CCTextureCache {
      * In the medium term: it will allocate more resources
      * In the long term: it will be the same
     */
-    public void removeAllTextures() {
+    public synchronized void removeAllTextures() {
     	/* Do nothing, or do all.*/
     	for (WeakReference<CCTexture2D> texSR : textures.values()) {
     		CCTexture2D tex = texSR.get();
@@ -150,14 +366,35 @@ public class CCTextureCache {
     			tex.releaseTexture(CCDirector.gl);    		
     	}
     	textures.clear();
+    	resident.clear();
+    	residentBytes_ = 0;
+    	used_.clear();
+    	usedScene_ = null;
     }
 
     /** Removes unused textures
-     * Textures that have a retain count of 1 will be deleted
+     * Textures that are not pinned and not used by the running scene
+     * stop being resident and are deleted from video memory,
+     * they are freed by GC when nobody references them.
      * It is convinient to call this method after when starting a new Scene
      * @since v0.8
      */
-    public void removeUnusedTextures() {
+    public synchronized void removeUnusedTextures() {
+    	// scene could change in this frame
+    	usedFrame_ = -1;
+    	IdentityHashMap<CCTexture2D, Boolean> used = usedTextures(currentFrame());
+
+    	Iterator<Map.Entry<String, ResidentEntry>> it = resident.entrySet().iterator();
+    	while(it.hasNext()) {
+    		Map.Entry<String, ResidentEntry> e = it.next();
+    		ResidentEntry entry = e.getValue();
+    		if(pinned.contains(e.getKey()) || used.containsKey(entry.texture))
+    			continue;
+
+    		it.remove();
+    		residentBytes_ -= entry.bytes;
+    		entry.texture.evict();
+    	}
         /*
         NSArray *keys = [textures allKeys];
         for( id key in keys ) {
@@ -173,38 +410,63 @@ public class CCTextureCache {
     /** 
      * Deletes a texture from the cache given a texture
     */
-    public void removeTexture(CCTexture2D tex) {
+    public synchronized void removeTexture(CCTexture2D tex) {
         if (tex == null)
             return;
 
-        textures.values().remove(tex);
+        Iterator<Map.Entry<String, WeakReference<CCTexture2D>>> it = textures.entrySet().iterator();
+        while(it.hasNext()) {
+        	Map.Entry<String, WeakReference<CCTexture2D>> e = it.next();
+        	if(e.getValue().get() == tex) {
+        		removeResident(e.getKey());
+        		it.remove();
+        	}
+        }
     }
     
     /*
      * Add a texture to the cache so it gets managed
      */
-    public void addTexture(CCTexture2D tex) {
+    public synchronized void addTexture(CCTexture2D tex) {
     	if (tex == null)
     		return;
-    	textures.put(String.valueOf(tex.hashCode()), new WeakReference<CCTexture2D>(tex));
+    	putTexture(String.valueOf(tex.hashCode()), tex);
     }
     
-    public void addTexture(CCTexture2D tex, String name) {
+    public synchronized void addTexture(CCTexture2D tex, String name) {
     	if (tex == null)
     		return;
-    	textures.put(name, new WeakReference<CCTexture2D>(tex));
+    	putTexture(name, tex);
+    }
+
+    /** Adds texture which is filled later, like a page of CCRuntimeAtlas.
+     * It's counted in the budget with given size and pinned, so it's never evicted.
+     */
+    synchronized void addPinnedTexture(String key, CCTexture2D tex, int bytes) {
+    	pinned.add(key);
+    	textures.put(key, new WeakReference<CCTexture2D>(tex));
+    	ResidentEntry entry = new ResidentEntry(tex, currentFrame());
+    	entry.bytes = bytes;
+    	ResidentEntry old = resident.put(key, entry);
+    	if(old != null)
+    		residentBytes_ -= old.bytes;
+    	residentBytes_ += bytes;
+    	trimToBudget(key);
     }
 
     /** Deletes a texture from the cache given a its key name
       @since v0.99.4
       */
-    public void removeTexture(String textureKeyName) {
+    public synchronized void removeTexture(String textureKeyName) {
         if (textureKeyName == null)
             return ;
         textures.remove(textureKeyName);
+        removeResident(textureKeyName);
     }
 
     private static CCTexture2D createTextureFromFilePath(final String path) {
+    	if(CCCompressedTextureData.isCompressedPath(path))
+    		return createCompressedTextureFromFilePath(path, false);
             
     	CCTexture2D tex = new CCTexture2D();
         tex.setLoader(new GLResourceHelper.GLResourceLoader() {
@@ -231,7 +493,36 @@ public class CCTextureCache {
         return tex;
     }
     
+    /**
+     * PVR and PKM containers are read from stream straight to direct buffers
+     * and uploaded with glCompressedTexImage2D, no Bitmap is decoded.
+     */
+    private static CCTexture2D createCompressedTextureFromFilePath(final String path, final boolean external) {
+
+    	CCTexture2D tex = new CCTexture2D();
+        tex.setLoader(new GLResourceHelper.GLResourceLoader() {
+
+			@Override
+			public void load(Resource res) {
+	            try {
+		        	InputStream is = external ? new FileInputStream(path)
+		        			: ContentHelper.sharedHelper().openInputStream(path);
+		        	CCCompressedTextureData data = CCCompressedTextureData.read(is);
+					is.close();
+
+					((CCTexture2D)res).initWithCompressedData(data);
+				} catch (IOException e) {
+					ccMacros.CCLOG("cocos2d", "Couldn't load compressed texture " + path + ": " + e.getMessage());
+				}
+			}
+		});
+
+        return tex;
+    }
+
     private static CCTexture2D createTextureFromFilePathExternal(final String path) {
+    	if(CCCompressedTextureData.isCompressedPath(path))
+    		return createCompressedTextureFromFilePath(path, true);
         
     	CCTexture2D tex = new CCTexture2D();
         tex.setLoader(new GLResourceHelper.GLResourceLoader() {
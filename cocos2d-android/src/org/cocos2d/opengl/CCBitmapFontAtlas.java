@@ -224,9 +224,9 @@ public class CCBitmapFontAtlas extends CCSpriteSheet implements CCLabelProtocol,
             // We need to move past the first entry in the array before we start assigning values
             nse.next();
 
-            // page ID. Sanity check
+            // page ID. Sanity check, the value is followed by " file"
             propertyValue = nse.next();
-            assert (Integer.valueOf(propertyValue) == 0)
+            assert (Integer.valueOf(propertyValue.split(" ")[0]) == 0)
             	:"XXX: BitmapFontAtlas only supports 1 page";
 
             // file 
@@ -452,6 +452,7 @@ public class CCBitmapFontAtlas extends CCSpriteSheet implements CCLabelProtocol,
     public void setOpacity(int o) {
         opacity_ = o;
 
+        sortAllChildren();
         int len = children_.size();
         for (int i = 0; i < len; i++) {
         	CCNode child = children_.get(i);
@@ -468,6 +469,7 @@ public class CCBitmapFontAtlas extends CCSpriteSheet implements CCLabelProtocol,
 
     public void setColor(ccColor3B color) {
         color_.set(color);
+        sortAllChildren();
         int len = children_.size();
         for (int i = 0; i < len; i++) {
         	CCNode child = children_.get(i);
@@ -646,6 +648,7 @@ public class CCBitmapFontAtlas extends CCSpriteSheet implements CCLabelProtocol,
         string_.reset();
         string_.append(newString);
 
+        sortAllChildren();
         int len = children_.size();
         for (int i = 0; i < len; i++) {
         	CCNode child = children_.get(i);
@@ -657,6 +660,7 @@ public class CCBitmapFontAtlas extends CCSpriteSheet implements CCLabelProtocol,
 
     public void setOpacityModifyRGB(boolean modify) {
         opacityModifyRGB_ = modify;
+        sortAllChildren();
         int len = children_.size();
         for (int i = 0; i < len; i++) {
         	CCNode child = children_.get(i);
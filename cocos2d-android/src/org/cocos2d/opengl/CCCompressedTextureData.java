@@ -0,0 +1,394 @@
+package org.cocos2d.opengl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+
+/**
+ * Pre-compressed texture container data: PVR (v2 header, PVRTC 2/4 bpp and ETC1)
+ * and ETC1 PKM files. A stream of concatenated PKM files is read as mipmap chain.
+ *
+ * Mipmap levels are read from stream straight to direct buffers
+ * ready for glCompressedTexImage2D.
+ * This class doesn't depend on OpenGL or android, so parsing can be tested on plain JVM.
+ */
+public class CCCompressedTextureData {
+
+	/** GL_OES_compressed_ETC1_RGB8_texture */
+	public static final int GL_ETC1_RGB8_OES 					= 0x8D64;
+	/** GL_IMG_texture_compression_pvrtc */
+	public static final int GL_COMPRESSED_RGB_PVRTC_4BPPV1_IMG 	= 0x8C00;
+	public static final int GL_COMPRESSED_RGB_PVRTC_2BPPV1_IMG 	= 0x8C01;
+	public static final int GL_COMPRESSED_RGBA_PVRTC_4BPPV1_IMG = 0x8C02;
+	public static final int GL_COMPRESSED_RGBA_PVRTC_2BPPV1_IMG = 0x8C03;
+
+	public static final int kFormatPVRTC2 	= 0;
+	public static final int kFormatPVRTC4 	= 1;
+	public static final int kFormatETC1 	= 2;
+
+	// PVR v2 header
+	private static final int PVR_HEADER_SIZE 			= 13 * 4;
+	private static final int PVR_TEXTURE_FLAG_TYPE_MASK = 0xff;
+	private static final int kPVRTextureFlagTypePVRTC_2 = 0x18;
+	private static final int kPVRTextureFlagTypePVRTC_4 = 0x19;
+	private static final int kPVRTextureFlagTypeETC1 	= 0x36;
+	private static final int kPVRTag = ('P') | ('V' << 8) | ('R' << 16) | ('!' << 24);
+
+	// PKM header
+	private static final int PKM_HEADER_SIZE = 16;
+
+	private static final String kExtensionETC1 	= "GL_OES_compressed_ETC1_RGB8_texture";
+	private static final String kExtensionPVRTC = "GL_IMG_texture_compression_pvrtc";
+
+	// ETC1 intensity modifiers by table codeword, indexed by pixel index bits msb:lsb
+	private static final int[][] kETC1Modifiers = {
+		{  2,   8,  -2,   -8 },
+		{  5,  17,  -5,  -17 },
+		{  9,  29,  -9,  -29 },
+		{ 13,  42, -13,  -42 },
+		{ 18,  60, -18,  -60 },
+		{ 24,  80, -24,  -80 },
+		{ 33, 106, -33, -106 },
+		{ 47, 183, -47, -183 },
+	};
+
+	private int format_;
+	private int width_;
+	private int height_;
+	private int contentWidth_;
+	private int contentHeight_;
+	private boolean hasAlpha_;
+	private ArrayList<ByteBuffer> levels_;
+
+	private CCCompressedTextureData() {
+		levels_ = new ArrayList<ByteBuffer>(10);
+	}
+
+	/** one of kFormatPVRTC2, kFormatPVRTC4, kFormatETC1 */
+	public int format() {
+		return format_;
+	}
+
+	/** GL internal format for glCompressedTexImage2D */
+	public int glInternalFormat() {
+		switch(format_) {
+		case kFormatPVRTC2:
+			return hasAlpha_ ? GL_COMPRESSED_RGBA_PVRTC_2BPPV1_IMG : GL_COMPRESSED_RGB_PVRTC_2BPPV1_IMG;
+		case kFormatPVRTC4:
+			return hasAlpha_ ? GL_COMPRESSED_RGBA_PVRTC_4BPPV1_IMG : GL_COMPRESSED_RGB_PVRTC_4BPPV1_IMG;
+		default:
+			return GL_ETC1_RGB8_OES;
+		}
+	}
+
+	/** width of level 0 in pixels */
+	public int width() {
+		return width_;
+	}
+
+	/** height of level 0 in pixels */
+	public int height() {
+		return height_;
+	}
+
+	/** width of image without padding, ETC1 data is padded to 4 pixels */
+	public int contentWidth() {
+		return contentWidth_;
+	}
+
+	/** height of image without padding, ETC1 data is padded to 4 pixels */
+	public int contentHeight() {
+		return contentHeight_;
+	}
+
+	public boolean hasAlpha() {
+		return hasAlpha_;
+	}
+
+	/** count of mipmap levels including level 0 */
+	public int levelCount() {
+		return levels_.size();
+	}
+
+	/** compressed data of level, position is 0 and limit is data size */
+	public ByteBuffer level(int i) {
+		return levels_.get(i);
+	}
+
+	/** width of given level in pixels */
+	public int levelWidth(int i) {
+		return Math.max(width_ >> i, 1);
+	}
+
+	/** height of given level in pixels */
+	public int levelHeight(int i) {
+		return Math.max(height_ >> i, 1);
+	}
+
+	/** summary size of all levels in bytes */
+	public int dataSize() {
+		int size = 0;
+		for(int i = 0; i < levels_.size(); ++i) {
+			size += levels_.get(i).capacity();
+		}
+		return size;
+	}
+
+	/** whether GPU with given GL_EXTENSIONS string can upload the GL internal format */
+	public static boolean isSupported(int glInternalFormat, String glExtensions) {
+		if(glExtensions == null)
+			return false;
+		String extension = glInternalFormat == GL_ETC1_RGB8_OES ? kExtensionETC1 : kExtensionPVRTC;
+		return (" " + glExtensions + " ").contains(" " + extension + " ");
+	}
+
+	/**
+	 * Decodes ETC1 image to RGB565 pixels, for GPUs without ETC1 support.
+	 * Rows are in the order of compressed data, result is a direct buffer
+	 * ready for glTexImage2D with GL_RGB and GL_UNSIGNED_SHORT_5_6_5.
+	 * @throws IllegalArgumentException if data is smaller than the image
+	 */
+	public static ByteBuffer decodeETC1(ByteBuffer etc1, int width, int height) {
+		final int blocksX = (width + 3) / 4;
+		final int blocksY = (height + 3) / 4;
+		if(etc1.capacity() < blocksX * blocksY * 8)
+			throw new IllegalArgumentException("ETC1 data is too small for " + width + "x" + height);
+
+		ByteBuffer pixels = ByteBuffer.allocateDirect(width * height * 2);
+		pixels.order(ByteOrder.nativeOrder());
+
+		final int[] red 	= new int[2];
+		final int[] green 	= new int[2];
+		final int[] blue 	= new int[2];
+		for(int by = 0; by < blocksY; ++by) {
+			for(int bx = 0; bx < blocksX; ++bx) {
+				final int offset = (by * blocksX + bx) * 8;
+				final int c0 = etc1.get(offset) & 0xff;
+				final int c1 = etc1.get(offset + 1) & 0xff;
+				final int c2 = etc1.get(offset + 2) & 0xff;
+				final int c3 = etc1.get(offset + 3) & 0xff;
+				final int indices = ((etc1.get(offset + 4) & 0xff) << 24) | ((etc1.get(offset + 5) & 0xff) << 16)
+						| ((etc1.get(offset + 6) & 0xff) << 8) | (etc1.get(offset + 7) & 0xff);
+
+				if((c3 & 2) != 0) {
+					// differential mode: 5 bit base colour and 3 bit signed delta
+					baseColors(red, c0);
+					baseColors(green, c1);
+					baseColors(blue, c2);
+				} else {
+					// individual mode: two 4 bit colours
+					red[0] 	 = (c0 >> 4) * 0x11;
+					red[1] 	 = (c0 & 0xf) * 0x11;
+					green[0] = (c1 >> 4) * 0x11;
+					green[1] = (c1 & 0xf) * 0x11;
+					blue[0]  = (c2 >> 4) * 0x11;
+					blue[1]  = (c2 & 0xf) * 0x11;
+				}
+
+				final int[] table0 = kETC1Modifiers[(c3 >> 5) & 7];
+				final int[] table1 = kETC1Modifiers[(c3 >> 2) & 7];
+				final boolean flip = (c3 & 1) != 0;
+
+				for(int x = 0; x < 4; ++x) {
+					final int px = bx * 4 + x;
+					if(px >= width)
+						break;
+					for(int y = 0; y < 4; ++y) {
+						final int py = by * 4 + y;
+						if(py >= height)
+							break;
+
+						// pixels are numbered by columns, msb of index is in the upper half
+						final int k = x * 4 + y;
+						final int index = ((indices >> (k + 15)) & 2) | ((indices >> k) & 1);
+						final int sub = (flip ? y : x) >> 1;
+						final int modifier = (sub == 0 ? table0 : table1)[index];
+
+						final int r = clamp(red[sub] + modifier);
+						final int g = clamp(green[sub] + modifier);
+						final int b = clamp(blue[sub] + modifier);
+						pixels.putShort((py * width + px) * 2, (short)(((r >> 3) << 11) | ((g >> 2) << 5) | (b >> 3)));
+					}
+				}
+			}
+		}
+		return pixels;
+	}
+
+	/** both colours of a channel in differential mode, expanded to 8 bits */
+	private static void baseColors(int[] channel, int c) {
+		final int base = c >> 3;
+		final int second = (base + ((c & 7) ^ 4) - 4) & 0x1f;
+		channel[0] = (base << 3) | (base >> 2);
+		channel[1] = (second << 3) | (second >> 2);
+	}
+
+	private static int clamp(int c) {
+		return c < 0 ? 0 : (c > 255 ? 255 : c);
+	}
+
+	/** whether path has extension of supported container */
+	public static boolean isCompressedPath(String path) {
+		String lower = path.toLowerCase();
+		return lower.endsWith(".pvr") || lower.endsWith(".pkm");
+	}
+
+	/** size in bytes of compressed image of given format */
+	public static int compressedSize(int format, int width, int height) {
+		switch(format) {
+		case kFormatPVRTC4:
+			// 4x4 pixel blocks, 4 bits per pixel, minimum 2x2 blocks
+			return Math.max(width / 4, 2) * Math.max(height / 4, 2) * 8;
+		case kFormatPVRTC2:
+			// 8x4 pixel blocks, 2 bits per pixel, minimum 2x2 blocks
+			return Math.max(width / 8, 2) * Math.max(height / 4, 2) * 8;
+		default:
+			// 4x4 pixel blocks, 8 bytes each
+			return ((width + 3) / 4) * ((height + 3) / 4) * 8;
+		}
+	}
+
+	/**
+	 * Reads container from stream, format is detected by magic.
+	 * Stream is not closed.
+	 * @throws IOException if stream is not a supported container or is truncated
+	 */
+	public static CCCompressedTextureData read(InputStream is) throws IOException {
+		ReadableByteChannel channel = Channels.newChannel(is);
+
+		// both headers have magic at different places, read smallest header first
+		ByteBuffer header = ByteBuffer.allocate(PVR_HEADER_SIZE);
+		readFully(channel, header, PKM_HEADER_SIZE);
+
+		CCCompressedTextureData data = new CCCompressedTextureData();
+		if(isPKM(header)) {
+			data.readPKM(channel, header);
+		} else {
+			readFully(channel, header, PVR_HEADER_SIZE - PKM_HEADER_SIZE);
+			data.readPVR(channel, header);
+		}
+		return data;
+	}
+
+	private static boolean isPKM(ByteBuffer header) {
+		return header.get(0) == 'P' && header.get(1) == 'K' && header.get(2) == 'M' && header.get(3) == ' ';
+	}
+
+	private void readPVR(ReadableByteChannel channel, ByteBuffer header) throws IOException {
+		header.order(ByteOrder.LITTLE_ENDIAN);
+
+		int headerLength = header.getInt(0 * 4);
+		int height 		 = header.getInt(1 * 4);
+		int width 		 = header.getInt(2 * 4);
+		int flags 		 = header.getInt(4 * 4);
+		int dataLength 	 = header.getInt(5 * 4);
+		int bitmaskAlpha = header.getInt(10 * 4);
+		int pvrTag 		 = header.getInt(11 * 4);
+
+		if(pvrTag != kPVRTag || headerLength != PVR_HEADER_SIZE)
+			throw new IOException("Unsupported PVR header");
+
+		switch(flags & PVR_TEXTURE_FLAG_TYPE_MASK) {
+		case kPVRTextureFlagTypePVRTC_2:
+			format_ = kFormatPVRTC2;
+			break;
+		case kPVRTextureFlagTypePVRTC_4:
+			format_ = kFormatPVRTC4;
+			break;
+		case kPVRTextureFlagTypeETC1:
+			format_ = kFormatETC1;
+			break;
+		default:
+			throw new IOException("Unsupported PVR pixel format: 0x" + Integer.toHexString(flags & PVR_TEXTURE_FLAG_TYPE_MASK));
+		}
+
+		width_  = contentWidth_  = width;
+		height_ = contentHeight_ = height;
+		hasAlpha_ = format_ != kFormatETC1 && bitmaskAlpha != 0;
+
+		int dataOffset = 0;
+		int level = 0;
+		while (dataOffset < dataLength) {
+			int dataSize = compressedSize(format_, levelWidth(level), levelHeight(level));
+			if(dataOffset + dataSize > dataLength)
+				throw new IOException("Corrupted PVR data length");
+
+			levels_.add(readLevel(channel, dataSize));
+
+			dataOffset += dataSize;
+			level++;
+		}
+	}
+
+	private void readPKM(ReadableByteChannel channel, ByteBuffer header) throws IOException {
+		format_ = kFormatETC1;
+		hasAlpha_ = false;
+
+		int level = 0;
+		do {
+			if(header.get(4) != '1' || header.get(5) != '0')
+				throw new IOException("Unsupported PKM version");
+
+			header.order(ByteOrder.BIG_ENDIAN);
+			int type 		  = header.getShort(6) & 0xffff;
+			int paddedWidth   = header.getShort(8) & 0xffff;
+			int paddedHeight  = header.getShort(10) & 0xffff;
+			int width 		  = header.getShort(12) & 0xffff;
+			int height 		  = header.getShort(14) & 0xffff;
+
+			// ETC1_RGB_NO_MIPMAPS
+			if(type != 0)
+				throw new IOException("Unsupported PKM type: " + type);
+
+			if(level == 0) {
+				width_  = paddedWidth;
+				height_ = paddedHeight;
+				contentWidth_  = width;
+				contentHeight_ = height;
+			} else if(width != Math.max(contentWidth_ >> level, 1) || height != Math.max(contentHeight_ >> level, 1)) {
+				throw new IOException("PKM level " + level + " has wrong size");
+			}
+
+			levels_.add(readLevel(channel, compressedSize(kFormatETC1, width, height)));
+			level++;
+
+			header.clear();
+		} while(readHeader(channel, header));
+	}
+
+	/** reads next PKM header, returns false at the end of stream */
+	private static boolean readHeader(ReadableByteChannel channel, ByteBuffer header) throws IOException {
+		header.limit(PKM_HEADER_SIZE);
+		while(header.hasRemaining()) {
+			if(channel.read(header) < 0) {
+				if(header.position() == 0)
+					return false;
+				throw new EOFException("Truncated PKM header");
+			}
+		}
+		if(!isPKM(header))
+			throw new IOException("Unexpected data after PKM level");
+		return true;
+	}
+
+	private static ByteBuffer readLevel(ReadableByteChannel channel, int size) throws IOException {
+		ByteBuffer bb = ByteBuffer.allocateDirect(size);
+		bb.order(ByteOrder.nativeOrder());
+		readFully(channel, bb, size);
+		bb.rewind();
+		return bb;
+	}
+
+	private static void readFully(ReadableByteChannel channel, ByteBuffer bb, int count) throws IOException {
+		bb.limit(bb.position() + count);
+		while(bb.hasRemaining()) {
+			if(channel.read(bb) < 0)
+				throw new EOFException("Unexpected end of texture data");
+		}
+	}
+}
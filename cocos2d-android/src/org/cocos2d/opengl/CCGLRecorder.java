@@ -0,0 +1,1364 @@
+package org.cocos2d.opengl;
+
+import static org.cocos2d.opengl.CCRenderCommandList.*;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import javax.microedition.khronos.opengles.GL11;
+
+/** GL which records commands to CCRenderCommandList instead of rendering.
+ *
+ * Used by CCDirector on the logic thread, see CCDirector.setLogicThreadEnabled().
+ * Client arrays are copied when they are drawn, only the used range of
+ * vertices is copied. Buffer objects are recorded as they are, their data
+ * is copied by glBufferData and glBufferSubData.
+ *
+ * Modelview and projection matrices are tracked, so glGetFloatv returns
+ * GL_MODELVIEW_MATRIX and GL_PROJECTION_MATRIX, e.g. for CCBatchRenderer.
+ * glGetError always returns GL_NO_ERROR.
+ *
+ * Objects can't be created or deleted and other state can't be read,
+ * these calls throw UnsupportedOperationException. Textures and buffers
+ * are created by GLResourceHelper tasks on the GL thread, nodes which
+ * need this while drawing (render textures, grabbers of grid actions)
+ * can't be recorded.
+ */
+public class CCGLRecorder implements GL11 {
+	private static final int kMaxStackDepth = 32;
+
+	private CCRenderCommandList list_;
+
+	// matrix stacks of GL_MODELVIEW and GL_PROJECTION, -1 for other modes
+	private final float[][] stacks = new float[2][16 * kMaxStackDepth];
+	private final int[] tops = new int[2];
+	private int matrix_;
+	private final float[] tmp = new float[32];
+
+	// client arrays
+	private final Buffer[] pointers = new Buffer[kArrayCount];
+	private final int[] sizes = new int[kArrayCount];
+	private final int[] types = new int[kArrayCount];
+	private final int[] strides = new int[kArrayCount];
+	private final boolean[] offsetPointers = new boolean[kArrayCount];
+	private final boolean[] disabled = new boolean[kArrayCount];
+
+	public CCGLRecorder() {
+		reset();
+	}
+
+	/** starts recording to the list, the list is cleared */
+	public void begin(CCRenderCommandList list) {
+		list_ = list;
+		list.clear();
+		reset();
+	}
+
+	/** finishes recording and returns the list */
+	public CCRenderCommandList end() {
+		CCRenderCommandList list = list_;
+		list_ = null;
+		for (int k = 0; k < kArrayCount; ++k) {
+			pointers[k] = null;
+		}
+		return list;
+	}
+
+	/** list of the current recording, or null */
+	public CCRenderCommandList getList() {
+		return list_;
+	}
+
+	private void reset() {
+		for (int m = 0; m < 2; ++m) {
+			tops[m] = 0;
+			identity(stacks[m], 0);
+		}
+		matrix_ = 0;
+
+		for (int k = 0; k < kArrayCount; ++k) {
+			pointers[k] = null;
+			offsetPointers[k] = false;
+			disabled[k] = false;
+		}
+	}
+
+	private static UnsupportedOperationException unsupported(String function) {
+		return new UnsupportedOperationException("CCGLRecorder: " + function + " can't be recorded");
+	}
+
+	/** fixed point to float */
+	private static float x(int v) {
+		return v * (1.0f / 65536);
+	}
+
+	// matrices
+
+	private static void identity(float[] m, int o) {
+		for (int k = 0; k < 16; ++k) {
+			m[o + k] = 0;
+		}
+		m[o] = m[o + 5] = m[o + 10] = m[o + 15] = 1;
+	}
+
+	/** multiplies current matrix by tmp[0..15] */
+	private void multiplyTop() {
+		if (matrix_ < 0)
+			return;
+
+		final float[] s = stacks[matrix_];
+		final int o = tops[matrix_] * 16;
+		final float[] r = tmp;
+		for (int col = 0; col < 4; ++col) {
+			for (int row = 0; row < 4; ++row) {
+				r[16 + col * 4 + row] =
+					s[o + row] * r[col * 4] +
+					s[o + 4 + row] * r[col * 4 + 1] +
+					s[o + 8 + row] * r[col * 4 + 2] +
+					s[o + 12 + row] * r[col * 4 + 3];
+			}
+		}
+		System.arraycopy(r, 16, s, o, 16);
+	}
+
+	private void trackLoad(float[] m, int offset) {
+		if (matrix_ >= 0)
+			System.arraycopy(m, offset, stacks[matrix_], tops[matrix_] * 16, 16);
+	}
+
+	private void trackMult(float[] m, int offset) {
+		System.arraycopy(m, offset, tmp, 0, 16);
+		multiplyTop();
+	}
+
+	private void trackTranslate(float x, float y, float z) {
+		identity(tmp, 0);
+		tmp[12] = x;
+		tmp[13] = y;
+		tmp[14] = z;
+		multiplyTop();
+	}
+
+	private void trackScale(float x, float y, float z) {
+		identity(tmp, 0);
+		tmp[0] = x;
+		tmp[5] = y;
+		tmp[10] = z;
+		multiplyTop();
+	}
+
+	private void trackRotate(float angle, float x, float y, float z) {
+		final float len = (float)Math.sqrt(x * x + y * y + z * z);
+		if (len == 0)
+			return;
+		x /= len;
+		y /= len;
+		z /= len;
+
+		final double rad = Math.toRadians(angle);
+		final float s = (float)Math.sin(rad);
+		final float c = (float)Math.cos(rad);
+		final float nc = 1 - c;
+
+		final float[] m = tmp;
+		m[0] = x * x * nc + c;
+		m[1] = y * x * nc + z * s;
+		m[2] = x * z * nc - y * s;
+		m[3] = 0;
+		m[4] = x * y * nc - z * s;
+		m[5] = y * y * nc + c;
+		m[6] = y * z * nc + x * s;
+		m[7] = 0;
+		m[8] = x * z * nc + y * s;
+		m[9] = y * z * nc - x * s;
+		m[10] = z * z * nc + c;
+		m[11] = 0;
+		m[12] = m[13] = m[14] = 0;
+		m[15] = 1;
+		multiplyTop();
+	}
+
+	private void trackOrtho(float l, float r, float b, float t, float n, float f) {
+		identity(tmp, 0);
+		tmp[0] = 2 / (r - l);
+		tmp[5] = 2 / (t - b);
+		tmp[10] = -2 / (f - n);
+		tmp[12] = -(r + l) / (r - l);
+		tmp[13] = -(t + b) / (t - b);
+		tmp[14] = -(f + n) / (f - n);
+		multiplyTop();
+	}
+
+	private void trackFrustum(float l, float r, float b, float t, float n, float f) {
+		identity(tmp, 0);
+		tmp[0] = 2 * n / (r - l);
+		tmp[5] = 2 * n / (t - b);
+		tmp[8] = (r + l) / (r - l);
+		tmp[9] = (t + b) / (t - b);
+		tmp[10] = -(f + n) / (f - n);
+		tmp[11] = -1;
+		tmp[14] = -2 * f * n / (f - n);
+		tmp[15] = 0;
+		multiplyTop();
+	}
+
+	private void recordMatrix(int op, float[] m, int offset) {
+		list_.op(op, 16);
+		for (int k = 0; k < 16; ++k) {
+			list_.f(m[offset + k]);
+		}
+	}
+
+	// client arrays
+
+	private static int arrayIndex(int array) {
+		switch (array) {
+		case GL_VERTEX_ARRAY:
+			return kVertexArray;
+		case GL_COLOR_ARRAY:
+			return kColorArray;
+		case GL_NORMAL_ARRAY:
+			return kNormalArray;
+		case GL_TEXTURE_COORD_ARRAY:
+			return kTexCoordArray;
+		case GL_POINT_SIZE_ARRAY_OES:
+			return kPointSizeArray;
+		default:
+			return -1;
+		}
+	}
+
+	private static int typeBytes(int type) {
+		switch (type) {
+		case GL_BYTE:
+		case GL_UNSIGNED_BYTE:
+			return 1;
+		case GL_SHORT:
+		case GL_UNSIGNED_SHORT:
+			return 2;
+		default:
+			return 4;
+		}
+	}
+
+	private void setPointer(int array, int size, int type, int stride, Buffer pointer) {
+		pointers[array] = pointer;
+		sizes[array] = size;
+		types[array] = type;
+		strides[array] = stride;
+		offsetPointers[array] = false;
+	}
+
+	private void setPointer(int array, int size, int type, int stride, int offset) {
+		pointers[array] = null;
+		offsetPointers[array] = true;
+
+		list_.op(OP_POINTER_OFFSET, 5);
+		list_.i(array);
+		list_.i(size);
+		list_.i(type);
+		list_.i(stride);
+		list_.i(offset);
+	}
+
+	/** true if an enabled array is in a buffer object, its elements can't be rebased */
+	private boolean usesOffsetPointers() {
+		for (int k = 0; k < kArrayCount; ++k) {
+			if (offsetPointers[k] && !disabled[k])
+				return true;
+		}
+		return false;
+	}
+
+	/** Copies elements [first, end) of enabled client arrays and records pointers to the copies.
+	 * end < 0 copies the rest of the buffers.
+	 */
+	private void recordPointers(int first, int end) {
+		for (int k = 0; k < kArrayCount; ++k) {
+			final Buffer b = pointers[k];
+			if (b == null || disabled[k])
+				continue;
+
+			final int components = k == kNormalArray ? 3 : (k == kPointSizeArray ? 1 : sizes[k]);
+			final int element = components * typeBytes(types[k]);
+			final int stride = strides[k] != 0 ? strides[k] : element;
+			final int bytes = end < 0 ? Integer.MAX_VALUE : (end - first - 1) * stride + element;
+
+			final int data = list_.copy(b, first * stride, bytes);
+			list_.op(OP_POINTER, 5);
+			list_.i(k);
+			list_.i(sizes[k]);
+			list_.i(types[k]);
+			list_.i(strides[k]);
+			list_.i(data);
+		}
+	}
+
+	private void param(int op, int kind, int a, int pname, int bits) {
+		list_.op(op, 4);
+		list_.i(kind);
+		list_.i(a);
+		list_.i(pname);
+		list_.i(bits);
+	}
+
+	private void paramf(int kind, int a, int pname, float v) {
+		param(OP_PARAM_F, kind, a, pname, Float.floatToRawIntBits(v));
+	}
+
+	private void paramv(int kind, int a, int pname, float[] v, int offset, int max) {
+		final int n = Math.min(max, v.length - offset);
+		list_.op(OP_PARAM_FV, 4 + n);
+		list_.i(kind);
+		list_.i(a);
+		list_.i(pname);
+		list_.i(n);
+		for (int k = 0; k < n; ++k) {
+			list_.f(v[offset + k]);
+		}
+	}
+
+	private void paramv(int kind, int a, int pname, FloatBuffer v, int max) {
+		final int n = Math.min(max, v.remaining());
+		final int p = v.position();
+		list_.op(OP_PARAM_FV, 4 + n);
+		list_.i(kind);
+		list_.i(a);
+		list_.i(pname);
+		list_.i(n);
+		for (int k = 0; k < n; ++k) {
+			list_.f(v.get(p + k));
+		}
+	}
+
+	private void paramv(int op, int kind, int a, int pname, int[] v, int offset, int max) {
+		final int n = Math.min(max, v.length - offset);
+		list_.op(op, 4 + n);
+		list_.i(kind);
+		list_.i(a);
+		list_.i(pname);
+		list_.i(n);
+		for (int k = 0; k < n; ++k) {
+			list_.i(v[offset + k]);
+		}
+	}
+
+	private void paramv(int op, int kind, int a, int pname, IntBuffer v, int max) {
+		final int n = Math.min(max, v.remaining());
+		final int p = v.position();
+		list_.op(op, 4 + n);
+		list_.i(kind);
+		list_.i(a);
+		list_.i(pname);
+		list_.i(n);
+		for (int k = 0; k < n; ++k) {
+			list_.i(v.get(p + k));
+		}
+	}
+
+	private void op1(int op, int a) {
+		list_.op(op, 1);
+		list_.i(a);
+	}
+
+	private void op2(int op, int a, int b) {
+		list_.op(op, 2);
+		list_.i(a);
+		list_.i(b);
+	}
+
+	private void op3(int op, int a, int b, int c) {
+		list_.op(op, 3);
+		list_.i(a);
+		list_.i(b);
+		list_.i(c);
+	}
+
+	private void op4(int op, int a, int b, int c, int d) {
+		list_.op(op, 4);
+		list_.i(a);
+		list_.i(b);
+		list_.i(c);
+		list_.i(d);
+	}
+
+	private void opf(int op, float a) {
+		list_.op(op, 1);
+		list_.f(a);
+	}
+
+	private void opf(int op, float a, float b, float c) {
+		list_.op(op, 3);
+		list_.f(a);
+		list_.f(b);
+		list_.f(c);
+	}
+
+	private void opf(int op, float a, float b, float c, float d) {
+		list_.op(op, 4);
+		list_.f(a);
+		list_.f(b);
+		list_.f(c);
+		list_.f(d);
+	}
+
+	private void opf(int op, float a, float b, float c, float d, float e, float f) {
+		list_.op(op, 6);
+		list_.f(a);
+		list_.f(b);
+		list_.f(c);
+		list_.f(d);
+		list_.f(e);
+		list_.f(f);
+	}
+
+	private int copyPixels(Buffer pixels) {
+		if (pixels == null)
+			return kNoData;
+		return list_.copy(pixels, 0, pixels.remaining() * unitBytes(pixels));
+	}
+
+	// GL10
+
+	public void glActiveTexture(int texture) {
+		op1(OP_ACTIVE_TEXTURE, texture);
+	}
+
+	public void glAlphaFunc(int func, float ref) {
+		list_.op(OP_ALPHA_FUNC, 2);
+		list_.i(func);
+		list_.f(ref);
+	}
+
+	public void glAlphaFuncx(int func, int ref) {
+		glAlphaFunc(func, x(ref));
+	}
+
+	public void glBindTexture(int target, int texture) {
+		op2(OP_BIND_TEXTURE, target, texture);
+	}
+
+	public void glBlendFunc(int sfactor, int dfactor) {
+		op2(OP_BLEND_FUNC, sfactor, dfactor);
+	}
+
+	public void glClear(int mask) {
+		op1(OP_CLEAR, mask);
+	}
+
+	public void glClearColor(float red, float green, float blue, float alpha) {
+		opf(OP_CLEAR_COLOR, red, green, blue, alpha);
+	}
+
+	public void glClearColorx(int red, int green, int blue, int alpha) {
+		glClearColor(x(red), x(green), x(blue), x(alpha));
+	}
+
+	public void glClearDepthf(float depth) {
+		opf(OP_CLEAR_DEPTH, depth);
+	}
+
+	public void glClearDepthx(int depth) {
+		glClearDepthf(x(depth));
+	}
+
+	public void glClearStencil(int s) {
+		op1(OP_CLEAR_STENCIL, s);
+	}
+
+	public void glClientActiveTexture(int texture) {
+		op1(OP_CLIENT_ACTIVE_TEXTURE, texture);
+	}
+
+	public void glColor4f(float red, float green, float blue, float alpha) {
+		opf(OP_COLOR, red, green, blue, alpha);
+	}
+
+	public void glColor4x(int red, int green, int blue, int alpha) {
+		glColor4f(x(red), x(green), x(blue), x(alpha));
+	}
+
+	public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+		list_.op(OP_COLOR_MASK, 4);
+		list_.b(red);
+		list_.b(green);
+		list_.b(blue);
+		list_.b(alpha);
+	}
+
+	public void glColorPointer(int size, int type, int stride, Buffer pointer) {
+		setPointer(kColorArray, size, type, stride, pointer);
+	}
+
+	public void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border, int imageSize, Buffer data) {
+		list_.op(OP_COMPRESSED_TEX_IMAGE, 8);
+		list_.i(target);
+		list_.i(level);
+		list_.i(internalformat);
+		list_.i(width);
+		list_.i(height);
+		list_.i(border);
+		list_.i(imageSize);
+		list_.i(data != null ? list_.copy(data, 0, imageSize) : kNoData);
+	}
+
+	public void glCompressedTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int imageSize, Buffer data) {
+		list_.op(OP_COMPRESSED_TEX_SUB_IMAGE, 9);
+		list_.i(target);
+		list_.i(level);
+		list_.i(xoffset);
+		list_.i(yoffset);
+		list_.i(width);
+		list_.i(height);
+		list_.i(format);
+		list_.i(imageSize);
+		list_.i(data != null ? list_.copy(data, 0, imageSize) : kNoData);
+	}
+
+	public void glCopyTexImage2D(int target, int level, int internalformat, int x, int y, int width, int height, int border) {
+		list_.op(OP_COPY_TEX_IMAGE, 8);
+		list_.i(target);
+		list_.i(level);
+		list_.i(internalformat);
+		list_.i(x);
+		list_.i(y);
+		list_.i(width);
+		list_.i(height);
+		list_.i(border);
+	}
+
+	public void glCopyTexSubImage2D(int target, int level, int xoffset, int yoffset, int x, int y, int width, int height) {
+		list_.op(OP_COPY_TEX_SUB_IMAGE, 8);
+		list_.i(target);
+		list_.i(level);
+		list_.i(xoffset);
+		list_.i(yoffset);
+		list_.i(x);
+		list_.i(y);
+		list_.i(width);
+		list_.i(height);
+	}
+
+	public void glCullFace(int mode) {
+		op1(OP_CULL_FACE, mode);
+	}
+
+	public void glDeleteTextures(int n, int[] textures, int offset) {
+		throw unsupported("glDeleteTextures");
+	}
+
+	public void glDeleteTextures(int n, IntBuffer textures) {
+		throw unsupported("glDeleteTextures");
+	}
+
+	public void glDepthFunc(int func) {
+		op1(OP_DEPTH_FUNC, func);
+	}
+
+	public void glDepthMask(boolean flag) {
+		list_.op(OP_DEPTH_MASK, 1);
+		list_.b(flag);
+	}
+
+	public void glDepthRangef(float zNear, float zFar) {
+		list_.op(OP_DEPTH_RANGE, 2);
+		list_.f(zNear);
+		list_.f(zFar);
+	}
+
+	public void glDepthRangex(int zNear, int zFar) {
+		glDepthRangef(x(zNear), x(zFar));
+	}
+
+	public void glDisable(int cap) {
+		op1(OP_DISABLE, cap);
+	}
+
+	public void glDisableClientState(int array) {
+		int k = arrayIndex(array);
+		if (k >= 0)
+			disabled[k] = true;
+		op1(OP_DISABLE_CLIENT_STATE, array);
+	}
+
+	public void glDrawArrays(int mode, int first, int count) {
+		if (count <= 0)
+			return;
+
+		if (usesOffsetPointers()) {
+			recordPointers(0, first + count);
+			op3(OP_DRAW_ARRAYS, mode, first, count);
+		} else {
+			// copied elements start at first
+			recordPointers(first, first + count);
+			op3(OP_DRAW_ARRAYS, mode, 0, count);
+		}
+	}
+
+	public void glDrawElements(int mode, int count, int type, Buffer indices) {
+		if (count <= 0)
+			return;
+
+		int min = Integer.MAX_VALUE;
+		int max = -1;
+		final int p = indices.position();
+		for (int k = 0; k < count; ++k) {
+			int index;
+			if (type == GL_UNSIGNED_BYTE)
+				index = ((ByteBuffer)indices).get(p + k) & 0xFF;
+			else if (indices instanceof ShortBuffer)
+				index = ((ShortBuffer)indices).get(p + k) & 0xFFFF;
+			else
+				index = ((ByteBuffer)indices).getShort(p + k * 2) & 0xFFFF;
+
+			if (index < min)
+				min = index;
+			if (index > max)
+				max = index;
+		}
+
+		final int base = usesOffsetPointers() ? 0 : min;
+		recordPointers(base, max + 1);
+
+		final int data = list_.copyIndices(indices, type, count, base);
+		op4(OP_DRAW_ELEMENTS, mode, count, type, data);
+	}
+
+	public void glEnable(int cap) {
+		op1(OP_ENABLE, cap);
+	}
+
+	public void glEnableClientState(int array) {
+		int k = arrayIndex(array);
+		if (k >= 0)
+			disabled[k] = false;
+		op1(OP_ENABLE_CLIENT_STATE, array);
+	}
+
+	public void glFinish() {
+		list_.op(OP_FINISH, 0);
+	}
+
+	public void glFlush() {
+		list_.op(OP_FLUSH, 0);
+	}
+
+	public void glFogf(int pname, float param) {
+		paramf(kParamFog, 0, pname, param);
+	}
+
+	public void glFogfv(int pname, FloatBuffer params) {
+		paramv(kParamFog, 0, pname, params, kMaxParams);
+	}
+
+	public void glFogfv(int pname, float[] params, int offset) {
+		paramv(kParamFog, 0, pname, params, offset, kMaxParams);
+	}
+
+	public void glFogx(int pname, int param) {
+		param(OP_PARAM_X, kParamFog, 0, pname, param);
+	}
+
+	public void glFogxv(int pname, int[] params, int offset) {
+		paramv(OP_PARAM_XV, kParamFog, 0, pname, params, offset, kMaxParams);
+	}
+
+	public void glFogxv(int pname, IntBuffer params) {
+		paramv(OP_PARAM_XV, kParamFog, 0, pname, params, kMaxParams);
+	}
+
+	public void glFrontFace(int mode) {
+		op1(OP_FRONT_FACE, mode);
+	}
+
+	public void glFrustumf(float left, float right, float bottom, float top, float zNear, float zFar) {
+		trackFrustum(left, right, bottom, top, zNear, zFar);
+		opf(OP_FRUSTUM, left, right, bottom, top, zNear, zFar);
+	}
+
+	public void glFrustumx(int left, int right, int bottom, int top, int zNear, int zFar) {
+		glFrustumf(x(left), x(right), x(bottom), x(top), x(zNear), x(zFar));
+	}
+
+	public void glGenTextures(int n, IntBuffer textures) {
+		throw unsupported("glGenTextures");
+	}
+
+	public void glGenTextures(int n, int[] textures, int offset) {
+		throw unsupported("glGenTextures");
+	}
+
+	public int glGetError() {
+		return GL_NO_ERROR;
+	}
+
+	public void glGetIntegerv(int pname, int[] params, int offset) {
+		throw unsupported("glGetIntegerv");
+	}
+
+	public void glGetIntegerv(int pname, IntBuffer params) {
+		throw unsupported("glGetIntegerv");
+	}
+
+	public String glGetString(int name) {
+		throw unsupported("glGetString");
+	}
+
+	public void glHint(int target, int mode) {
+		op2(OP_HINT, target, mode);
+	}
+
+	public void glLightModelf(int pname, float param) {
+		paramf(kParamLightModel, 0, pname, param);
+	}
+
+	public void glLightModelfv(int pname, FloatBuffer params) {
+		paramv(kParamLightModel, 0, pname, params, kMaxParams);
+	}
+
+	public void glLightModelfv(int pname, float[] params, int offset) {
+		paramv(kParamLightModel, 0, pname, params, offset, kMaxParams);
+	}
+
+	public void glLightModelx(int pname, int param) {
+		param(OP_PARAM_X, kParamLightModel, 0, pname, param);
+	}
+
+	public void glLightModelxv(int pname, IntBuffer params) {
+		paramv(OP_PARAM_XV, kParamLightModel, 0, pname, params, kMaxParams);
+	}
+
+	public void glLightModelxv(int pname, int[] params, int offset) {
+		paramv(OP_PARAM_XV, kParamLightModel, 0, pname, params, offset, kMaxParams);
+	}
+
+	public void glLightf(int light, int pname, float param) {
+		paramf(kParamLight, light, pname, param);
+	}
+
+	public void glLightfv(int light, int pname, FloatBuffer params) {
+		paramv(kParamLight, light, pname, params, kMaxParams);
+	}
+
+	public void glLightfv(int light, int pname, float[] params, int offset) {
+		paramv(kParamLight, light, pname, params, offset, kMaxParams);
+	}
+
+	public void glLightx(int light, int pname, int param) {
+		param(OP_PARAM_X, kParamLight, light, pname, param);
+	}
+
+	public void glLightxv(int light, int pname, int[] params, int offset) {
+		paramv(OP_PARAM_XV, kParamLight, light, pname, params, offset, kMaxParams);
+	}
+
+	public void glLightxv(int light, int pname, IntBuffer params) {
+		paramv(OP_PARAM_XV, kParamLight, light, pname, params, kMaxParams);
+	}
+
+	public void glLineWidth(float width) {
+		opf(OP_LINE_WIDTH, width);
+	}
+
+	public void glLineWidthx(int width) {
+		glLineWidth(x(width));
+	}
+
+	public void glLoadIdentity() {
+		if (matrix_ >= 0)
+			identity(stacks[matrix_], tops[matrix_] * 16);
+		list_.op(OP_LOAD_IDENTITY, 0);
+	}
+
+	public void glLoadMatrixf(float[] m, int offset) {
+		trackLoad(m, offset);
+		recordMatrix(OP_LOAD_MATRIX, m, offset);
+	}
+
+	public void glLoadMatrixf(FloatBuffer m) {
+		final int p = m.position();
+		for (int k = 0; k < 16; ++k) {
+			tmp[16 + k] = m.get(p + k);
+		}
+		glLoadMatrixf(tmp, 16);
+	}
+
+	public void glLoadMatrixx(int[] m, int offset) {
+		for (int k = 0; k < 16; ++k) {
+			tmp[16 + k] = x(m[offset + k]);
+		}
+		glLoadMatrixf(tmp, 16);
+	}
+
+	public void glLoadMatrixx(IntBuffer m) {
+		final int p = m.position();
+		for (int k = 0; k < 16; ++k) {
+			tmp[16 + k] = x(m.get(p + k));
+		}
+		glLoadMatrixf(tmp, 16);
+	}
+
+	public void glLogicOp(int opcode) {
+		op1(OP_LOGIC_OP, opcode);
+	}
+
+	public void glMaterialf(int face, int pname, float param) {
+		paramf(kParamMaterial, face, pname, param);
+	}
+
+	public void glMaterialfv(int face, int pname, float[] params, int offset) {
+		paramv(kParamMaterial, face, pname, params, offset, kMaxParams);
+	}
+
+	public void glMaterialfv(int face, int pname, FloatBuffer params) {
+		paramv(kParamMaterial, face, pname, params, kMaxParams);
+	}
+
+	public void glMaterialx(int face, int pname, int param) {
+		param(OP_PARAM_X, kParamMaterial, face, pname, param);
+	}
+
+	public void glMaterialxv(int face, int pname, int[] params, int offset) {
+		paramv(OP_PARAM_XV, kParamMaterial, face, pname, params, offset, kMaxParams);
+	}
+
+	public void glMaterialxv(int face, int pname, IntBuffer params) {
+		paramv(OP_PARAM_XV, kParamMaterial, face, pname, params, kMaxParams);
+	}
+
+	public void glMatrixMode(int mode) {
+		matrix_ = mode == GL_MODELVIEW ? 0 : (mode == GL_PROJECTION ? 1 : -1);
+		op1(OP_MATRIX_MODE, mode);
+	}
+
+	public void glMultMatrixf(FloatBuffer m) {
+		final int p = m.position();
+		for (int k = 0; k < 16; ++k) {
+			tmp[16 + k] = m.get(p + k);
+		}
+		glMultMatrixf(tmp, 16);
+	}
+
+	public void glMultMatrixf(float[] m, int offset) {
+		recordMatrix(OP_MULT_MATRIX, m, offset);
+		trackMult(m, offset);
+	}
+
+	public void glMultMatrixx(int[] m, int offset) {
+		for (int k = 0; k < 16; ++k) {
+			tmp[16 + k] = x(m[offset + k]);
+		}
+		glMultMatrixf(tmp, 16);
+	}
+
+	public void glMultMatrixx(IntBuffer m) {
+		final int p = m.position();
+		for (int k = 0; k < 16; ++k) {
+			tmp[16 + k] = x(m.get(p + k));
+		}
+		glMultMatrixf(tmp, 16);
+	}
+
+	public void glMultiTexCoord4f(int target, float s, float t, float r, float q) {
+		list_.op(OP_MULTI_TEX_COORD, 5);
+		list_.i(target);
+		list_.f(s);
+		list_.f(t);
+		list_.f(r);
+		list_.f(q);
+	}
+
+	public void glMultiTexCoord4x(int target, int s, int t, int r, int q) {
+		glMultiTexCoord4f(target, x(s), x(t), x(r), x(q));
+	}
+
+	public void glNormal3f(float nx, float ny, float nz) {
+		opf(OP_NORMAL, nx, ny, nz);
+	}
+
+	public void glNormal3x(int nx, int ny, int nz) {
+		glNormal3f(x(nx), x(ny), x(nz));
+	}
+
+	public void glNormalPointer(int type, int stride, Buffer pointer) {
+		setPointer(kNormalArray, 3, type, stride, pointer);
+	}
+
+	public void glOrthof(float left, float right, float bottom, float top, float zNear, float zFar) {
+		trackOrtho(left, right, bottom, top, zNear, zFar);
+		opf(OP_ORTHO, left, right, bottom, top, zNear, zFar);
+	}
+
+	public void glOrthox(int left, int right, int bottom, int top, int zNear, int zFar) {
+		glOrthof(x(left), x(right), x(bottom), x(top), x(zNear), x(zFar));
+	}
+
+	public void glPixelStorei(int pname, int param) {
+		op2(OP_PIXEL_STORE, pname, param);
+	}
+
+	public void glPointSize(float size) {
+		opf(OP_POINT_SIZE, size);
+	}
+
+	public void glPointSizex(int size) {
+		glPointSize(x(size));
+	}
+
+	public void glPolygonOffset(float factor, float units) {
+		list_.op(OP_POLYGON_OFFSET, 2);
+		list_.f(factor);
+		list_.f(units);
+	}
+
+	public void glPolygonOffsetx(int factor, int units) {
+		glPolygonOffset(x(factor), x(units));
+	}
+
+	public void glPopMatrix() {
+		if (matrix_ >= 0 && tops[matrix_] > 0)
+			tops[matrix_]--;
+		list_.op(OP_POP_MATRIX, 0);
+	}
+
+	public void glPushMatrix() {
+		if (matrix_ >= 0 && tops[matrix_] < kMaxStackDepth - 1) {
+			final float[] s = stacks[matrix_];
+			final int o = tops[matrix_] * 16;
+			System.arraycopy(s, o, s, o + 16, 16);
+			tops[matrix_]++;
+		}
+		list_.op(OP_PUSH_MATRIX, 0);
+	}
+
+	public void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+		throw unsupported("glReadPixels");
+	}
+
+	public void glRotatef(float angle, float x, float y, float z) {
+		trackRotate(angle, x, y, z);
+		opf(OP_ROTATE, angle, x, y, z);
+	}
+
+	public void glRotatex(int angle, int x, int y, int z) {
+		glRotatef(x(angle), x(x), x(y), x(z));
+	}
+
+	public void glSampleCoverage(float value, boolean invert) {
+		list_.op(OP_SAMPLE_COVERAGE, 2);
+		list_.f(value);
+		list_.b(invert);
+	}
+
+	public void glSampleCoveragex(int value, boolean invert) {
+		glSampleCoverage(x(value), invert);
+	}
+
+	public void glScalef(float x, float y, float z) {
+		trackScale(x, y, z);
+		opf(OP_SCALE, x, y, z);
+	}
+
+	public void glScalex(int x, int y, int z) {
+		glScalef(x(x), x(y), x(z));
+	}
+
+	public void glScissor(int x, int y, int width, int height) {
+		op4(OP_SCISSOR, x, y, width, height);
+	}
+
+	public void glShadeModel(int mode) {
+		op1(OP_SHADE_MODEL, mode);
+	}
+
+	public void glStencilFunc(int func, int ref, int mask) {
+		op3(OP_STENCIL_FUNC, func, ref, mask);
+	}
+
+	public void glStencilMask(int mask) {
+		op1(OP_STENCIL_MASK, mask);
+	}
+
+	public void glStencilOp(int fail, int zfail, int zpass) {
+		op3(OP_STENCIL_OP, fail, zfail, zpass);
+	}
+
+	public void glTexCoordPointer(int size, int type, int stride, Buffer pointer) {
+		setPointer(kTexCoordArray, size, type, stride, pointer);
+	}
+
+	public void glTexEnvf(int target, int pname, float param) {
+		paramf(kParamTexEnv, target, pname, param);
+	}
+
+	public void glTexEnvfv(int target, int pname, float[] params, int offset) {
+		paramv(kParamTexEnv, target, pname, params, offset, kMaxParams);
+	}
+
+	public void glTexEnvfv(int target, int pname, FloatBuffer params) {
+		paramv(kParamTexEnv, target, pname, params, kMaxParams);
+	}
+
+	public void glTexEnvx(int target, int pname, int param) {
+		param(OP_PARAM_X, kParamTexEnv, target, pname, param);
+	}
+
+	public void glTexEnvxv(int target, int pname, int[] params, int offset) {
+		paramv(OP_PARAM_XV, kParamTexEnv, target, pname, params, offset, kMaxParams);
+	}
+
+	public void glTexEnvxv(int target, int pname, IntBuffer params) {
+		paramv(OP_PARAM_XV, kParamTexEnv, target, pname, params, kMaxParams);
+	}
+
+	public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+		list_.op(OP_TEX_IMAGE, 9);
+		list_.i(target);
+		list_.i(level);
+		list_.i(internalformat);
+		list_.i(width);
+		list_.i(height);
+		list_.i(border);
+		list_.i(format);
+		list_.i(type);
+		list_.i(copyPixels(pixels));
+	}
+
+	public void glTexParameterf(int target, int pname, float param) {
+		paramf(kParamTexParameter, target, pname, param);
+	}
+
+	public void glTexParameterx(int target, int pname, int param) {
+		param(OP_PARAM_X, kParamTexParameter, target, pname, param);
+	}
+
+	public void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, Buffer pixels) {
+		list_.op(OP_TEX_SUB_IMAGE, 9);
+		list_.i(target);
+		list_.i(level);
+		list_.i(xoffset);
+		list_.i(yoffset);
+		list_.i(width);
+		list_.i(height);
+		list_.i(format);
+		list_.i(type);
+		list_.i(copyPixels(pixels));
+	}
+
+	public void glTranslatef(float x, float y, float z) {
+		trackTranslate(x, y, z);
+		opf(OP_TRANSLATE, x, y, z);
+	}
+
+	public void glTranslatex(int x, int y, int z) {
+		glTranslatef(x(x), x(y), x(z));
+	}
+
+	public void glVertexPointer(int size, int type, int stride, Buffer pointer) {
+		setPointer(kVertexArray, size, type, stride, pointer);
+	}
+
+	public void glViewport(int x, int y, int width, int height) {
+		op4(OP_VIEWPORT, x, y, width, height);
+	}
+
+	// GL11
+
+	public void glBindBuffer(int target, int buffer) {
+		op2(OP_BIND_BUFFER, target, buffer);
+	}
+
+	public void glBufferData(int target, int size, Buffer data, int usage) {
+		list_.op(OP_BUFFER_DATA, 4);
+		list_.i(target);
+		list_.i(size);
+		list_.i(usage);
+		list_.i(data != null ? list_.copy(data, 0, size) : kNoData);
+	}
+
+	public void glBufferSubData(int target, int offset, int size, Buffer data) {
+		list_.op(OP_BUFFER_SUB_DATA, 4);
+		list_.i(target);
+		list_.i(offset);
+		list_.i(size);
+		list_.i(list_.copy(data, 0, size));
+	}
+
+	public void glClipPlanef(int plane, float[] equation, int offset) {
+		paramv(kParamClipPlane, plane, 0, equation, offset, 4);
+	}
+
+	public void glClipPlanef(int plane, FloatBuffer equation) {
+		paramv(kParamClipPlane, plane, 0, equation, 4);
+	}
+
+	public void glClipPlanex(int plane, int[] equation, int offset) {
+		paramv(OP_PARAM_XV, kParamClipPlane, plane, 0, equation, offset, 4);
+	}
+
+	public void glClipPlanex(int plane, IntBuffer equation) {
+		paramv(OP_PARAM_XV, kParamClipPlane, plane, 0, equation, 4);
+	}
+
+	public void glColor4ub(byte red, byte green, byte blue, byte alpha) {
+		glColor4f((red & 0xFF) / 255.0f, (green & 0xFF) / 255.0f, (blue & 0xFF) / 255.0f, (alpha & 0xFF) / 255.0f);
+	}
+
+	public void glColorPointer(int size, int type, int stride, int offset) {
+		setPointer(kColorArray, size, type, stride, offset);
+	}
+
+	public void glDeleteBuffers(int n, int[] buffers, int offset) {
+		throw unsupported("glDeleteBuffers");
+	}
+
+	public void glDeleteBuffers(int n, IntBuffer buffers) {
+		throw unsupported("glDeleteBuffers");
+	}
+
+	public void glDrawElements(int mode, int count, int type, int offset) {
+		// indices are in a buffer object, the used range of client arrays is unknown
+		recordPointers(0, -1);
+		op4(OP_DRAW_ELEMENTS_OFFSET, mode, count, type, offset);
+	}
+
+	public void glGenBuffers(int n, int[] buffers, int offset) {
+		throw unsupported("glGenBuffers");
+	}
+
+	public void glGenBuffers(int n, IntBuffer buffers) {
+		throw unsupported("glGenBuffers");
+	}
+
+	public void glGetBooleanv(int pname, boolean[] params, int offset) {
+		throw unsupported("glGetBooleanv");
+	}
+
+	public void glGetBooleanv(int pname, IntBuffer params) {
+		throw unsupported("glGetBooleanv");
+	}
+
+	public void glGetBufferParameteriv(int target, int pname, int[] params, int offset) {
+		throw unsupported("glGetBufferParameteriv");
+	}
+
+	public void glGetBufferParameteriv(int target, int pname, IntBuffer params) {
+		throw unsupported("glGetBufferParameteriv");
+	}
+
+	public void glGetClipPlanef(int pname, float[] eqn, int offset) {
+		throw unsupported("glGetClipPlanef");
+	}
+
+	public void glGetClipPlanef(int pname, FloatBuffer eqn) {
+		throw unsupported("glGetClipPlanef");
+	}
+
+	public void glGetClipPlanex(int pname, int[] eqn, int offset) {
+		throw unsupported("glGetClipPlanex");
+	}
+
+	public void glGetClipPlanex(int pname, IntBuffer eqn) {
+		throw unsupported("glGetClipPlanex");
+	}
+
+	public void glGetFixedv(int pname, int[] params, int offset) {
+		throw unsupported("glGetFixedv");
+	}
+
+	public void glGetFixedv(int pname, IntBuffer params) {
+		throw unsupported("glGetFixedv");
+	}
+
+	/** supports GL_MODELVIEW_MATRIX and GL_PROJECTION_MATRIX */
+	public void glGetFloatv(int pname, float[] params, int offset) {
+		final int m;
+		if (pname == GL_MODELVIEW_MATRIX)
+			m = 0;
+		else if (pname == GL_PROJECTION_MATRIX)
+			m = 1;
+		else
+			throw unsupported("glGetFloatv");
+
+		System.arraycopy(stacks[m], tops[m] * 16, params, offset, 16);
+	}
+
+	public void glGetFloatv(int pname, FloatBuffer params) {
+		glGetFloatv(pname, tmp, 16);
+		final int p = params.position();
+		for (int k = 0; k < 16; ++k) {
+			params.put(p + k, tmp[16 + k]);
+		}
+	}
+
+	public void glGetLightfv(int light, int pname, float[] params, int offset) {
+		throw unsupported("glGetLightfv");
+	}
+
+	public void glGetLightfv(int light, int pname, FloatBuffer params) {
+		throw unsupported("glGetLightfv");
+	}
+
+	public void glGetLightxv(int light, int pname, int[] params, int offset) {
+		throw unsupported("glGetLightxv");
+	}
+
+	public void glGetLightxv(int light, int pname, IntBuffer params) {
+		throw unsupported("glGetLightxv");
+	}
+
+	public void glGetMaterialfv(int face, int pname, float[] params, int offset) {
+		throw unsupported("glGetMaterialfv");
+	}
+
+	public void glGetMaterialfv(int face, int pname, FloatBuffer params) {
+		throw unsupported("glGetMaterialfv");
+	}
+
+	public void glGetMaterialxv(int face, int pname, int[] params, int offset) {
+		throw unsupported("glGetMaterialxv");
+	}
+
+	public void glGetMaterialxv(int face, int pname, IntBuffer params) {
+		throw unsupported("glGetMaterialxv");
+	}
+
+	public void glGetPointerv(int pname, Buffer[] params) {
+		throw unsupported("glGetPointerv");
+	}
+
+	public void glGetTexEnviv(int env, int pname, int[] params, int offset) {
+		throw unsupported("glGetTexEnviv");
+	}
+
+	public void glGetTexEnviv(int env, int pname, IntBuffer params) {
+		throw unsupported("glGetTexEnviv");
+	}
+
+	public void glGetTexEnvxv(int env, int pname, int[] params, int offset) {
+		throw unsupported("glGetTexEnvxv");
+	}
+
+	public void glGetTexEnvxv(int env, int pname, IntBuffer params) {
+		throw unsupported("glGetTexEnvxv");
+	}
+
+	public void glGetTexParameterfv(int target, int pname, float[] params, int offset) {
+		throw unsupported("glGetTexParameterfv");
+	}
+
+	public void glGetTexParameterfv(int target, int pname, FloatBuffer params) {
+		throw unsupported("glGetTexParameterfv");
+	}
+
+	public void glGetTexParameteriv(int target, int pname, int[] params, int offset) {
+		throw unsupported("glGetTexParameteriv");
+	}
+
+	public void glGetTexParameteriv(int target, int pname, IntBuffer params) {
+		throw unsupported("glGetTexParameteriv");
+	}
+
+	public void glGetTexParameterxv(int target, int pname, int[] params, int offset) {
+		throw unsupported("glGetTexParameterxv");
+	}
+
+	public void glGetTexParameterxv(int target, int pname, IntBuffer params) {
+		throw unsupported("glGetTexParameterxv");
+	}
+
+	public boolean glIsBuffer(int buffer) {
+		throw unsupported("glIsBuffer");
+	}
+
+	public boolean glIsEnabled(int cap) {
+		throw unsupported("glIsEnabled");
+	}
+
+	public boolean glIsTexture(int texture) {
+		throw unsupported("glIsTexture");
+	}
+
+	public void glNormalPointer(int type, int stride, int offset) {
+		setPointer(kNormalArray, 3, type, stride, offset);
+	}
+
+	public void glPointParameterf(int pname, float param) {
+		paramf(kParamPoint, 0, pname, param);
+	}
+
+	public void glPointParameterfv(int pname, float[] params, int offset) {
+		paramv(kParamPoint, 0, pname, params, offset, kMaxParams);
+	}
+
+	public void glPointParameterfv(int pname, FloatBuffer params) {
+		paramv(kParamPoint, 0, pname, params, kMaxParams);
+	}
+
+	public void glPointParameterx(int pname, int param) {
+		param(OP_PARAM_X, kParamPoint, 0, pname, param);
+	}
+
+	public void glPointParameterxv(int pname, int[] params, int offset) {
+		paramv(OP_PARAM_XV, kParamPoint, 0, pname, params, offset, kMaxParams);
+	}
+
+	public void glPointParameterxv(int pname, IntBuffer params) {
+		paramv(OP_PARAM_XV, kParamPoint, 0, pname, params, kMaxParams);
+	}
+
+	public void glPointSizePointerOES(int type, int stride, Buffer pointer) {
+		setPointer(kPointSizeArray, 1, type, stride, pointer);
+	}
+
+	public void glTexCoordPointer(int size, int type, int stride, int offset) {
+		setPointer(kTexCoordArray, size, type, stride, offset);
+	}
+
+	public void glTexEnvi(int target, int pname, int param) {
+		param(OP_PARAM_I, kParamTexEnv, target, pname, param);
+	}
+
+	public void glTexEnviv(int target, int pname, int[] params, int offset) {
+		paramv(OP_PARAM_IV, kParamTexEnv, target, pname, params, offset, kMaxParams);
+	}
+
+	public void glTexEnviv(int target, int pname, IntBuffer params) {
+		paramv(OP_PARAM_IV, kParamTexEnv, target, pname, params, kMaxParams);
+	}
+
+	public void glTexParameterfv(int target, int pname, float[] params, int offset) {
+		paramv(kParamTexParameter, target, pname, params, offset, kMaxParams);
+	}
+
+	public void glTexParameterfv(int target, int pname, FloatBuffer params) {
+		paramv(kParamTexParameter, target, pname, params, kMaxParams);
+	}
+
+	public void glTexParameteri(int target, int pname, int param) {
+		param(OP_PARAM_I, kParamTexParameter, target, pname, param);
+	}
+
+	public void glTexParameteriv(int target, int pname, int[] params, int offset) {
+		paramv(OP_PARAM_IV, kParamTexParameter, target, pname, params, offset, kMaxParams);
+	}
+
+	public void glTexParameteriv(int target, int pname, IntBuffer params) {
+		paramv(OP_PARAM_IV, kParamTexParameter, target, pname, params, kMaxParams);
+	}
+
+	public void glTexParameterxv(int target, int pname, int[] params, int offset) {
+		paramv(OP_PARAM_XV, kParamTexParameter, target, pname, params, offset, kMaxParams);
+	}
+
+	public void glTexParameterxv(int target, int pname, IntBuffer params) {
+		paramv(OP_PARAM_XV, kParamTexParameter, target, pname, params, kMaxParams);
+	}
+
+	public void glVertexPointer(int size, int type, int stride, int offset) {
+		setPointer(kVertexArray, size, type, stride, offset);
+	}
+}
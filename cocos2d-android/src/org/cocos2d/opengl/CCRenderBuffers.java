@@ -0,0 +1,106 @@
+package org.cocos2d.opengl;
+
+/** Two command lists exchanged between a recording thread and the GL thread.
+ *
+ * The recording thread gets the back list from beginRecord(), records a
+ * frame to it and publishes it with endRecord(). The GL thread takes the
+ * newest published frame with acquireFront() and replays it, its previous
+ * front list becomes the back list. When no new frame is published the
+ * front list is replayed again.
+ *
+ * beginRecord() waits while the published frame is not taken, so
+ * recording is at most one frame ahead of rendering.
+ * This class doesn't depend on android.
+ */
+public final class CCRenderBuffers {
+	private final CCRenderCommandList[] lists;
+
+	private int front_ = -1;
+	private int pending_ = -1;
+	private int recording_ = -1;
+	private boolean stopped_;
+
+	private long published_;
+	private long repeated_;
+
+	public CCRenderBuffers() {
+		lists = new CCRenderCommandList[] { new CCRenderCommandList(), new CCRenderCommandList() };
+	}
+
+	/** Returns list for the next frame, waits until the GL thread took the previous one.
+	 * @return null if stopped or the thread was interrupted
+	 */
+	public synchronized CCRenderCommandList beginRecord() {
+		try {
+			while (!stopped_ && pending_ != -1) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		if (stopped_)
+			return null;
+
+		recording_ = front_ == 0 ? 1 : 0;
+		return lists[recording_];
+	}
+
+	/** publishes the list returned by beginRecord() */
+	public synchronized void endRecord() {
+		assert recording_ != -1 : "CCRenderBuffers: endRecord() without beginRecord()";
+
+		pending_ = recording_;
+		recording_ = -1;
+		published_++;
+		notifyAll();
+	}
+
+	/** Returns the newest frame, waits up to timeoutNanos if no new frame is published.
+	 * The list stays valid until the next call.
+	 * @return null if nothing was recorded yet
+	 */
+	public synchronized CCRenderCommandList acquireFront(long timeoutNanos) {
+		if (pending_ == -1 && timeoutNanos > 0) {
+			final long deadline = System.nanoTime() + timeoutNanos;
+			long remaining = timeoutNanos;
+			try {
+				while (pending_ == -1 && !stopped_ && remaining > 0) {
+					wait(remaining / 1000000L, (int)(remaining % 1000000L));
+					remaining = deadline - System.nanoTime();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		if (pending_ != -1) {
+			front_ = pending_;
+			pending_ = -1;
+			notifyAll();
+		} else {
+			repeated_++;
+		}
+		return front_ != -1 ? lists[front_] : null;
+	}
+
+	/** wakes up waiting threads, beginRecord() returns null until start() */
+	public synchronized void stop() {
+		stopped_ = true;
+		notifyAll();
+	}
+
+	public synchronized void start() {
+		stopped_ = false;
+	}
+
+	/** count of frames published by endRecord() */
+	public synchronized long getPublishedCount() {
+		return published_;
+	}
+
+	/** count of acquireFront() calls which returned the previous frame again */
+	public synchronized long getRepeatedCount() {
+		return repeated_;
+	}
+}
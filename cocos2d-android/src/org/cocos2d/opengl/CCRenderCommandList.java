@@ -0,0 +1,781 @@
+package org.cocos2d.opengl;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import javax.microedition.khronos.opengles.GL10;
+import javax.microedition.khronos.opengles.GL11;
+
+/** GL commands of one frame, recorded by CCGLRecorder and replayed on the GL thread.
+ *
+ * Commands and their scalar arguments are kept in one int array, floats
+ * by their bits. Vertex, index, pixel and buffer data used by commands is
+ * copied to a direct arena at record time, so the recording thread may
+ * change its buffers right after the call.
+ *
+ * replay() doesn't allocate and may be called any number of times,
+ * e.g. when the next frame is not recorded yet.
+ * This class doesn't depend on android.
+ */
+public final class CCRenderCommandList {
+	// client arrays of OP_POINTER
+	static final int kVertexArray 		= 0;
+	static final int kColorArray 		= 1;
+	static final int kNormalArray 		= 2;
+	static final int kTexCoordArray 	= 3;
+	static final int kPointSizeArray 	= 4;
+	static final int kArrayCount 		= 5;
+
+	// functions of OP_PARAM_*
+	static final int kParamFog 			= 0;
+	static final int kParamLightModel 	= 1;
+	static final int kParamLight 		= 2;
+	static final int kParamMaterial 	= 3;
+	static final int kParamTexEnv 		= 4;
+	static final int kParamTexParameter = 5;
+	static final int kParamPoint 		= 6;
+	static final int kParamClipPlane 	= 7;
+
+	/** values kept by vector commands except matrices */
+	static final int kMaxParams = 4;
+
+	static final int OP_ACTIVE_TEXTURE 			= 1;
+	static final int OP_ALPHA_FUNC 				= 2;
+	static final int OP_BIND_TEXTURE 			= 3;
+	static final int OP_BLEND_FUNC 				= 4;
+	static final int OP_CLEAR 					= 5;
+	static final int OP_CLEAR_COLOR 			= 6;
+	static final int OP_CLEAR_DEPTH 			= 7;
+	static final int OP_CLEAR_STENCIL 			= 8;
+	static final int OP_CLIENT_ACTIVE_TEXTURE 	= 9;
+	static final int OP_COLOR 					= 10;
+	static final int OP_COLOR_MASK 				= 11;
+	static final int OP_CULL_FACE 				= 12;
+	static final int OP_DEPTH_FUNC 				= 13;
+	static final int OP_DEPTH_MASK 				= 14;
+	static final int OP_DEPTH_RANGE 			= 15;
+	static final int OP_DISABLE 				= 16;
+	static final int OP_ENABLE 					= 17;
+	static final int OP_DISABLE_CLIENT_STATE 	= 18;
+	static final int OP_ENABLE_CLIENT_STATE 	= 19;
+	static final int OP_DRAW_ARRAYS 			= 20;
+	static final int OP_DRAW_ELEMENTS 			= 21;
+	static final int OP_DRAW_ELEMENTS_OFFSET 	= 22;
+	static final int OP_FINISH 					= 23;
+	static final int OP_FLUSH 					= 24;
+	static final int OP_FRONT_FACE 				= 25;
+	static final int OP_FRUSTUM 				= 26;
+	static final int OP_ORTHO 					= 27;
+	static final int OP_HINT 					= 28;
+	static final int OP_LINE_WIDTH 				= 29;
+	static final int OP_LOAD_IDENTITY 			= 30;
+	static final int OP_LOAD_MATRIX 			= 31;
+	static final int OP_MULT_MATRIX 			= 32;
+	static final int OP_LOGIC_OP 				= 33;
+	static final int OP_MATRIX_MODE 			= 34;
+	static final int OP_MULTI_TEX_COORD 		= 35;
+	static final int OP_NORMAL 					= 36;
+	static final int OP_PIXEL_STORE 			= 37;
+	static final int OP_POINT_SIZE 				= 38;
+	static final int OP_POLYGON_OFFSET 			= 39;
+	static final int OP_POP_MATRIX 				= 40;
+	static final int OP_PUSH_MATRIX 			= 41;
+	static final int OP_ROTATE 					= 42;
+	static final int OP_SCALE 					= 43;
+	static final int OP_TRANSLATE 				= 44;
+	static final int OP_SAMPLE_COVERAGE 		= 45;
+	static final int OP_SCISSOR 				= 46;
+	static final int OP_VIEWPORT 				= 47;
+	static final int OP_SHADE_MODEL 			= 48;
+	static final int OP_STENCIL_FUNC 			= 49;
+	static final int OP_STENCIL_MASK 			= 50;
+	static final int OP_STENCIL_OP 				= 51;
+	static final int OP_POINTER 				= 52;
+	static final int OP_POINTER_OFFSET 			= 53;
+	static final int OP_PARAM_F 				= 54;
+	static final int OP_PARAM_X 				= 55;
+	static final int OP_PARAM_I 				= 56;
+	static final int OP_PARAM_FV 				= 57;
+	static final int OP_PARAM_XV 				= 58;
+	static final int OP_PARAM_IV 				= 59;
+	static final int OP_COPY_TEX_IMAGE 			= 60;
+	static final int OP_COPY_TEX_SUB_IMAGE 		= 61;
+	static final int OP_TEX_IMAGE 				= 62;
+	static final int OP_TEX_SUB_IMAGE 			= 63;
+	static final int OP_COMPRESSED_TEX_IMAGE 	= 64;
+	static final int OP_COMPRESSED_TEX_SUB_IMAGE = 65;
+	static final int OP_BIND_BUFFER 			= 66;
+	static final int OP_BUFFER_DATA 			= 67;
+	static final int OP_BUFFER_SUB_DATA 		= 68;
+
+	/** arena offset of null data */
+	static final int kNoData = -1;
+
+	private int[] cmds;
+	private int size;
+	private int commandCount_;
+
+	private ByteBuffer arena;
+	private ShortBuffer arenaShorts;
+	private FloatBuffer arenaFloats;
+	private IntBuffer arenaInts;
+	private int arenaUsed;
+
+	private final float[] floats = new float[16];
+	private final int[] ints = new int[16];
+
+	public CCRenderCommandList() {
+		this(1024, 64 * 1024);
+	}
+
+	/** @param commandsCapacity initial count of ints for commands
+	 *  @param dataCapacity initial size of the arena in bytes */
+	public CCRenderCommandList(int commandsCapacity, int dataCapacity) {
+		cmds = new int[Math.max(commandsCapacity, 16)];
+		allocateArena(Math.max(dataCapacity, 64));
+	}
+
+	/** removes all commands, memory is kept for the next frame */
+	public void clear() {
+		size = 0;
+		commandCount_ = 0;
+		arenaUsed = 0;
+	}
+
+	public boolean isEmpty() {
+		return commandCount_ == 0;
+	}
+
+	/** count of recorded commands */
+	public int getCommandCount() {
+		return commandCount_;
+	}
+
+	/** bytes used by commands and copied data */
+	public int getDataSize() {
+		return size * 4 + arenaUsed;
+	}
+
+	// recording, used by CCGLRecorder
+
+	void op(int code, int args) {
+		int needed = size + args + 1;
+		if (needed > cmds.length) {
+			int[] n = new int[Math.max(cmds.length * 2, needed)];
+			System.arraycopy(cmds, 0, n, 0, size);
+			cmds = n;
+		}
+		cmds[size++] = code;
+		commandCount_++;
+	}
+
+	void i(int v) {
+		cmds[size++] = v;
+	}
+
+	void f(float v) {
+		cmds[size++] = Float.floatToRawIntBits(v);
+	}
+
+	void b(boolean v) {
+		cmds[size++] = v ? 1 : 0;
+	}
+
+	/** Copies byteCount bytes starting byteStart bytes after position of src.
+	 * @return offset of the copy in the arena
+	 */
+	int copy(Buffer src, int byteStart, int byteCount) {
+		final int unit = unitBytes(src);
+		final int from = src.position() + byteStart / unit;
+		final int count = Math.min((byteCount + unit - 1) / unit, src.capacity() - from);
+		if (count <= 0)
+			return reserve(0);
+
+		final int dst = reserve(count * unit);
+		final int oldPosition = src.position();
+		final int oldLimit = src.limit();
+		src.limit(from + count);
+		src.position(from);
+
+		if (src instanceof ByteBuffer) {
+			arena.position(dst);
+			arena.put((ByteBuffer)src);
+		} else if (src instanceof FloatBuffer) {
+			arenaFloats.position(dst >> 2);
+			arenaFloats.put((FloatBuffer)src);
+		} else if (src instanceof ShortBuffer) {
+			arenaShorts.position(dst >> 1);
+			arenaShorts.put((ShortBuffer)src);
+		} else if (src instanceof IntBuffer) {
+			arenaInts.position(dst >> 2);
+			arenaInts.put((IntBuffer)src);
+		} else {
+			CharBuffer chars = (CharBuffer)src;
+			for (int k = 0; k < count; ++k) {
+				arenaShorts.put((dst >> 1) + k, (short)chars.get(from + k));
+			}
+		}
+
+		src.limit(oldLimit);
+		src.position(oldPosition);
+		return dst;
+	}
+
+	/** Copies count indices and subtracts base from them.
+	 * @return offset of the copy in the arena
+	 */
+	int copyIndices(Buffer src, int type, int count, int base) {
+		final int pos = src.position();
+		if (type == GL10.GL_UNSIGNED_BYTE) {
+			final ByteBuffer bytes = (ByteBuffer)src;
+			final int dst = reserve(count);
+			for (int k = 0; k < count; ++k) {
+				arena.put(dst + k, (byte)((bytes.get(pos + k) & 0xFF) - base));
+			}
+			return dst;
+		}
+
+		final int dst = reserve(count * 2);
+		final int d = dst >> 1;
+		if (src instanceof ShortBuffer) {
+			final ShortBuffer shorts = (ShortBuffer)src;
+			for (int k = 0; k < count; ++k) {
+				arenaShorts.put(d + k, (short)((shorts.get(pos + k) & 0xFFFF) - base));
+			}
+		} else {
+			final ByteBuffer bytes = (ByteBuffer)src;
+			for (int k = 0; k < count; ++k) {
+				arenaShorts.put(d + k, (short)((bytes.getShort(pos + k * 2) & 0xFFFF) - base));
+			}
+		}
+		return dst;
+	}
+
+	/** returns bytes per element of the buffer */
+	static int unitBytes(Buffer b) {
+		if (b instanceof ByteBuffer)
+			return 1;
+		if (b instanceof ShortBuffer || b instanceof CharBuffer)
+			return 2;
+		if (b instanceof FloatBuffer || b instanceof IntBuffer)
+			return 4;
+		throw new IllegalArgumentException("CCRenderCommandList: unsupported buffer " + b.getClass().getName());
+	}
+
+	/** returns aligned arena offset with room for bytes */
+	private int reserve(int bytes) {
+		final int dst = (arenaUsed + 3) & ~3;
+		final int end = dst + bytes;
+		if (end > arena.capacity()) {
+			ByteBuffer old = arena;
+			allocateArena(Math.max(arena.capacity() * 2, end));
+			old.position(0);
+			old.limit(arenaUsed);
+			arena.put(old);
+		}
+		arenaUsed = end;
+		return dst;
+	}
+
+	private void allocateArena(int capacity) {
+		arena = ByteBuffer.allocateDirect(capacity);
+		arena.order(ByteOrder.nativeOrder());
+		arenaShorts = arena.asShortBuffer();
+		arenaFloats = arena.asFloatBuffer();
+		arenaInts = arena.asIntBuffer();
+	}
+
+	// replay
+
+	private Buffer data(int offset) {
+		if (offset == kNoData)
+			return null;
+		arena.limit(arena.capacity());
+		arena.position(offset);
+		return arena;
+	}
+
+	private int readFloats(int p, int n) {
+		for (int k = 0; k < n; ++k) {
+			floats[k] = Float.intBitsToFloat(cmds[p + k]);
+		}
+		return p + n;
+	}
+
+	private int readInts(int p, int n) {
+		System.arraycopy(cmds, p, ints, 0, n);
+		return p + n;
+	}
+
+	private float fa(int p) {
+		return Float.intBitsToFloat(cmds[p]);
+	}
+
+	/** Issues recorded commands to gl.
+	 * Lists with buffer objects or GL11 parameters need GL11.
+	 */
+	public void replay(GL10 gl) {
+		final int[] c = cmds;
+		final int end = size;
+		int p = 0;
+		while (p < end) {
+			switch (c[p++]) {
+			case OP_ACTIVE_TEXTURE:
+				gl.glActiveTexture(c[p]);
+				p += 1;
+				break;
+			case OP_ALPHA_FUNC:
+				gl.glAlphaFunc(c[p], fa(p + 1));
+				p += 2;
+				break;
+			case OP_BIND_TEXTURE:
+				gl.glBindTexture(c[p], c[p + 1]);
+				p += 2;
+				break;
+			case OP_BLEND_FUNC:
+				gl.glBlendFunc(c[p], c[p + 1]);
+				p += 2;
+				break;
+			case OP_CLEAR:
+				gl.glClear(c[p]);
+				p += 1;
+				break;
+			case OP_CLEAR_COLOR:
+				gl.glClearColor(fa(p), fa(p + 1), fa(p + 2), fa(p + 3));
+				p += 4;
+				break;
+			case OP_CLEAR_DEPTH:
+				gl.glClearDepthf(fa(p));
+				p += 1;
+				break;
+			case OP_CLEAR_STENCIL:
+				gl.glClearStencil(c[p]);
+				p += 1;
+				break;
+			case OP_CLIENT_ACTIVE_TEXTURE:
+				gl.glClientActiveTexture(c[p]);
+				p += 1;
+				break;
+			case OP_COLOR:
+				gl.glColor4f(fa(p), fa(p + 1), fa(p + 2), fa(p + 3));
+				p += 4;
+				break;
+			case OP_COLOR_MASK:
+				gl.glColorMask(c[p] != 0, c[p + 1] != 0, c[p + 2] != 0, c[p + 3] != 0);
+				p += 4;
+				break;
+			case OP_CULL_FACE:
+				gl.glCullFace(c[p]);
+				p += 1;
+				break;
+			case OP_DEPTH_FUNC:
+				gl.glDepthFunc(c[p]);
+				p += 1;
+				break;
+			case OP_DEPTH_MASK:
+				gl.glDepthMask(c[p] != 0);
+				p += 1;
+				break;
+			case OP_DEPTH_RANGE:
+				gl.glDepthRangef(fa(p), fa(p + 1));
+				p += 2;
+				break;
+			case OP_DISABLE:
+				gl.glDisable(c[p]);
+				p += 1;
+				break;
+			case OP_ENABLE:
+				gl.glEnable(c[p]);
+				p += 1;
+				break;
+			case OP_DISABLE_CLIENT_STATE:
+				gl.glDisableClientState(c[p]);
+				p += 1;
+				break;
+			case OP_ENABLE_CLIENT_STATE:
+				gl.glEnableClientState(c[p]);
+				p += 1;
+				break;
+			case OP_DRAW_ARRAYS:
+				gl.glDrawArrays(c[p], c[p + 1], c[p + 2]);
+				p += 3;
+				break;
+			case OP_DRAW_ELEMENTS:
+				gl.glDrawElements(c[p], c[p + 1], c[p + 2], data(c[p + 3]));
+				p += 4;
+				break;
+			case OP_DRAW_ELEMENTS_OFFSET:
+				((GL11)gl).glDrawElements(c[p], c[p + 1], c[p + 2], c[p + 3]);
+				p += 4;
+				break;
+			case OP_FINISH:
+				gl.glFinish();
+				break;
+			case OP_FLUSH:
+				gl.glFlush();
+				break;
+			case OP_FRONT_FACE:
+				gl.glFrontFace(c[p]);
+				p += 1;
+				break;
+			case OP_FRUSTUM:
+				gl.glFrustumf(fa(p), fa(p + 1), fa(p + 2), fa(p + 3), fa(p + 4), fa(p + 5));
+				p += 6;
+				break;
+			case OP_ORTHO:
+				gl.glOrthof(fa(p), fa(p + 1), fa(p + 2), fa(p + 3), fa(p + 4), fa(p + 5));
+				p += 6;
+				break;
+			case OP_HINT:
+				gl.glHint(c[p], c[p + 1]);
+				p += 2;
+				break;
+			case OP_LINE_WIDTH:
+				gl.glLineWidth(fa(p));
+				p += 1;
+				break;
+			case OP_LOAD_IDENTITY:
+				gl.glLoadIdentity();
+				break;
+			case OP_LOAD_MATRIX:
+				p = readFloats(p, 16);
+				gl.glLoadMatrixf(floats, 0);
+				break;
+			case OP_MULT_MATRIX:
+				p = readFloats(p, 16);
+				gl.glMultMatrixf(floats, 0);
+				break;
+			case OP_LOGIC_OP:
+				gl.glLogicOp(c[p]);
+				p += 1;
+				break;
+			case OP_MATRIX_MODE:
+				gl.glMatrixMode(c[p]);
+				p += 1;
+				break;
+			case OP_MULTI_TEX_COORD:
+				gl.glMultiTexCoord4f(c[p], fa(p + 1), fa(p + 2), fa(p + 3), fa(p + 4));
+				p += 5;
+				break;
+			case OP_NORMAL:
+				gl.glNormal3f(fa(p), fa(p + 1), fa(p + 2));
+				p += 3;
+				break;
+			case OP_PIXEL_STORE:
+				gl.glPixelStorei(c[p], c[p + 1]);
+				p += 2;
+				break;
+			case OP_POINT_SIZE:
+				gl.glPointSize(fa(p));
+				p += 1;
+				break;
+			case OP_POLYGON_OFFSET:
+				gl.glPolygonOffset(fa(p), fa(p + 1));
+				p += 2;
+				break;
+			case OP_POP_MATRIX:
+				gl.glPopMatrix();
+				break;
+			case OP_PUSH_MATRIX:
+				gl.glPushMatrix();
+				break;
+			case OP_ROTATE:
+				gl.glRotatef(fa(p), fa(p + 1), fa(p + 2), fa(p + 3));
+				p += 4;
+				break;
+			case OP_SCALE:
+				gl.glScalef(fa(p), fa(p + 1), fa(p + 2));
+				p += 3;
+				break;
+			case OP_TRANSLATE:
+				gl.glTranslatef(fa(p), fa(p + 1), fa(p + 2));
+				p += 3;
+				break;
+			case OP_SAMPLE_COVERAGE:
+				gl.glSampleCoverage(fa(p), c[p + 1] != 0);
+				p += 2;
+				break;
+			case OP_SCISSOR:
+				gl.glScissor(c[p], c[p + 1], c[p + 2], c[p + 3]);
+				p += 4;
+				break;
+			case OP_VIEWPORT:
+				gl.glViewport(c[p], c[p + 1], c[p + 2], c[p + 3]);
+				p += 4;
+				break;
+			case OP_SHADE_MODEL:
+				gl.glShadeModel(c[p]);
+				p += 1;
+				break;
+			case OP_STENCIL_FUNC:
+				gl.glStencilFunc(c[p], c[p + 1], c[p + 2]);
+				p += 3;
+				break;
+			case OP_STENCIL_MASK:
+				gl.glStencilMask(c[p]);
+				p += 1;
+				break;
+			case OP_STENCIL_OP:
+				gl.glStencilOp(c[p], c[p + 1], c[p + 2]);
+				p += 3;
+				break;
+			case OP_POINTER:
+				pointer(gl, c[p], c[p + 1], c[p + 2], c[p + 3], data(c[p + 4]));
+				p += 5;
+				break;
+			case OP_POINTER_OFFSET:
+				pointerOffset((GL11)gl, c[p], c[p + 1], c[p + 2], c[p + 3], c[p + 4]);
+				p += 5;
+				break;
+			case OP_PARAM_F:
+				paramf(gl, c[p], c[p + 1], c[p + 2], fa(p + 3));
+				p += 4;
+				break;
+			case OP_PARAM_X:
+				paramx(gl, c[p], c[p + 1], c[p + 2], c[p + 3]);
+				p += 4;
+				break;
+			case OP_PARAM_I:
+				parami((GL11)gl, c[p], c[p + 1], c[p + 2], c[p + 3]);
+				p += 4;
+				break;
+			case OP_PARAM_FV: {
+				int n = c[p + 3];
+				int kind = c[p], a = c[p + 1], pname = c[p + 2];
+				p = readFloats(p + 4, n);
+				paramfv(gl, kind, a, pname);
+				break;
+			}
+			case OP_PARAM_XV: {
+				int n = c[p + 3];
+				int kind = c[p], a = c[p + 1], pname = c[p + 2];
+				p = readInts(p + 4, n);
+				paramxv(gl, kind, a, pname);
+				break;
+			}
+			case OP_PARAM_IV: {
+				int n = c[p + 3];
+				int kind = c[p], a = c[p + 1], pname = c[p + 2];
+				p = readInts(p + 4, n);
+				paramiv((GL11)gl, kind, a, pname);
+				break;
+			}
+			case OP_COPY_TEX_IMAGE:
+				gl.glCopyTexImage2D(c[p], c[p + 1], c[p + 2], c[p + 3], c[p + 4], c[p + 5], c[p + 6], c[p + 7]);
+				p += 8;
+				break;
+			case OP_COPY_TEX_SUB_IMAGE:
+				gl.glCopyTexSubImage2D(c[p], c[p + 1], c[p + 2], c[p + 3], c[p + 4], c[p + 5], c[p + 6], c[p + 7]);
+				p += 8;
+				break;
+			case OP_TEX_IMAGE:
+				gl.glTexImage2D(c[p], c[p + 1], c[p + 2], c[p + 3], c[p + 4], c[p + 5], c[p + 6], c[p + 7], data(c[p + 8]));
+				p += 9;
+				break;
+			case OP_TEX_SUB_IMAGE:
+				gl.glTexSubImage2D(c[p], c[p + 1], c[p + 2], c[p + 3], c[p + 4], c[p + 5], c[p + 6], c[p + 7], data(c[p + 8]));
+				p += 9;
+				break;
+			case OP_COMPRESSED_TEX_IMAGE:
+				gl.glCompressedTexImage2D(c[p], c[p + 1], c[p + 2], c[p + 3], c[p + 4], c[p + 5], c[p + 6], data(c[p + 7]));
+				p += 8;
+				break;
+			case OP_COMPRESSED_TEX_SUB_IMAGE:
+				gl.glCompressedTexSubImage2D(c[p], c[p + 1], c[p + 2], c[p + 3], c[p + 4], c[p + 5], c[p + 6], c[p + 7], data(c[p + 8]));
+				p += 9;
+				break;
+			case OP_BIND_BUFFER:
+				((GL11)gl).glBindBuffer(c[p], c[p + 1]);
+				p += 2;
+				break;
+			case OP_BUFFER_DATA:
+				((GL11)gl).glBufferData(c[p], c[p + 1], data(c[p + 3]), c[p + 2]);
+				p += 4;
+				break;
+			case OP_BUFFER_SUB_DATA:
+				((GL11)gl).glBufferSubData(c[p], c[p + 1], c[p + 2], data(c[p + 3]));
+				p += 4;
+				break;
+			default:
+				throw new IllegalStateException("CCRenderCommandList: corrupted list at " + (p - 1));
+			}
+		}
+	}
+
+	private static void pointer(GL10 gl, int array, int size, int type, int stride, Buffer data) {
+		switch (array) {
+		case kVertexArray:
+			gl.glVertexPointer(size, type, stride, data);
+			break;
+		case kColorArray:
+			gl.glColorPointer(size, type, stride, data);
+			break;
+		case kNormalArray:
+			gl.glNormalPointer(type, stride, data);
+			break;
+		case kTexCoordArray:
+			gl.glTexCoordPointer(size, type, stride, data);
+			break;
+		case kPointSizeArray:
+			((GL11)gl).glPointSizePointerOES(type, stride, data);
+			break;
+		}
+	}
+
+	private static void pointerOffset(GL11 gl, int array, int size, int type, int stride, int offset) {
+		switch (array) {
+		case kVertexArray:
+			gl.glVertexPointer(size, type, stride, offset);
+			break;
+		case kColorArray:
+			gl.glColorPointer(size, type, stride, offset);
+			break;
+		case kNormalArray:
+			gl.glNormalPointer(type, stride, offset);
+			break;
+		case kTexCoordArray:
+			gl.glTexCoordPointer(size, type, stride, offset);
+			break;
+		}
+	}
+
+	private static void paramf(GL10 gl, int kind, int a, int pname, float v) {
+		switch (kind) {
+		case kParamFog:
+			gl.glFogf(pname, v);
+			break;
+		case kParamLightModel:
+			gl.glLightModelf(pname, v);
+			break;
+		case kParamLight:
+			gl.glLightf(a, pname, v);
+			break;
+		case kParamMaterial:
+			gl.glMaterialf(a, pname, v);
+			break;
+		case kParamTexEnv:
+			gl.glTexEnvf(a, pname, v);
+			break;
+		case kParamTexParameter:
+			gl.glTexParameterf(a, pname, v);
+			break;
+		case kParamPoint:
+			((GL11)gl).glPointParameterf(pname, v);
+			break;
+		}
+	}
+
+	private static void paramx(GL10 gl, int kind, int a, int pname, int v) {
+		switch (kind) {
+		case kParamFog:
+			gl.glFogx(pname, v);
+			break;
+		case kParamLightModel:
+			gl.glLightModelx(pname, v);
+			break;
+		case kParamLight:
+			gl.glLightx(a, pname, v);
+			break;
+		case kParamMaterial:
+			gl.glMaterialx(a, pname, v);
+			break;
+		case kParamTexEnv:
+			gl.glTexEnvx(a, pname, v);
+			break;
+		case kParamTexParameter:
+			gl.glTexParameterx(a, pname, v);
+			break;
+		case kParamPoint:
+			((GL11)gl).glPointParameterx(pname, v);
+			break;
+		}
+	}
+
+	private static void parami(GL11 gl, int kind, int a, int pname, int v) {
+		switch (kind) {
+		case kParamTexEnv:
+			gl.glTexEnvi(a, pname, v);
+			break;
+		case kParamTexParameter:
+			gl.glTexParameteri(a, pname, v);
+			break;
+		}
+	}
+
+	private void paramfv(GL10 gl, int kind, int a, int pname) {
+		final float[] v = floats;
+		switch (kind) {
+		case kParamFog:
+			gl.glFogfv(pname, v, 0);
+			break;
+		case kParamLightModel:
+			gl.glLightModelfv(pname, v, 0);
+			break;
+		case kParamLight:
+			gl.glLightfv(a, pname, v, 0);
+			break;
+		case kParamMaterial:
+			gl.glMaterialfv(a, pname, v, 0);
+			break;
+		case kParamTexEnv:
+			gl.glTexEnvfv(a, pname, v, 0);
+			break;
+		case kParamTexParameter:
+			((GL11)gl).glTexParameterfv(a, pname, v, 0);
+			break;
+		case kParamPoint:
+			((GL11)gl).glPointParameterfv(pname, v, 0);
+			break;
+		case kParamClipPlane:
+			((GL11)gl).glClipPlanef(a, v, 0);
+			break;
+		}
+	}
+
+	private void paramxv(GL10 gl, int kind, int a, int pname) {
+		final int[] v = ints;
+		switch (kind) {
+		case kParamFog:
+			gl.glFogxv(pname, v, 0);
+			break;
+		case kParamLightModel:
+			gl.glLightModelxv(pname, v, 0);
+			break;
+		case kParamLight:
+			gl.glLightxv(a, pname, v, 0);
+			break;
+		case kParamMaterial:
+			gl.glMaterialxv(a, pname, v, 0);
+			break;
+		case kParamTexEnv:
+			gl.glTexEnvxv(a, pname, v, 0);
+			break;
+		case kParamTexParameter:
+			((GL11)gl).glTexParameterxv(a, pname, v, 0);
+			break;
+		case kParamPoint:
+			((GL11)gl).glPointParameterxv(pname, v, 0);
+			break;
+		case kParamClipPlane:
+			((GL11)gl).glClipPlanex(a, v, 0);
+			break;
+		}
+	}
+
+	private void paramiv(GL11 gl, int kind, int a, int pname) {
+		final int[] v = ints;
+		switch (kind) {
+		case kParamTexEnv:
+			gl.glTexEnviv(a, pname, v, 0);
+			break;
+		case kParamTexParameter:
+			gl.glTexParameteriv(a, pname, v, 0);
+			break;
+		}
+	}
+}
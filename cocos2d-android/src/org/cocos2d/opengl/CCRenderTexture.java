@@ -4,6 +4,7 @@ import javax.microedition.khronos.opengles.GL10;
 import javax.microedition.khronos.opengles.GL11ExtensionPack;
 
 import org.cocos2d.config.ccMacros;
+import org.cocos2d.nodes.CCBatchRenderer;
 import org.cocos2d.nodes.CCDirector;
 import org.cocos2d.nodes.CCNode;
 import org.cocos2d.nodes.CCSprite;
@@ -94,6 +95,8 @@ public class CCRenderTexture extends CCNode {
 
     public void begin() {
     	GL10 gl = CCDirector.gl;
+    	// quads batched for the screen must not go to the texture
+    	CCBatchRenderer.sharedRenderer().flush(gl);
         ccMacros.CC_DISABLE_DEFAULT_GL_STATES(gl);
         // Save the current matrix
         gl.glPushMatrix();
@@ -117,6 +120,7 @@ public class CCRenderTexture extends CCNode {
 
     public void end() {
     	GL10 gl = CCDirector.gl;
+    	CCBatchRenderer.sharedRenderer().flush(gl);
     	GL11ExtensionPack egl = (GL11ExtensionPack)CCDirector.gl;
         egl.glBindFramebufferOES(GL11ExtensionPack.GL_FRAMEBUFFER_OES, oldFBO_[0]);
         // Restore the original matrix and viewport
@@ -3,6 +3,7 @@ package org.cocos2d.opengl;
 import static javax.microedition.khronos.opengles.GL10.GL_CLAMP_TO_EDGE;
 import static javax.microedition.khronos.opengles.GL10.GL_FLOAT;
 import static javax.microedition.khronos.opengles.GL10.GL_LINEAR;
+import static javax.microedition.khronos.opengles.GL10.GL_LINEAR_MIPMAP_NEAREST;
 import static javax.microedition.khronos.opengles.GL10.GL_NEAREST;
 import static javax.microedition.khronos.opengles.GL10.GL_REPEAT;
 import static javax.microedition.khronos.opengles.GL10.GL_TEXTURE_2D;
@@ -26,6 +27,7 @@ import javax.microedition.khronos.opengles.GL;
 import javax.microedition.khronos.opengles.GL10;
 import javax.microedition.khronos.opengles.GL11ExtensionPack;
 
+import org.cocos2d.config.ccMacros;
 import org.cocos2d.nodes.CCDirector;
 import org.cocos2d.nodes.CCLabel;
 import org.cocos2d.opengl.GLResourceHelper.Resource;
@@ -87,8 +89,17 @@ public class CCTexture2D implements Resource {
         return mContentSize.height;
     }
 
-    /** texture name */
+    /** texture name, a texture evicted from video memory is queued for reloading */
     public int name() {
+    	if (_name == 0 && evicted_)
+    		reloadEvicted();
+
+    	// bound before its low priority reload, it is needed now
+    	final GLResourceHelper.ReloadTask reload = pendingReload_;
+    	if (reload != null) {
+    		pendingReload_ = null;
+    		GLResourceHelper.sharedHelper().promote(reload);
+    	}
     	
 //        if( _name == 0 && CCDirector.gl != null && Thread.currentThread().getName().startsWith("GLThread"))
     	
@@ -123,6 +134,12 @@ public class CCTexture2D implements Resource {
      */
     private Bitmap mBitmap;
 
+    /** pre-compressed data, it is released after upload like mBitmap */
+    private CCCompressedTextureData mCompressed;
+
+    /** size of uploaded data in video memory, after downscale or of compressed levels */
+    private int mMemorySize;
+
     /** texture name */
     private int _name = 0;
 
@@ -154,12 +171,81 @@ public class CCTexture2D implements Resource {
         return mContentSize;
     }
 
+    /** size of texture in video memory in bytes: width * height * bpp of uploaded image
+     * or size of compressed data */
+    public int memorySize() {
+        return mMemorySize;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+    	if(config == null)
+    		return 4;
+    	switch(config) {
+    	case ALPHA_8:
+    		return 1;
+    	case RGB_565:
+    	case ARGB_4444:
+    		return 2;
+    	default:
+    		return 4;
+    	}
+    }
+
     public void releaseTexture (GL10 gl) {
         if (_name != 0) {
             gl.glDeleteTextures(1, new int[]{_name}, 0);
             _name = 0;
         }
     }
+
+    private volatile boolean evictQueued_;
+    private volatile boolean evicted_;
+
+    /** reload waiting with kPriorityLow, set by GLResourceHelper */
+    volatile GLResourceHelper.ReloadTask pendingReload_;
+
+    /** Deletes the texture from video memory in the GL thread, CCTextureCache calls it
+     * when the texture is evicted. The loader is kept, the texture is loaded again
+     * when name() is asked for it, e.g. to bind it.
+     */
+    public void evict() {
+    	if (evictQueued_)
+    		return;
+
+    	evictQueued_ = true;
+    	GLResourceHelper.sharedHelper().perform(new GLResourceHelper.GLResorceTask() {
+			@Override
+			public void perform(GL10 gl) {
+				if (!evictQueued_)
+					return;
+				evictQueued_ = false;
+
+				// not uploaded yet or couldn't be loaded again
+				if (!isLoaded() || !GLResourceHelper.sharedHelper().hasLoader(CCTexture2D.this))
+					return;
+
+				if (mCreator == gl)
+					gl.glDeleteTextures(1, new int[]{_name}, 0);
+				_name = 0;
+				evicted_ = true;
+			}
+		}, GLResourceHelper.kPriorityLow);
+    }
+
+    /** keeps the texture in video memory if evict() is still queued */
+    public void cancelEvict() {
+    	evictQueued_ = false;
+    }
+
+    /** true if the texture was evicted and isn't reloaded yet */
+    public boolean isEvicted() {
+    	return evicted_;
+    }
+
+    private void reloadEvicted() {
+    	evicted_ = false;
+    	GLResourceHelper.sharedHelper().reload(this, GLResourceHelper.kPriorityHigh);
+    }
     
     @Override
     protected void finalize() throws Throwable {
@@ -245,6 +331,7 @@ public class CCTexture2D implements Resource {
         }
 
         init(image, realSize, realSize);//imageSize, imageSize);
+        // memory size stays the one of downscaled image
         mWidth = (int) (image.getWidth() * factor);
         mHeight = (int) (image.getHeight() * factor);
     }
@@ -273,9 +360,11 @@ public class CCTexture2D implements Resource {
 
     private void init(Bitmap image, CGSize imageSize, CGSize contentSize) {
         mBitmap = image;
+        mCompressed = null;
 
         mWidth = image.getWidth();
         mHeight = image.getHeight();
+        mMemorySize = mWidth * mHeight * bytesPerPixel(image.getConfig());
         mContentSize = contentSize;
         // _format = image.getConfig();
         _maxS = mContentSize.width / (float) mWidth;
@@ -312,6 +401,49 @@ public class CCTexture2D implements Resource {
 		}
     }
 
+    /** Initializes a texture from pre-compressed data (PVRTC or ETC1) with all its mipmaps.
+     * Data is uploaded with glCompressedTexImage2D and is released after that.
+     */
+    public void initWithCompressedData(CCCompressedTextureData data) {
+        mBitmap = null;
+        mCompressed = data;
+        mMemorySize = data.dataSize();
+
+        mWidth = data.width();
+        mHeight = data.height();
+        mContentSize = CGSize.make(data.contentWidth(), data.contentHeight());
+        _maxS = mContentSize.width / (float) mWidth;
+        _maxT = mContentSize.height / (float) mHeight;
+
+        if(mVertices == null) {
+	        ByteBuffer vfb = ByteBuffer.allocateDirect(4 * 3 * 4);
+	        vfb.order(ByteOrder.nativeOrder());
+	        mVertices = vfb.asFloatBuffer();
+
+	        ByteBuffer tfb = ByteBuffer.allocateDirect(4 * 2 * 4);
+	        tfb.order(ByteOrder.nativeOrder());
+	        mCoordinates = tfb.asFloatBuffer();
+        }
+
+        premultipliedAlpha = false;
+
+        if(data.levelCount() > 1 && _texParams.minFilter == GL_LINEAR)
+        	_texParams.minFilter = GL_LINEAR_MIPMAP_NEAREST;
+
+		if(_name != 0) {
+			_name = 0;
+			loadTexture(CCDirector.gl);
+		} else {
+    		GLResourceHelper.sharedHelper().perform(new GLResourceHelper.GLResorceTask() {
+
+				@Override
+				public void perform(GL10 gl) {
+					loadTexture(gl);
+				}
+			});
+		}
+    }
+
     /**
       Extensions to make it easy to create a CCTexture2D object from a string of text.
       Note that the generated textures are of type A8 - use the blending mode (GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA).
@@ -328,7 +460,8 @@ public class CCTexture2D implements Resource {
                 CCLabel.TextAlignment.CENTER, fontname, fontSize, fontStyle);
     }
 
-    private static CGSize calculateTextSize(String text, String fontname, float fontSize) {
+    /** size of a single line of text, used when label has no dimensions */
+    public static CGSize calculateTextSize(String text, String fontname, float fontSize) {
 //        Typeface typeface = Typeface.create(fontname, Typeface.NORMAL);
     	Typeface typeface;
     	if(!typefaces.containsKey(fontname)) {
@@ -383,6 +516,15 @@ public class CCTexture2D implements Resource {
     }
     
     public void initWithText(String text, CGSize dimensions, CCLabel.TextAlignment alignment, String fontname, float fontSize, int fontStyle) {
+        Bitmap bitmap = createTextBitmap(text, dimensions, alignment, fontname, fontSize, fontStyle, true);
+        init(bitmap, dimensions, dimensions);
+    }
+
+    /** Renders text to an A8 bitmap of given dimensions, as initWithText does.
+     * The bitmap is rounded up to power of two sizes if pow2 is true.
+     */
+    public static Bitmap createTextBitmap(String text, CGSize dimensions, CCLabel.TextAlignment alignment,
+    		String fontname, float fontSize, int fontStyle, boolean pow2) {
     	Typeface typeface;
     	if(!typefaces.containsKey(fontname)) {
 	        try {
@@ -407,11 +549,15 @@ public class CCTexture2D implements Resource {
         int textHeight = (int)(ascent + descent);
         int spacing = (int) Math.ceil((ascent + descent) * 0.1f);
 
-        int width = toPow2((int)dimensions.width);
-        int height = toPow2((int) dimensions.height);
+        int width = (int) Math.ceil(dimensions.width);
+        int height = (int) Math.ceil(dimensions.height);
+        if(pow2) {
+        	width = toPow2((int)dimensions.width);
+        	height = toPow2((int) dimensions.height);
+        }
 
         Bitmap.Config config = Bitmap.Config.ALPHA_8;
-        Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+        Bitmap bitmap = Bitmap.createBitmap(Math.max(width, 1), Math.max(height, 1), config);
         Canvas canvas = new Canvas(bitmap);
         bitmap.eraseColor(Color.TRANSPARENT);
 
@@ -444,10 +590,10 @@ public class CCTexture2D implements Resource {
 	                textPaint);
         }
 
-        init(bitmap, dimensions, dimensions);
+        return bitmap;
     }
 
-    protected ArrayList<String> WrapText(Paint textPaint, String text, float width)
+    protected static ArrayList<String> WrapText(Paint textPaint, String text, float width)
     {
         float spaceLeft = width;
 
@@ -492,6 +638,12 @@ public class CCTexture2D implements Resource {
 
     public void loadTexture(GL10 gl) {
         if (_name == 0) {
+        	if (!GLResourceHelper.sharedHelper().isGLThread()) {
+        		// e.g. drawn on the logic thread, the GL thread loads it before one of next frames
+        		queueLoad();
+        		return;
+        	}
+
         	mCreator = gl;
         	
             int[] textures = new int[1];
@@ -501,6 +653,11 @@ public class CCTexture2D implements Resource {
             
             applyTexParameters(gl);
 
+            if(mCompressed != null) {
+            	uploadCompressed(gl);
+            	return;
+            }
+
             // this shouldn't be so never, but if so, needs to be found where
             // texture reloading is in progress 
         	if(mBitmap == null)
@@ -512,8 +669,100 @@ public class CCTexture2D implements Resource {
         }
     }
 
+    private volatile boolean loadQueued_;
+
+    private void queueLoad() {
+    	if (loadQueued_)
+    		return;
+
+    	loadQueued_ = true;
+    	GLResourceHelper.sharedHelper().perform(new GLResourceHelper.GLResorceTask() {
+			@Override
+			public void perform(GL10 gl) {
+				loadQueued_ = false;
+				loadTexture(gl);
+			}
+		});
+    }
+
+    /** Replaces region of texture with image, image is not recycled.
+     * Should be called in GL thread, texture is loaded first if needed.
+     * Image must have the same config as texture.
+     */
+    public void updateSubImage(GL10 gl, Bitmap image, int x, int y) {
+    	loadTexture(gl);
+    	gl.glBindTexture(GL_TEXTURE_2D, _name);
+    	GLUtils.texSubImage2D(GL_TEXTURE_2D, 0, x, y, image);
+    }
+
+    private void uploadCompressed(GL10 gl) {
+    	CCCompressedTextureData data = mCompressed;
+    	mCompressed = null;
+
+    	if(!CCCompressedTextureData.isSupported(data.glInternalFormat(), glExtensions(gl))) {
+    		if(data.format() == CCCompressedTextureData.kFormatETC1) {
+    			uploadDecoded(gl, data);
+    		} else {
+    			// no software decoder for PVRTC, the texture stays empty
+    			ccMacros.CCLOG("CCTexture2D", "PVRTC textures are not supported by this GPU");
+    			mMemorySize = 0;
+    		}
+    		return;
+    	}
+
+    	for(int i = 0; i < data.levelCount(); ++i) {
+    		ByteBuffer level = data.level(i);
+    		gl.glCompressedTexImage2D(GL_TEXTURE_2D, i, data.glInternalFormat(),
+    				data.levelWidth(i), data.levelHeight(i), 0, level.capacity(), level);
+
+    		int err = gl.glGetError();
+    		if (err != GL10.GL_NO_ERROR) {
+    			ccMacros.CCLOG("CCTexture2D", "Error uploading compressed texture level: " + i + " glError: 0x" + Integer.toHexString(err));
+    			return;
+    		}
+    	}
+    }
+
+    /** ETC1 levels decoded to RGB565, for GPUs without GL_OES_compressed_ETC1_RGB8_texture */
+    private void uploadDecoded(GL10 gl, CCCompressedTextureData data) {
+    	int size = 0;
+    	for(int i = 0; i < data.levelCount(); ++i) {
+    		int width = data.levelWidth(i);
+    		int height = data.levelHeight(i);
+    		ByteBuffer pixels;
+    		try {
+    			pixels = CCCompressedTextureData.decodeETC1(data.level(i), width, height);
+    		} catch(IllegalArgumentException e) {
+    			ccMacros.CCLOG("CCTexture2D", "Can't decode ETC1 level " + i + ": " + e.getMessage());
+    			break;
+    		}
+    		gl.glTexImage2D(GL_TEXTURE_2D, i, GL10.GL_RGB, width, height, 0,
+    				GL10.GL_RGB, GL10.GL_UNSIGNED_SHORT_5_6_5, pixels);
+    		size += pixels.capacity();
+
+    		int err = gl.glGetError();
+    		if (err != GL10.GL_NO_ERROR) {
+    			ccMacros.CCLOG("CCTexture2D", "Error uploading decoded texture level: " + i + " glError: 0x" + Integer.toHexString(err));
+    			break;
+    		}
+    	}
+    	mMemorySize = size;
+    }
+
+    private static GL10 extensionsGL_;
+    private static String extensions_;
+
+    /** GL_EXTENSIONS of the context, queried once on GL thread */
+    static String glExtensions(GL10 gl) {
+    	if(gl != extensionsGL_) {
+    		extensions_ = gl.glGetString(GL10.GL_EXTENSIONS);
+    		extensionsGL_ = gl;
+    	}
+    	return extensions_;
+    }
+
     public boolean isLoaded() {
-        return mBitmap == null && _name != 0;
+        return mBitmap == null && mCompressed == null && _name != 0;
     }
 
 
@@ -13,6 +13,8 @@ import java.nio.ShortBuffer;
 import javax.microedition.khronos.opengles.GL10;
 
 import org.cocos2d.config.ccConfig;
+import org.cocos2d.nodes.CCBatchRenderer;
+import org.cocos2d.nodes.CCRedrawTracker;
 import org.cocos2d.nodes.CCTextureCache;
 import org.cocos2d.types.ccColor4B;
 import org.cocos2d.types.ccQuad2;
@@ -34,6 +36,9 @@ import com.badlogic.gdx.utils.BufferUtils;
  To render the quads using an interleaved vertex array list, you should modify the ccConfig.h file 
  */
 public class CCTextureAtlas {
+    /** most quads an atlas can hold, unsigned short indices address 4 vertices per quad */
+    public static final int kMaxQuads = 65536 / 4;
+
     /** quantity of quads that are going to be drawn */
     private int totalQuads_;
     /** quantity of quads that can be stored with the current texture atlas size */
@@ -71,6 +76,7 @@ public class CCTextureAtlas {
 
     public void setTexture(CCTexture2D tex) {
         texture_ = tex;
+        CCRedrawTracker.setNeedsRedraw();
     }
 
     public boolean withColorArray() {
@@ -107,6 +113,7 @@ public class CCTextureAtlas {
      * WARNING: Do not reinitialize the TextureAtlas because it will leak memory (issue #706)
      */
     public CCTextureAtlas(CCTexture2D tex, int n) {
+        assert n <= kMaxQuads : "CCTextureAtlas: capacity " + n + " is over kMaxQuads, use several atlases";
         capacity_ = n;
         texture_ = tex;
         totalQuads_ = 0;
@@ -151,21 +158,21 @@ public class CCTextureAtlas {
     public void initIndices() {
         for (int i = 0; i < capacity_; i++) {
         	if (ccConfig.CC_TEXTURE_ATLAS_USE_TRIANGLE_STRIP) {
-        		indices.put((short) (i * 6 + 0), (short) (i * 4 + 0));
-        		indices.put((short) (i * 6 + 1), (short) (i * 4 + 0));
-        		indices.put((short) (i * 6 + 2), (short) (i * 4 + 2));
-        		indices.put((short) (i * 6 + 3), (short) (i * 4 + 1));
-        		indices.put((short) (i * 6 + 4), (short) (i * 4 + 3));
-        		indices.put((short) (i * 6 + 5), (short) (i * 4 + 3));
+        		indices.put(i * 6 + 0, (short) (i * 4 + 0));
+        		indices.put(i * 6 + 1, (short) (i * 4 + 0));
+        		indices.put(i * 6 + 2, (short) (i * 4 + 2));
+        		indices.put(i * 6 + 3, (short) (i * 4 + 1));
+        		indices.put(i * 6 + 4, (short) (i * 4 + 3));
+        		indices.put(i * 6 + 5, (short) (i * 4 + 3));
         	} else {
-        		indices.put((short) (i * 6 + 0), (short) (i * 4 + 0));
-        		indices.put((short) (i * 6 + 1), (short) (i * 4 + 1));
-        		indices.put((short) (i * 6 + 2), (short) (i * 4 + 2));
+        		indices.put(i * 6 + 0, (short) (i * 4 + 0));
+        		indices.put(i * 6 + 1, (short) (i * 4 + 1));
+        		indices.put(i * 6 + 2, (short) (i * 4 + 2));
 
         		// inverted index.
-        		indices.put((short) (i * 6 + 5), (short) (i * 4 + 1));
-        		indices.put((short) (i * 6 + 4), (short) (i * 4 + 2));
-        		indices.put((short) (i * 6 + 3), (short) (i * 4 + 3));
+        		indices.put(i * 6 + 5, (short) (i * 4 + 1));
+        		indices.put(i * 6 + 4, (short) (i * 4 + 2));
+        		indices.put(i * 6 + 3, (short) (i * 4 + 3));
         	}
         }
         indices.position(0);
@@ -179,6 +186,7 @@ public class CCTextureAtlas {
         assert (index >= 0 && index < capacity_) : "update quad with texture_: Invalid index";
 
         totalQuads_ = Math.max(index + 1, totalQuads_);
+        CCRedrawTracker.setNeedsRedraw();
 
         putTexCoords(texCordBuffer, index);
         putVertex(vertexBuffer, index);
@@ -188,6 +196,7 @@ public class CCTextureAtlas {
         assert (index >= 0 && index < capacity_) : "update quad with texture_: Invalid index";
 
         totalQuads_ = Math.max(index + 1, totalQuads_);
+        CCRedrawTracker.setNeedsRedraw();
 
         putTexCoords(texCordBuffer, index);
         putVertex(vertexCoordinates, vertexData, index);
@@ -197,6 +206,7 @@ public class CCTextureAtlas {
         assert (index >= 0 && index < capacity_) : "update quad with texture_: Invalid index";
 
         totalQuads_ = Math.max(index + 1, totalQuads_);
+        CCRedrawTracker.setNeedsRedraw();
 
         putTexCoords(textureCoordinates, texQuad, index);
         putVertex(vertexCoordinates, vertexQuad, index);
@@ -206,6 +216,7 @@ public class CCTextureAtlas {
         assert (index >= 0 && index < capacity_) : "update color with quad color: Invalid index";
 
         totalQuads_ = Math.max(index + 1, totalQuads_);
+        CCRedrawTracker.setNeedsRedraw();
 
         if (!withColorArray_)
             initColorArray();
@@ -223,6 +234,7 @@ public class CCTextureAtlas {
         assert (index >= 0 && index < capacity_) : "insert quad with texture_: Invalid index";
 
         totalQuads_++;
+        CCRedrawTracker.setNeedsRedraw();
 
         int remaining = (totalQuads_ - 1) - index;
 
@@ -253,6 +265,7 @@ public class CCTextureAtlas {
 
         if (from == to)
             return;
+        CCRedrawTracker.setNeedsRedraw();
 
         int size = Math.abs(from - to);
         int dst = from;
@@ -306,6 +319,7 @@ public class CCTextureAtlas {
         }
 
         totalQuads_--;
+        CCRedrawTracker.setNeedsRedraw();
     }
 
 
@@ -316,6 +330,7 @@ public class CCTextureAtlas {
      */
     public void removeAllQuads() {
         totalQuads_ = 0;
+        CCRedrawTracker.setNeedsRedraw();
     }
 
     /** resize the capacity of the Texture Atlas.
@@ -324,9 +339,7 @@ public class CCTextureAtlas {
      * If it fails to resize the capacity it will return NO with a new capacity of 0.
      */
     public void resizeCapacity(int newCapacity) {
-    	
-    	final int MAX_POSSIBLE_QUADS_COUNT = Short.MAX_VALUE / 6; // 6 short indices per quad 
-    	newCapacity = Math.min(newCapacity, MAX_POSSIBLE_QUADS_COUNT);
+    	newCapacity = Math.min(newCapacity, kMaxQuads);
     	
         if (newCapacity == capacity_)
             return;
@@ -400,6 +413,7 @@ public class CCTextureAtlas {
         } else {
         	gl.glDrawElements(GL10.GL_TRIANGLES, n * 6, GL10.GL_UNSIGNED_SHORT, indices);
         }
+        CCBatchRenderer.sharedRenderer().countDrawCall();
 
     }
     
@@ -1,44 +1,67 @@
 package org.cocos2d.opengl;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.microedition.khronos.opengles.GL10;
 
 import org.cocos2d.nodes.CCDirector;
+import org.cocos2d.nodes.CCNode;
+import org.cocos2d.nodes.CCRedrawTracker;
+import org.cocos2d.protocols.CCTextureProtocol;
 
 /**
  *  This class performs tasks on the side of OpenGL thread.
  *  CCTexture2D calls perform() in finalize method, and texId is queued to be
  *  deleted later.
- *  
+ *
+ *  Tasks are kept in queues by priority. update() polls tasks starting from
+ *  the highest priority and stops when frame budget is spent, so big uploads
+ *  and reloads after context loss are spread over several frames. A texture
+ *  waiting for a low priority reload is moved to high priority when it is bound.
+ *
  * @author genius
  */
 
 public class GLResourceHelper {
-	
+
+	/** tasks which are needed for current frame, e.g. resources of running scene */
+	public static final int kPriorityHigh 	= 0;
+	/** default priority of perform(GLResorceTask) */
+	public static final int kPriorityNormal = 1;
+	/** background work, e.g. reloading of resources not used by running scene */
+	public static final int kPriorityLow 	= 2;
+
+	private static final int kPriorityCount = 3;
+
     private static GLResourceHelper _sharedResourceHelper = new GLResourceHelper();
 
     /** singleton of the CCTouchDispatcher */
     public static GLResourceHelper sharedHelper() {
         return _sharedResourceHelper;
     }
-    
+
     public interface GLResorceTask {
     	void perform(GL10 gl);
     }
-    
+
     /**
-     * 
+     *
      * GL resources should implement this
      *
      */
     public interface Resource {
     }
-    
+
 	/**
 	 * These objects are stored in reloadQueue,
 	 * they should be removed manually,
@@ -49,20 +72,70 @@ public class GLResourceHelper {
 		void load(Resource res);
 	}
 
-	private ConcurrentLinkedQueue<GLResorceTask> taskQueue;
+	private final List<Queue<GLResorceTask>> taskQueues;
+	private AtomicInteger queueDepth;
 	private Map<Resource, GLResourceLoader> reloadMap;
-	
+
 	private volatile long glThreadID;
 
 	public void setGlThreadID(long glThreadID) {
 		this.glThreadID = glThreadID;
 	}
-	
+
+	/** true if called on the GL thread, e.g. false on the logic thread of split mode */
+	public boolean isGLThread() {
+		return Thread.currentThread().getId() == glThreadID;
+	}
+
+	/** time in nanoseconds update() may spend per frame, 0 means no limit */
+	private volatile long frameBudget_;
+
+	/** statistics of last update(), read from other threads */
+	private volatile long lastFrameTime_;
+	private volatile int  lastFrameTasks_;
+
 	public GLResourceHelper() {
-		taskQueue = new ConcurrentLinkedQueue<GLResorceTask>();
+		taskQueues = new ArrayList<Queue<GLResorceTask>>(kPriorityCount);
+		for(int i = 0; i < kPriorityCount; ++i) {
+			taskQueues.add(new ConcurrentLinkedQueue<GLResorceTask>());
+		}
+		queueDepth = new AtomicInteger();
 		reloadMap = Collections.synchronizedMap(new WeakHashMap<GLResourceHelper.Resource, GLResourceHelper.GLResourceLoader>());
 	}
 
+	/**
+	 * Sets time in nanoseconds which update() may spend per frame.
+	 * At least one task is performed each frame, so queue always progresses.
+	 * 0 means no limit, all queued tasks are performed in one frame.
+	 */
+	public void setFrameBudget(long nanos) {
+		frameBudget_ = nanos;
+	}
+
+	public long getFrameBudget() {
+		return frameBudget_;
+	}
+
+	/** number of tasks waiting in all queues */
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	/** number of tasks waiting with given priority */
+	public int getQueueDepth(int priority) {
+		return taskQueues.get(priority).size();
+	}
+
+	/** nanoseconds spent in last update() */
+	public long getLastFrameTime() {
+		return lastFrameTime_;
+	}
+
+	/** count of tasks performed in last update() */
+	public int getLastFrameTasks() {
+		return lastFrameTasks_;
+	}
+
     public void addLoader(final Resource res, final GLResourceLoader loader, boolean addTask) {
     	if(addTask) {
     		GLResorceTask task = new GLResorceTask() {
@@ -77,29 +150,149 @@ public class GLResourceHelper {
     		reloadMap.put(res, loader);
     	}
     }
-    
+
+    /** true if the resource has a loader to load it again */
+    public boolean hasLoader(Resource res) {
+    	return reloadMap.containsKey(res);
+    }
+
+    /**
+     * Loads the resource again with its loader, e.g. a texture evicted from video memory.
+     */
+    public void reload(Resource res, int priority) {
+    	enqueueReload(res, reloadGeneration, priority);
+    }
+
+    /**
+     * Queues a reload task. A texture waiting with kPriorityLow keeps the task,
+     * so binding it before the reload moves the task to kPriorityHigh, see promote().
+     */
+    private void enqueueReload(Resource res, int generation, int priority) {
+    	ReloadTask task = new ReloadTask(res, generation);
+    	if(priority == kPriorityLow && res instanceof CCTexture2D)
+    		((CCTexture2D)res).pendingReload_ = task;
+    	enqueue(task, priority);
+    }
+
+    /**
+     * Queues the pending reload again with kPriorityHigh, the copy left
+     * in the low priority queue does nothing when it is polled.
+     */
+    void promote(ReloadTask task) {
+    	if(!task.done)
+    		enqueue(task, kPriorityHigh);
+    }
+
+    /**
+     * Reloads one resource, loader is taken from reloadMap at the moment of perform,
+     * resource is held weakly so waiting in queue does not keep it alive.
+     */
+    class ReloadTask implements GLResorceTask {
+    	private final WeakReference<Resource> resRef;
+    	private final int generation;
+    	private volatile boolean done;
+
+    	public ReloadTask(Resource res, int generation) {
+    		resRef = new WeakReference<Resource>(res);
+    		this.generation = generation;
+    	}
+
+		@Override
+		public void perform(GL10 gl) {
+			if(done)
+				return;
+			done = true;
+
+			if(generation != reloadGeneration)
+				return;
+
+			Resource res = resRef.get();
+			if(res == null)
+				return;
+
+			if(res instanceof CCTexture2D) {
+				CCTexture2D tex = (CCTexture2D)res;
+				if(tex.pendingReload_ == this)
+					tex.pendingReload_ = null;
+			}
+
+			GLResourceLoader loader = reloadMap.get(res);
+			if(loader != null)
+				loader.load(res);
+		}
+    }
+
     private volatile boolean reloadTaskIsInQueue;
+    private volatile int reloadGeneration;
+
     /**
-     * This should be called only when recreating GL context
+     * This should be called only when recreating GL context.
+     * Each resource is reloaded by separate task, resources used by
+     * running scene go first with kPriorityHigh, the rest with kPriorityLow.
      */
 	public void reloadResources() {
 		if(reloadTaskIsInQueue)
 			return;
-			
+
 		reloadTaskIsInQueue = true;
-		taskQueue.add(new GLResorceTask() {
+		perform(new GLResorceTask() {
 			@Override
 			public void perform(GL10 gl) {
+				// tasks of previous context are not valid anymore
+				int generation = ++reloadGeneration;
+
+				// visible resources in visit order, the map only tells which are seen
+				IdentityHashMap<Resource, Boolean> visible = new IdentityHashMap<Resource, Boolean>();
+				List<Resource> ordered = new ArrayList<Resource>();
+				CCNode scene = CCDirector.sharedDirector().getRunningScene();
+				if(scene != null)
+					collectResources(scene, visible, ordered);
+
+				List<Resource> rest = new ArrayList<Resource>();
 				synchronized (reloadMap) {
 					for(Entry<Resource, GLResourceLoader> entry : reloadMap.entrySet()) {
 						Resource res = entry.getKey();
-						if(res != null)
-							entry.getValue().load(res);
+						if(res != null && !visible.containsKey(res))
+							rest.add(res);
 					}
 				}
+
+				for(int i = 0, size = ordered.size(); i < size; ++i) {
+					Resource res = ordered.get(i);
+					if(reloadMap.containsKey(res))
+						enqueueReload(res, generation, kPriorityHigh);
+				}
+				for(int i = 0, size = rest.size(); i < size; ++i) {
+					enqueueReload(rest.get(i), generation, kPriorityLow);
+				}
+
 				reloadTaskIsInQueue = false;
 			}
-		});
+		}, kPriorityHigh);
+	}
+
+	/**
+	 * Appends resources of the node tree to ret in visit order, each once.
+	 */
+	static void collectResources(CCNode node, IdentityHashMap<Resource, Boolean> seen, List<Resource> ret) {
+		if(!node.getVisible())
+			return;
+
+		if(node instanceof Resource && seen.put((Resource)node, Boolean.TRUE) == null)
+			ret.add((Resource)node);
+
+		if(node instanceof CCTextureProtocol) {
+			CCTexture2D tex = ((CCTextureProtocol)node).getTexture();
+			if(tex != null && seen.put(tex, Boolean.TRUE) == null)
+				ret.add(tex);
+		}
+
+		List<CCNode> children = node.getChildren();
+		if(children != null) {
+			for(int i = 0, size = children.size(); i < size; ++i) {
+				collectResources(children.get(i), seen, ret);
+			}
+		}
 	}
 
 	/**
@@ -108,28 +301,62 @@ public class GLResourceHelper {
 	 * @param res GL task
 	 */
 	public void perform(GLResorceTask res) {
-		if( inUpdate && Thread.currentThread().getId() == glThreadID ) {
+		perform(res, kPriorityNormal);
+	}
+
+	/**
+	 * Add OGL task in queue with given priority. If perform is called from another task
+	 * then task is performed immediately.
+	 * @param res GL task
+	 * @param priority one of kPriorityHigh, kPriorityNormal, kPriorityLow
+	 */
+	public void perform(GLResorceTask res, int priority) {
+		if( inUpdate && isGLThread() ) {
 			res.perform(CCDirector.gl);
 		} else {
-			taskQueue.add(res);
+			enqueue(res, priority);
 		}
 	}
 
+	private void enqueue(GLResorceTask res, int priority) {
+		taskQueues.get(priority).add(res);
+		queueDepth.incrementAndGet();
+		// tasks are performed in the next frame
+		CCRedrawTracker.setNeedsRedraw();
+	}
+
 	private volatile boolean inUpdate = false;
 
 	/**
 	 * Method is called from update cycle,
-	 * perform all tasks in GL thread
+	 * perform tasks in GL thread until frame budget is spent
 	 * @param gl
 	 */
 	public void update(GL10 gl) {
-		if(taskQueue.size() > 0) {
-	
-			GLResorceTask res;
-			while((res = taskQueue.poll()) != null) {
+		if(queueDepth.get() == 0) {
+			lastFrameTime_ = 0;
+			lastFrameTasks_ = 0;
+			return;
+		}
+
+		final long budget = frameBudget_;
+		final long start = System.nanoTime();
+		long elapsed = 0;
+		int performed = 0;
+
+		GLResorceTask res;
+		for(int i = 0; i < kPriorityCount; ++i) {
+			final Queue<GLResorceTask> queue = taskQueues.get(i);
+			while((budget == 0 || elapsed < budget) && (res = queue.poll()) != null) {
+				queueDepth.decrementAndGet();
 				res.perform(gl);
+				performed++;
+				elapsed = System.nanoTime() - start;
 			}
 		}
+
+		lastFrameTime_ = elapsed;
+		lastFrameTasks_ = performed;
 	}
 
 	public void setInUpdate(boolean inUpd) {
@@ -0,0 +1,715 @@
+package org.cocos2d.particlesystem;
+
+import javax.microedition.khronos.opengles.GL11;
+
+import org.cocos2d.config.ccConfig;
+import org.cocos2d.config.ccMacros;
+import org.cocos2d.types.CGPoint;
+
+import com.badlogic.gdx.utils.BufferUtils;
+
+/** CCArrayParticleSystem is a CCQuadParticleSystem which keeps particles in parallel arrays.
+
+ Position, direction, color, size, rotation and life of all particles are stored
+ in separate float arrays instead of CCParticle objects. update() walks each
+ attribute in its own tight loop, so the loops touch contiguous memory only and
+ don't call methods per particle. Quads are written into float arrays which are
+ copied to the quad buffers with one bulk copy, only live quads are uploaded.
+
+ Configuration, plist files, texture and drawing are the same as in CCQuadParticleSystem.
+ Subclasses can't use updateQuad(), it is not called.
+
+ Random values are taken from the own stream of the system, see setRandomSeed(),
+ so the simulation depends only on the seed and the sequence of dt.
+
+ With parallel update enabled the step runs on CCParticleUpdateExecutor and writes
+ quads into back arrays, the GL thread uploads the front arrays. update() joins the
+ previous step, swaps the arrays and starts the next step, so particles are displayed
+ one frame later. Emitter properties may be changed at any time, update() copies them
+ for the next step, so a running step sees the values of the frame it was started in.
+ Results don't depend on the thread which runs the step.
+
+ Only this class can be stepped on worker threads, CCQuadParticleSystem and
+ CCPointParticleSystem are always updated on the thread which ticks the scheduler:
+ their particles are objects and subclasses may override updateQuad().
+ @since v0.99.5
+ */
+public class CCArrayParticleSystem extends CCQuadParticleSystem {
+
+	// common attributes
+	float	life_[];
+	float	posX[], posY[];
+	float	startPosX[], startPosY[];
+	float	colorR[], colorG[], colorB[], colorA[];
+	float	deltaR[], deltaG[], deltaB[], deltaA[];
+	float	size_[], deltaSize[];
+	float	rotation[], deltaRotation[];
+
+	// Mode A: direction, radial and tangential accel
+	// Mode B: angle, degrees per second, radius and delta radius
+	float	mode0[], mode1[], mode2[], mode3[];
+
+	// quads of live particles, copied to the buffers in postStep()
+	float	quadVertices[];
+	float	quadColors[];
+	int		quadCount;
+
+	// quads written by the parallel step
+	float	backVertices[];
+	float	backColors[];
+
+	boolean texCoordsDirty;
+
+	// emitter position used by the step, world space or position_ depending on position type
+	float	emitterX, emitterY;
+
+	// xorshift state, never 0
+	long	randomState;
+	private static long nextSeed_ = 1;
+
+	private boolean parallelUpdate_;
+	private boolean stepSubmitted;
+	private final StepJob stepJob = new StepJob();
+
+	private final CGPoint tmpPoint = CGPoint.zero();
+
+	// emitter properties used by the step, copied on the calling thread
+	private final EmitterConfig config = new EmitterConfig();
+
+	/** copy of the emitter properties, setters of the system don't change it while a step runs */
+	private static final class EmitterConfig {
+		float	emissionRate, duration;
+		float	life, lifeVar;
+		float	centerX, centerY, posVarX, posVarY;
+		float	startR, startG, startB, startA;
+		float	startVarR, startVarG, startVarB, startVarA;
+		float	endR, endG, endB, endA;
+		float	endVarR, endVarG, endVarB, endVarA;
+		float	startSize, startSizeVar, endSize, endSizeVar;
+		float	startSpin, startSpinVar, endSpin, endSpinVar;
+		float	angle, angleVar;
+		int		emitterMode, positionType;
+
+		// Mode A
+		float	gravityX, gravityY;
+		float	speed, speedVar;
+		float	radialAccel, radialAccelVar;
+		float	tangentialAccel, tangentialAccelVar;
+
+		// Mode B
+		float	startRadius, startRadiusVar, endRadius, endRadiusVar;
+		float	rotatePerSecond, rotatePerSecondVar;
+
+		void capture(CCParticleSystem s) {
+			emissionRate = s.emissionRate;
+			duration = s.duration;
+			life = s.life;
+			lifeVar = s.lifeVar;
+			centerX = s.centerOfGravity.x;
+			centerY = s.centerOfGravity.y;
+			posVarX = s.posVar.x;
+			posVarY = s.posVar.y;
+
+			startR = s.startColor.r;
+			startG = s.startColor.g;
+			startB = s.startColor.b;
+			startA = s.startColor.a;
+			startVarR = s.startColorVar.r;
+			startVarG = s.startColorVar.g;
+			startVarB = s.startColorVar.b;
+			startVarA = s.startColorVar.a;
+			endR = s.endColor.r;
+			endG = s.endColor.g;
+			endB = s.endColor.b;
+			endA = s.endColor.a;
+			endVarR = s.endColorVar.r;
+			endVarG = s.endColorVar.g;
+			endVarB = s.endColorVar.b;
+			endVarA = s.endColorVar.a;
+
+			startSize = s.startSize;
+			startSizeVar = s.startSizeVar;
+			endSize = s.endSize;
+			endSizeVar = s.endSizeVar;
+			startSpin = s.startSpin;
+			startSpinVar = s.startSpinVar;
+			endSpin = s.endSpin;
+			endSpinVar = s.endSpinVar;
+			angle = s.angle;
+			angleVar = s.angleVar;
+			emitterMode = s.emitterMode;
+			positionType = s.getPositionType();
+
+			if (emitterMode == kCCParticleModeGravity) {
+				gravityX = s.modeA.gravity.x;
+				gravityY = s.modeA.gravity.y;
+				speed = s.modeA.speed;
+				speedVar = s.modeA.speedVar;
+				radialAccel = s.modeA.radialAccel;
+				radialAccelVar = s.modeA.radialAccelVar;
+				tangentialAccel = s.modeA.tangentialAccel;
+				tangentialAccelVar = s.modeA.tangentialAccelVar;
+			} else {
+				startRadius = s.modeB.startRadius;
+				startRadiusVar = s.modeB.startRadiusVar;
+				endRadius = s.modeB.endRadius;
+				endRadiusVar = s.modeB.endRadiusVar;
+				rotatePerSecond = s.modeB.rotatePerSecond;
+				rotatePerSecondVar = s.modeB.rotatePerSecondVar;
+			}
+		}
+	}
+
+	/** step running on worker thread */
+	private final class StepJob implements Runnable {
+		float dt;
+		int count;
+		boolean running;
+
+		@Override
+		public void run() {
+			int c = step(dt, backVertices, backColors);
+			synchronized (this) {
+				count = c;
+				running = false;
+				notifyAll();
+			}
+		}
+
+		synchronized void start(float delta) {
+			dt = delta;
+			running = true;
+		}
+
+		synchronized void await() {
+			boolean interrupted = false;
+			while (running) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	public CCArrayParticleSystem(int numberOfParticles) {
+		super(numberOfParticles);
+	}
+
+	public CCArrayParticleSystem(String plistFile) {
+		super(plistFile);
+	}
+
+	/** seed of the next created system, following ones get consecutive seeds */
+	public static void setNextRandomSeed(long seed) {
+		synchronized (CCArrayParticleSystem.class) {
+			nextSeed_ = seed;
+		}
+	}
+
+	/** Seeds the random stream of the system.
+	 * By default systems get consecutive seeds in order of creation.
+	 */
+	public void setRandomSeed(long seed) {
+		finishStep();
+		// scramble, so close seeds give different streams
+		seed = (seed ^ 0x5DEECE66DL) * 0x9E3779B97F4A7C15L;
+		randomState = seed != 0 ? seed : 0x9E3779B97F4A7C15L;
+	}
+
+	/** Whether the system is stepped on CCParticleUpdateExecutor, default is ccConfig.CC_PARTICLE_PARALLEL_UPDATE */
+	public void setParallelUpdate(boolean parallel) {
+		if (parallel == parallelUpdate_)
+			return;
+
+		if (parallel) {
+			if (backVertices == null) {
+				backVertices = new float[totalParticles * 8];
+				backColors = new float[totalParticles * 16];
+			}
+		} else {
+			finishStep();
+		}
+		parallelUpdate_ = parallel;
+	}
+
+	public boolean isParallelUpdate() {
+		return parallelUpdate_;
+	}
+
+	@Override
+	protected void allocateParticles() {
+		final int n = totalParticles;
+
+		life_ = new float[n];
+		posX = new float[n];
+		posY = new float[n];
+		startPosX = new float[n];
+		startPosY = new float[n];
+		colorR = new float[n];
+		colorG = new float[n];
+		colorB = new float[n];
+		colorA = new float[n];
+		deltaR = new float[n];
+		deltaG = new float[n];
+		deltaB = new float[n];
+		deltaA = new float[n];
+		size_ = new float[n];
+		deltaSize = new float[n];
+		rotation = new float[n];
+		deltaRotation = new float[n];
+		mode0 = new float[n];
+		mode1 = new float[n];
+		mode2 = new float[n];
+		mode3 = new float[n];
+
+		quadVertices = new float[n * 8];
+		quadColors = new float[n * 16];
+
+		// called from the super constructor, before initializers of this class
+		synchronized (CCArrayParticleSystem.class) {
+			setRandomSeed(nextSeed_++);
+		}
+		setParallelUpdate(ccConfig.CC_PARTICLE_PARALLEL_UPDATE);
+	}
+
+	@Override
+	public void stopSystem() {
+		finishStep();
+		super.stopSystem();
+	}
+
+	@Override
+	public void resetSystem() {
+		finishStep();
+		active = true;
+		elapsed = 0;
+		for (int i = 0; i < particleCount; ++i) {
+			life_[i] = 0;
+		}
+	}
+
+	@Override
+	public boolean addParticle() {
+		finishStep();
+		config.capture(this);
+		updateEmitterPosition();
+		return emit();
+	}
+
+	private boolean emit() {
+		if (isFull())
+			return false;
+		initParticle(particleCount);
+		particleCount++;
+		return true;
+	}
+
+	/** returns random float between -1 and 1 from the stream of the system */
+	private float random() {
+		long x = randomState;
+		x ^= x << 13;
+		x ^= x >>> 7;
+		x ^= x << 17;
+		randomState = x;
+		// top 24 bits to [0, 1)
+		return (x >>> 40) * (2.0f / (1 << 24)) - 1.0f;
+	}
+
+	private void updateEmitterPosition() {
+		int positionType = getPositionType();
+		if( positionType == kCCPositionTypeFree ) {
+			convertToWorldSpace(0, 0, tmpPoint);
+			emitterX = tmpPoint.x;
+			emitterY = tmpPoint.y;
+		} else if( positionType == kCCPositionTypeRelative ) {
+			emitterX = position_.x;
+			emitterY = position_.y;
+		}
+	}
+
+	/** waits for the running step and makes its quads the front ones
+	 * @return true if a step was finished
+	 */
+	private boolean finishStep() {
+		if (!stepSubmitted)
+			return false;
+
+		stepJob.await();
+		stepSubmitted = false;
+
+		float tmp[] = quadVertices;
+		quadVertices = backVertices;
+		backVertices = tmp;
+
+		tmp = quadColors;
+		quadColors = backColors;
+		backColors = tmp;
+
+		quadCount = stepJob.count;
+		return true;
+	}
+
+	// the same values as CCParticleSystem.initParticle(), random values are from own stream
+	private void initParticle(int i) {
+		final EmitterConfig c = config;
+
+		// timeToLive
+		// no negative life. prevent division by 0
+		float timeToLive = Math.max(0, c.life + c.lifeVar * random() );
+		life_[i] = timeToLive;
+
+		// position
+		posX[i] = c.centerX + c.posVarX * random();
+		posY[i] = c.centerY + c.posVarY * random();
+
+		// Color
+		float start_r = Math.min(1, Math.max(0, c.startR + c.startVarR * random() ) );
+		float start_g = Math.min(1, Math.max(0, c.startG + c.startVarG * random() ) );
+		float start_b = Math.min(1, Math.max(0, c.startB + c.startVarB * random() ) );
+		float start_a = Math.min(1, Math.max(0, c.startA + c.startVarA * random() ) );
+
+		float end_r = Math.min(1, Math.max(0, c.endR + c.endVarR * random() ) );
+		float end_g = Math.min(1, Math.max(0, c.endG + c.endVarG * random() ) );
+		float end_b = Math.min(1, Math.max(0, c.endB + c.endVarB * random() ) );
+		float end_a = Math.min(1, Math.max(0, c.endA + c.endVarA * random() ) );
+
+		colorR[i] = start_r;
+		colorG[i] = start_g;
+		colorB[i] = start_b;
+		colorA[i] = start_a;
+
+		deltaR[i] = (end_r - start_r) / timeToLive;
+		deltaG[i] = (end_g - start_g) / timeToLive;
+		deltaB[i] = (end_b - start_b) / timeToLive;
+		deltaA[i] = (end_a - start_a) / timeToLive;
+
+		// size
+		float startS = Math.max(0, c.startSize + c.startSizeVar * random() ); // no negative size
+
+		size_[i] = startS;
+		if( c.endSize == kCCParticleStartSizeEqualToEndSize )
+			deltaSize[i] = 0;
+		else {
+			float endS = c.endSize + c.endSizeVar * random();
+			endS = Math.max(0, endS);
+			deltaSize[i] = (endS - startS) / timeToLive;
+		}
+
+		// rotation
+		float startA = c.startSpin + c.startSpinVar * random();
+		float endA = c.endSpin + c.endSpinVar * random();
+		rotation[i] = startA;
+		deltaRotation[i] = (endA - startA) / timeToLive;
+
+		// position
+		startPosX[i] = emitterX;
+		startPosY[i] = emitterY;
+
+		// direction
+		float a = ccMacros.CC_DEGREES_TO_RADIANS( c.angle + c.angleVar * random() );
+
+		// Mode Gravity: A
+		if (c.emitterMode == kCCParticleModeGravity) {
+			float s = c.speed + c.speedVar * random();
+
+			// direction
+			mode0[i] = (float)Math.cos(a) * s;
+			mode1[i] = (float)Math.sin(a) * s;
+
+			// radial accel
+			mode2[i] = c.radialAccel + c.radialAccelVar * random();
+
+			// tangential accel
+			mode3[i] = c.tangentialAccel + c.tangentialAccelVar * random();
+		}
+
+		// Mode Radius: B
+		else {
+			// Set the default diameter of the particle from the source position
+			float startRadius = c.startRadius + c.startRadiusVar * random();
+			float endRadius = c.endRadius + c.endRadiusVar * random();
+
+			mode2[i] = startRadius;
+
+			if( c.endRadius == kCCParticleStartRadiusEqualToEndRadius )
+				mode3[i] = 0;
+			else
+				mode3[i] = (endRadius - startRadius) / timeToLive;
+
+			mode0[i] = a;
+			mode1[i] = ccMacros.CC_DEGREES_TO_RADIANS(c.rotatePerSecond + c.rotatePerSecondVar * random());
+		}
+	}
+
+	@Override
+	public void update(float dt) {
+		if (!parallelUpdate_) {
+			config.capture(this);
+			updateEmitterPosition();
+			quadCount = step(dt, quadVertices, quadColors);
+			particleIdx = quadCount;
+
+			if( particleCount == 0 && autoRemoveOnFinish_ ) {
+				unscheduleUpdate();
+				this.getParent().removeChild(this, true);
+				return;
+			}
+
+			postStep();
+			return;
+		}
+
+		boolean stepped = finishStep();
+		particleIdx = quadCount;
+
+		if( stepped && particleCount == 0 && autoRemoveOnFinish_ ) {
+			unscheduleUpdate();
+			this.getParent().removeChild(this, true);
+			return;
+		}
+
+		postStep();
+
+		config.capture(this);
+		updateEmitterPosition();
+		stepJob.start(dt);
+		stepSubmitted = true;
+		CCParticleUpdateExecutor.sharedExecutor().execute(stepJob);
+	}
+
+	/** Simulates particles and writes quads of live ones.
+	 * Doesn't touch the node tree, may run on worker thread.
+	 * @return count of quads
+	 */
+	private int step(float dt, float quadV[], float quadC[]) {
+		final EmitterConfig c = config;
+		if( active && c.emissionRate != 0 ) {
+			float rate = 1.0f / c.emissionRate;
+			emitCounter += dt;
+			while( particleCount < totalParticles && emitCounter > rate ) {
+				emit();
+				emitCounter -= rate;
+			}
+
+			elapsed += dt;
+			if(c.duration != -1 && c.duration < elapsed)
+				super.stopSystem();
+		}
+
+		// life, dead particles are replaced by the last one
+		final float ttl[] = life_;
+		int count = particleCount;
+		for (int i = 0; i < count; ) {
+			ttl[i] -= dt;
+			if (ttl[i] > 0) {
+				++i;
+			} else {
+				--count;
+				if (i != count)
+					moveParticle(count, i);
+			}
+		}
+		particleCount = count;
+
+		if( count == 0 )
+			return 0;
+
+		final float x[] = posX, y[] = posY;
+
+		if( c.emitterMode == kCCParticleModeGravity ) {
+			// Mode A: gravity, direction, tangential accel & radial accel
+			final float dirX[] = mode0, dirY[] = mode1;
+			final float radialAccel[] = mode2, tangentialAccel[] = mode3;
+			final float gx = c.gravityX, gy = c.gravityY;
+
+			for (int i = 0; i < count; ++i) {
+				float px = x[i], py = y[i];
+				float rx = 0, ry = 0;
+				if (px != 0 || py != 0) {
+					float invLen = 1 / (float)Math.sqrt(px * px + py * py);
+					rx = px * invLen;
+					ry = py * invLen;
+				}
+
+				// (gravity + radial + tangential) * dt
+				float ra = radialAccel[i], ta = tangentialAccel[i];
+				float ax = rx * ra - ry * ta + gx;
+				float ay = ry * ra + rx * ta + gy;
+
+				float dx = dirX[i] + ax * dt;
+				float dy = dirY[i] + ay * dt;
+				dirX[i] = dx;
+				dirY[i] = dy;
+				x[i] = px + dx * dt;
+				y[i] = py + dy * dt;
+			}
+		} else {
+			// Mode B: radius movement
+			final float angles[] = mode0, degreesPerSecond[] = mode1;
+			final float radius[] = mode2, deltaRadius[] = mode3;
+
+			for (int i = 0; i < count; ++i) {
+				float a = angles[i] + degreesPerSecond[i] * dt;
+				float r = radius[i] + deltaRadius[i] * dt;
+				angles[i] = a;
+				radius[i] = r;
+
+				x[i] = - (float)Math.cos(a) * r;
+				y[i] = - (float)Math.sin(a) * r;
+			}
+		}
+
+		// color
+		addScaled(colorR, deltaR, dt, count);
+		addScaled(colorG, deltaG, dt, count);
+		addScaled(colorB, deltaB, dt, count);
+		addScaled(colorA, deltaA, dt, count);
+
+		// size
+		final float size[] = size_, dSize[] = deltaSize;
+		for (int i = 0; i < count; ++i) {
+			float s = size[i] + dSize[i] * dt;
+			size[i] = s > 0 ? s : 0;
+		}
+
+		// angle
+		addScaled(rotation, deltaRotation, dt, count);
+
+		writeQuads(count, quadV, quadC);
+		return count;
+	}
+
+	/** dst[i] += delta[i] * dt */
+	private static void addScaled(float dst[], float delta[], float dt, int count) {
+		for (int i = 0; i < count; ++i) {
+			dst[i] += delta[i] * dt;
+		}
+	}
+
+	private void moveParticle(int from, int to) {
+		life_[to] = life_[from];
+		posX[to] = posX[from];
+		posY[to] = posY[from];
+		startPosX[to] = startPosX[from];
+		startPosY[to] = startPosY[from];
+		colorR[to] = colorR[from];
+		colorG[to] = colorG[from];
+		colorB[to] = colorB[from];
+		colorA[to] = colorA[from];
+		deltaR[to] = deltaR[from];
+		deltaG[to] = deltaG[from];
+		deltaB[to] = deltaB[from];
+		deltaA[to] = deltaA[from];
+		size_[to] = size_[from];
+		deltaSize[to] = deltaSize[from];
+		rotation[to] = rotation[from];
+		deltaRotation[to] = deltaRotation[from];
+		mode0[to] = mode0[from];
+		mode1[to] = mode1[from];
+		mode2[to] = mode2[from];
+		mode3[to] = mode3[from];
+	}
+
+	/** fills quad arrays with count live particles */
+	private void writeQuads(int count, float v[], float c[]) {
+		final float x[] = posX, y[] = posY;
+		final float size[] = size_, rot[] = rotation;
+
+		// particles are moved back by the movement of the emitter
+		int positionType = config.positionType;
+		boolean moved = positionType == kCCPositionTypeFree || positionType == kCCPositionTypeRelative;
+		final float cx = emitterX, cy = emitterY;
+
+		for (int i = 0; i < count; ++i) {
+			float px = x[i], py = y[i];
+			if (moved) {
+				px -= cx - startPosX[i];
+				py -= cy - startPosY[i];
+			}
+
+			float size_2 = size[i] / 2;
+			int base = i * 8;
+			if (rot[i] != 0) {
+				float r = - ccMacros.CC_DEGREES_TO_RADIANS(rot[i]);
+				float cr = (float) Math.cos(r);
+				float sr = (float) Math.sin(r);
+
+				// (-s, -s), (s, -s), (-s, s), (s, s) rotated
+				float c1 = size_2 * (cr - sr), c2 = size_2 * (cr + sr);
+				v[base]     = px - c1;	v[base + 1] = py - c2;
+				v[base + 2] = px + c2;	v[base + 3] = py - c1;
+				v[base + 4] = px - c2;	v[base + 5] = py + c1;
+				v[base + 6] = px + c1;	v[base + 7] = py + c2;
+			} else {
+				v[base]     = px - size_2;	v[base + 1] = py - size_2;
+				v[base + 2] = px + size_2;	v[base + 3] = py - size_2;
+				v[base + 4] = px - size_2;	v[base + 5] = py + size_2;
+				v[base + 6] = px + size_2;	v[base + 7] = py + size_2;
+			}
+		}
+
+		final float r[] = colorR, g[] = colorG, b[] = colorB, a[] = colorA;
+		for (int i = 0; i < count; ++i) {
+			float cr = r[i], cg = g[i], cb = b[i], ca = a[i];
+			int base = i * 16;
+			for (int k = 0; k < 16; k += 4) {
+				c[base + k]     = cr;
+				c[base + k + 1] = cg;
+				c[base + k + 2] = cb;
+				c[base + k + 3] = ca;
+			}
+		}
+	}
+
+	@Override
+	public void initTexCoordsWithRect(float rectX, float rectY, float rectW, float rectH) {
+		super.initTexCoordsWithRect(rectX, rectY, rectW, rectH);
+		texCoordsDirty = true;
+	}
+
+	/** copies quads of live particles to the buffers, they are uploaded by draw() */
+	@Override
+	public void postStep() {
+		final int count = quadCount;
+
+		vertices.position(0);
+		BufferUtils.copy(quadVertices, 0, vertices, count * 8);
+		colors.position(0);
+		BufferUtils.copy(quadColors, 0, colors, count * 16);
+
+		super.postStep();
+	}
+
+	/** uploads quads of live particles, texture coordinates only when changed */
+	@Override
+	protected void uploadBuffers(GL11 gl) {
+		final int count = quadCount;
+		if(count == 0)
+			return;
+
+		// for texCoords
+		if (texCoordsDirty) {
+			gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, quadsIDs[0]);
+			texCoords.position(0);
+			gl.glBufferSubData(GL11.GL_ARRAY_BUFFER, 0, texCoords.capacity(), texCoords);
+			texCoordsDirty = false;
+		}
+
+		// for vertices
+		gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, quadsIDs[1]);
+		vertices.position(0);
+		gl.glBufferSubData(GL11.GL_ARRAY_BUFFER, 0, count * 8 * 4, vertices);
+
+		// for colors
+		gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, quadsIDs[2]);
+		colors.position(0);
+		gl.glBufferSubData(GL11.GL_ARRAY_BUFFER, 0, count * 16 * 4, colors);
+
+		// restore the elements, arrays
+		gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, 0);
+	}
+}
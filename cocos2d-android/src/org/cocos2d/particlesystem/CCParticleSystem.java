@@ -7,7 +7,7 @@ import java.util.zip.Inflater;
 
 import javax.microedition.khronos.opengles.GL10;
 
-import org.cocos2d.actions.UpdateCallback;
+import org.cocos2d.actions.IdleUpdateCallback;
 import org.cocos2d.config.ccConfig;
 import org.cocos2d.config.ccMacros;
 import org.cocos2d.nodes.CCNode;
@@ -72,7 +72,7 @@ import android.graphics.BitmapFactory;
  @endcode
 
  */
-public abstract class CCParticleSystem extends CCNode implements CCTextureProtocol, UpdateCallback {
+public abstract class CCParticleSystem extends CCNode implements CCTextureProtocol, IdleUpdateCallback {
 
 	/** The Particle emitter lives forever */
 	public static final int	kCCParticleDurationInfinity = -1;
@@ -560,6 +560,11 @@ public abstract class CCParticleSystem extends CCNode implements CCTextureProtoc
 		return active;
 	}
 
+	/** true if the emitter doesn't emit and no particles are alive */
+	public boolean isUpdateIdle() {
+		return (!active || emissionRate == 0) && particleCount == 0;
+	}
+
 	/**
 	 * Quantity of particles that are being simulated at the moment
 	 */
@@ -711,11 +716,7 @@ public abstract class CCParticleSystem extends CCNode implements CCTextureProtoc
 	protected void initWithNumberOfParticles(int numberOfParticles) {
 		totalParticles = numberOfParticles;
 
-		particles = new CCParticle[totalParticles];
-
-		for (int i = 0; i < totalParticles; i++) {
-			particles[i] = new CCParticle();
-		}
+		allocateParticles();
 
 		// default, active
 		active = true;
@@ -751,6 +752,17 @@ public abstract class CCParticleSystem extends CCNode implements CCTextureProtoc
 		this.scheduleUpdate(1);
 	}
 
+	/** allocates storage of totalParticles particles,
+	 * called before the subclass is constructed, subclasses may keep particles in own arrays
+	 */
+	protected void allocateParticles() {
+		particles = new CCParticle[totalParticles];
+
+		for (int i = 0; i < totalParticles; i++) {
+			particles[i] = new CCParticle();
+		}
+	}
+
 	private void initParticle(CCParticle particle) {
         // timeToLive
         // no negative life. prevent division by 0
@@ -0,0 +1,69 @@
+package org.cocos2d.particlesystem;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/** Worker threads which step particle systems in parallel.
+ *
+ * CCArrayParticleSystem with parallel update enabled submits its step here
+ * from update() and joins it in the next update(), so systems are simulated
+ * while the GL thread ticks other nodes and draws the previous results.
+ * Each system is stepped by one worker at a time, systems don't share state.
+ */
+public class CCParticleUpdateExecutor {
+	private static CCParticleUpdateExecutor _sharedExecutor;
+
+	/** returns the shared executor, one worker per core except the GL thread */
+	public static CCParticleUpdateExecutor sharedExecutor() {
+		synchronized (CCParticleUpdateExecutor.class) {
+			if (_sharedExecutor == null) {
+				int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+				_sharedExecutor = new CCParticleUpdateExecutor(threads);
+			}
+			return _sharedExecutor;
+		}
+	}
+
+	/** stops worker threads of the shared executor, pending steps are still run */
+	public static void purgeSharedExecutor() {
+		synchronized (CCParticleUpdateExecutor.class) {
+			if (_sharedExecutor != null) {
+				_sharedExecutor.shutdown();
+				_sharedExecutor = null;
+			}
+		}
+	}
+
+	private final ExecutorService workers;
+	private final int threadCount;
+
+	public CCParticleUpdateExecutor(int threads) {
+		assert threads > 0 : "CCParticleUpdateExecutor: thread count must be positive";
+
+		threadCount = threads;
+		workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count;
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "CCParticleUpdate-" + (count++));
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/** runs job on a worker thread */
+	void execute(Runnable job) {
+		workers.execute(job);
+	}
+
+	public void shutdown() {
+		workers.shutdown();
+	}
+}
@@ -1,12 +1,16 @@
 package org.cocos2d.particlesystem;
 
+import java.lang.ref.WeakReference;
 import java.nio.FloatBuffer;
 
+import javax.microedition.khronos.opengles.GL10;
 import javax.microedition.khronos.opengles.GL11;
 
 import org.cocos2d.config.ccConfig;
 import org.cocos2d.config.ccMacros;
 import org.cocos2d.nodes.CCDirector;
+import org.cocos2d.opengl.GLResourceHelper;
+import org.cocos2d.opengl.GLResourceHelper.Resource;
 import org.cocos2d.types.CGPoint;
 import org.cocos2d.types.ccBlendFunc;
 import org.cocos2d.types.ccPointSprite;
@@ -23,42 +27,71 @@ import org.cocos2d.utils.BufferProvider;
  
  Limitations:
   * On 3rd gen iPhone devices and iPads, this node performs MUCH slower than CCQuadParticleSystem.
+  * It is updated on the thread which ticks the scheduler, only CCArrayParticleSystem
+    can be updated on worker threads.
+
+ The VBO is created by a GLResourceHelper loader and updated in draw() with
+ the GL it is given, so the system can be recorded on the logic thread,
+ see CCDirector.setLogicThreadEnabled(). Sizes are a client array.
  */
-public class CCPointParticleSystem extends CCParticleSystem {
+public class CCPointParticleSystem extends CCParticleSystem implements Resource {
 	// Array of (x,y, ccColor4F) 
 	FloatBuffer vertices;
 	// Array of (size)
 	FloatBuffer sizeBuffer;
 
 	// vertices buffer id
-	int	verticesID[];    
+	int	verticesID[];
+
+	// set by postStep(), the VBO is updated by draw()
+	boolean buffersDirty;
+
+	private static class PointParticleLoader implements GLResourceHelper.GLResourceLoader {
+		private WeakReference<CCPointParticleSystem> weakRef;
+
+		public PointParticleLoader(CCPointParticleSystem holder) {
+			weakRef = new WeakReference<CCPointParticleSystem>(holder);
+		}
+
+		@Override
+		public void load(Resource res) {
+			CCPointParticleSystem thisp = weakRef.get();
+			if(thisp == null)
+				return;
+
+			GL11 gl = (GL11)CCDirector.gl;
+			thisp.verticesID = new int[1];
+			gl.glGenBuffers(1, thisp.verticesID, 0);
+
+			// initial binding
+			gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, thisp.verticesID[0]);
+			thisp.vertices.position(0);
+			gl.glBufferData(GL11.GL_ARRAY_BUFFER, ccPointSprite.spriteSize*4*thisp.totalParticles, thisp.vertices, GL11.GL_DYNAMIC_DRAW);
+			gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, 0);
+		}
+	}
 
     public CCPointParticleSystem(int numberOfParticles) {
         super(numberOfParticles);
 
-        GL11 gl = (GL11) CCDirector.gl;
-
         vertices = BufferProvider.createFloatBuffer(numberOfParticles * ccPointSprite.spriteSize);
         sizeBuffer = BufferProvider.createFloatBuffer(numberOfParticles);
-        
-        verticesID = new int[2];
-        gl.glGenBuffers(2, verticesID, 0);
 
-        // initial binding
-        gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, verticesID[0]);
-        gl.glBufferData(GL11.GL_ARRAY_BUFFER, ccPointSprite.spriteSize*4*totalParticles, vertices, GL11.GL_DYNAMIC_DRAW);
-        
-        gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, verticesID[1]);
-        gl.glBufferData(GL11.GL_ARRAY_BUFFER, 4*totalParticles, sizeBuffer, GL11.GL_DYNAMIC_DRAW);
-        
-        gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, 0);
+        GLResourceHelper.sharedHelper().addLoader(this, new PointParticleLoader(this), true);
     }
 
     @Override
     public void finalize() throws Throwable {
+        final int[] ids = verticesID;
+        if (ids != null) {
+            GLResourceHelper.sharedHelper().perform(new GLResourceHelper.GLResorceTask() {
+                @Override
+                public void perform(GL10 gl) {
+                    ((GL11)gl).glDeleteBuffers(1, ids, 0);
+                }
+            });
+        }
         vertices = null;
-        GL11 gl = (GL11) CCDirector.gl;
-        gl.glDeleteBuffers(2, verticesID, 0);
 
         super.finalize();
     }
@@ -77,22 +110,25 @@ public class CCPointParticleSystem extends CCParticleSystem {
         sizeBuffer.put(particleIdx, p.size);
     }
 
+    @Override
     public void postStep() {
-    	GL11 gl = (GL11) CCDirector.gl;
-        gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, verticesID[0]);
-        gl.glBufferSubData(GL11.GL_ARRAY_BUFFER, 0, ccPointSprite.spriteSize*4*particleCount, vertices);
-        
-        gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, verticesID[1]);
-        gl.glBufferSubData(GL11.GL_ARRAY_BUFFER, 0, 4*particleCount, sizeBuffer);
-        
-        gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, 0);
+    	buffersDirty = true;
     }
 
-    public void draw() {
-        if (particleIdx==0)
+    @Override
+    public void draw(GL10 gle) {
+        if (particleIdx==0 || verticesID == null)
             return;
 
-        GL11 gl = (GL11) CCDirector.gl;
+        GL11 gl = (GL11) gle;
+
+        if (buffersDirty) {
+        	buffersDirty = false;
+        	gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, verticesID[0]);
+        	vertices.position(0);
+        	gl.glBufferSubData(GL11.GL_ARRAY_BUFFER, 0, ccPointSprite.spriteSize*4*particleIdx, vertices);
+        }
+
         // Default GL states: GL_TEXTURE_2D, GL_VERTEX_ARRAY, GL_COLOR_ARRAY, GL_TEXTURE_COORD_ARRAY
         // Needed states: GL_TEXTURE_2D, GL_VERTEX_ARRAY, GL_COLOR_ARRAY
         // Unneeded states: GL_TEXTURE_COORD_ARRAY
@@ -109,8 +145,10 @@ public class CCPointParticleSystem extends CCParticleSystem {
 
         gl.glColorPointer(4, GL11.GL_FLOAT, ccPointSprite.spriteSize*4, 2*4); // ccPointSprite.color
 
-        gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, verticesID[1]);
+        // sizes are read from client memory, no buffer may be bound
+        gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, 0);
         gl.glEnableClientState(GL11.GL_POINT_SIZE_ARRAY_OES);
+        sizeBuffer.position(0);
         gl.glPointSizePointerOES(GL11.GL_FLOAT, 0, sizeBuffer); // ccPointSprite.size
 
 
@@ -126,9 +164,6 @@ public class CCPointParticleSystem extends CCParticleSystem {
         if( newBlend )
             gl.glBlendFunc(ccConfig.CC_BLEND_SRC, ccConfig.CC_BLEND_DST);
 
-        // unbind VBO buffer
-        gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, 0);
-
         gl.glDisableClientState(GL11.GL_POINT_SIZE_ARRAY_OES);
         gl.glDisable(GL11.GL_POINT_SPRITE_OES);
 
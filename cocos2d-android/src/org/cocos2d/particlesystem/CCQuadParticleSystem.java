@@ -33,6 +33,8 @@ import com.badlogic.gdx.utils.BufferUtils;
   - On 3rd gen iPhone and iPads: It is MUCH faster than CCPointParticleSystem
   - It consumes more RAM and more GPU memory than CCPointParticleSystem
   - It supports subrects
+  - It is updated on the thread which ticks the scheduler, use CCArrayParticleSystem
+    for updates on worker threads, see CCArrayParticleSystem.setParallelUpdate()
  @since v0.8
  */
 public class CCQuadParticleSystem extends CCParticleSystem implements Resource {
@@ -329,13 +331,16 @@ public class CCQuadParticleSystem extends CCParticleSystem implements Resource {
 		}
 	}
 
+	// set by postStep(), buffers are uploaded by draw() with the GL it is given
+	boolean buffersDirty;
+
 	@Override
 	public void postStep(){
-		if(quadsIDs == null)
-			return;
-		
-		GL11 gl = (GL11)CCDirector.gl;
+		buffersDirty = true;
+	}
 
+	/** copies particle data to the VBOs, called by draw() after postStep() */
+	protected void uploadBuffers(GL11 gl) {
 		// for texCoords
 		gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, quadsIDs[0]);
 		texCoords.position(0);
@@ -367,6 +372,11 @@ public class CCQuadParticleSystem extends CCParticleSystem implements Resource {
 		// Unneeded states: -
 		GL11 gl = (GL11)gle;
 
+		if (buffersDirty) {
+			buffersDirty = false;
+			uploadBuffers(gl);
+		}
+
 		gl.glBindTexture(GL11.GL_TEXTURE_2D, texture.name());
 		// for texCoords
 		gl.glBindBuffer(GL11.GL_ARRAY_BUFFER, quadsIDs[0]);
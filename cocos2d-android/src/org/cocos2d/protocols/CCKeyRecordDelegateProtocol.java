@@ -0,0 +1,14 @@
+package org.cocos2d.protocols;
+
+import org.cocos2d.events.CCKeyRecord;
+
+/**
+  Key delegate which gets the dispatcher's key records instead of KeyEvent.
+
+  The record is owned by the dispatcher and valid only inside of the call.
+  No KeyEvent is made for these delegates, so they work without android.
+  */
+public interface CCKeyRecordDelegateProtocol {
+    public boolean ccKeyDown(CCKeyRecord key);
+    public boolean ccKeyUp(CCKeyRecord key);
+}
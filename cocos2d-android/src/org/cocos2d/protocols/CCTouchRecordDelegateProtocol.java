@@ -0,0 +1,23 @@
+package org.cocos2d.protocols;
+
+import org.cocos2d.events.CCTouchQueue;
+
+/**
+  Touch delegate which gets the dispatcher's touch records instead of MotionEvent.
+
+  Claiming and swallowing work as for CCTouchDelegateProtocol. The record has
+  all pointers and the coalesced move samples as history. It is owned by the
+  dispatcher and valid only inside of the call, copy what you need to keep.
+  No MotionEvent is made for these delegates, so they work without android.
+  */
+public interface CCTouchRecordDelegateProtocol {
+    /** Return true to claim the touch. */
+    public boolean ccTouchBegan(CCTouchQueue.Record touch);
+
+    public boolean ccTouchMoved(CCTouchQueue.Record touch);
+
+    public boolean ccTouchEnded(CCTouchQueue.Record touch);
+
+    public boolean ccTouchCancelled(CCTouchQueue.Record touch);
+
+}
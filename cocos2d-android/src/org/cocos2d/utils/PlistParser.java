@@ -69,6 +69,7 @@ public class PlistParser extends DefaultHandler {
 	private static Object parsePlist(InputStream in) {
         try {
         	SAXParserFactory factory = SAXParserFactory.newInstance();
+        	factory.setNamespaceAware(true); // startElement() matches localName
             SAXParser parser = factory.newSAXParser();
             PlistParser handler = new PlistParser();
             
@@ -0,0 +1,187 @@
+package org.cocos2d.utils;
+
+/**
+ * Skyline bottom-left rectangle packer for a fixed size page.
+ * The skyline is kept in plain int arrays, insert() doesn't generate garbage.
+ *
+ * Rectangles can't be removed one by one, call reset() and insert
+ * live rectangles again to defragment the page.
+ */
+public class SkylinePacker {
+	private final int width_;
+	private final int height_;
+	private final int padding_;
+
+	// skyline segments sorted by x, they cover whole width of the page
+	private int[] nodeX;
+	private int[] nodeY;
+	private int[] nodeW;
+	private int nodeCount;
+
+	private int usedArea_;
+
+	/**
+	 * @param width page width in pixels
+	 * @param height page height in pixels
+	 * @param padding free pixels kept to the right and to the top of each rectangle,
+	 * not needed at the edges of the page
+	 */
+	public SkylinePacker(int width, int height, int padding) {
+		width_ = width;
+		height_ = height;
+		padding_ = padding;
+
+		nodeX = new int[16];
+		nodeY = new int[16];
+		nodeW = new int[16];
+		reset();
+	}
+
+	public int getWidth() {
+		return width_;
+	}
+
+	public int getHeight() {
+		return height_;
+	}
+
+	/** area of inserted rectangles without padding */
+	public int getUsedArea() {
+		return usedArea_;
+	}
+
+	/** used area to page area ratio */
+	public float getOccupancy() {
+		return (float)usedArea_ / (width_ * height_);
+	}
+
+	/** removes all rectangles */
+	public void reset() {
+		nodeCount = 1;
+		nodeX[0] = 0;
+		nodeY[0] = 0;
+		nodeW[0] = width_;
+		usedArea_ = 0;
+	}
+
+	/**
+	 * Places rectangle at the lowest possible position.
+	 * @param out receives x at out[0] and y at out[1]
+	 * @return false if rectangle doesn't fit the page
+	 */
+	public boolean insert(int w, int h, int[] out) {
+		int pw = w + padding_;
+		int ph = h + padding_;
+
+		int bestIndex = -1;
+		int bestTop = Integer.MAX_VALUE;
+		int bestWidth = Integer.MAX_VALUE;
+		int bestY = 0;
+
+		for (int i = 0; i < nodeCount; ++i) {
+			int y = fit(i, pw, ph);
+			if (y < 0)
+				continue;
+
+			int top = y + ph;
+			if (top < bestTop || (top == bestTop && nodeW[i] < bestWidth)) {
+				bestIndex = i;
+				bestTop = top;
+				bestWidth = nodeW[i];
+				bestY = y;
+			}
+		}
+
+		if (bestIndex < 0)
+			return false;
+
+		int x = nodeX[bestIndex];
+		out[0] = x;
+		out[1] = bestY;
+
+		// padding past the right edge is cut off
+		addLevel(bestIndex, x, bestY + ph, Math.min(pw, width_ - x));
+		usedArea_ += w * h;
+		return true;
+	}
+
+	/** returns y where padded rectangle starting at node index fits, or -1,
+	 * padding may reach past the right and the top edge of the page */
+	private int fit(int index, int w, int h) {
+		int x = nodeX[index];
+		if (x + w - padding_ > width_)
+			return -1;
+
+		int y = 0;
+		int left = Math.min(w, width_ - x);
+		int i = index;
+		while (left > 0) {
+			if (nodeY[i] > y)
+				y = nodeY[i];
+			if (y + h - padding_ > height_)
+				return -1;
+			left -= nodeW[i];
+			++i;
+		}
+		return y;
+	}
+
+	private void addLevel(int index, int x, int y, int w) {
+		ensureCapacity(nodeCount + 1);
+
+		System.arraycopy(nodeX, index, nodeX, index + 1, nodeCount - index);
+		System.arraycopy(nodeY, index, nodeY, index + 1, nodeCount - index);
+		System.arraycopy(nodeW, index, nodeW, index + 1, nodeCount - index);
+		nodeX[index] = x;
+		nodeY[index] = y;
+		nodeW[index] = w;
+		nodeCount++;
+
+		// cut segments covered by the new one
+		int right = x + w;
+		int i = index + 1;
+		while (i < nodeCount && nodeX[i] < right) {
+			int shrink = right - nodeX[i];
+			if (shrink < nodeW[i]) {
+				nodeX[i] += shrink;
+				nodeW[i] -= shrink;
+				break;
+			}
+			removeNode(i);
+		}
+
+		// merge neighbours of the same height
+		for (i = 0; i < nodeCount - 1; ) {
+			if (nodeY[i] == nodeY[i + 1]) {
+				nodeW[i] += nodeW[i + 1];
+				removeNode(i + 1);
+			} else {
+				++i;
+			}
+		}
+	}
+
+	private void removeNode(int i) {
+		int tail = nodeCount - i - 1;
+		System.arraycopy(nodeX, i + 1, nodeX, i, tail);
+		System.arraycopy(nodeY, i + 1, nodeY, i, tail);
+		System.arraycopy(nodeW, i + 1, nodeW, i, tail);
+		nodeCount--;
+	}
+
+	private void ensureCapacity(int size) {
+		if (size <= nodeX.length)
+			return;
+
+		int newSize = nodeX.length * 2;
+		int[] x = new int[newSize];
+		int[] y = new int[newSize];
+		int[] w = new int[newSize];
+		System.arraycopy(nodeX, 0, x, 0, nodeCount);
+		System.arraycopy(nodeY, 0, y, 0, nodeCount);
+		System.arraycopy(nodeW, 0, w, 0, nodeCount);
+		nodeX = x;
+		nodeY = y;
+		nodeW = w;
+	}
+}
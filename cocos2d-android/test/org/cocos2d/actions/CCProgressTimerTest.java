@@ -0,0 +1,146 @@
+package org.cocos2d.actions;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CCProgressTimerTest {
+	private static final String kTexture = "test/progress.pkm";
+	private static final float kSize = 64;
+	private static final float kEpsilon = 1e-3f;
+	private static final float[] kPercents = { 0, 12.5f, 50, 87.5f, 100 };
+
+	private HeadlessDirector director_;
+
+	@Before
+	public void setUp() {
+		director_ = new HeadlessDirector(480, 320);
+		director_.getContent().putTexture(kTexture, (int)kSize, (int)kSize);
+	}
+
+	@After
+	public void tearDown() {
+		director_.flushResources();
+		director_.end();
+	}
+
+	/** radial clockwise shapes in node space, 64x64 texture, for kPercents */
+	private static final float[][] kRadialCW = {
+		// midpoint, 12 o'clock, hitpoint at 12 o'clock
+		{ 32,32, 32,64, 32,64 },
+		// the ray hits the top right corner, the corner is added before the hitpoint
+		{ 32,32, 32,64, 64,64, 64,64 },
+		// top right, bottom right, hitpoint at the bottom middle
+		{ 32,32, 32,64, 64,64, 64,0, 32,0 },
+		// three corners, the ray hits the top left corner on the top edge
+		{ 32,32, 32,64, 64,64, 64,0, 0,0, 0,64, 0,64 },
+		// all four corners, back at 12 o'clock
+		{ 32,32, 32,64, 64,64, 64,0, 0,0, 0,64, 32,64 },
+	};
+
+	/** radial counter-clockwise shapes, corner hits round the other way than kRadialCW */
+	private static final float[][] kRadialCCW = {
+		{ 32,32, 32,64, 32,64 },
+		// the ray hits the top left corner on the top edge
+		{ 32,32, 32,64, 0,64 },
+		{ 32,32, 32,64, 0,64, 0,0, 32,0 },
+		// the ray hits the top right corner on the right edge
+		{ 32,32, 32,64, 0,64, 0,0, 64,0, 64,64 },
+		{ 32,32, 32,64, 0,64, 0,0, 64,0, 64,64, 32,64 },
+	};
+
+	private CCProgressTimer timer(int type) {
+		CCProgressTimer timer = CCProgressTimer.progress(kTexture);
+		timer.setType(type);
+		return timer;
+	}
+
+	private static void setPercentage(CCProgressTimer timer, float p) {
+		timer.setPercentage(p);
+		// 0 on a new timer doesn't change the percentage
+		if (timer.vertexDataCount_ == 0)
+			timer.updateProgress();
+	}
+
+	/** checks vertices and that texture coordinates match them */
+	private static void assertShape(String what, float[] expected, CCProgressTimer timer) {
+		float[] v = new float[timer.vertexDataCount_ * 2];
+		timer.vertexCoordinates.get(v);
+		timer.vertexCoordinates.position(0);
+		float[] uv = new float[v.length];
+		timer.textureCoordinates.get(uv);
+		timer.textureCoordinates.position(0);
+
+		assertEquals(what + " vertex count " + Arrays.toString(v), expected.length / 2, timer.vertexDataCount_);
+		for (int i = 0; i < v.length; i += 2) {
+			assertEquals(what + " x" + i / 2, expected[i], v[i], kEpsilon);
+			assertEquals(what + " y" + i / 2, expected[i+1], v[i+1], kEpsilon);
+			assertEquals(what + " s" + i / 2, v[i] / kSize, uv[i], kEpsilon);
+			assertEquals(what + " t" + i / 2, 1 - v[i+1] / kSize, uv[i+1], kEpsilon);
+		}
+	}
+
+	/** a new timer and one reused for all percentages, up and then down, give the same shapes */
+	private void checkShapes(int type, float[][] expected) {
+		CCProgressTimer reused = timer(type);
+		for (int i = 0; i < kPercents.length; i++) {
+			String what = type + " at " + kPercents[i] + "%";
+			CCProgressTimer timer = timer(type);
+			setPercentage(timer, kPercents[i]);
+			assertShape(what, expected[i], timer);
+
+			setPercentage(reused, kPercents[i]);
+			assertShape(what + " reused", expected[i], reused);
+		}
+		for (int i = kPercents.length - 1; i >= 0; i--) {
+			setPercentage(reused, kPercents[i]);
+			assertShape(type + " at " + kPercents[i] + "% going down", expected[i], reused);
+		}
+	}
+
+	@Test
+	public void radialClockwise() {
+		checkShapes(CCProgressTimer.kCCProgressTimerTypeRadialCW, kRadialCW);
+	}
+
+	@Test
+	public void radialCounterClockwise() {
+		checkShapes(CCProgressTimer.kCCProgressTimerTypeRadialCCW, kRadialCCW);
+	}
+
+	/** bar shapes for kPercents, NaN is replaced by the filled length and -1 by the rest */
+	private static float[][] bars(float[] empty) {
+		float[][] ret = new float[kPercents.length][];
+		for (int i = 0; i < ret.length; i++) {
+			float a = kPercents[i] / 100 * kSize;
+			ret[i] = empty.clone();
+			for (int k = 0; k < ret[i].length; k++) {
+				if (Float.isNaN(ret[i][k]))
+					ret[i][k] = a;
+				else if (ret[i][k] < 0)
+					ret[i][k] = kSize - a;
+			}
+		}
+		return ret;
+	}
+
+	@Test
+	public void bars() {
+		final float A = Float.NaN;	// grows with the percentage
+		final float R = -1;			// shrinks with the percentage
+
+		checkShapes(CCProgressTimer.kCCProgressTimerTypeHorizontalBarLR,
+				bars(new float[] { 0,64, 0,0, A,64, A,0 }));
+		checkShapes(CCProgressTimer.kCCProgressTimerTypeHorizontalBarRL,
+				bars(new float[] { R,0, R,64, 64,0, 64,64 }));
+		checkShapes(CCProgressTimer.kCCProgressTimerTypeVerticalBarBT,
+				bars(new float[] { 0,A, 0,0, 64,A, 64,0 }));
+		checkShapes(CCProgressTimer.kCCProgressTimerTypeVerticalBarTB,
+				bars(new float[] { 0,64, 0,R, 64,64, 64,R }));
+	}
+}
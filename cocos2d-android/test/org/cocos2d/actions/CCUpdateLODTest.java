@@ -0,0 +1,213 @@
+package org.cocos2d.actions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.cocos2d.actions.base.CCRepeatForever;
+import org.cocos2d.actions.interval.CCMoveBy;
+import org.cocos2d.actions.interval.CCRotateBy;
+import org.cocos2d.actions.interval.CCSequence;
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.nodes.CCNode;
+import org.cocos2d.nodes.CCScreenUpdateLOD;
+import org.cocos2d.types.CGPoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CCUpdateLODTest {
+	private static final float kDelta = 1 / 60.0f;
+	private static final int kInterval = 4;
+
+	private static final CCUpdateLOD kEveryFourth = new CCUpdateLOD() {
+		public int getUpdateInterval(Object target) {
+			return kInterval;
+		}
+	};
+
+	/** sums dt it is given */
+	static class Counter implements UpdateCallback {
+		double time;
+		int calls;
+
+		public void update(float d) {
+			time += d;
+			calls++;
+		}
+	}
+
+	private HeadlessDirector director_;
+	private CCScheduler scheduler_;
+
+	@Before
+	public void setUp() {
+		director_ = new HeadlessDirector(480, 320);
+		scheduler_ = CCScheduler.sharedScheduler();
+	}
+
+	@After
+	public void tearDown() {
+		scheduler_.setUpdateLOD(null);
+		CCActionManager.sharedManager().setUpdateLOD(null);
+		director_.end();
+	}
+
+	@Test
+	public void skippedTicksAddTheirDelta() {
+		Counter update = new Counter();
+		Counter timer = new Counter();
+		scheduler_.scheduleUpdate(update, 0, false);
+		scheduler_.schedule(timer, timer, 0, false);
+
+		CCNode node = CCNode.node();
+		CCScene scene = CCScene.node();
+		scene.addChild(node);
+		director_.runWithScene(scene);
+		node.runAction(CCMoveBy.action(1, CGPoint.ccp(100, 0)));
+
+		scheduler_.setUpdateLOD(kEveryFourth);
+		CCActionManager.sharedManager().setUpdateLOD(kEveryFourth);
+		try {
+			final int ticks = 100;
+			for (int i = 0; i < ticks; ++i)
+				scheduler_.tick(kDelta);
+
+			// at most interval - 1 ticks are still to be given,
+			// CCTimer drops dt of its first tick without LOD too
+			assertEquals(0, ticks * kDelta - update.time, (kInterval - 1) * kDelta + 1e-4);
+			assertEquals(0, (ticks - 1) * kDelta - timer.time, (kInterval - 1) * kDelta + 1e-4);
+			for (Counter c : new Counter[] { update, timer })
+				assertEquals(ticks / (double)kInterval, c.calls, 1.5);
+			// the action ends at its end position, not short of it
+			assertEquals(100, node.getPositionRef().x, 1e-3f);
+		} finally {
+			scheduler_.unscheduleUpdate(update);
+			scheduler_.unscheduleAllSelectors(timer);
+		}
+	}
+
+	@Test
+	public void changingPolicyDeliversPendingDelta() {
+		Counter update = new Counter();
+		Counter timer = new Counter();
+		scheduler_.scheduleUpdate(update, 0, false);
+		scheduler_.schedule(timer, timer, 0, false);
+
+		CCNode node = CCNode.node();
+		CCScene scene = CCScene.node();
+		scene.addChild(node);
+		director_.runWithScene(scene);
+		node.runAction(CCMoveBy.action(1, CGPoint.ccp(60, 0)));
+
+		final CCActionManager actions = CCActionManager.sharedManager();
+		try {
+			// switched off and on again in the middle of intervals
+			final int[] ticksPerSession = { 6, 5, 7, 3 };
+			int ticks = 0;
+			for (int session = 0; session < ticksPerSession.length; ++session) {
+				final CCUpdateLOD lod = session % 2 == 0 ? kEveryFourth : null;
+				scheduler_.setUpdateLOD(lod);
+				actions.setUpdateLOD(lod);
+				for (int i = 0; i < ticksPerSession[session]; ++i)
+					scheduler_.tick(kDelta);
+				ticks += ticksPerSession[session];
+			}
+			// off for the last ticks, everything pending is given,
+			// timers and interval actions drop dt of their first tick
+			assertEquals(ticks * kDelta, update.time, 1e-5);
+			assertEquals((ticks - 1) * kDelta, timer.time, 1e-5);
+			assertEquals(60 * (ticks - 1) * kDelta, node.getPositionRef().x, 1e-3f);
+
+			// on again, nothing of earlier sessions is given twice
+			scheduler_.setUpdateLOD(kEveryFourth);
+			actions.setUpdateLOD(kEveryFourth);
+			scheduler_.tick(kDelta);
+			assertEquals((ticks + 1) * kDelta, update.time, 1e-5);
+			assertEquals(60 * ticks * kDelta, node.getPositionRef().x, 1e-3f);
+		} finally {
+			scheduler_.unscheduleUpdate(update);
+			scheduler_.unscheduleAllSelectors(timer);
+		}
+	}
+
+	@Test
+	public void targetsOfSameIntervalAreStaggered() {
+		Counter[] counters = new Counter[8];
+		for (int i = 0; i < counters.length; ++i) {
+			counters[i] = new Counter();
+			scheduler_.scheduleUpdate(counters[i], 0, false);
+		}
+		scheduler_.setUpdateLOD(kEveryFourth);
+		try {
+			// all of them are updated in the first tick, which gives their interval
+			scheduler_.tick(kDelta);
+			for (int tick = 0; tick < 12; ++tick) {
+				final int before = calls(counters);
+				scheduler_.tick(kDelta);
+				assertEquals("updates in tick " + tick, counters.length / kInterval, calls(counters) - before);
+			}
+		} finally {
+			for (Counter c : counters)
+				scheduler_.unscheduleUpdate(c);
+		}
+	}
+
+	private static int calls(Counter[] counters) {
+		int calls = 0;
+		for (Counter c : counters)
+			calls += c.calls;
+		return calls;
+	}
+
+	@Test
+	public void screenLODTicksDontAllocate() {
+		java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		assumeTrue(mx instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)mx;
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		// nodes on the screen, next to it and far away
+		CCScene scene = CCScene.node();
+		Counter[] counters = new Counter[200];
+		for (int i = 0; i < counters.length; ++i) {
+			CCNode node = CCNode.node();
+			node.setContentSize(16, 16);
+			node.setPosition((i % 20) * 100 - 500, (i / 20) * 100 - 300);
+			scene.addChild(node);
+			node.runAction(CCRepeatForever.action(CCSequence.actions(
+					CCMoveBy.action(0.5f, CGPoint.ccp(10, 0)), CCRotateBy.action(0.5f, 90),
+					CCMoveBy.action(0.5f, CGPoint.ccp(-10, 0)))));
+			counters[i] = new Counter();
+			scheduler_.scheduleUpdate(counters[i], 0, false);
+		}
+		director_.runWithScene(scene);
+
+		CCScreenUpdateLOD lod = new CCScreenUpdateLOD();
+		scheduler_.setUpdateLOD(lod);
+		CCActionManager.sharedManager().setUpdateLOD(lod);
+		try {
+			for (int i = 0; i < 600; ++i)
+				scheduler_.tick(kDelta);
+
+			// a rarely taken path may allocate once, see CCActionTemplateTest
+			final long id = Thread.currentThread().getId();
+			long allocated = 0;
+			for (int window = 0; window < 5; ++window) {
+				final long start = threads.getThreadAllocatedBytes(id);
+				for (int i = 0; i < 600; ++i)
+					scheduler_.tick(kDelta);
+				allocated = threads.getThreadAllocatedBytes(id) - start;
+				if (allocated == 0)
+					break;
+			}
+			assertEquals("bytes allocated by 600 warm ticks", 0, allocated);
+		} finally {
+			for (Counter c : counters)
+				scheduler_.unscheduleUpdate(c);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package org.cocos2d.actions.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.cocos2d.actions.CCScheduler;
+import org.cocos2d.actions.interval.CCMoveBy;
+import org.cocos2d.actions.interval.CCRotateBy;
+import org.cocos2d.actions.interval.CCSequence;
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.nodes.CCNode;
+import org.cocos2d.types.CGPoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CCActionTemplateTest {
+	private static final int kNodes = 200;
+	private static final int kRunsPerTick = 10;
+	private static final int kWarmupTicks = 600;
+	private static final int kTicks = 600;
+	private static final int kWindows = 5;
+
+	private HeadlessDirector director_;
+	private CCNode[] nodes_;
+	private CCActionTemplate template_;
+	private int next_;
+
+	@Before
+	public void setUp() {
+		director_ = new HeadlessDirector(480, 320);
+		CCScene scene = CCScene.node();
+		nodes_ = new CCNode[kNodes];
+		for (int i = 0; i < kNodes; ++i) {
+			nodes_[i] = CCNode.node();
+			scene.addChild(nodes_[i]);
+		}
+		director_.runWithScene(scene);
+
+		template_ = CCActionTemplate.make(CCSequence.actions(CCMoveBy.action(0.5f, CGPoint.ccp(10, 0)),
+				CCRotateBy.action(0.5f, 90), CCMoveBy.action(0, CGPoint.ccp(-10, 0))));
+	}
+
+	@After
+	public void tearDown() {
+		director_.end();
+	}
+
+	/** runs pooled instances and ticks the action manager once */
+	private void tick() {
+		for (int i = 0; i < kRunsPerTick; ++i) {
+			nodes_[next_].runAction(template_);
+			next_ = (next_ + 1) % kNodes;
+		}
+		CCScheduler.sharedScheduler().tick(1 / 60.0f);
+	}
+
+	@Test
+	public void instancesAreReused() {
+		for (int i = 0; i < kWarmupTicks; ++i)
+			tick();
+		final int created = template_.getCreatedCount();
+		for (int i = 0; i < kTicks; ++i)
+			tick();
+
+		assertEquals(created, template_.getCreatedCount());
+		assertEquals((kWarmupTicks + kTicks) * kRunsPerTick, template_.getObtainedCount());
+	}
+
+	@Test
+	public void steadyStateTicksDontAllocate() {
+		java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		assumeTrue(mx instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)mx;
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		for (int i = 0; i < kWarmupTicks; ++i)
+			tick();
+
+		// the first run of a rarely taken path may still allocate once, e.g. to
+		// resolve a string constant, steady growth allocates in every window
+		final long id = Thread.currentThread().getId();
+		long allocated = 0;
+		for (int window = 0; window < kWindows; ++window) {
+			final long start = threads.getThreadAllocatedBytes(id);
+			for (int i = 0; i < kTicks; ++i)
+				tick();
+			allocated = threads.getThreadAllocatedBytes(id) - start;
+			if (allocated == 0)
+				break;
+		}
+
+		assertEquals("bytes allocated by " + kTicks + " warm ticks", 0, allocated);
+	}
+}
@@ -0,0 +1,207 @@
+package org.cocos2d.actions.grid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.cocos2d.actions.tile.CCSplitRows;
+import org.cocos2d.actions.tile.CCWavesTiles3D;
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.grid.CCGrid3D;
+import org.cocos2d.grid.CCTiledGrid3D;
+import org.cocos2d.nodes.CCNode;
+import org.cocos2d.types.CGPoint;
+import org.cocos2d.types.ccGridSize;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** effects give the same vertices as the per vertex formulas they were written from */
+public class CCGridActionTest {
+	private static final float kEpsilon = 1e-3f;
+	private static final float[] kTimes = { 0, 0.125f, 0.5f, 0.8f, 1 };
+
+	private HeadlessDirector director_;
+	private CCNode node_;
+
+	@Before
+	public void setUp() {
+		director_ = new HeadlessDirector(480, 320);
+		node_ = CCNode.node();
+	}
+
+	@After
+	public void tearDown() {
+		director_.flushResources();
+		director_.end();
+	}
+
+	private static float waves3DZ(float x, float y, float t, int waves, float amp) {
+		return (float)(Math.sin(Math.PI*t*waves*2 + (y+x) * .01f) * amp);
+	}
+
+	private static float ripple3DZ(float x, float y, float t, CGPoint pos, float radius, int waves, float amp) {
+		float r = CGPoint.ccpLength(CGPoint.ccpSub(pos, CGPoint.ccp(x, y)));
+		if (r >= radius)
+			return 0;
+		r = radius - r;
+		float rate = (float)Math.pow(r / radius, 2);
+		return (float)(Math.sin(t*Math.PI*waves*2 + r * 0.1f) * amp * rate);
+	}
+
+	private static void assertVertex(CCGrid3D g, int x, int y, float ex, float ey, float ez) {
+		float[] v = g.getVertexArray();
+		int idx = g.vertexIndex(x, y);
+		String at = "vertex " + x + "," + y;
+		assertEquals(at, ex, v[idx], kEpsilon);
+		assertEquals(at, ey, v[idx+1], kEpsilon);
+		assertEquals(at, ez, v[idx+2], kEpsilon);
+	}
+
+	@Test
+	public void waves3DMatchesFormula() {
+		CCWaves3D action = CCWaves3D.action(2, 20, ccGridSize.ccg(4, 3), 1);
+		action.start(node_);
+		CCGrid3D g = action.getGrid3D();
+		CGPoint step = g.getStep();
+
+		for (float t : kTimes) {
+			action.update(t);
+			for (int x = 0; x <= 4; x++) {
+				for (int y = 0; y <= 3; y++) {
+					float vx = x * step.x;
+					float vy = y * step.y;
+					assertVertex(g, x, y, vx, vy, waves3DZ(vx, vy, t, 2, 20));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void ripple3DMatchesFormula() {
+		CGPoint pos = CGPoint.ccp(200, 150);
+		CCRipple3D action = CCRipple3D.action(pos, 240, 3, 30, ccGridSize.ccg(8, 6), 1);
+		action.start(node_);
+		CCGrid3D g = action.getGrid3D();
+		CGPoint step = g.getStep();
+
+		for (float t : kTimes) {
+			action.update(t);
+			for (int x = 0; x <= 8; x++) {
+				for (int y = 0; y <= 6; y++) {
+					float vx = x * step.x;
+					float vy = y * step.y;
+					assertVertex(g, x, y, vx, vy, ripple3DZ(vx, vy, t, pos, 240, 3, 30));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void wavesTiles3DMatchesFormula() {
+		CCWavesTiles3D action = CCWavesTiles3D.action(2, 15, ccGridSize.ccg(3, 2), 1);
+		action.start(node_);
+		CCTiledGrid3D g = action.getTiledGrid();
+		CGPoint step = g.getStep();
+		float[] v = g.getVertexArray();
+
+		for (float t : kTimes) {
+			action.update(t);
+			for (int x = 0; x < 3; x++) {
+				for (int y = 0; y < 2; y++) {
+					float x1 = x * step.x;
+					float y1 = y * step.y;
+					// all corners get z of the bottom left one
+					float z = waves3DZ(x1, y1, t, 2, 15);
+					float[] expected = {
+						x1, y1, z,
+						x1 + step.x, y1, z,
+						x1, y1 + step.y, z,
+						x1 + step.x, y1 + step.y, z,
+					};
+					int idx = g.tileIndex(x, y);
+					for (int k = 0; k < expected.length; k++)
+						assertEquals("tile " + x + "," + y + " float " + k, expected[k], v[idx + k], kEpsilon);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void splitRowsMovesWholeTiles() {
+		CCSplitRows action = CCSplitRows.action(4, 1);
+		action.start(node_);
+		CCTiledGrid3D g = action.getTiledGrid();
+		float[] orig = g.getOriginalVertexArray();
+		float[] v = g.getVertexArray();
+
+		for (float t : kTimes) {
+			action.update(t);
+			for (int y = 0; y < 4; y++) {
+				float dx = (y % 2 == 0 ? -1 : 1) * 480 * t;
+				int idx = g.tileIndex(0, y);
+				for (int k = idx; k < idx + 12; k += 3) {
+					assertEquals(orig[k] + dx, v[k], kEpsilon);
+					assertEquals(orig[k+1], v[k+1], kEpsilon);
+					assertEquals(orig[k+2], v[k+2], kEpsilon);
+				}
+			}
+		}
+
+		// moveTile always starts from the original tile
+		g.moveTile(0, 1, 5, 6, 7);
+		g.moveTile(0, 1, 1, 2, 3);
+		int idx = g.tileIndex(0, 1);
+		assertEquals(orig[idx] + 1, v[idx], kEpsilon);
+		assertEquals(orig[idx+1] + 2, v[idx+1], kEpsilon);
+		assertEquals(orig[idx+2] + 3, v[idx+2], kEpsilon);
+
+		g.resetTiles();
+		for (int k = 0; k < v.length; k++)
+			assertEquals(orig[k], v[k], 0);
+	}
+
+	@Test
+	public void reusedGridStartsFromLastVertices() {
+		ccGridSize size = ccGridSize.ccg(4, 3);
+		CCWaves3D waves = CCWaves3D.action(2, 20, size, 1);
+		waves.start(node_);
+		CCGrid3D g = waves.getGrid3D();
+		assertTrue(g.isActive());
+		waves.update(0.3f);
+		float[] waved = g.getVertexArray().clone();
+		waves.stop();
+
+		CCReuseGrid.action(1).start(node_);
+		assertEquals(1, g.reuseGrid());
+
+		CGPoint pos = CGPoint.ccp(200, 150);
+		CCRipple3D ripple = CCRipple3D.action(pos, 240, 3, 30, size, 1);
+		ripple.start(node_);
+		assertSame(g, node_.getGrid());
+		assertEquals(0, g.reuseGrid());
+
+		ripple.update(0.6f);
+		CGPoint step = g.getStep();
+		for (int x = 0; x <= 4; x++) {
+			for (int y = 0; y <= 3; y++) {
+				float vx = x * step.x;
+				float vy = y * step.y;
+				float z = waved[g.vertexIndex(x, y) + 2];
+				assertVertex(g, x, y, vx, vy, z + ripple3DZ(vx, vy, 0.6f, pos, 240, 3, 30));
+			}
+		}
+		ripple.stop();
+
+		// nothing left to reuse, the next effect gets a flat grid
+		CCWaves3D again = CCWaves3D.action(2, 20, size, 1);
+		again.start(node_);
+		CCGrid3D g2 = again.getGrid3D();
+		assertNotSame(g, g2);
+		assertTrue(g2.isActive());
+		float[] flat = g2.getOriginalVertexArray();
+		for (int i = 2; i < flat.length; i += 3)
+			assertEquals(0, flat[i], 0);
+	}
+}
@@ -0,0 +1,54 @@
+package org.cocos2d.actions.instant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cocos2d.nodes.CCNode;
+import org.junit.Test;
+
+/** The callback is looked up with the parameter types given to the action. */
+public class CCCallFuncTest {
+	public static class Target {
+		final List<String> calls = new ArrayList<String>();
+		Object arg;
+
+		public void done() {
+			calls.add("done()");
+		}
+
+		public void done(Object sender) {
+			calls.add("done(Object)");
+			arg = sender;
+		}
+
+		public void done(CCNode sender) {
+			calls.add("done(CCNode)");
+			arg = sender;
+		}
+	}
+
+	@Test
+	public void callsMethodWithGivenTypes() {
+		Target t = new Target();
+		CCNode node = CCNode.node();
+
+		CCCallFunc.action(t, "done").start(node);
+		CCCallFuncN.action(t, "done").start(node);
+		new CCCallFuncN(t, "done", new Class<?>[] { CCNode.class }).start(node);
+		// copies share the binding of their types
+		new CCCallFuncN(t, "done", new Class<?>[] { CCNode.class }).copy().start(node);
+
+		assertEquals("[done(), done(Object), done(CCNode), done(CCNode)]", t.calls.toString());
+		assertSame(node, t.arg);
+	}
+
+	@Test
+	public void missingMethodIsIgnored() {
+		Target t = new Target();
+		new CCCallFuncN(t, "done", new Class<?>[] { String.class }).start(CCNode.node());
+		assertEquals(0, t.calls.size());
+	}
+}
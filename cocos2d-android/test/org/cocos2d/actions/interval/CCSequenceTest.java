@@ -0,0 +1,148 @@
+package org.cocos2d.actions.interval;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.cocos2d.actions.base.CCFiniteTimeAction;
+import org.cocos2d.nodes.CCNode;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CCSequenceTest {
+	private final List<String> trace_ = new ArrayList<String>();
+
+	/** logs starts, updates and stops to the trace */
+	class Probe extends CCIntervalAction {
+		final String name;
+
+		Probe(String name, float d) {
+			super(d);
+			this.name = name;
+		}
+
+		@Override
+		public void start(CCNode aTarget) {
+			super.start(aTarget);
+			trace_.add(name + " start");
+		}
+
+		@Override
+		public void stop() {
+			trace_.add(name + " stop");
+			super.stop();
+		}
+
+		@Override
+		public void update(float t) {
+			trace_.add(String.format(Locale.US, "%s %.2f", name, t));
+		}
+	}
+
+	@Before
+	public void setUp() {
+		trace_.clear();
+	}
+
+	private CCSequence sequence(CCFiniteTimeAction... actions) {
+		CCSequence seq = CCSequence.actions(actions[0], Arrays.copyOfRange(actions, 1, actions.length));
+		seq.start(CCNode.node());
+		return seq;
+	}
+
+	/** trace of the update, cleared for the next one */
+	private List<String> update(CCSequence seq, float t) {
+		seq.update(t);
+		List<String> ret = new ArrayList<String>(trace_);
+		trace_.clear();
+		return ret;
+	}
+
+	@Test
+	public void actionsRunOneAfterAnother() {
+		CCSequence seq = sequence(new Probe("a", 1), new Probe("b", 3));
+		assertEquals(4, seq.getDuration(), 0);
+
+		assertEquals(Arrays.asList("a start", "a 0.50"), update(seq, 0.125f));
+		assertEquals(Arrays.asList("a 1.00", "a stop", "b start", "b 0.00"), update(seq, 0.25f));
+		assertEquals(Arrays.asList("b 0.50"), update(seq, 0.625f));
+		assertEquals(Arrays.asList("b 1.00"), update(seq, 1));
+
+		seq.stop();
+		assertEquals(Arrays.asList("b stop"), trace_);
+	}
+
+	@Test
+	public void bigStepRunsSkippedActions() {
+		CCSequence seq = sequence(new Probe("a", 1), new Probe("b", 1), new Probe("c", 1), new Probe("d", 1));
+
+		assertEquals(Arrays.asList("a start", "a 0.40"), update(seq, 0.1f));
+		assertEquals(Arrays.asList(
+				"a 1.00", "a stop",
+				"b start", "b 1.00", "b stop",
+				"c start", "c 1.00", "c stop",
+				"d start", "d 0.60"), update(seq, 0.9f));
+
+		// the first update may come late too
+		seq = sequence(new Probe("a", 1), new Probe("b", 1), new Probe("c", 2));
+		assertEquals(Arrays.asList(
+				"a start", "a 1.00", "a stop",
+				"b start", "b 1.00", "b stop",
+				"c start", "c 0.50"), update(seq, 0.75f));
+	}
+
+	@Test
+	public void zeroDurationActionsRunAtOnce() {
+		CCSequence seq = sequence(new Probe("a", 1), new Probe("zero", 0), new Probe("b", 1));
+
+		assertEquals(Arrays.asList("a start", "a 0.80"), update(seq, 0.4f));
+		assertEquals(Arrays.asList(
+				"a 1.00", "a stop",
+				"zero start", "zero 1.00", "zero stop",
+				"b start", "b 0.20"), update(seq, 0.6f));
+
+		// at the end of the sequence it runs with the last update
+		seq = sequence(new Probe("a", 1), new Probe("zero", 0));
+		assertEquals(Arrays.asList("a start", "a 0.50"), update(seq, 0.5f));
+		assertEquals(Arrays.asList("a 1.00", "a stop", "zero start", "zero 1.00"), update(seq, 1));
+
+		// and the sequence of zero duration runs all of its actions
+		seq = sequence(new Probe("x", 0), new Probe("y", 0));
+		assertEquals(0, seq.getDuration(), 1e-5f);
+		assertEquals(Arrays.asList("x start", "x 1.00", "x stop", "y start", "y 1.00"), update(seq, 1));
+	}
+
+	@Test
+	public void timeGoingBackRewindsActions() {
+		CCSequence seq = sequence(new Probe("a", 1), new Probe("b", 1), new Probe("c", 1), new Probe("d", 1));
+		update(seq, 0.9f);
+
+		// like CCReverseTime or an elastic ease going back
+		assertEquals(Arrays.asList("d 0.20"), update(seq, 0.8f));
+		assertEquals(Arrays.asList(
+				"d 0.00", "d stop",
+				"c start", "c 0.00", "c stop",
+				"b start", "b 0.00", "b stop",
+				"a start", "a 0.40"), update(seq, 0.1f));
+		assertEquals(Arrays.asList("a 1.00", "a stop", "b start", "b 0.20"), update(seq, 0.3f));
+	}
+
+	@Test
+	public void reversedSequenceRunsBackwards() {
+		CCSequence seq = sequence(new Probe("a", 1), new Probe("b", 1));
+		CCReverseTime reverse = CCReverseTime.action(seq);
+		reverse.start(CCNode.node());
+		trace_.clear();
+
+		// the last action first, from its end
+		reverse.update(0.25f);
+		assertEquals(Arrays.asList("a start", "a 1.00", "a stop", "b start", "b 0.50"), trace_);
+		trace_.clear();
+
+		reverse.update(0.75f);
+		assertEquals(Arrays.asList("b 0.00", "b stop", "a start", "a 0.50"), trace_);
+	}
+}
@@ -0,0 +1,75 @@
+package org.cocos2d.actions.interval;
+
+import static org.junit.Assert.assertEquals;
+
+import org.cocos2d.nodes.CCNode;
+import org.junit.Test;
+
+public class CCSpawnTest {
+	/** counts starts and stops, keeps the last time */
+	static class Probe extends CCIntervalAction {
+		int starts;
+		int stops;
+		float time = -1;
+
+		Probe(float d) {
+			super(d);
+		}
+
+		@Override
+		public void start(CCNode aTarget) {
+			super.start(aTarget);
+			starts++;
+		}
+
+		@Override
+		public void stop() {
+			stops++;
+			super.stop();
+		}
+
+		@Override
+		public void update(float t) {
+			time = t;
+		}
+	}
+
+	@Test
+	public void shortActionEndsWithItsDuration() {
+		Probe longer = new Probe(2);
+		Probe shorter = new Probe(1);
+		CCSpawn spawn = CCSpawn.actions(longer, shorter);
+
+		spawn.start(CCNode.node());
+		spawn.update(0.25f);
+		assertEquals(0.5f, shorter.time, 1e-6f);
+
+		spawn.update(0.75f);
+		assertEquals(1, shorter.stops);
+		assertEquals(1.0f, shorter.time, 1e-6f);
+
+		spawn.update(0.9f);
+		assertEquals(1, shorter.starts);
+		assertEquals(1, shorter.stops);
+	}
+
+	@Test
+	public void finishedActionRestartsWhenTimeGoesBack() {
+		Probe longer = new Probe(2);
+		Probe shorter = new Probe(1);
+		CCSpawn spawn = CCSpawn.actions(longer, shorter);
+
+		spawn.start(CCNode.node());
+		spawn.update(1.0f);
+		assertEquals(1, shorter.stops);
+
+		// an ease overshooting back, or CCReverseTime
+		spawn.update(0.25f);
+		assertEquals(2, shorter.starts);
+		assertEquals(0.5f, shorter.time, 1e-6f);
+
+		spawn.update(1.0f);
+		assertEquals(2, shorter.stops);
+		assertEquals(1.0f, shorter.time, 1e-6f);
+	}
+}
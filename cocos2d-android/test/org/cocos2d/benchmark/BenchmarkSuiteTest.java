@@ -0,0 +1,20 @@
+package org.cocos2d.benchmark;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** Runs every benchmark for a few frames, they must not throw and their checks must pass.
+ * Warmup is longer than the one second actions of ActionTemplateBenchmark.
+ */
+public class BenchmarkSuiteTest {
+	@Test
+	public void allBenchmarksRun() {
+		HeadlessDirector director = new HeadlessDirector(480, 320);
+		BenchmarkRunner runner = new BenchmarkRunner(director, 120, 20);
+		for (Benchmark b : BenchmarkMain.allBenchmarks()) {
+			BenchmarkRunner.Result r = runner.run(b);
+			assertTrue(b.getName() + " failed", r.passed);
+		}
+	}
+}
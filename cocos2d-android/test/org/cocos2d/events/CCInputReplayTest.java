@@ -0,0 +1,93 @@
+package org.cocos2d.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.benchmark.InputReplayBenchmark;
+import org.cocos2d.nodes.CCDirector;
+import org.cocos2d.nodes.CCFramePacer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** A session recorded through the dispatchers is replayed headless,
+ * without MotionEvent or KeyEvent, and ends in the recorded state.
+ */
+public class CCInputReplayTest {
+	private HeadlessDirector director_;
+	private InputReplayBenchmark session_;
+
+	@Before
+	public void setUp() {
+		director_ = new HeadlessDirector(480, 320);
+		session_ = new InputReplayBenchmark();
+		session_.setUp(director_);
+	}
+
+	@After
+	public void tearDown() {
+		session_.tearDown(director_);
+	}
+
+	/** replays until the first pass of the log is checked */
+	private void replay() {
+		for (long i = 0; i <= session_.getLog().getStepCount(); ++i)
+			session_.run(director_);
+	}
+
+	@Test
+	public void replayReachesRecordedState() {
+		CCInputLog log = session_.getLog();
+		assertEquals(120, log.getStepCount());
+		assertTrue(log.size() > 0);
+
+		replay();
+		assertTrue(session_.getReport(), session_.getReport().endsWith("replay matches"));
+		assertTrue(session_.isPassed());
+	}
+
+	@Test
+	public void logSurvivesWriteAndRead() throws Exception {
+		CCInputLog log = session_.getLog();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		log.write(out);
+		CCInputLog read = CCInputLog.read(new ByteArrayInputStream(out.toByteArray()));
+
+		assertEquals(log.getSeed(), read.getSeed());
+		assertEquals(log.getStepCount(), read.getStepCount());
+		assertEquals(log.size(), read.size());
+		for (int i = 0; i < log.size(); ++i) {
+			CCInputLog.Entry a = log.get(i);
+			CCInputLog.Entry b = read.get(i);
+			assertEquals(a.getType(), b.getType());
+			assertEquals(a.getStep(), b.getStep());
+			assertEquals(a.getEventTime(), b.getEventTime());
+			if (a.getType() == CCInputLog.kTypeKey) {
+				assertEquals(a.getKey().getAction(), b.getKey().getAction());
+				assertEquals(a.getKey().getKeyCode(), b.getKey().getKeyCode());
+			} else {
+				assertEquals(a.getTouch().getAction(), b.getTouch().getAction());
+				assertEquals(a.getTouch().getHistorySize(), b.getTouch().getHistorySize());
+				assertEquals(a.getTouch().getX(0), b.getTouch().getX(0), 0);
+			}
+		}
+	}
+
+	@Test
+	public void stoppingRestoresPacing() {
+		CCDirector director = CCDirector.sharedDirector();
+		CCFramePacer pacer = director.getFramePacer();
+		pacer.setPacing(CCFramePacer.kPacingVSync);
+
+		director.startInputRecording(1);
+		assertEquals(CCFramePacer.kPacingFixedStep, pacer.getPacing());
+		director.stopInputRecording();
+		assertEquals(CCFramePacer.kPacingVSync, pacer.getPacing());
+
+		pacer.setPacing(CCFramePacer.kPacingSleepThenSpin);
+	}
+}
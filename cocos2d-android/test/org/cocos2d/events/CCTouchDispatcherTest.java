@@ -0,0 +1,186 @@
+package org.cocos2d.events;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.nodes.CCNode;
+import org.cocos2d.protocols.CCTouchRecordDelegateProtocol;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Touches go through the queue and update() to delegates of records,
+ * no MotionEvent is needed on the way.
+ */
+public class CCTouchDispatcherTest {
+	private static final int kHeight = 320;
+
+	private final List<String> log_ = new ArrayList<String>();
+
+	private class Probe implements CCTouchRecordDelegateProtocol {
+		final String name;
+		final boolean claims;
+
+		Probe(String name, boolean claims) {
+			this.name = name;
+			this.claims = claims;
+		}
+
+		@Override
+		public boolean ccTouchBegan(CCTouchQueue.Record touch) {
+			log_.add(name + " began");
+			return claims;
+		}
+
+		@Override
+		public boolean ccTouchMoved(CCTouchQueue.Record touch) {
+			log_.add(name + " moved " + touch.getHistorySize());
+			return true;
+		}
+
+		@Override
+		public boolean ccTouchEnded(CCTouchQueue.Record touch) {
+			log_.add(name + " ended");
+			return true;
+		}
+
+		@Override
+		public boolean ccTouchCancelled(CCTouchQueue.Record touch) {
+			log_.add(name + " cancelled");
+			return true;
+		}
+	}
+
+	private HeadlessDirector director_;
+	private CCTouchDispatcher dispatcher_;
+	private CCNode nodeA_;
+	private CCNode nodeB_;
+	private final int[] ids_ = new int[1];
+	private final float[] xs_ = new float[1];
+	private final float[] ys_ = new float[1];
+	private long time_;
+
+	private static CCNode area(float x, float y) {
+		CCNode node = CCNode.node();
+		node.setContentSize(100, 100);
+		node.setPosition(x, y);
+		return node;
+	}
+
+	@Before
+	public void setUp() {
+		director_ = new HeadlessDirector(480, kHeight);
+		dispatcher_ = CCTouchDispatcher.sharedDispatcher();
+
+		CCScene scene = CCScene.node();
+		nodeA_ = area(0, 0);
+		nodeB_ = area(50, 50);
+		scene.addChild(nodeA_);
+		scene.addChild(nodeB_);
+		director_.runWithScene(scene);
+
+		// B is above A, a handler without hit area is below both
+		dispatcher_.addTargetedDelegate(new Probe("A", true), 0, true, nodeA_);
+		dispatcher_.addTargetedDelegate(new Probe("B", true), -1, false, nodeB_);
+		dispatcher_.addTargetedDelegate(new Probe("screen", true), 1, false);
+		director_.flushResources();
+	}
+
+	@After
+	public void tearDown() {
+		dispatcher_.removeAllDelegates();
+		director_.flushResources();
+		director_.end();
+	}
+
+	/** queues a touch of pointer 0 at the point in GL coordinates */
+	private void push(int action, float x, float y) {
+		xs_[0] = x;
+		ys_[0] = kHeight - y;
+		dispatcher_.getTouchQueue().push(action, 0, ++time_, 1, ids_, xs_, ys_, null);
+	}
+
+	/** dispatches queued touches like a frame does */
+	private List<String> update() {
+		log_.clear();
+		dispatcher_.update();
+		return new ArrayList<String>(log_);
+	}
+
+	private List<String> touch(int action, float x, float y) {
+		push(action, x, y);
+		return update();
+	}
+
+	@Test
+	public void overlapGoesInPriorityOrderUntilSwallowed() {
+		assertEquals(Arrays.asList("B began", "A began"), touch(CCTouchQueue.ACTION_DOWN, 75, 75));
+		assertEquals(Arrays.asList("B moved 0", "A moved 0"), touch(CCTouchQueue.ACTION_MOVE, 300, 300));
+		assertEquals(Arrays.asList("B ended", "A ended"), touch(CCTouchQueue.ACTION_UP, 300, 300));
+	}
+
+	@Test
+	public void handlersOutsideOfTheTouchAreSkipped() {
+		assertEquals(Arrays.asList("A began"), touch(CCTouchQueue.ACTION_DOWN, 25, 25));
+		touch(CCTouchQueue.ACTION_UP, 25, 25);
+
+		assertEquals(Arrays.asList("B began", "screen began"), touch(CCTouchQueue.ACTION_DOWN, 125, 125));
+		touch(CCTouchQueue.ACTION_UP, 125, 125);
+
+		assertEquals(Arrays.asList("screen began"), touch(CCTouchQueue.ACTION_DOWN, 400, 10));
+	}
+
+	@Test
+	public void hitAreasFollowMovedNodes() {
+		nodeA_.setPosition(300, 200);
+		assertEquals(Arrays.asList("screen began"), touch(CCTouchQueue.ACTION_DOWN, 25, 25));
+		touch(CCTouchQueue.ACTION_UP, 25, 25);
+
+		// moving the parent moves the child
+		nodeA_.setPosition(0, 0);
+		nodeA_.getParent().setPosition(100, 0);
+		assertEquals(Arrays.asList("A began"), touch(CCTouchQueue.ACTION_DOWN, 125, 25));
+	}
+
+	@Test
+	public void hiddenAndStoppedAreasAreNotHit() {
+		nodeB_.setVisible(false);
+		assertEquals(Arrays.asList("A began"), touch(CCTouchQueue.ACTION_DOWN, 75, 75));
+		touch(CCTouchQueue.ACTION_UP, 75, 75);
+		nodeB_.setVisible(true);
+
+		nodeA_.getParent().setVisible(false);
+		assertEquals(Arrays.asList("screen began"), touch(CCTouchQueue.ACTION_DOWN, 75, 75));
+		touch(CCTouchQueue.ACTION_UP, 75, 75);
+		nodeA_.getParent().setVisible(true);
+
+		nodeA_.removeFromParentAndCleanup(true);
+		assertEquals(Arrays.asList("B began", "screen began"), touch(CCTouchQueue.ACTION_DOWN, 75, 75));
+	}
+
+	/** as without hit areas, the latest added of equal priorities goes first */
+	@Test
+	public void equalPrioritiesKeepOrderOfHandlers() {
+		dispatcher_.addTargetedDelegate(new Probe("B2", true), -1, false, nodeB_);
+		director_.flushResources();
+
+		assertEquals(Arrays.asList("B2 began", "B began", "A began"), touch(CCTouchQueue.ACTION_DOWN, 75, 75));
+	}
+
+	@Test
+	public void movesOfAFrameAreDispatchedOnce() {
+		dispatcher_.setCoalesceMoves(true);
+		touch(CCTouchQueue.ACTION_DOWN, 75, 75);
+
+		push(CCTouchQueue.ACTION_MOVE, 76, 75);
+		push(CCTouchQueue.ACTION_MOVE, 77, 75);
+		push(CCTouchQueue.ACTION_MOVE, 78, 75);
+		assertEquals(Arrays.asList("B moved 2", "A moved 2"), update());
+		assertEquals(78, dispatcher_.getCurrentTouch().getX(0), 0);
+	}
+}
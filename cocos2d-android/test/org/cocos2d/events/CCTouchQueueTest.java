@@ -0,0 +1,150 @@
+package org.cocos2d.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CCTouchQueueTest {
+	private final int[] ids_ = new int[CCTouchQueue.kMaxPointers];
+	private final float[] xs_ = new float[CCTouchQueue.kMaxPointers];
+	private final float[] ys_ = new float[CCTouchQueue.kMaxPointers];
+	private final CCTouchQueue.Record out_ = new CCTouchQueue.Record();
+
+	/** pushes pointers 0..count-1, pointer i at (x + i, y) */
+	private void push(CCTouchQueue queue, int action, long time, int count, float x, float y, Object payload) {
+		for (int i = 0; i < count; ++i) {
+			ids_[i] = i;
+			xs_[i] = x + i;
+			ys_[i] = y;
+		}
+		queue.push(action, 0, time, count, ids_, xs_, ys_, payload);
+	}
+
+	@Test
+	public void movesOfTheSamePointersAreCoalesced() {
+		CCTouchQueue queue = new CCTouchQueue();
+		push(queue, CCTouchQueue.ACTION_DOWN, 1, 1, 10, 10, null);
+		push(queue, CCTouchQueue.ACTION_MOVE, 2, 1, 11, 10, null);
+		push(queue, CCTouchQueue.ACTION_MOVE, 3, 1, 12, 10, null);
+		push(queue, CCTouchQueue.ACTION_MOVE, 4, 1, 13, 10, null);
+		// another pointer set starts a new record
+		push(queue, CCTouchQueue.ACTION_MOVE, 5, 2, 14, 10, null);
+
+		assertEquals(3, queue.size());
+		assertEquals(2, queue.getCoalescedCount());
+
+		assertTrue(queue.poll(out_));
+		assertEquals(CCTouchQueue.ACTION_DOWN, out_.getAction());
+
+		assertTrue(queue.poll(out_));
+		assertEquals(CCTouchQueue.ACTION_MOVE, out_.getAction());
+		assertEquals(4, out_.getEventTime());
+		assertEquals(13, out_.getX(0), 0);
+		assertEquals(2, out_.getHistorySize());
+		assertEquals(2, out_.getHistoricalEventTime(0));
+		assertEquals(11, out_.getHistoricalX(0, 0), 0);
+		assertEquals(12, out_.getHistoricalX(0, 1), 0);
+
+		assertTrue(queue.poll(out_));
+		assertEquals(2, out_.getPointerCount());
+		assertEquals(0, out_.getHistorySize());
+		assertFalse(queue.poll(out_));
+	}
+
+	@Test
+	public void coalescingCanBeSwitchedOff() {
+		CCTouchQueue queue = new CCTouchQueue();
+		queue.setCoalescing(false);
+		for (int i = 0; i < 5; ++i)
+			push(queue, CCTouchQueue.ACTION_MOVE, i, 1, i, 0, null);
+		assertEquals(5, queue.size());
+	}
+
+	@Test
+	public void historyKeepsTheNewestSamples() {
+		CCTouchQueue queue = new CCTouchQueue();
+		final int moves = CCTouchQueue.kMaxHistory + 5;
+		for (int i = 0; i < moves; ++i)
+			push(queue, CCTouchQueue.ACTION_MOVE, i, 1, i, 0, null);
+
+		assertTrue(queue.poll(out_));
+		assertEquals(CCTouchQueue.kMaxHistory, out_.getHistorySize());
+		assertEquals(moves - 1 - CCTouchQueue.kMaxHistory, out_.getHistoricalX(0, 0), 0);
+		assertEquals(moves - 2, out_.getHistoricalX(0, CCTouchQueue.kMaxHistory - 1), 0);
+		assertEquals(moves - 1, out_.getX(0), 0);
+	}
+
+	@Test
+	public void ringGrowsAndKeepsOrder() {
+		CCTouchQueue queue = new CCTouchQueue();
+		// wrap around before growing
+		for (int i = 0; i < 20; ++i) {
+			push(queue, CCTouchQueue.ACTION_DOWN, i, 1, i, 0, null);
+			queue.poll(out_);
+		}
+		for (int i = 0; i < 100; ++i)
+			push(queue, i % 2 == 0 ? CCTouchQueue.ACTION_DOWN : CCTouchQueue.ACTION_UP, i, 1, i, 0, null);
+
+		for (int i = 0; i < 100; ++i) {
+			assertTrue(queue.poll(out_));
+			assertEquals(i, out_.getEventTime());
+		}
+		assertFalse(queue.poll(out_));
+	}
+
+	@Test
+	public void payloadsOfCoalescedMovesAreRecycled() {
+		final List<Object> recycled = new ArrayList<Object>();
+		CCTouchQueue queue = new CCTouchQueue();
+		queue.setPayloadRecycler(new CCTouchQueue.PayloadRecycler() {
+			@Override
+			public void recycle(Object payload) {
+				recycled.add(payload);
+			}
+		});
+
+		push(queue, CCTouchQueue.ACTION_MOVE, 1, 2, 0, 0, "first");
+		push(queue, CCTouchQueue.ACTION_MOVE, 2, 2, 1, 0, "second");
+		assertEquals(1, recycled.size());
+		assertEquals("first", recycled.get(0));
+
+		assertTrue(queue.poll(out_));
+		assertEquals("second", out_.getPayload());
+	}
+
+	@Test
+	public void steadyStateDoesntAllocate() {
+		java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		assumeTrue(mx instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)mx;
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		CCTouchQueue queue = new CCTouchQueue();
+		final long id = Thread.currentThread().getId();
+		long allocated = 0;
+		// the first window warms up, see CCActionTemplateTest
+		for (int window = 0; window < 5; ++window) {
+			final long start = threads.getThreadAllocatedBytes(id);
+			for (int frame = 0; frame < 1000; ++frame) {
+				push(queue, CCTouchQueue.ACTION_DOWN, frame, 1, 0, 0, null);
+				for (int i = 0; i < 4; ++i)
+					push(queue, CCTouchQueue.ACTION_MOVE, frame, 2, i, 0, null);
+				push(queue, CCTouchQueue.ACTION_UP, frame, 1, 0, 0, null);
+				while (queue.poll(out_))
+					;
+			}
+			allocated = threads.getThreadAllocatedBytes(id) - start;
+			if (allocated == 0)
+				break;
+		}
+		assertEquals(0, allocated);
+	}
+}
@@ -0,0 +1,261 @@
+package org.cocos2d.nodes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import org.cocos2d.actions.UpdateCallback;
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.benchmark.NullGL;
+import org.cocos2d.extensions.scroll.CCClipNode;
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.opengl.CCTexture2D;
+import org.cocos2d.types.CGPoint;
+import org.cocos2d.types.CGRect;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CCBatchRendererTest {
+	/** logs draws and scissor changes */
+	static class LogGL extends NullGL {
+		final List<String> log = new ArrayList<String>();
+
+		@Override
+		public void glEnable(int cap) {
+			super.glEnable(cap);
+			if (cap == GL_SCISSOR_TEST)
+				log.add("scissor on");
+		}
+
+		@Override
+		public void glDisable(int cap) {
+			super.glDisable(cap);
+			if (cap == GL_SCISSOR_TEST)
+				log.add("scissor off");
+		}
+
+		@Override
+		public void glDrawElements(int mode, int count, int type, Buffer indices) {
+			super.glDrawElements(mode, count, type, indices);
+			log.add("draw " + count / 6);
+		}
+	}
+
+	private HeadlessDirector director_;
+
+	@Before
+	public void setUp() {
+		director_ = new HeadlessDirector(480, 320);
+		CCBatchRenderer.sharedRenderer().setEnabled(true);
+	}
+
+	@After
+	public void tearDown() {
+		CCBatchRenderer.sharedRenderer().setEnabled(false);
+		director_.end();
+	}
+
+	@Test
+	public void clipNodeFlushesOnEntryAndExit() {
+		director_.getContent().putTexture("test/batch.pkm", 64, 64);
+		CCTexture2D tex = CCTextureCache.sharedTextureCache().addImage("test/batch.pkm");
+		director_.flushResources();
+
+		CCScene scene = CCScene.node();
+		scene.addChild(CCSprite.sprite(tex, CGRect.make(0, 0, 16, 16)), 0);
+
+		CCClipNode clip = new CCClipNode();
+		clip.setClipRect(CGRect.make(0, 0, 100, 100));
+		clip.addChild(CCSprite.sprite(tex, CGRect.make(0, 0, 16, 16)));
+		clip.addChild(CCSprite.sprite(tex, CGRect.make(16, 0, 16, 16)));
+		scene.addChild(clip, 1);
+
+		scene.addChild(CCSprite.sprite(tex, CGRect.make(0, 16, 16, 16)), 2);
+
+		LogGL gl = new LogGL();
+		CCBatchRenderer batch = CCBatchRenderer.sharedRenderer();
+		batch.begin(gl);
+		scene.visit(gl);
+		batch.end(gl);
+
+		List<String> expected = new ArrayList<String>();
+		expected.add("draw 1");
+		expected.add("scissor on");
+		expected.add("draw 2");
+		expected.add("scissor off");
+		expected.add("draw 1");
+		assertEquals(expected, gl.log);
+	}
+
+	/** tracks the 2D part of the modelview matrix, logs drawn vertices in the scene */
+	static class MatrixGL extends NullGL {
+		final List<Float> vertices = new ArrayList<Float>();
+		// a, b, c, d, tx, ty
+		private final float[] stack = new float[16 * 6];
+		private int top;
+		private FloatBuffer pointer;
+
+		MatrixGL() {
+			stack[0] = stack[3] = 1;
+		}
+
+		@Override
+		public void glPushMatrix() {
+			System.arraycopy(stack, top, stack, top + 6, 6);
+			top += 6;
+		}
+
+		@Override
+		public void glPopMatrix() {
+			top -= 6;
+		}
+
+		@Override
+		public void glLoadMatrixf(float[] m, int offset) {
+			stack[top] = m[offset];
+			stack[top + 1] = m[offset + 1];
+			stack[top + 2] = m[offset + 4];
+			stack[top + 3] = m[offset + 5];
+			stack[top + 4] = m[offset + 12];
+			stack[top + 5] = m[offset + 13];
+		}
+
+		@Override
+		public void glMultMatrixf(float[] m, int offset) {
+			multiply(m[offset], m[offset + 1], m[offset + 4], m[offset + 5], m[offset + 12], m[offset + 13]);
+		}
+
+		@Override
+		public void glTranslatef(float x, float y, float z) {
+			multiply(1, 0, 0, 1, x, y);
+		}
+
+		@Override
+		public void glScalef(float x, float y, float z) {
+			multiply(x, 0, 0, y, 0, 0);
+		}
+
+		private void multiply(float a, float b, float c, float d, float tx, float ty) {
+			final float[] s = stack;
+			final int t = top;
+			final float a0 = s[t], b0 = s[t + 1], c0 = s[t + 2], d0 = s[t + 3];
+			s[t + 4] += a0 * tx + c0 * ty;
+			s[t + 5] += b0 * tx + d0 * ty;
+			s[t] = a0 * a + c0 * b;
+			s[t + 1] = b0 * a + d0 * b;
+			s[t + 2] = a0 * c + c0 * d;
+			s[t + 3] = b0 * c + d0 * d;
+		}
+
+		@Override
+		public void glVertexPointer(int size, int type, int stride, Buffer p) {
+			super.glVertexPointer(size, type, stride, p);
+			pointer = (FloatBuffer)p;
+		}
+
+		@Override
+		public void glDrawArrays(int mode, int first, int count) {
+			super.glDrawArrays(mode, first, count);
+			log(first, count);
+		}
+
+		@Override
+		public void glDrawElements(int mode, int count, int type, Buffer indices) {
+			super.glDrawElements(mode, count, type, indices);
+			// quads of 4 vertices
+			log(0, count / 6 * 4);
+		}
+
+		private void log(int first, int count) {
+			final float[] s = stack;
+			for (int i = first; i < first + count; ++i) {
+				final float x = pointer.get(i * 3), y = pointer.get(i * 3 + 1);
+				vertices.add(s[top] * x + s[top + 2] * y + s[top + 4]);
+				vertices.add(s[top + 1] * x + s[top + 3] * y + s[top + 5]);
+			}
+		}
+
+		float[] drawn() {
+			float[] ret = new float[vertices.size()];
+			for (int i = 0; i < ret.length; ++i)
+				ret[i] = vertices.get(i);
+			return ret;
+		}
+	}
+
+	private static float[] drawn(CCScene scene, boolean batched) {
+		MatrixGL gl = new MatrixGL();
+		CCBatchRenderer batch = CCBatchRenderer.sharedRenderer();
+		batch.setEnabled(batched);
+		batch.begin(gl);
+		scene.visit(gl);
+		batch.end(gl);
+		batch.setEnabled(true);
+		return gl.drawn();
+	}
+
+	@Test
+	public void interpolatedNodesAreBatchedAtDrawnPosition() {
+		director_.getContent().putTexture("test/batch.pkm", 64, 64);
+		CCTexture2D tex = CCTextureCache.sharedTextureCache().addImage("test/batch.pkm");
+		director_.flushResources();
+
+		CCFramePacerTest.FakeClock clock = new CCFramePacerTest.FakeClock();
+		CCFramePacer pacer = new CCFramePacer(clock);
+		pacer.setPacing(CCFramePacer.kPacingFixedStep);
+		CCDirector director = CCDirector.sharedDirector();
+		CCFramePacer oldPacer = director.getFramePacer();
+		director.setFramePacer(pacer);
+
+		// interpolated sprite, and a sprite in an interpolated scaled parent
+		CCScene scene = CCScene.node();
+		final CCSprite sprite = CCSprite.sprite(tex, CGRect.make(0, 0, 16, 16));
+		sprite.setPosition(100, 100);
+		sprite.setInterpolatesPosition(true);
+		scene.addChild(sprite);
+		final CCNode parent = CCNode.node();
+		parent.setScale(2);
+		parent.setPosition(200, 50);
+		parent.setInterpolatesPosition(true);
+		CCSprite child = CCSprite.sprite(tex, CGRect.make(16, 0, 16, 16));
+		child.setPosition(10, 10);
+		child.setInterpolatesPosition(true);
+		parent.addChild(child);
+		scene.addChild(parent);
+		scene.onEnter();
+		try {
+			final CCSprite[] moved = { sprite, child };
+			scene.schedule(new UpdateCallback() {
+				public void update(float d) {
+					for (CCSprite s : moved)
+						s.setPosition(CGPoint.ccpAdd(s.getPositionRef(), CGPoint.ccp(40, 20)));
+					parent.setPosition(CGPoint.ccpAdd(parent.getPositionRef(), CGPoint.ccp(-30, 0)));
+				}
+			});
+
+			director.drawCCScene(director_.getGL());
+			clock.advance(25 * 1000000L);
+			director.drawCCScene(director_.getGL());
+			assertEquals(0.5f, director.getRenderInterpolation(), 1e-4f);
+
+			float[] unbatched = drawn(scene, false);
+			float[] batched = drawn(scene, true);
+			assertEquals(2 * 4 * 2, unbatched.length);
+			// halfway between the steps: sprite moved by 20, 10
+			assertEquals(100 + 20 - 8, unbatched[0], 1e-3f);
+			assertArrayEquals(unbatched, batched, 1e-3f);
+			assertEquals(2, CCBatchRenderer.sharedRenderer().getBatchedQuads());
+		} finally {
+			scene.onExit();
+			scene.cleanup();
+			director.setFramePacer(oldPacer);
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package org.cocos2d.nodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.cocos2d.actions.UpdateCallback;
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.benchmark.NullGL;
+import org.junit.Test;
+
+/** Pacing runs on a fake clock, so no real time passes. */
+public class CCFramePacerTest {
+	private static final long kInterval = 1000000000L / 60;
+	private static final long kMillis = 1000000L;
+
+	/** sleeps take longer than asked, like the sleep of the OS */
+	static class FakeClock implements CCFramePacer.Clock {
+		long now = 1000 * kMillis;
+		long oversleep;
+		long spun;
+
+		public long nanoTime() {
+			return now;
+		}
+
+		public void sleep(long nanos) {
+			if (nanos <= 0) {
+				now += 10000;
+				spun += 10000;
+			} else {
+				now += nanos + oversleep;
+			}
+		}
+
+		void advance(long nanos) {
+			now += nanos;
+		}
+	}
+
+	@Test
+	public void sleepsToDeadlineWithoutSpinning() {
+		FakeClock clock = new FakeClock();
+		clock.oversleep = kMillis;
+		CCFramePacer pacer = new CCFramePacer(clock);
+
+		for (int i = 0; i < 200; ++i) {
+			pacer.beginFrame();
+			if (i == 100)
+				clock.spun = 0;
+			if (i >= 100)
+				assertEquals("frame " + i, kInterval * 1e-9f, pacer.getRawDeltaTime(), 5e-5f);
+			// work varies between 2 and 10 ms
+			clock.advance((2 + i % 9) * kMillis);
+			pacer.endFrame();
+		}
+
+		// once the oversleep is known only wakes a bit early are spun
+		assertTrue("spun " + clock.spun, clock.spun < 100 * 20000);
+	}
+
+	@Test
+	public void longStallCountsMissedDisplays() {
+		FakeClock clock = new FakeClock();
+		CCFramePacer pacer = new CCFramePacer(clock);
+		pacer.setPacing(CCFramePacer.kPacingVSync);
+
+		pacer.beginFrame();
+		clock.advance(kInterval);
+		pacer.beginFrame();
+		assertEquals(0, pacer.getDroppedFrames());
+
+		// the stalled frame is shown at the 6th display, the 5 before it are missed
+		clock.advance(100 * kMillis);
+		pacer.beginFrame();
+		assertEquals(2, pacer.getFrameCount());
+		assertEquals(5, pacer.getDroppedFrames());
+	}
+
+	@Test
+	public void deltaIsClampedAndSkipped() {
+		FakeClock clock = new FakeClock();
+		CCFramePacer pacer = new CCFramePacer(clock);
+		pacer.setPacing(CCFramePacer.kPacingVSync);
+
+		assertEquals(0, pacer.beginFrame(), 0);
+		clock.advance(2000 * kMillis);
+		assertEquals(CCFramePacer.kDefaultMaxDeltaTime, pacer.beginFrame(), 0);
+		assertEquals(2, pacer.getRawDeltaTime(), 1e-6f);
+
+		clock.advance(20 * kMillis);
+		pacer.skipNextDelta();
+		assertEquals(0, pacer.beginFrame(), 0);
+	}
+
+	@Test
+	public void fixedStepsAccumulateTime() {
+		FakeClock clock = new FakeClock();
+		CCFramePacer pacer = new CCFramePacer(clock);
+		pacer.setPacing(CCFramePacer.kPacingFixedStep);
+
+		pacer.beginFrame();
+		assertEquals(0, pacer.getStepCount());
+
+		// 25 ms is one step of 16.67 ms and a half
+		clock.advance(25 * kMillis);
+		pacer.beginFrame();
+		assertEquals(1, pacer.getStepCount());
+		assertEquals(0.5f, pacer.getInterpolation(), 1e-4f);
+
+		clock.advance(25 * kMillis);
+		pacer.beginFrame();
+		assertEquals(2, pacer.getStepCount());
+		assertEquals(0, pacer.getInterpolation(), 1e-4f);
+
+		// 1 s is clamped to 0.25 s, 15 steps, capped to 5
+		clock.advance(1000 * kMillis);
+		pacer.beginFrame();
+		assertEquals(CCFramePacer.kDefaultMaxStepsPerFrame, pacer.getStepCount());
+	}
+
+	@Test
+	public void nodesAreDrawnBetweenSteps() {
+		FakeClock clock = new FakeClock();
+		CCFramePacer pacer = new CCFramePacer(clock);
+		pacer.setPacing(CCFramePacer.kPacingFixedStep);
+
+		HeadlessDirector headless = new HeadlessDirector(480, 320);
+		CCDirector director = CCDirector.sharedDirector();
+		CCFramePacer oldPacer = director.getFramePacer();
+		director.setFramePacer(pacer);
+		try {
+			final CCNode node = CCNode.node();
+			node.setInterpolatesPosition(true);
+			node.onEnter();
+			// 60 px per step
+			node.schedule(new UpdateCallback() {
+				public void update(float d) {
+					node.setPosition(node.getPositionRef().x + 60, 0);
+				}
+			});
+
+			director.drawCCScene(headless.getGL());
+			clock.advance(25 * kMillis);
+			director.drawCCScene(headless.getGL());
+			assertEquals(60, node.getPositionRef().x, 0);
+			assertEquals(0.5f, director.getRenderInterpolation(), 1e-4f);
+
+			// drawn halfway between 0 and 60
+			TranslateGL gl = new TranslateGL();
+			node.transform(gl);
+			assertEquals(30, gl.x, 1e-3f);
+
+			node.setInterpolatesPosition(false);
+			gl = new TranslateGL();
+			node.transform(gl);
+			assertEquals(60, gl.x, 1e-3f);
+
+			node.onExit();
+			node.cleanup();
+		} finally {
+			director.setFramePacer(oldPacer);
+			headless.end();
+		}
+	}
+
+	/** sums translations, both transform() variants translate or load x as m[12] */
+	static class TranslateGL extends NullGL {
+		float x;
+
+		@Override
+		public void glTranslatef(float tx, float ty, float tz) {
+			x += tx;
+		}
+
+		@Override
+		public void glMultMatrixf(float[] m, int offset) {
+			x += m[offset + 12];
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package org.cocos2d.nodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.layers.CCScene;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CCHitTestIndexTest {
+	private HeadlessDirector director_;
+	private CCScene scene_;
+
+	@Before
+	public void setUp() {
+		director_ = new HeadlessDirector(480, 320);
+		scene_ = CCScene.node();
+		director_.runWithScene(scene_);
+	}
+
+	@After
+	public void tearDown() {
+		director_.end();
+	}
+
+	private CCNode area(CCNode parent, float x, float y) {
+		CCNode node = CCNode.node();
+		node.setContentSize(10, 10);
+		node.setPosition(x, y);
+		parent.addChild(node);
+		return node;
+	}
+
+	private static List<String> query(CCHitTestIndex<String> index, float x, float y) {
+		List<String> out = new ArrayList<String>();
+		index.query(x, y, out);
+		Collections.sort(out);
+		return out;
+	}
+
+	@Test
+	public void indexFollowsMovedNodesAndParents() {
+		CCHitTestIndex<String> index = new CCHitTestIndex<String>(16);
+		CCNode parent = area(scene_, 0, 0);
+		CCNode child = area(parent, 100, 100);
+		index.put("parent", parent);
+		index.put("child", child);
+
+		assertEquals(Arrays.asList("parent"), query(index, 5, 5));
+		assertEquals(Arrays.asList("child"), query(index, 105, 105));
+
+		child.setPosition(0, 0);
+		assertEquals(Arrays.asList("child", "parent"), query(index, 5, 5));
+
+		parent.setPosition(200, 0);
+		assertEquals(Collections.emptyList(), query(index, 5, 5));
+		assertEquals(Arrays.asList("child", "parent"), query(index, 205, 5));
+
+		child.setContentSize(50, 10);
+		assertEquals(Arrays.asList("child"), query(index, 240, 5));
+	}
+
+	@Test
+	public void hiddenAndStoppedNodesAreNotHit() {
+		CCHitTestIndex<String> index = new CCHitTestIndex<String>();
+		CCNode parent = area(scene_, 0, 0);
+		CCNode child = area(parent, 0, 0);
+		index.put("child", child);
+
+		child.setVisible(false);
+		assertEquals(Collections.emptyList(), query(index, 5, 5));
+		child.setVisible(true);
+
+		parent.setVisible(false);
+		assertEquals(Collections.emptyList(), query(index, 5, 5));
+		parent.setVisible(true);
+		assertEquals(Arrays.asList("child"), query(index, 5, 5));
+
+		parent.removeFromParentAndCleanup(true);
+		assertEquals(Collections.emptyList(), query(index, 5, 5));
+	}
+
+	@Test
+	public void nodeKeepsEntriesOfAllIndexes() {
+		CCHitTestIndex<String> first = new CCHitTestIndex<String>();
+		CCHitTestIndex<String> second = new CCHitTestIndex<String>();
+		CCNode node = area(scene_, 0, 0);
+		first.put("first", node);
+		second.put("second", node);
+
+		node.setPosition(100, 0);
+		assertEquals(Arrays.asList("first"), query(first, 105, 5));
+		assertEquals(Arrays.asList("second"), query(second, 105, 5));
+
+		first.remove("first");
+		second.clear();
+		assertNull(node.hitTestEntries_);
+	}
+}
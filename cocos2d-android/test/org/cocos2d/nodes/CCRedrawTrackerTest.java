@@ -0,0 +1,135 @@
+package org.cocos2d.nodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.cocos2d.actions.CCProgressTimer;
+import org.cocos2d.actions.CCScheduler;
+import org.cocos2d.actions.UpdateCallback;
+import org.cocos2d.actions.interval.CCMoveBy;
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.layers.CCColorLayer;
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.types.CGPoint;
+import org.cocos2d.types.ccColor3B;
+import org.cocos2d.types.ccColor4B;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CCRedrawTrackerTest {
+	private static final float kDelta = 1 / 60.0f;
+
+	private HeadlessDirector director_;
+	private boolean idle_;
+	private boolean requested_;
+
+	@Before
+	public void setUp() {
+		director_ = new HeadlessDirector(480, 320);
+	}
+
+	@After
+	public void tearDown() {
+		CCRedrawTracker.setListener(null);
+		director_.end();
+	}
+
+	@Test
+	public void colorLayerSettersMarkDirty() {
+		CCColorLayer layer = CCColorLayer.node(ccColor4B.ccc4(0, 0, 0, 255));
+
+		CCRedrawTracker.consumeRedraw();
+		layer.setColor(ccColor3B.ccRED);
+		assertTrue(CCRedrawTracker.needsRedraw());
+
+		CCRedrawTracker.consumeRedraw();
+		layer.setOpacity(128);
+		assertTrue(CCRedrawTracker.needsRedraw());
+	}
+
+	@Test
+	public void progressTimerSettersMarkDirty() {
+		director_.getContent().putTexture("test/progress.pkm", 64, 64);
+		CCProgressTimer timer = CCProgressTimer.progress("test/progress.pkm");
+
+		CCRedrawTracker.consumeRedraw();
+		timer.setPercentage(50);
+		assertTrue(CCRedrawTracker.needsRedraw());
+
+		CCRedrawTracker.consumeRedraw();
+		timer.setPercentage(50);
+		assertFalse("unchanged percentage", CCRedrawTracker.needsRedraw());
+
+		timer.setType(CCProgressTimer.kCCProgressTimerTypeHorizontalBarLR);
+		assertTrue(CCRedrawTracker.needsRedraw());
+	}
+
+	/** a frame as the view renders it on demand, false if none is requested */
+	private boolean demandFrame() {
+		if (idle_ && !requested_)
+			return false;
+		requested_ = false;
+		director_.frame(kDelta);
+		CCRedrawTracker.consumeRedraw();
+		idle_ = !CCDirector.sharedDirector().isSceneActive();
+		return true;
+	}
+
+	private void runUntilIdle() {
+		for (int i = 0; i < 100 && !idle_; ++i)
+			demandFrame();
+		assertTrue("scene is idle", idle_);
+		assertFalse("idle scene renders", demandFrame());
+	}
+
+	@Test
+	public void schedulingWakesIdleScene() {
+		CCRedrawTracker.setListener(new CCRedrawTracker.Listener() {
+			// as the director, which renders continuously while not idle
+			public void redrawRequested() {
+				if (idle_)
+					requested_ = true;
+			}
+		});
+		CCNode node = CCNode.node();
+		CCScene scene = CCScene.node();
+		scene.addChild(node);
+		director_.runWithScene(scene);
+		runUntilIdle();
+
+		node.runAction(CCMoveBy.action(0.1f, CGPoint.ccp(10, 0)));
+		assertTrue("frame after runAction", demandFrame());
+		runUntilIdle();
+		assertEquals(10, node.getPositionRef().x, 1e-4f);
+
+		final int[] calls = new int[1];
+		UpdateCallback update = new UpdateCallback() {
+			public void update(float d) {
+				calls[0]++;
+			}
+		};
+		CCScheduler scheduler = CCScheduler.sharedScheduler();
+		scheduler.scheduleUpdate(update, 0, false);
+		assertTrue("frame after scheduleUpdate", demandFrame());
+		assertEquals(1, calls[0]);
+		scheduler.unscheduleUpdate(update);
+		runUntilIdle();
+
+		scheduler.schedule(update, update, 0, false);
+		assertTrue("frame after schedule", demandFrame());
+		scheduler.unscheduleAllSelectors(update);
+		runUntilIdle();
+
+		CCDirector director = CCDirector.sharedDirector();
+		director.pause();
+		node.runAction(CCMoveBy.action(0.1f, CGPoint.ccp(10, 0)));
+		demandFrame();
+		runUntilIdle();
+		director.resume();
+		assertTrue("frame after resume", demandFrame());
+		runUntilIdle();
+		assertEquals(20, node.getPositionRef().x, 1e-4f);
+	}
+}
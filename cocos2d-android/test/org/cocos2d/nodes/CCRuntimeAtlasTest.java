@@ -0,0 +1,140 @@
+package org.cocos2d.nodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.types.CGRect;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+
+public class CCRuntimeAtlasTest {
+	private static final int kPageBytes = CCRuntimeAtlas.kDefaultPageSize * CCRuntimeAtlas.kDefaultPageSize * 4;
+
+	private HeadlessDirector director_;
+	private CCRuntimeAtlas atlas_;
+
+	@Before
+	public void setUp() {
+		director_ = new HeadlessDirector(480, 320);
+		atlas_ = CCRuntimeAtlas.sharedAtlas();
+		CCRuntimeAtlas.purgeSharedAtlas();
+	}
+
+	@After
+	public void tearDown() {
+		CCRuntimeAtlas.purgeSharedAtlas();
+		director_.flushResources();
+		director_.end();
+	}
+
+	private static Bitmap image(int w, int h, int color) {
+		Bitmap bmp = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+		bmp.eraseColor(color);
+		return bmp;
+	}
+
+	@Test
+	public void lastReleaseRemovesImage() {
+		CCSpriteFrame frame = atlas_.addImage(image(32, 32, 0xffff0000), "a");
+		assertSame(frame, atlas_.addImage(image(32, 32, 0xffff0000), "a"));
+		assertEquals(1, atlas_.getImageCount());
+		assertEquals(1, atlas_.getPageCount());
+
+		atlas_.releaseImage("a");
+		assertSame(frame, atlas_.getFrame("a"));
+		atlas_.releaseImage("a");
+		assertNull(atlas_.getFrame("a"));
+		assertEquals(0, atlas_.getImageCount());
+		assertEquals(0, atlas_.getPageCount());
+
+		// removed at once whatever references it has
+		atlas_.addImage(image(32, 32, 0xffff0000), "b");
+		atlas_.addImage(image(32, 32, 0xffff0000), "b");
+		atlas_.removeImage("b");
+		assertEquals(0, atlas_.getImageCount());
+		atlas_.releaseImage("b");
+	}
+
+	@Test
+	public void pagesCountInTextureBudget() {
+		CCTextureCache cache = CCTextureCache.sharedTextureCache();
+		final long before = cache.getResidentBytes();
+
+		atlas_.addImage(image(32, 32, 0xff0000ff), "a");
+		assertEquals(before + kPageBytes, cache.getResidentBytes());
+		atlas_.addImage(image(32, 32, 0xff0000ff), "b");
+		assertEquals(before + kPageBytes, cache.getResidentBytes());
+
+		// pages are never evicted
+		cache.setMemoryBudget(kPageBytes / 2);
+		try {
+			assertEquals(before + kPageBytes, cache.getResidentBytes());
+		} finally {
+			cache.setMemoryBudget(CCTextureCache.kDefaultMemoryBudget);
+		}
+
+		atlas_.releaseImage("a");
+		atlas_.releaseImage("b");
+		assertEquals(before, cache.getResidentBytes());
+	}
+
+	@Test
+	public void fullPageOverflowsToNewPage() {
+		// 5 x 5 images with padding between them fill the page exactly
+		final int side = (CCRuntimeAtlas.kDefaultPageSize - 4) / 5;
+		CCSpriteFrame[] frames = new CCSpriteFrame[26];
+		for (int i = 0; i < frames.length; ++i)
+			frames[i] = atlas_.addImage(image(side, side, 0xff000000 | i), "img" + i);
+
+		assertEquals(2, atlas_.getPageCount());
+		for (int i = 1; i < 25; ++i)
+			assertSame(frames[0].getTexture(), frames[i].getTexture());
+		assertNotSame(frames[0].getTexture(), frames[25].getTexture());
+		CGRect corner = frames[24].getRect();
+		assertEquals(CCRuntimeAtlas.kDefaultPageSize, corner.origin.x + corner.size.width, 0);
+		assertEquals(CCRuntimeAtlas.kDefaultPageSize, corner.origin.y + corner.size.height, 0);
+
+		// page of the last image is dropped with it
+		atlas_.releaseImage("img25");
+		assertEquals(1, atlas_.getPageCount());
+	}
+
+	@Test
+	public void defragmentationMovesLiveFrames() {
+		String[] keys = { "a", "b", "c", "d" };
+		for (String key : keys)
+			atlas_.addImage(image(100, 100, 0xffffffff), key);
+		CCSpriteFrame last = atlas_.getFrame("d");
+		CCSprite sprite = CCSprite.sprite(last);
+		final CGRect rect = CGRect.make(last.getRect());
+		assertTrue(rect.origin.x > 0);
+		final int generation = atlas_.getFrameGeneration();
+
+		// live area stays half of the packed one
+		atlas_.releaseImage("a");
+		atlas_.releaseImage("b");
+		assertEquals(generation, atlas_.getFrameGeneration());
+		assertTrue(CGRect.equalToRect(rect, last.getRect()));
+
+		atlas_.releaseImage("c");
+		assertEquals(generation + 1, atlas_.getFrameGeneration());
+		assertSame(last, atlas_.getFrame("d"));
+		assertEquals(0, last.getRect().origin.x, 0);
+		assertEquals(0, last.getRect().origin.y, 0);
+
+		// the sprite shows the moved frame
+		assertEquals(0, sprite.getTextureRect().origin.x, 0);
+		assertEquals(100, sprite.getTextureRect().size.width, 0);
+
+		// freed place is used again
+		CCSpriteFrame next = atlas_.addImage(image(100, 100, 0xffffffff), "e");
+		assertEquals(101, next.getRect().origin.x, 0);
+	}
+}
@@ -0,0 +1,122 @@
+package org.cocos2d.nodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.FloatBuffer;
+
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.benchmark.NullGL;
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.opengl.CCTexture2D;
+import org.cocos2d.opengl.CCTextureAtlas;
+import org.cocos2d.types.CGPoint;
+import org.cocos2d.types.CGRect;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** reorderChild leaves the atlas alone until the sheet is used again,
+ * then every quad must belong to the sprite at its atlas index.
+ */
+public class CCSpriteSheetTest {
+	private HeadlessDirector director_;
+	private NullGL gl_;
+	private CCSpriteSheet sheet_;
+	private CCSprite[] sprites_;
+
+	@Before
+	public void setUp() {
+		gl_ = new NullGL();
+		director_ = new HeadlessDirector(480, 320, gl_);
+		director_.getContent().putTexture("test/sheet.pkm", 64, 64);
+		CCTexture2D tex = CCTextureCache.sharedTextureCache().addImage("test/sheet.pkm");
+
+		sheet_ = CCSpriteSheet.spriteSheet(tex, 4);
+		sprites_ = new CCSprite[6];
+		for (int i = 0; i < sprites_.length; ++i) {
+			// the rect tells the sprites apart in the atlas
+			sprites_[i] = CCSprite.sprite(sheet_, CGRect.make(i * 8, 0, 8, 8));
+			sprites_[i].setPosition(20 + i * 40, 100);
+		}
+		for (int i = 0; i < 4; ++i)
+			sheet_.addChild(sprites_[i], i);
+		// children of a sprite, one below and one above it
+		sprites_[1].addChild(sprites_[4], -1);
+		sprites_[1].addChild(sprites_[5], 1);
+
+		CCScene scene = CCScene.node();
+		scene.addChild(sheet_);
+		director_.runWithScene(scene);
+		director_.flushResources();
+	}
+
+	@After
+	public void tearDown() {
+		director_.end();
+	}
+
+	private void assertAtlasOrder(CCSprite... expected) {
+		sheet_.draw(gl_);
+
+		CCTextureAtlas atlas = sheet_.getTextureAtlas();
+		assertEquals(expected.length, atlas.getTotalQuads());
+		FloatBuffer texCoords = atlas.getTexCoordsBuffer();
+		FloatBuffer vertices = atlas.getVertexBuffer();
+		for (int i = 0; i < expected.length; ++i) {
+			CCSprite sprite = expected[i];
+			assertSame(sprite, sheet_.descendants_.get(i));
+			assertEquals(i, sprite.atlasIndex);
+
+			FloatBuffer own = sprite.getTexCoords();
+			for (int k = 0; k < 8; ++k)
+				assertEquals("tex coord " + k + " of quad " + i, own.get(k), texCoords.get(i * 8 + k), 0);
+
+			float x = 0, y = 0;
+			for (int v = 0; v < 4; ++v) {
+				x += vertices.get(i * 12 + v * 3) / 4;
+				y += vertices.get(i * 12 + v * 3 + 1) / 4;
+			}
+			CGPoint center = sprite.convertToWorldSpace(4, 4);
+			assertEquals("x of quad " + i, center.x, x, 1e-3f);
+			assertEquals("y of quad " + i, center.y, y, 1e-3f);
+		}
+	}
+
+	@Test
+	public void addedSpritesAreInOrder() {
+		assertAtlasOrder(sprites_[0], sprites_[4], sprites_[1], sprites_[5], sprites_[2], sprites_[3]);
+	}
+
+	@Test
+	public void reordersAreAppliedOnDraw() {
+		sheet_.reorderChild(sprites_[0], 10);
+		sheet_.reorderChild(sprites_[3], -5);
+		sheet_.reorderChild(sprites_[1], 10);
+		assertAtlasOrder(sprites_[3], sprites_[2], sprites_[0], sprites_[4], sprites_[1], sprites_[5]);
+
+		// back and forth again, the latest reordered of equal z goes last
+		sheet_.reorderChild(sprites_[0], 0);
+		sheet_.reorderChild(sprites_[0], 10);
+		assertAtlasOrder(sprites_[3], sprites_[2], sprites_[4], sprites_[1], sprites_[5], sprites_[0]);
+	}
+
+	@Test
+	public void childrenOfSpritesAreReordered() {
+		sprites_[1].reorderChild(sprites_[4], 2);
+		assertAtlasOrder(sprites_[0], sprites_[1], sprites_[5], sprites_[4], sprites_[2], sprites_[3]);
+
+		sprites_[1].reorderChild(sprites_[5], -1);
+		assertAtlasOrder(sprites_[0], sprites_[5], sprites_[1], sprites_[4], sprites_[2], sprites_[3]);
+	}
+
+	@Test
+	public void addAndRemoveAfterReorder() {
+		sheet_.reorderChild(sprites_[3], -1);
+		sheet_.removeChild(sprites_[2], true);
+		CCSprite added = CCSprite.sprite(sheet_, CGRect.make(56, 0, 8, 8));
+		added.setPosition(300, 200);
+		sheet_.addChild(added, 0);
+		assertAtlasOrder(sprites_[3], sprites_[0], added, sprites_[4], sprites_[1], sprites_[5]);
+	}
+}
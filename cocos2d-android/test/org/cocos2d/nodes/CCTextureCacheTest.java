@@ -0,0 +1,184 @@
+package org.cocos2d.nodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.benchmark.NullGL;
+import org.cocos2d.opengl.CCCompressedTextureData;
+import org.cocos2d.opengl.CCTexture2D;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CCTextureCacheTest {
+	/** 64x64 ETC1 */
+	private static final int kTextureBytes = 2048;
+
+	static class DeleteGL extends NullGL {
+		final List<Integer> deleted = new ArrayList<Integer>();
+
+		@Override
+		public void glDeleteTextures(int n, int[] textures, int offset) {
+			super.glDeleteTextures(n, textures, offset);
+			for (int i = 0; i < n; ++i)
+				deleted.add(textures[offset + i]);
+		}
+	}
+
+	private DeleteGL gl_;
+	private HeadlessDirector director_;
+	private CCTextureCache cache_;
+
+	@Before
+	public void setUp() {
+		gl_ = new DeleteGL();
+		director_ = new HeadlessDirector(480, 320, gl_);
+		for (int i = 0; i < 8; ++i)
+			director_.getContent().putTexture(path(i), 64, 64);
+		director_.getContent().putTexture("test/big.pkm", 128, 128);
+
+		cache_ = CCTextureCache.sharedTextureCache();
+		cache_.resetStats();
+		cache_.setMemoryBudget(3 * kTextureBytes);
+	}
+
+	@After
+	public void tearDown() {
+		director_.end();
+		cache_.setMemoryBudget(CCTextureCache.kDefaultMemoryBudget);
+	}
+
+	private static String path(int i) {
+		return "test/cache" + i + ".pkm";
+	}
+
+	/** adds the texture in a frame of its own and uploads it */
+	private CCTexture2D add(int i) {
+		director_.frame(0);
+		CCTexture2D tex = cache_.addImage(path(i));
+		director_.flushResources();
+		return tex;
+	}
+
+	@Test
+	public void evictionReleasesVideoMemory() {
+		CCTexture2D first = add(0);
+		add(1);
+		add(2);
+		final int name = first.name();
+		assertTrue(name != 0);
+
+		add(3);
+		assertEquals(1, cache_.getEvictions());
+		assertEquals(3 * kTextureBytes, cache_.getResidentBytes());
+		assertTrue(first.isEvicted());
+		assertEquals(Integer.valueOf(name), gl_.deleted.get(gl_.deleted.size() - 1));
+	}
+
+	@Test
+	public void evictedTextureIsLoadedAgainWhenBound() {
+		CCTexture2D first = add(0);
+		add(1);
+		add(2);
+		add(3);
+		assertTrue(first.isEvicted());
+
+		// binding queues reload with its loader
+		assertEquals(0, first.name());
+		director_.flushResources();
+		assertFalse(first.isEvicted());
+		assertTrue(first.isLoaded());
+
+		// still found while referenced, without loading it again
+		final int misses = cache_.getMisses();
+		assertSame(first, cache_.addImage(path(0)));
+		assertEquals(misses, cache_.getMisses());
+	}
+
+	@Test
+	public void requeryingCancelsQueuedEviction() {
+		CCTexture2D first = add(0);
+		add(1);
+		add(2);
+		director_.frame(0);
+		cache_.addImage(path(3));
+		// evicted but used again before the GL thread deletes it
+		assertSame(first, cache_.addImage(path(0)));
+		director_.flushResources();
+
+		assertFalse(first.isEvicted());
+		assertTrue(first.isLoaded());
+	}
+
+	@Test
+	public void texturesOfCurrentFrameAreKept() {
+		cache_.setMemoryBudget(2 * kTextureBytes);
+		director_.frame(0);
+		for (int i = 0; i < 3; ++i)
+			cache_.addImage(path(i));
+		assertEquals(0, cache_.getEvictions());
+		assertEquals(3 * kTextureBytes, cache_.getResidentBytes());
+
+		add(3);
+		assertEquals(2, cache_.getEvictions());
+		assertEquals(2 * kTextureBytes, cache_.getResidentBytes());
+	}
+
+	@Test
+	public void hitOfResizedTextureTrimsToBudget() throws Exception {
+		CCTexture2D first = add(0);
+		add(1);
+		add(2);
+
+		director_.frame(0);
+		first.initWithCompressedData(CCCompressedTextureData.read(
+				director_.getContent().openStream("test/big.pkm")));
+		director_.flushResources();
+		assertSame(first, cache_.addImage(path(0)));
+
+		// 128x128 takes the budget of 4 small ones
+		assertEquals(4 * kTextureBytes, first.memorySize());
+		assertEquals(2, cache_.getEvictions());
+		assertEquals(1, cache_.getResidentCount());
+	}
+
+	@Test
+	public void loaderThreadsKeepAccountsConsistent() throws Exception {
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; ++t) {
+			final int seed = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < 200; ++i)
+							cache_.addImage(path((seed + i * 3) % 8));
+					} catch (Throwable e) {
+						failure.set(e);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		// frames go on while loading, so older textures are evicted
+		for (Thread thread : threads) {
+			while (thread.isAlive()) {
+				CCDirector.sharedDirector().countFrame();
+				Thread.yield();
+			}
+		}
+
+		if (failure.get() != null)
+			throw new AssertionError(failure.get());
+		assertEquals(cache_.getResidentCount() * kTextureBytes, cache_.getResidentBytes());
+		assertEquals(800, cache_.getHits() + cache_.getMisses());
+	}
+}
@@ -0,0 +1,265 @@
+package org.cocos2d.opengl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.benchmark.NullGL;
+import org.cocos2d.nodes.CCTextureCache;
+import org.junit.Test;
+
+public class CCCompressedTextureDataTest {
+	private static final String kETC1 = "GL_OES_compressed_ETC1_RGB8_texture";
+
+	/** PKM header and zero blocks of one level */
+	private static void putPKM(ByteBuffer bb, int width, int height) {
+		bb.put((byte)'P').put((byte)'K').put((byte)'M').put((byte)' ');
+		bb.put((byte)'1').put((byte)'0');
+		bb.putShort((short)0);
+		bb.putShort((short)((width + 3) & ~3));
+		bb.putShort((short)((height + 3) & ~3));
+		bb.putShort((short)width);
+		bb.putShort((short)height);
+		bb.position(bb.position() + CCCompressedTextureData.compressedSize(CCCompressedTextureData.kFormatETC1, width, height));
+	}
+
+	private static byte[] pkm(int... sizes) {
+		ByteBuffer bb = ByteBuffer.allocate(4096);
+		for (int i = 0; i < sizes.length; i += 2)
+			putPKM(bb, sizes[i], sizes[i + 1]);
+		byte[] data = new byte[bb.position()];
+		System.arraycopy(bb.array(), 0, data, 0, data.length);
+		return data;
+	}
+
+	/** PVR v2 header of given pixel type with all mipmaps, data is zero */
+	private static byte[] pvr(int type, int width, int height, int format, boolean alpha) {
+		int dataLength = 0;
+		for (int w = width, h = height; ; w = Math.max(w >> 1, 1), h = Math.max(h >> 1, 1)) {
+			dataLength += CCCompressedTextureData.compressedSize(format, w, h);
+			if (w == 1 && h == 1)
+				break;
+		}
+		ByteBuffer bb = ByteBuffer.allocate(52 + dataLength).order(ByteOrder.LITTLE_ENDIAN);
+		bb.putInt(52).putInt(height).putInt(width).putInt(0).putInt(type).putInt(dataLength);
+		bb.putInt(4).putInt(0).putInt(0).putInt(0).putInt(alpha ? 1 : 0);
+		bb.put((byte)'P').put((byte)'V').put((byte)'R').put((byte)'!').putInt(1);
+		return bb.array();
+	}
+
+	private static CCCompressedTextureData read(byte[] data) throws IOException {
+		return CCCompressedTextureData.read(new ByteArrayInputStream(data));
+	}
+
+	@Test
+	public void pkmIsReadWithPadding() throws IOException {
+		CCCompressedTextureData data = read(pkm(30, 18));
+		assertEquals(CCCompressedTextureData.kFormatETC1, data.format());
+		assertEquals(CCCompressedTextureData.GL_ETC1_RGB8_OES, data.glInternalFormat());
+		assertEquals(32, data.width());
+		assertEquals(20, data.height());
+		assertEquals(30, data.contentWidth());
+		assertEquals(18, data.contentHeight());
+		assertFalse(data.hasAlpha());
+		assertEquals(1, data.levelCount());
+		assertEquals(8 * 5 * 8, data.level(0).capacity());
+		assertTrue(data.level(0).isDirect());
+	}
+
+	@Test
+	public void concatenatedPkmIsMipmapChain() throws IOException {
+		CCCompressedTextureData data = read(pkm(16, 16, 8, 8, 4, 4, 2, 2, 1, 1));
+		assertEquals(5, data.levelCount());
+		assertEquals(128 + 32 + 8 + 8 + 8, data.dataSize());
+		assertEquals(2, data.levelWidth(3));
+		assertEquals(1, data.levelHeight(7));
+	}
+
+	@Test(expected = IOException.class)
+	public void pkmLevelOfWrongSizeFails() throws IOException {
+		read(pkm(16, 16, 4, 4));
+	}
+
+	@Test
+	public void pvrIsReadWithMipmaps() throws IOException {
+		CCCompressedTextureData data = read(pvr(0x19, 32, 32, CCCompressedTextureData.kFormatPVRTC4, true));
+		assertEquals(CCCompressedTextureData.kFormatPVRTC4, data.format());
+		assertEquals(CCCompressedTextureData.GL_COMPRESSED_RGBA_PVRTC_4BPPV1_IMG, data.glInternalFormat());
+		assertTrue(data.hasAlpha());
+		assertEquals(6, data.levelCount());
+		assertEquals(512, data.level(0).capacity());
+		assertEquals(32, data.level(5).capacity());
+
+		data = read(pvr(0x18, 16, 8, CCCompressedTextureData.kFormatPVRTC2, false));
+		assertEquals(CCCompressedTextureData.GL_COMPRESSED_RGB_PVRTC_2BPPV1_IMG, data.glInternalFormat());
+		assertFalse(data.hasAlpha());
+	}
+
+	@Test
+	public void badDataFails() {
+		byte[] truncated = pkm(16, 16);
+		byte[][] bad = {
+			"not a texture at all, longer than headers are....".getBytes(),
+			pvr(0x10, 16, 16, CCCompressedTextureData.kFormatPVRTC4, false),
+			java.util.Arrays.copyOf(truncated, truncated.length - 1),
+			java.util.Arrays.copyOf(truncated, 10),
+		};
+		for (int i = 0; i < bad.length; ++i) {
+			try {
+				read(bad[i]);
+				fail("data " + i + " is read");
+			} catch (IOException e) {
+				if (i >= 2)
+					assertTrue(e instanceof EOFException);
+			}
+		}
+	}
+
+	@Test
+	public void extensionsAreMatchedByName() {
+		final int etc1 = CCCompressedTextureData.GL_ETC1_RGB8_OES;
+		final int pvrtc = CCCompressedTextureData.GL_COMPRESSED_RGB_PVRTC_4BPPV1_IMG;
+		assertTrue(CCCompressedTextureData.isSupported(etc1, "GL_OES_foo " + kETC1));
+		assertFalse(CCCompressedTextureData.isSupported(etc1, kETC1 + "_foo"));
+		assertFalse(CCCompressedTextureData.isSupported(pvrtc, kETC1));
+		assertTrue(CCCompressedTextureData.isSupported(pvrtc, "GL_IMG_texture_compression_pvrtc " + kETC1));
+		assertFalse(CCCompressedTextureData.isSupported(etc1, null));
+	}
+
+	private static short rgb565(int r, int g, int b) {
+		return (short)(((r >> 3) << 11) | ((g >> 2) << 5) | (b >> 3));
+	}
+
+	private static short pixel(ByteBuffer pixels, int width, int x, int y) {
+		return pixels.getShort((y * width + x) * 2);
+	}
+
+	/** block of individual colours, side by side, and a differential block, flipped */
+	private static final byte[] kBlocks = {
+		// red 8/f, green 4/0, blue 0/0, tables 0 and 7; pixel 0,1 has index 3
+		(byte)0x8f, 0x40, 0x00, 0x1c, 0x00, 0x02, 0x00, 0x02,
+		// red 10-1, green 20+3, blue 4-4, tables 1 and 2; every pixel has index 1
+		0x57, (byte)0xa3, 0x24, 0x2b, 0x00, 0x00, (byte)0xff, (byte)0xff,
+	};
+
+	@Test
+	public void etc1IsDecodedToRGB565() {
+		ByteBuffer pixels = CCCompressedTextureData.decodeETC1(ByteBuffer.wrap(kBlocks), 8, 4);
+		assertEquals(8 * 4 * 2, pixels.capacity());
+		assertTrue(pixels.isDirect());
+
+		// 0x88 + 2, 0x44 + 2, 0 + 2
+		assertEquals(rgb565(138, 70, 2), pixel(pixels, 8, 0, 0));
+		assertEquals(rgb565(138, 70, 2), pixel(pixels, 8, 1, 3));
+		// -8, blue is clamped
+		assertEquals(rgb565(128, 60, 0), pixel(pixels, 8, 0, 1));
+		// 0xff + 47 is clamped
+		assertEquals(rgb565(255, 47, 47), pixel(pixels, 8, 2, 0));
+		assertEquals(rgb565(255, 47, 47), pixel(pixels, 8, 3, 3));
+
+		// 82 + 17, 165 + 17, 33 + 17 in the upper half
+		assertEquals(rgb565(99, 182, 50), pixel(pixels, 8, 4, 0));
+		assertEquals(rgb565(99, 182, 50), pixel(pixels, 8, 7, 1));
+		// 74 + 29, 189 + 29, 0 + 29 in the lower half
+		assertEquals(rgb565(103, 218, 29), pixel(pixels, 8, 4, 2));
+		assertEquals(rgb565(103, 218, 29), pixel(pixels, 8, 7, 3));
+	}
+
+	@Test
+	public void etc1IsCroppedToImage() {
+		ByteBuffer pixels = CCCompressedTextureData.decodeETC1(ByteBuffer.wrap(kBlocks), 6, 3);
+		assertEquals(6 * 3 * 2, pixels.capacity());
+		assertEquals(rgb565(99, 182, 50), pixel(pixels, 6, 5, 1));
+		assertEquals(rgb565(103, 218, 29), pixel(pixels, 6, 5, 2));
+
+		try {
+			CCCompressedTextureData.decodeETC1(ByteBuffer.wrap(kBlocks), 8, 8);
+			fail("decoded past the data");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/** GPU without the compressed formats, records uploads */
+	static class UploadGL extends NullGL {
+		int compressed;
+		int decoded;
+		int format;
+		int type;
+
+		UploadGL() {
+			super("GL_OES_framebuffer_object");
+		}
+
+		@Override
+		public void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border, int imageSize, Buffer data) {
+			super.glCompressedTexImage2D(target, level, internalformat, width, height, border, imageSize, data);
+			compressed++;
+		}
+
+		@Override
+		public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+			super.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+			assertEquals(width * height * 2, pixels.capacity());
+			decoded++;
+			this.format = format;
+			this.type = type;
+		}
+	}
+
+	@Test
+	public void etc1IsDecodedWithoutExtension() {
+		UploadGL gl = new UploadGL();
+		HeadlessDirector director = new HeadlessDirector(480, 320, gl);
+		// uploads left by other tests
+		director.flushResources();
+		gl.compressed = gl.decoded = 0;
+		try {
+			director.getContent().put("test/fallback.pkm", pkm(16, 16, 8, 8, 4, 4, 2, 2, 1, 1));
+			CCTexture2D tex = CCTextureCache.sharedTextureCache().addImage("test/fallback.pkm");
+			director.flushResources();
+			assertTrue(tex.name() != 0);
+
+			assertEquals(0, gl.compressed);
+			assertEquals(5, gl.decoded);
+			assertEquals(GL10.GL_RGB, gl.format);
+			assertEquals(GL10.GL_UNSIGNED_SHORT_5_6_5, gl.type);
+			assertEquals((256 + 64 + 16 + 4 + 1) * 2, tex.memorySize());
+		} finally {
+			CCTextureCache.sharedTextureCache().removeTexture("test/fallback.pkm");
+			director.end();
+		}
+	}
+
+	@Test
+	public void pvrtcIsLeftEmptyWithoutExtension() {
+		UploadGL gl = new UploadGL();
+		HeadlessDirector director = new HeadlessDirector(480, 320, gl);
+		// uploads left by other tests
+		director.flushResources();
+		gl.compressed = gl.decoded = 0;
+		try {
+			director.getContent().put("test/fallback.pvr", pvr(0x19, 32, 32, CCCompressedTextureData.kFormatPVRTC4, true));
+			CCTexture2D tex = CCTextureCache.sharedTextureCache().addImage("test/fallback.pvr");
+			director.flushResources();
+			assertTrue(tex.name() != 0);
+
+			assertEquals(0, gl.compressed);
+			assertEquals(0, gl.decoded);
+			assertEquals(0, tex.memorySize());
+		} finally {
+			CCTextureCache.sharedTextureCache().removeTexture("test/fallback.pvr");
+			director.end();
+		}
+	}
+}
@@ -0,0 +1,426 @@
+package org.cocos2d.opengl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.HashMap;
+import java.util.Locale;
+
+import org.cocos2d.actions.CCScheduler;
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.benchmark.NullGL;
+import org.cocos2d.config.ccMacros;
+import org.cocos2d.layers.CCColorLayer;
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.nodes.CCBatchRenderer;
+import org.cocos2d.nodes.CCSprite;
+import org.cocos2d.nodes.CCSpriteSheet;
+import org.cocos2d.nodes.CCTextureCache;
+import org.cocos2d.particlesystem.CCArrayParticleSystem;
+import org.cocos2d.particlesystem.CCParticleSystem;
+import org.cocos2d.particlesystem.CCPointParticleSystem;
+import org.cocos2d.particlesystem.CCQuadParticleSystem;
+import org.cocos2d.types.CGPoint;
+import org.cocos2d.types.CGRect;
+import org.cocos2d.types.ccColor4B;
+import org.cocos2d.types.ccColor4F;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Draws a scene directly and through CCGLRecorder and CCRenderCommandList.replay()
+ * to a GL which fetches the vertices of every draw call, both must fetch the same.
+ */
+public class CCGLRecorderTest {
+	/** Resolves client arrays and buffer objects like a GL would and logs
+	 * the attributes of every drawn vertex.
+	 */
+	static class FetchGL extends NullGL {
+		private static final int kVertex = 0, kColor = 1, kTexCoord = 2, kPointSize = 3;
+
+		final StringBuilder log = new StringBuilder();
+		int draws;
+
+		private final HashMap<Integer, ByteBuffer> buffers = new HashMap<Integer, ByteBuffer>();
+		private int arrayBuffer;
+		private int elementBuffer;
+		private int texture;
+
+		private final boolean[] enabled = new boolean[4];
+		private final Buffer[] pointers = new Buffer[4];
+		private final int[] bases = new int[4];
+		private final int[] sizes = new int[4];
+		private final int[] types = new int[4];
+		private final int[] strides = new int[4];
+
+		private static int array(int array) {
+			switch (array) {
+			case GL_VERTEX_ARRAY:
+				return kVertex;
+			case GL_COLOR_ARRAY:
+				return kColor;
+			case GL_TEXTURE_COORD_ARRAY:
+				return kTexCoord;
+			case GL_POINT_SIZE_ARRAY_OES:
+				return kPointSize;
+			default:
+				return -1;
+			}
+		}
+
+		private static int unit(Buffer b) {
+			if (b instanceof ByteBuffer)
+				return 1;
+			if (b instanceof ShortBuffer)
+				return 2;
+			return 4;
+		}
+
+		private void pointer(int k, int size, int type, int stride, Buffer pointer) {
+			pointers[k] = pointer;
+			bases[k] = pointer.position() * unit(pointer);
+			sizes[k] = size;
+			types[k] = type;
+			strides[k] = stride;
+		}
+
+		private void pointer(int k, int size, int type, int stride, int offset) {
+			pointers[k] = buffers.get(arrayBuffer);
+			bases[k] = offset;
+			sizes[k] = size;
+			types[k] = type;
+			strides[k] = stride;
+		}
+
+		private static float read(Buffer b, int at, int type) {
+			if (b instanceof ByteBuffer) {
+				ByteBuffer bb = (ByteBuffer)b;
+				switch (type) {
+				case GL_UNSIGNED_BYTE:
+					return (bb.get(at) & 0xFF) / 255.0f;
+				case GL_SHORT:
+					return bb.getShort(at);
+				case GL_FIXED:
+					return bb.getInt(at) / 65536.0f;
+				default:
+					return bb.getFloat(at);
+				}
+			}
+			if (b instanceof FloatBuffer)
+				return ((FloatBuffer)b).get(at >> 2);
+			if (b instanceof ShortBuffer)
+				return ((ShortBuffer)b).get(at >> 1);
+			return ((IntBuffer)b).get(at >> 2) / 65536.0f;
+		}
+
+		private static int bytes(int type) {
+			return type == GL_UNSIGNED_BYTE ? 1 : (type == GL_SHORT ? 2 : 4);
+		}
+
+		private void fetch(int index) {
+			log.append(' ');
+			for (int k = 0; k < 4; ++k) {
+				if (!enabled[k] || pointers[k] == null)
+					continue;
+				final int components = k == kPointSize ? 1 : sizes[k];
+				final int element = components * bytes(types[k]);
+				final int stride = strides[k] != 0 ? strides[k] : element;
+				final int at = bases[k] + index * stride;
+				for (int c = 0; c < components; ++c)
+					log.append(String.format(Locale.US, "%.3f,", read(pointers[k], at + c * bytes(types[k]), types[k])));
+				log.append('|');
+			}
+		}
+
+		private void beginDraw(int mode, int count) {
+			draws++;
+			log.append("draw ").append(mode).append(' ').append(count).append(" tex ").append(texture);
+		}
+
+		@Override
+		public void glBindTexture(int target, int tex) {
+			super.glBindTexture(target, tex);
+			texture = tex;
+		}
+
+		@Override
+		public void glEnableClientState(int array) {
+			super.glEnableClientState(array);
+			int k = array(array);
+			if (k >= 0)
+				enabled[k] = true;
+		}
+
+		@Override
+		public void glDisableClientState(int array) {
+			super.glDisableClientState(array);
+			int k = array(array);
+			if (k >= 0)
+				enabled[k] = false;
+		}
+
+		@Override
+		public void glVertexPointer(int size, int type, int stride, Buffer pointer) {
+			super.glVertexPointer(size, type, stride, pointer);
+			pointer(kVertex, size, type, stride, pointer);
+		}
+
+		@Override
+		public void glVertexPointer(int size, int type, int stride, int offset) {
+			super.glVertexPointer(size, type, stride, offset);
+			pointer(kVertex, size, type, stride, offset);
+		}
+
+		@Override
+		public void glColorPointer(int size, int type, int stride, Buffer pointer) {
+			super.glColorPointer(size, type, stride, pointer);
+			pointer(kColor, size, type, stride, pointer);
+		}
+
+		@Override
+		public void glColorPointer(int size, int type, int stride, int offset) {
+			super.glColorPointer(size, type, stride, offset);
+			pointer(kColor, size, type, stride, offset);
+		}
+
+		@Override
+		public void glTexCoordPointer(int size, int type, int stride, Buffer pointer) {
+			super.glTexCoordPointer(size, type, stride, pointer);
+			pointer(kTexCoord, size, type, stride, pointer);
+		}
+
+		@Override
+		public void glTexCoordPointer(int size, int type, int stride, int offset) {
+			super.glTexCoordPointer(size, type, stride, offset);
+			pointer(kTexCoord, size, type, stride, offset);
+		}
+
+		@Override
+		public void glPointSizePointerOES(int type, int stride, Buffer pointer) {
+			super.glPointSizePointerOES(type, stride, pointer);
+			if (arrayBuffer != 0)
+				throw new IllegalStateException("client point sizes with a bound buffer object");
+			pointer(kPointSize, 1, type, stride, pointer);
+		}
+
+		@Override
+		public void glBindBuffer(int target, int buffer) {
+			super.glBindBuffer(target, buffer);
+			if (target == GL_ARRAY_BUFFER)
+				arrayBuffer = buffer;
+			else
+				elementBuffer = buffer;
+		}
+
+		@Override
+		public void glBufferData(int target, int size, Buffer data, int usage) {
+			super.glBufferData(target, size, data, usage);
+			ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+			buffers.put(target == GL_ARRAY_BUFFER ? arrayBuffer : elementBuffer, b);
+			if (data != null)
+				copy(data, b, 0, size);
+		}
+
+		@Override
+		public void glBufferSubData(int target, int offset, int size, Buffer data) {
+			super.glBufferSubData(target, offset, size, data);
+			copy(data, buffers.get(target == GL_ARRAY_BUFFER ? arrayBuffer : elementBuffer), offset, size);
+		}
+
+		private static void copy(Buffer src, ByteBuffer dst, int offset, int size) {
+			final int base = src.position() * unit(src);
+			for (int i = 0; i < size; i += unit(src)) {
+				if (src instanceof ByteBuffer)
+					dst.put(offset + i, ((ByteBuffer)src).get(base + i));
+				else if (src instanceof FloatBuffer)
+					dst.putFloat(offset + i, ((FloatBuffer)src).get((base + i) >> 2));
+				else if (src instanceof ShortBuffer)
+					dst.putShort(offset + i, ((ShortBuffer)src).get((base + i) >> 1));
+				else
+					dst.putInt(offset + i, ((IntBuffer)src).get((base + i) >> 2));
+			}
+		}
+
+		@Override
+		public void glDrawArrays(int mode, int first, int count) {
+			super.glDrawArrays(mode, first, count);
+			beginDraw(mode, count);
+			for (int i = first; i < first + count; ++i)
+				fetch(i);
+			log.append('\n');
+		}
+
+		@Override
+		public void glDrawElements(int mode, int count, int type, Buffer indices) {
+			super.glDrawElements(mode, count, type, indices);
+			beginDraw(mode, count);
+			final int base = indices.position() * unit(indices);
+			for (int i = 0; i < count; ++i)
+				fetch(index(indices, base, i, type));
+			log.append('\n');
+		}
+
+		@Override
+		public void glDrawElements(int mode, int count, int type, int offset) {
+			super.glDrawElements(mode, count, type, offset);
+			beginDraw(mode, count);
+			ByteBuffer indices = buffers.get(elementBuffer);
+			for (int i = 0; i < count; ++i)
+				fetch(index(indices, offset, i, type));
+			log.append('\n');
+		}
+
+		private static int index(Buffer indices, int base, int i, int type) {
+			if (type == GL_UNSIGNED_BYTE)
+				return ((ByteBuffer)indices).get(base + i) & 0xFF;
+			if (indices instanceof ShortBuffer)
+				return ((ShortBuffer)indices).get((base >> 1) + i) & 0xFFFF;
+			return ((ByteBuffer)indices).getShort(base + i * 2) & 0xFFFF;
+		}
+	}
+
+	private FetchGL gl_;
+	private HeadlessDirector director_;
+
+	@Before
+	public void setUp() {
+		gl_ = new FetchGL();
+		director_ = new HeadlessDirector(480, 320, gl_);
+	}
+
+	@After
+	public void tearDown() {
+		CCBatchRenderer.sharedRenderer().setEnabled(false);
+		director_.end();
+	}
+
+	private static CCParticleSystem emitter(CCParticleSystem ps, CCTexture2D tex, float x) {
+		ps.setTexture(tex);
+		ps.setDuration(CCParticleSystem.kCCParticleDurationInfinity);
+		ps.setEmitterMode(CCParticleSystem.kCCParticleModeGravity);
+		ps.setGravity(CGPoint.ccp(0, -90));
+		ps.setSpeed(120);
+		ps.setAngle(90);
+		ps.setAngleVar(30);
+		ps.setLife(2);
+		ps.setStartSize(16);
+		ps.setEndSize(4);
+		ps.setStartColor(new ccColor4F(1, 0.8f, 0.2f, 1));
+		ps.setEndColor(new ccColor4F(1, 0.1f, 0, 0));
+		ps.setEmissionRate(50);
+		ps.setPosition(x, 40);
+		return ps;
+	}
+
+	private CCParticleSystem[] createScene(CCScene scene) {
+		director_.getContent().putTexture("test/recorder.pkm", 64, 64);
+		CCTexture2D tex = CCTextureCache.sharedTextureCache().addImage("test/recorder.pkm");
+
+		scene.addChild(CCColorLayer.node(ccColor4B.ccc4(10, 20, 30, 128), 100, 50));
+
+		for (int i = 0; i < 3; ++i) {
+			CCSprite sprite = CCSprite.sprite(tex, CGRect.make(i * 8, 0, 8, 8));
+			sprite.setPosition(20 + i * 30, 200);
+			sprite.setRotation(i * 20);
+			scene.addChild(sprite);
+		}
+
+		CCSpriteSheet sheet = CCSpriteSheet.spriteSheet(tex, 8);
+		for (int i = 0; i < 5; ++i) {
+			CCSprite sprite = CCSprite.sprite(sheet, CGRect.make(0, i * 8, 8, 8));
+			sprite.setPosition(200 + i * 10, 250);
+			sheet.addChild(sprite);
+		}
+		scene.addChild(sheet);
+
+		CCParticleSystem[] systems = new CCParticleSystem[] {
+			emitter(new CCQuadParticleSystem(100), tex, 100),
+			emitter(new CCArrayParticleSystem(100), tex, 200),
+			emitter(new CCPointParticleSystem(100), tex, 300),
+		};
+		for (CCParticleSystem ps : systems)
+			scene.addChild(ps);
+		return systems;
+	}
+
+	private String drawDirect(CCScene scene) {
+		gl_.log.setLength(0);
+		gl_.draws = 0;
+		CCBatchRenderer batch = CCBatchRenderer.sharedRenderer();
+		ccMacros.CC_ENABLE_DEFAULT_GL_STATES(gl_);
+		batch.begin(gl_);
+		scene.visit(gl_);
+		batch.end(gl_);
+		ccMacros.CC_DISABLE_DEFAULT_GL_STATES(gl_);
+		return gl_.log.toString();
+	}
+
+	private String drawRecorded(CCScene scene) {
+		CCGLRecorder recorder = new CCGLRecorder();
+		CCRenderCommandList list = new CCRenderCommandList();
+		recorder.begin(list);
+		CCBatchRenderer batch = CCBatchRenderer.sharedRenderer();
+		ccMacros.CC_ENABLE_DEFAULT_GL_STATES(recorder);
+		batch.begin(recorder);
+		scene.visit(recorder);
+		batch.end(recorder);
+		ccMacros.CC_DISABLE_DEFAULT_GL_STATES(recorder);
+		recorder.end();
+
+		gl_.log.setLength(0);
+		gl_.draws = 0;
+		list.replay(gl_);
+		return gl_.log.toString();
+	}
+
+	private void checkReplay(boolean batching) {
+		CCBatchRenderer.sharedRenderer().setEnabled(batching);
+
+		CCScene scene = CCScene.node();
+		CCParticleSystem[] systems = createScene(scene);
+		director_.runWithScene(scene);
+		for (int i = 0; i < 10; ++i)
+			CCScheduler.sharedScheduler().tick(0.1f);
+
+		// loads textures, they can't be created while recording
+		String before = drawDirect(scene);
+
+		// particles move, uploads of the new positions must be replayed
+		CCScheduler.sharedScheduler().tick(0.1f);
+		String replayed = drawRecorded(scene);
+		int replayedDraws = gl_.draws;
+
+		for (CCParticleSystem ps : systems)
+			ps.postStep();
+		String direct = drawDirect(scene);
+
+		assertTrue("all nodes drew", gl_.draws >= (batching ? 5 : 8));
+		assertEquals(gl_.draws, replayedDraws);
+		assertFalse(before.equals(direct));
+		assertEquals(direct, replayed);
+	}
+
+	@Test
+	public void replayFetchesTheSameVertices() {
+		checkReplay(false);
+	}
+
+	@Test
+	public void replayFetchesTheSameVerticesWithBatching() {
+		checkReplay(true);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void objectCreationCantBeRecorded() {
+		CCGLRecorder recorder = new CCGLRecorder();
+		recorder.begin(new CCRenderCommandList());
+		recorder.glGenBuffers(1, new int[1], 0);
+	}
+}
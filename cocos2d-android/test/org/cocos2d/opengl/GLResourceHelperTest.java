@@ -0,0 +1,136 @@
+package org.cocos2d.opengl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.layers.CCScene;
+import org.cocos2d.nodes.CCSprite;
+import org.cocos2d.nodes.CCTextureCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GLResourceHelperTest {
+	private HeadlessDirector director_;
+	private GLResourceHelper helper_;
+	private CCTexture2D[] textures_;
+
+	@Before
+	public void setUp() {
+		director_ = new HeadlessDirector(480, 320);
+		helper_ = GLResourceHelper.sharedHelper();
+		textures_ = new CCTexture2D[3];
+		for (int i = 0; i < textures_.length; ++i) {
+			director_.getContent().putTexture("test/reload" + i + ".pkm", 16, 16);
+			textures_[i] = CCTextureCache.sharedTextureCache().addImage("test/reload" + i + ".pkm");
+		}
+		director_.flushResources();
+	}
+
+	@After
+	public void tearDown() {
+		helper_.setFrameBudget(0);
+		director_.end();
+	}
+
+	/** one update() with the least budget, so one task is performed */
+	private void updateOneTask() {
+		helper_.setFrameBudget(1);
+		helper_.setInUpdate(true);
+		helper_.update(director_.getGL());
+		helper_.setInUpdate(false);
+		assertEquals(1, helper_.getLastFrameTasks());
+	}
+
+	@Test
+	public void tasksRunByPriority() {
+		final StringBuilder order = new StringBuilder();
+		final String[] names = { "high", "normal", "low" };
+		for (int p = GLResourceHelper.kPriorityLow; p >= GLResourceHelper.kPriorityHigh; --p) {
+			final String name = names[p];
+			helper_.perform(new GLResourceHelper.GLResorceTask() {
+				public void perform(GL10 gl) {
+					order.append(name).append(' ');
+				}
+			}, p);
+		}
+		assertEquals(3, helper_.getQueueDepth());
+		director_.flushResources();
+		assertEquals("high normal low ", order.toString());
+		assertEquals(0, helper_.getQueueDepth());
+	}
+
+	@Test
+	public void boundTextureIsReloadedFirst() {
+		final int[] names = new int[textures_.length];
+		for (int i = 0; i < textures_.length; ++i)
+			names[i] = textures_[i].name();
+
+		// without running scene every texture is reloaded with low priority
+		helper_.reloadResources();
+		updateOneTask();
+		// textures of other tests may still have loaders
+		assertTrue(helper_.getQueueDepth(GLResourceHelper.kPriorityLow) >= textures_.length);
+
+		// the last one is bound, its reload goes first
+		textures_[2].name();
+		assertEquals(1, helper_.getQueueDepth(GLResourceHelper.kPriorityHigh));
+		textures_[2].name();
+		assertEquals(1, helper_.getQueueDepth(GLResourceHelper.kPriorityHigh));
+
+		updateOneTask();
+		final int reloaded = textures_[2].name();
+		assertTrue(reloaded != names[2]);
+		assertEquals(names[0], textures_[0].name());
+		assertEquals(names[1], textures_[1].name());
+
+		// the copy left in the low queue does nothing
+		helper_.setFrameBudget(0);
+		director_.flushResources();
+		assertEquals(0, helper_.getQueueDepth());
+		assertEquals(reloaded, textures_[2].name());
+		assertTrue(textures_[0].name() != names[0]);
+	}
+
+	@Test
+	public void visibleResourcesAreInVisitOrder() {
+		final int count = 8;
+		CCTexture2D[] textures = new CCTexture2D[count];
+		CCScene scene = CCScene.node();
+		for (int i = 0; i < count; ++i) {
+			director_.getContent().putTexture("test/order" + i + ".pkm", 16, 16);
+			textures[i] = CCTextureCache.sharedTextureCache().addImage("test/order" + i + ".pkm");
+			// the last added is visited first
+			scene.addChild(CCSprite.sprite(textures[i]), count - i);
+		}
+		// the same texture again is listed once
+		scene.addChild(CCSprite.sprite(textures[3]), count + 1);
+		// hidden nodes are left for low priority
+		director_.getContent().putTexture("test/hidden.pkm", 16, 16);
+		CCSprite hidden = CCSprite.sprite(CCTextureCache.sharedTextureCache().addImage("test/hidden.pkm"));
+		hidden.setVisible(false);
+		scene.addChild(hidden, -2);
+
+		director_.flushResources();
+
+		List<GLResourceHelper.Resource> ordered = new ArrayList<GLResourceHelper.Resource>();
+		GLResourceHelper.collectResources(scene, new IdentityHashMap<GLResourceHelper.Resource, Boolean>(), ordered);
+
+		List<GLResourceHelper.Resource> expected = new ArrayList<GLResourceHelper.Resource>();
+		for (int i = count - 1; i >= 0; --i)
+			expected.add(textures[i]);
+		List<GLResourceHelper.Resource> collected = new ArrayList<GLResourceHelper.Resource>();
+		for (GLResourceHelper.Resource res : ordered) {
+			if (res instanceof CCTexture2D)
+				collected.add(res);
+		}
+		assertEquals(expected, collected);
+	}
+}
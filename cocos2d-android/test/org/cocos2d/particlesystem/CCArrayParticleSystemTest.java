@@ -0,0 +1,102 @@
+package org.cocos2d.particlesystem;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cocos2d.benchmark.HeadlessDirector;
+import org.cocos2d.types.CGPoint;
+import org.cocos2d.types.ccColor4F;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CCArrayParticleSystemTest {
+	private static final float kDelta = 1 / 60.0f;
+	private static final int kFrames = 90;
+
+	private HeadlessDirector director_;
+
+	@Before
+	public void setUp() {
+		director_ = new HeadlessDirector(480, 320);
+	}
+
+	@After
+	public void tearDown() {
+		director_.end();
+	}
+
+	private static CCArrayParticleSystem emitter(boolean parallel) {
+		CCArrayParticleSystem ps = new CCArrayParticleSystem(300);
+		ps.setRandomSeed(11);
+		ps.setParallelUpdate(parallel);
+		ps.setDuration(CCParticleSystem.kCCParticleDurationInfinity);
+		ps.setEmitterMode(CCParticleSystem.kCCParticleModeGravity);
+		ps.setAngle(90);
+		ps.setAngleVar(30);
+		ps.setLifeVar(0.5f);
+		ps.setStartSize(16);
+		ps.setEndSize(4);
+		ps.setEndColor(new ccColor4F(1, 0.1f, 0, 0));
+		ps.setPosition(240, 40);
+		return ps;
+	}
+
+	/** emitter properties of a frame, changed every frame */
+	private static void configure(CCParticleSystem ps, int frame) {
+		ps.setLife(1);
+		ps.setEmissionRate(200);
+		ps.setSpeed(100 + frame);
+		ps.setGravity(CGPoint.ccp(frame % 7, -90));
+		ps.setStartColor(new ccColor4F(1, frame / (float)kFrames, 0.2f, 1));
+	}
+
+	/** values which must not reach a running step */
+	private static void scramble(CCParticleSystem ps) {
+		ps.setSpeed(10000);
+		ps.setGravity(CGPoint.ccp(5000, 5000));
+		ps.setStartColor(new ccColor4F(0, 0, 1, 0));
+		ps.setLife(0.01f);
+		ps.setEmissionRate(100000);
+	}
+
+	private static float[] quads(CCArrayParticleSystem ps) {
+		float[] q = Arrays.copyOf(ps.quadVertices, ps.quadCount * 8 + ps.quadCount * 16);
+		System.arraycopy(ps.quadColors, 0, q, ps.quadCount * 8, ps.quadCount * 16);
+		return q;
+	}
+
+	@Test
+	public void runningStepUsesPropertiesOfItsFrame() {
+		CCArrayParticleSystem sequential = emitter(false);
+		CCArrayParticleSystem parallel = emitter(true);
+		assertTrue(parallel.isParallelUpdate());
+
+		List<float[]> expected = new ArrayList<float[]>();
+		for (int frame = 0; frame < kFrames; ++frame) {
+			configure(sequential, frame);
+			sequential.update(kDelta);
+			expected.add(quads(sequential));
+
+			configure(parallel, frame);
+			parallel.update(kDelta);
+			// the step of this frame runs meanwhile
+			scramble(parallel);
+
+			// shown one frame later
+			if (frame > 0)
+				assertArrayEquals("frame " + frame, expected.get(frame - 1), quads(parallel), 0);
+		}
+		assertTrue(sequential.getParticleCount() > 100);
+
+		// joins the last step
+		parallel.setParallelUpdate(false);
+		assertArrayEquals(expected.get(kFrames - 1), quads(parallel), 0);
+		assertEquals(sequential.getParticleCount(), parallel.getParticleCount());
+	}
+}
@@ -0,0 +1,74 @@
+package org.cocos2d.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SkylinePackerTest {
+	private final int[] out_ = new int[2];
+
+	@Test
+	public void rectsReachTheEdgesOfThePage() {
+		SkylinePacker packer = new SkylinePacker(64, 64, 1);
+		assertTrue("whole page", packer.insert(64, 64, out_));
+		assertEquals(0, out_[0]);
+		assertEquals(0, out_[1]);
+		assertFalse(packer.insert(1, 1, out_));
+
+		// padding is kept between rects only
+		packer.reset();
+		assertTrue(packer.insert(31, 10, out_));
+		assertTrue(packer.insert(32, 10, out_));
+		assertEquals(32, out_[0]);
+		assertEquals(0, out_[1]);
+		assertTrue(packer.insert(64, 53, out_));
+		assertEquals(11, out_[1]);
+		assertFalse(packer.insert(1, 1, out_));
+		assertEquals(1.0f, packer.getOccupancy(), 0.03f);
+	}
+
+	@Test
+	public void fullPageRejectsRects() {
+		SkylinePacker packer = new SkylinePacker(100, 100, 1);
+		int placed = 0;
+		while (packer.insert(10, 10, out_))
+			placed++;
+		// 11 px with padding, the last ones of a row and a column need no padding
+		assertEquals(81, placed);
+		assertEquals(81 * 100, packer.getUsedArea());
+
+		packer.reset();
+		assertEquals(0, packer.getUsedArea());
+		assertTrue(packer.insert(10, 10, out_));
+	}
+
+	@Test
+	public void rectsDontOverlap() {
+		final int size = 256;
+		SkylinePacker packer = new SkylinePacker(size, size, 1);
+		List<int[]> placed = new ArrayList<int[]>();
+		int seed = 7;
+		for (int i = 0; i < 300; ++i) {
+			seed = seed * 1103515245 + 12345;
+			int w = 1 + ((seed >>> 16) & 31);
+			int h = 1 + ((seed >>> 8) & 31);
+			if (!packer.insert(w, h, out_))
+				continue;
+			int[] r = { out_[0], out_[1], w, h };
+			assertTrue(r[0] >= 0 && r[1] >= 0 && r[0] + w <= size && r[1] + h <= size);
+			for (int[] o : placed) {
+				// 1 px of padding between rects
+				boolean apart = r[0] >= o[0] + o[2] + 1 || o[0] >= r[0] + r[2] + 1
+						|| r[1] >= o[1] + o[3] + 1 || o[1] >= r[1] + r[3] + 1;
+				assertTrue("rect " + i + " overlaps", apart);
+			}
+			placed.add(r);
+		}
+		assertTrue(placed.size() > 50);
+	}
+}